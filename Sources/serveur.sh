@@ -7,6 +7,8 @@ MEMORY_MIN=128
 MEMORY_MAX=1024	
 START_BG="&"
 PATHSEP=':'
+# engine of the server: selector (default), async, or virtual (build with the profile java21)
+ENGINE=${ENGINE:-selector}
 
 MAVEN_REPOS=${HOME}/.m2/repository
 LOG4J_JAR=${MAVEN_REPOS}/log4j/log4j/1.2.17/log4j-1.2.17.jar
@@ -15,7 +17,7 @@ CLASSPATH=${LOG4J_JAR}${PATHSEP}:./target/classes
 
 
 # Start the broker
-CMD="java -Xms${MEMORY_MIN}m -Xmx${MEMORY_MAX}m 
+CMD="java -Xms${MEMORY_MIN}m -Xmx${MEMORY_MAX}m -Dchat.server.engine=${ENGINE}
           -cp $CLASSPATH chat.server.Main ${ARGS}"
 
 $CMD
@@ -0,0 +1,199 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chat.client.algorithms.chat.Actions;
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.common.VectorClock;
+
+/**
+ * This class contains the benchmarks of the causal delivery of the chat messages in the client,
+ * that is of {@link Actions#receiveChatMessageContent(chat.client.State, ChatMessageContent)}:
+ * <ul>
+ * <li>the reception of a deliverable message while the bag of the client contains a backlog of 0
+ * to 5,000 messages that are not deliverable, e.g. because a message of their sender is
+ * missing;</li>
+ * <li>the reception of a burst of messages of a sender in reverse order, the last message received
+ * unlocking the delivery of the whole burst, as after a reconnection.</li>
+ * </ul>
+ * The deliveries are not displayed. The allocations per operation are given by the GC profiler
+ * ({@code -prof gc}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CausalDeliveryBenchmark {
+  /**
+   * the identity of the client that receives the messages.
+   */
+  private static final int RECEIVER = 100;
+  /**
+   * the sender of the deliverable messages.
+   */
+  private static final int SENDER = 101;
+  /**
+   * the sender of the messages of the backlog, whose first message is missing.
+   */
+  private static final int LATE_SENDER = 102;
+
+  /**
+   * This class defines the state of a client whose deliveries are not displayed.
+   */
+  public static class SilentState extends chat.client.State {
+    @Override
+    public void deliver(final ChatMessageContent msg) {
+    }
+  }
+
+  /**
+   * This class defines a client whose bag contains a backlog of messages that are not
+   * deliverable.
+   */
+  @State(Scope.Thread)
+  public static class Backlog {
+    /**
+     * the number of messages of the backlog.
+     */
+    @Param({"0", "10", "100", "1000", "5000"})
+    private int backlog;
+    /**
+     * the state of the client.
+     */
+    private SilentState state;
+    /**
+     * the clock of the sender of the deliverable messages.
+     */
+    private VectorClock senderClock;
+
+    /**
+     * builds the client and its backlog: the messages of the backlog are the messages 2, 3, etc.
+     * of a sender whose message 1 is missing.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+      state = new SilentState();
+      state.identity = RECEIVER;
+      for (int i = 0; i < backlog; i++) {
+        VectorClock clock = new VectorClock();
+        clock.setEntry(LATE_SENDER, i + 2);
+        state.MsgBag.add(new ChatMessageContent(LATE_SENDER, "late " + i, clock));
+      }
+      senderClock = new VectorClock();
+    }
+
+    /**
+     * builds the next message of the sender of the deliverable messages.
+     *
+     * @return the message.
+     */
+    private ChatMessageContent nextMessage() {
+      senderClock.incrementEntry(SENDER);
+      return new ChatMessageContent(SENDER, "hello", (VectorClock) senderClock.clone());
+    }
+  }
+
+  /**
+   * This class defines a client and a burst of messages of a sender in reverse order.
+   */
+  @State(Scope.Thread)
+  public static class Burst {
+    /**
+     * the number of messages of the burst.
+     */
+    @Param({"10", "100", "1000"})
+    private int burst;
+    /**
+     * the state of the client.
+     */
+    private SilentState state;
+    /**
+     * the messages of the burst in reverse order.
+     */
+    private List<ChatMessageContent> messages;
+
+    /**
+     * builds the client and the burst before each invocation.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+      state = new SilentState();
+      state.identity = RECEIVER;
+      messages = new ArrayList<>(burst);
+      for (int i = burst; i >= 1; i--) {
+        VectorClock clock = new VectorClock();
+        clock.setEntry(SENDER, i);
+        messages.add(new ChatMessageContent(SENDER, "burst " + i, clock));
+      }
+    }
+  }
+
+  /**
+   * receives a deliverable message while the bag contains the backlog.
+   *
+   * @param b
+   *          the client with its backlog.
+   * @return the number of messages delivered.
+   */
+  @Benchmark
+  public int receiveWithBacklog(final Backlog b) {
+    Actions.receiveChatMessageContent(b.state, b.nextMessage());
+    return b.state.nbChatMessageContentDelivered;
+  }
+
+  /**
+   * receives a burst of messages in reverse order, the whole burst being delivered at the last
+   * reception.
+   *
+   * @param b
+   *          the client and the burst.
+   * @return the number of messages delivered.
+   */
+  @Benchmark
+  public int receiveReversedBurst(final Burst b) {
+    for (ChatMessageContent msg : b.messages) {
+      Actions.receiveChatMessageContent(b.state, msg);
+    }
+    return b.state.nbChatMessageContentDelivered;
+  }
+}
@@ -0,0 +1,186 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.benchmarks;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chat.client.algorithms.chat.Algorithm;
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.common.FullDuplexMsgWorker;
+import chat.common.ReadMessageStatus;
+import chat.common.VectorClock;
+
+/**
+ * This class contains the benchmarks of the framing and of the codec of the chat messages in
+ * {@link FullDuplexMsgWorker}: the encoding of a message by {@code sendMsg}, its decoding by
+ * {@code readMessage} and {@code getData}, and the Java serialisation alone as a baseline. The
+ * channel is an {@link InMemorySocketChannel}, so that no system call is measured. The messages are
+ * chat messages whose content and vector clock sizes are parameters.
+ *
+ * The allocation rate is given by the GC profiler ({@code -prof gc}), which is the default option
+ * of the profile {@code benchmarks}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+  /**
+   * the number of characters of the content of the chat message.
+   */
+  @Param({"16", "256", "4096"})
+  private int payloadSize;
+  /**
+   * the number of entries of the vector clock of the chat message.
+   */
+  @Param({"1", "16", "256"})
+  private int clockWidth;
+  /**
+   * the message.
+   */
+  private ChatMessageContent msg;
+  /**
+   * the serialised message.
+   */
+  private byte[] serialized;
+  /**
+   * the worker that encodes the messages.
+   */
+  private FullDuplexMsgWorker writer;
+  /**
+   * the worker that decodes the messages.
+   */
+  private FullDuplexMsgWorker reader;
+
+  /**
+   * builds the message, the workers and the input of the reader, which is the frame of the
+   * message.
+   *
+   * @throws IOException
+   *           the exception thrown when the message cannot be encoded.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    msg = newChatMessage(payloadSize, clockWidth);
+    serialized = FullDuplexMsgWorker.serialize(msg);
+    ByteBuffer[] frame = FullDuplexMsgWorker.encode(Algorithm.CHAT_MESSAGE.identifier(), 0, 0,
+        msg);
+    ByteBuffer bytes = ByteBuffer.allocate(frame[0].remaining() + frame[1].remaining());
+    bytes.put(frame[0]).put(frame[1]);
+    writer = new FullDuplexMsgWorker(new InMemorySocketChannel());
+    InMemorySocketChannel input = new InMemorySocketChannel();
+    input.setInput(bytes.array());
+    reader = new FullDuplexMsgWorker(input);
+  }
+
+  /**
+   * builds a chat message.
+   *
+   * @param payloadSize
+   *          the number of characters of the content.
+   * @param clockWidth
+   *          the number of entries of the vector clock.
+   * @return the message.
+   */
+  static ChatMessageContent newChatMessage(final int payloadSize, final int clockWidth) {
+    char[] content = new char[payloadSize];
+    Arrays.fill(content, 'x');
+    VectorClock clock = new VectorClock();
+    for (int i = 0; i < clockWidth; i++) {
+      clock.setEntry(i, i + 1);
+    }
+    return new ChatMessageContent(0, new String(content), clock);
+  }
+
+  /**
+   * encodes the message and writes its frame.
+   *
+   * @return the size of the body of the frame.
+   * @throws IOException
+   *           the exception thrown when the message cannot be encoded.
+   */
+  @Benchmark
+  public long encode() throws IOException {
+    return writer.sendMsg(Algorithm.CHAT_MESSAGE.identifier(), 0, 0, msg);
+  }
+
+  /**
+   * reads a frame and decodes its message.
+   *
+   * @return the message.
+   * @throws IOException
+   *           the exception thrown when the message cannot be decoded.
+   */
+  @Benchmark
+  public Serializable decode() throws IOException {
+    while (reader.readMessage() != ReadMessageStatus.ReadDataCompleted) {
+      continue;
+    }
+    return reader.getData();
+  }
+
+  /**
+   * serialises the message, without framing.
+   *
+   * @return the bytes of the message.
+   * @throws IOException
+   *           the exception thrown when the message cannot be serialised.
+   */
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return FullDuplexMsgWorker.serialize(msg);
+  }
+
+  /**
+   * deserialises the message, without framing.
+   *
+   * @return the message.
+   * @throws IOException
+   *           the exception thrown when the message cannot be deserialised.
+   */
+  @Benchmark
+  public Serializable deserialize() throws IOException {
+    return FullDuplexMsgWorker.deserialize(serialized);
+  }
+}
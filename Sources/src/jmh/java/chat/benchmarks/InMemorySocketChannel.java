@@ -0,0 +1,200 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.benchmarks;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * This class defines an in-memory socket channel for the benchmarks of the message workers, so that
+ * the framing and the codecs are measured without the cost of the system calls. The bytes written
+ * are counted and discarded. The bytes read are taken from an input that is replayed endlessly: a
+ * read does not cross the end of the input, so that an input made of whole frames is read as an
+ * endless sequence of frames.
+ *
+ * The channel is always connected and is never registered to a selector.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class InMemorySocketChannel extends SocketChannel {
+  /**
+   * the input that is replayed, or {@code null} when there is nothing to read.
+   */
+  private ByteBuffer input;
+  /**
+   * the number of bytes written.
+   */
+  private long written;
+
+  /**
+   * constructs an in-memory channel with no input.
+   */
+  public InMemorySocketChannel() {
+    super(SelectorProvider.provider());
+  }
+
+  /**
+   * sets the input that is replayed by the reads.
+   *
+   * @param bytes
+   *          the input.
+   */
+  public void setInput(final byte[] bytes) {
+    input = ByteBuffer.wrap(bytes.clone());
+  }
+
+  /**
+   * gets the number of bytes written since the construction of the channel.
+   *
+   * @return the number of bytes.
+   */
+  public long getWritten() {
+    return written;
+  }
+
+  @Override
+  public int read(final ByteBuffer dst) throws IOException {
+    if (input == null) {
+      return 0;
+    }
+    if (!input.hasRemaining()) {
+      input.rewind();
+    }
+    int n = Math.min(dst.remaining(), input.remaining());
+    ByteBuffer slice = input.duplicate();
+    slice.limit(slice.position() + n);
+    dst.put(slice);
+    input.position(input.position() + n);
+    return n;
+  }
+
+  @Override
+  public long read(final ByteBuffer[] dsts, final int offset, final int length)
+      throws IOException {
+    long n = 0;
+    for (int i = offset; i < offset + length; i++) {
+      n += read(dsts[i]);
+    }
+    return n;
+  }
+
+  @Override
+  public int write(final ByteBuffer src) throws IOException {
+    int n = src.remaining();
+    src.position(src.limit());
+    written += n;
+    return n;
+  }
+
+  @Override
+  public long write(final ByteBuffer[] srcs, final int offset, final int length)
+      throws IOException {
+    long n = 0;
+    for (int i = offset; i < offset + length; i++) {
+      n += write(srcs[i]);
+    }
+    return n;
+  }
+
+  @Override
+  public SocketChannel bind(final SocketAddress local) throws IOException {
+    return this;
+  }
+
+  @Override
+  public <T> SocketChannel setOption(final SocketOption<T> name, final T value)
+      throws IOException {
+    return this;
+  }
+
+  @Override
+  public <T> T getOption(final SocketOption<T> name) throws IOException {
+    return null;
+  }
+
+  @Override
+  public Set<SocketOption<?>> supportedOptions() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public SocketChannel shutdownInput() throws IOException {
+    return this;
+  }
+
+  @Override
+  public SocketChannel shutdownOutput() throws IOException {
+    return this;
+  }
+
+  @Override
+  public Socket socket() {
+    throw new UnsupportedOperationException("no socket for an in-memory channel");
+  }
+
+  @Override
+  public boolean isConnected() {
+    return true;
+  }
+
+  @Override
+  public boolean isConnectionPending() {
+    return false;
+  }
+
+  @Override
+  public boolean connect(final SocketAddress remote) throws IOException {
+    return true;
+  }
+
+  @Override
+  public boolean finishConnect() throws IOException {
+    return true;
+  }
+
+  @Override
+  public SocketAddress getRemoteAddress() throws IOException {
+    return null;
+  }
+
+  @Override
+  public SocketAddress getLocalAddress() throws IOException {
+    return null;
+  }
+
+  @Override
+  protected void implCloseSelectableChannel() throws IOException {
+    input = null;
+  }
+
+  @Override
+  protected void implConfigureBlocking(final boolean block) throws IOException {
+  }
+}
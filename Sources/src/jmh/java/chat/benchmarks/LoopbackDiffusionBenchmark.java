@@ -0,0 +1,156 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.benchmarks;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chat.client.algorithms.chat.Algorithm;
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+import chat.common.Topology;
+import chat.server.Server;
+
+/**
+ * This class contains the benchmark of the diffusion of a chat message by the servers, connected
+ * through an in-process {@link LoopbackNetwork}: the forwarding of the servers, the detection of
+ * the duplicates and the serialisation of the messages are measured without the noise of the
+ * kernel networking. The clients are message workers that count the messages received.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopbackDiffusionBenchmark {
+  /**
+   * the number of clients per server.
+   */
+  private static final int CLIENTS_PER_SERVER = 2;
+  /**
+   * the number of characters of the content of the messages.
+   */
+  private static final int PAYLOAD_SIZE = 64;
+  /**
+   * the topology of the servers.
+   */
+  @Param({"line", "ring", "mesh"})
+  private String topology;
+  /**
+   * the number of servers.
+   */
+  @Param({"4", "16"})
+  private int servers;
+  /**
+   * the clients.
+   */
+  private List<LoopbackMsgWorker> clients;
+  /**
+   * the network.
+   */
+  private LoopbackNetwork network;
+  /**
+   * the message sent.
+   */
+  private ChatMessageContent message;
+  /**
+   * the number of chat messages received by the clients.
+   */
+  private long nbReceived;
+
+  /**
+   * builds the servers and connects the clients.
+   *
+   * @throws IOException
+   *           the exception thrown when a connection fails.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    network = new LoopbackNetwork(0);
+    List<List<Integer>> connections = Topology.of(topology).connections(servers, new Random(0), 0);
+    for (int i = 0; i < servers; i++) {
+      StringBuilder args = new StringBuilder(Integer.toString(i));
+      for (Integer j : connections.get(i)) {
+        args.append(" localhost ").append(j);
+      }
+      new Server(args.toString().split(" "), network);
+    }
+    MsgReceiver counter = new MsgReceiver() {
+      @Override
+      public void received(final MsgWorker worker, final int type, final int identity,
+          final int seqNumber, final Serializable msg) {
+        if (type == Algorithm.CHAT_MESSAGE.identifier()) {
+          nbReceived++;
+        }
+      }
+
+      @Override
+      public void closed(final MsgWorker worker) {
+      }
+    };
+    clients = new ArrayList<>();
+    for (int i = 0; i < servers * CLIENTS_PER_SERVER; i++) {
+      clients.add(network.connect(Server.BASE_PORTNB_LISTEN_CLIENT + i % servers, counter));
+    }
+    network.runUntilQuiescent();
+    message = FrameCodecBenchmark.newChatMessage(PAYLOAD_SIZE, servers * CLIENTS_PER_SERVER);
+  }
+
+  /**
+   * sends a chat message from a client and runs the network until the message has been received
+   * by all the other clients.
+   *
+   * @return the number of chat messages received so far.
+   * @throws IOException
+   *           the exception thrown in case of problem when sending.
+   */
+  @Benchmark
+  public long diffuse() throws IOException {
+    clients.get(0).sendMsg(Algorithm.CHAT_MESSAGE.identifier(), 0, 0, message);
+    network.runUntilQuiescent();
+    return nbReceived;
+  }
+}
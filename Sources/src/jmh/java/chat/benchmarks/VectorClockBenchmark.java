@@ -0,0 +1,131 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chat.common.VectorClock;
+
+/**
+ * This class contains the benchmarks of the operations of {@link VectorClock} for clocks of 10 to
+ * 10,000 entries. The allocations per operation are given by the GC profiler ({@code -prof gc}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorClockBenchmark {
+  /**
+   * the number of entries of the clocks.
+   */
+  @Param({"10", "100", "1000", "10000"})
+  private int entries;
+  /**
+   * the clock of the process.
+   */
+  private VectorClock clock;
+  /**
+   * the clock of a message that is the next one of the sender {@code 0}, with the same values as
+   * {@link #clock} for the other entries.
+   */
+  private VectorClock next;
+  /**
+   * the key of the next increment.
+   */
+  private int key;
+
+  /**
+   * builds the clocks.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    clock = new VectorClock();
+    next = new VectorClock();
+    for (int i = 0; i < entries; i++) {
+      clock.setEntry(i, i + 1);
+      next.setEntry(i, i + 1);
+    }
+    next.incrementEntry(0);
+  }
+
+  /**
+   * computes the maximum of two clocks, as when a message is received.
+   *
+   * @return the clock, which is modified.
+   */
+  @Benchmark
+  public VectorClock max() {
+    clock.max(next);
+    return clock;
+  }
+
+  /**
+   * tests the causal delivery condition of a message that is deliverable, which is the case where
+   * all the entries are compared.
+   *
+   * @return the condition.
+   */
+  @Benchmark
+  public boolean isPrecededByAndFIFO() {
+    return clock.isPrecededByAndFIFO(next, 0);
+  }
+
+  /**
+   * clones a clock.
+   *
+   * @return the clone.
+   */
+  @Benchmark
+  public Object cloneClock() {
+    return clock.clone();
+  }
+
+  /**
+   * increments an entry of the clock, the entries being incremented in turn.
+   *
+   * @return the clock, which is modified.
+   */
+  @Benchmark
+  public VectorClock incrementEntry() {
+    clock.incrementEntry(key);
+    key = (key + 1) % entries;
+    return clock;
+  }
+}
@@ -33,6 +33,9 @@ import java.nio.channels.SocketChannel;
 
 import chat.client.algorithms.chat.Algorithm;
 import chat.client.algorithms.chat.ChatMessageContent;
+import chat.client.algorithms.chat.RoomContent;
+import chat.common.LoopbackNetwork;
+import chat.common.VectorClock;
 
 /**
  * This class contains the logic of a client of the chat application. It configures the client,
@@ -42,6 +45,15 @@ import chat.client.algorithms.chat.ChatMessageContent;
  * 
  */
 public class Client {
+  /**
+   * the prefix of the console command that joins a room, which becomes the room of the following
+   * chat messages.
+   */
+  public static final String JOIN = "/join ";
+  /**
+   * the prefix of the console command that leaves a room.
+   */
+  public static final String LEAVE = "/leave ";
   /**
    * the state of the client, that is all the attributes that are available for managing the chat
    * client. This attribute is {@code final} because it is used to synchronise code blocks.
@@ -51,7 +63,7 @@ public class Client {
   /**
    * the runnable object of the client that receives the messages from the chat server.
    */
-  private final ReadMessagesFromNetwork runnableToRcvMsgs;
+  private final ClientEngine runnableToRcvMsgs;
 
   /**
    * the thread of the client that receives the messages from the chat server.
@@ -70,8 +82,10 @@ public class Client {
   /**
    * constructs a client with a connection to the chat server. The connection to the server is
    * managed in a thread that is also a full message worker. Before creating the threaded full
-   * duplex message worker, the constructor check for the server host name and open a connection
-   * with the chat server.
+   * duplex message worker, the constructor check for the server host name and initiates the
+   * connection with the chat server. The constructor does not block: the connection and the
+   * reception of the identity of the client are completed by the thread for reading messages (see
+   * {@link Handshake}).
    * 
    * NB: after the construction of a client object, the thread for reading messages must be started
    * using the method {@link startThreadReadMessagesFromNetwork}.
@@ -94,12 +108,29 @@ public class Client {
     } catch (IOException e) {
       throw new IllegalStateException("cannot open a connection to the server");
     }
+    runnableToRcvMsgs = new ReadMessagesFromNetwork(rwChan, state,
+        new InetSocketAddress(destAddr, serverPortNb));
+    threadToRcvMsgs = new Thread(runnableToRcvMsgs);
+    assert invariant();
+  }
+
+  /**
+   * constructs a client with a connection to a chat server of an in-process network (see
+   * {@link LoopbackClientEngine}). The connection is opened at once, and the identity of the client
+   * is received when the scheduler of the network runs.
+   *
+   * @param network
+   *          the in-process network.
+   * @param serverPortNb
+   *          the port number of the server in the network.
+   */
+  public Client(final LoopbackNetwork network, final int serverPortNb) {
     try {
-      rwChan.connect(new InetSocketAddress(destAddr, serverPortNb));
+      runnableToRcvMsgs = new LoopbackClientEngine(state, network, serverPortNb);
     } catch (IOException e) {
-      throw new IllegalStateException("cannot open a connection to the server");
+      throw new IllegalStateException("cannot open a connection to the server: "
+          + e.getLocalizedMessage());
     }
-    runnableToRcvMsgs = new ReadMessagesFromNetwork(rwChan, state);
     threadToRcvMsgs = new Thread(runnableToRcvMsgs);
     assert invariant();
   }
@@ -124,8 +155,10 @@ public class Client {
   }
 
   /**
-   * treats an input line from the console. For now, it sends the input line as a chat message to
-   * the server.
+   * treats an input line from the console. The commands {@value #JOIN}{@code <room>} and
+   * {@value #LEAVE}{@code <room>} join and leave a room; any other line is sent as a chat message
+   * of the current room (see {@link State#room}) to the server, once the handshake with the server
+   * is terminated.
    * 
    * @param line
    *          the content of the message
@@ -143,11 +176,25 @@ public class Client {
     if (line.equals("quit")) {
       threadToRcvMsgs.interrupt();
       Thread.currentThread().interrupt();
+    } else if (line.startsWith(JOIN) || line.startsWith(LEAVE)) {
+      runnableToRcvMsgs.awaitHandshake();
+      boolean join = line.startsWith(JOIN);
+      String room = line.substring(join ? JOIN.length() : LEAVE.length()).trim();
+      synchronized (state) {
+        // the room is joined or left when the server acknowledges the message
+        runnableToRcvMsgs.sendMsg(join ? Algorithm.JOIN_ROOM.identifier()
+            : Algorithm.LEAVE_ROOM.identifier(), state.identity, 0, new RoomContent(room));
+        if (join) {
+          state.room = room;
+        }
+      }
     } else {
+      runnableToRcvMsgs.awaitHandshake();
       synchronized (state) {
         // Vp = Vp + 1p
-        state.horloge.incrementEntry(state.identity);
-        ChatMessageContent msg = new ChatMessageContent(state.identity, line, state.horloge);
+        VectorClock clock = state.clock(state.room);
+        clock.incrementEntry(state.identity);
+        ChatMessageContent msg = new ChatMessageContent(state.identity, state.room, line, clock);
         if (LOG_ON && COMM.isTraceEnabled()) {
           COMM.trace("sending chat message: " + msg);
         }
@@ -158,13 +205,16 @@ public class Client {
         // Ideally, there should exist a separate message type for chat
         // messages from clients to their server and this new message
         // type will not contain the sequence number.
+        // The message is traced: its origin time and its hop count are
+        // carried in the extended header up to the remote clients.
         long sent = runnableToRcvMsgs.sendMsg(Algorithm.CHAT_MESSAGE.identifier(),
-            state.identity, 0, msg);
+            state.identity, 0, System.nanoTime(), 0, msg);
         state.nbChatMessageContentSent++;
         if (LOG_ON && COMM.isDebugEnabled()) {
           COMM.debug(sent + " bytes sent.");
         }
       }
+      state.notifyObservers();
     }
   }
 }
@@ -0,0 +1,48 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.client;
+
+import java.io.IOException;
+
+import chat.common.MsgWorker;
+
+/**
+ * This interface defines the network part of a client, called an engine, as seen by the class
+ * {@link Client}: the engine performs the handshake with the server, which gives the identity of
+ * the client, sends the messages of the client, and gives the messages received to the algorithms
+ * of the client (see {@link chat.client.algorithms.ListOfAlgorithms}).
+ *
+ * The method {@link Runnable#run()} is executed by the thread of the client that receives the
+ * messages from the network.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface ClientEngine extends MsgWorker, Runnable {
+  /**
+   * waits for the termination of the handshake with the server.
+   *
+   * @throws IOException
+   *           the exception thrown when the handshake has failed or is not terminated in time.
+   */
+  void awaitHandshake() throws IOException;
+}
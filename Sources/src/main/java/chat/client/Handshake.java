@@ -0,0 +1,294 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.client;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import chat.common.FullDuplexMsgWorker;
+import chat.common.ReadMessageStatus;
+
+/**
+ * This class defines the state machine of the connection of a client to its server: the
+ * non-blocking connection of the channel, and then the reception of the first message of the
+ * server, which contains the identity of the client. The state machine never blocks: the method
+ * {@link #step()} is called when the channel is ready for the operations given by
+ * {@link #interestOps()}, either by a selector shared with other connections (e.g. in the load
+ * generator) or by the method {@link #await()}, which waits on a selector of its own. The
+ * handshake fails when it is not completed before its deadline.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class Handshake {
+  /**
+   * the name of the system property giving the timeout of the handshakes in milliseconds.
+   */
+  public static final String TIMEOUT_PROPERTY = "chat.client.handshake.timeout";
+  /**
+   * the default timeout of the handshakes in milliseconds.
+   */
+  public static final long DEFAULT_TIMEOUT = 10000;
+
+  /**
+   * This enumeration defines the phases of a handshake.
+   */
+  public enum Phase {
+    /**
+     * the connection of the channel is in progress.
+     */
+    CONNECTING,
+    /**
+     * the channel is connected and the identity is being received.
+     */
+    AWAITING_IDENTITY,
+    /**
+     * the identity has been received.
+     */
+    IDENTIFIED,
+    /**
+     * the connection has failed, has been closed or has timed out.
+     */
+    FAILED
+  }
+
+  /**
+   * the message worker of the connection, whose channel is in non blocking mode.
+   */
+  private final FullDuplexMsgWorker worker;
+  /**
+   * the address of the server.
+   */
+  private final SocketAddress address;
+  /**
+   * the deadline of the handshake, as given by {@link System#nanoTime()}.
+   */
+  private final long deadline;
+  /**
+   * the current phase.
+   */
+  private Phase phase;
+  /**
+   * the identity received from the server.
+   */
+  private int identity = -1;
+  /**
+   * the cause of the failure, if any.
+   */
+  private IOException failure;
+
+  /**
+   * starts a handshake: the channel of the worker is configured in non blocking mode, and its
+   * connection is initiated.
+   *
+   * @param worker
+   *          the message worker of the connection, whose channel is not connected yet.
+   * @param address
+   *          the address of the server.
+   * @param timeoutMillis
+   *          the timeout of the handshake in milliseconds.
+   */
+  public Handshake(final FullDuplexMsgWorker worker, final SocketAddress address,
+      final long timeoutMillis) {
+    if (worker == null || address == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + worker + ", "
+          + address + ")");
+    }
+    this.worker = worker;
+    this.address = address;
+    this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    phase = Phase.CONNECTING;
+    try {
+      worker.configureNonBlocking();
+      if (worker.getChannel().connect(address)) {
+        phase = Phase.AWAITING_IDENTITY;
+      }
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * starts a handshake with the timeout given by the system property {@link #TIMEOUT_PROPERTY}.
+   *
+   * @param worker
+   *          the message worker of the connection, whose channel is not connected yet.
+   * @param address
+   *          the address of the server.
+   */
+  public Handshake(final FullDuplexMsgWorker worker, final SocketAddress address) {
+    this(worker, address, Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT));
+  }
+
+  /**
+   * gets the current phase.
+   *
+   * @return the phase.
+   */
+  public Phase getPhase() {
+    return phase;
+  }
+
+  /**
+   * states whether the handshake is terminated, that is identified or failed.
+   *
+   * @return {@code true} when terminated.
+   */
+  public boolean isDone() {
+    return phase == Phase.IDENTIFIED || phase == Phase.FAILED;
+  }
+
+  /**
+   * gets the identity received from the server.
+   *
+   * @return the identity, or {@code -1} when the client is not identified.
+   */
+  public int getIdentity() {
+    return identity;
+  }
+
+  /**
+   * gets the cause of the failure.
+   *
+   * @return the exception, or {@code null} when the handshake has not failed.
+   */
+  public IOException getFailure() {
+    return failure;
+  }
+
+  /**
+   * gets the operations of the channel for which the handshake waits in the current phase.
+   *
+   * @return the interest set, {@code 0} when the handshake is terminated.
+   */
+  public int interestOps() {
+    switch (phase) {
+      case CONNECTING:
+        return SelectionKey.OP_CONNECT;
+      case AWAITING_IDENTITY:
+        return SelectionKey.OP_READ;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * gets the duration until the deadline.
+   *
+   * @return the duration in nanoseconds, negative or zero when the deadline has passed.
+   */
+  public long remainingNanos() {
+    return deadline - System.nanoTime();
+  }
+
+  /**
+   * makes the handshake progress as far as possible without blocking, and checks the deadline.
+   *
+   * @return the new phase.
+   */
+  public Phase step() {
+    try {
+      if (phase == Phase.CONNECTING && worker.getChannel().finishConnect()) {
+        phase = Phase.AWAITING_IDENTITY;
+      }
+      if (phase == Phase.AWAITING_IDENTITY) {
+        ReadMessageStatus status = worker.readMessage();
+        if (status == ReadMessageStatus.ReadDataCompleted) {
+          identity = (Integer) worker.getData();
+          phase = Phase.IDENTIFIED;
+          if (LOG_ON && COMM.isDebugEnabled()) {
+            COMM.debug("identity " + identity + " received from " + address);
+          }
+        } else if (status == ReadMessageStatus.ChannelClosed) {
+          fail(new IOException("connection closed by " + address + " during the handshake"));
+        }
+      }
+    } catch (IOException | ClassCastException e) {
+      fail(e instanceof IOException ? (IOException) e
+          : new IOException("unexpected first message from " + address, e));
+    }
+    if (!isDone() && remainingNanos() <= 0) {
+      fail(new SocketTimeoutException("handshake with " + address + " timed out"));
+    }
+    return phase;
+  }
+
+  /**
+   * performs the handshake by waiting on a selector of its own, without spinning. The thread is
+   * blocked until the handshake is terminated, its deadline has passed, or the thread is
+   * interrupted. The channel is left in non blocking mode and is no longer registered to the
+   * selector when the method returns.
+   *
+   * @return the identity received from the server.
+   * @throws IOException
+   *           the exception thrown when the handshake has failed.
+   */
+  public int await() throws IOException {
+    if (!isDone()) {
+      try (Selector selector = Selector.open()) {
+        SocketChannel chan = worker.getChannel();
+        SelectionKey key = chan.register(selector, interestOps());
+        while (step() != Phase.FAILED && !isDone()) {
+          if (Thread.currentThread().isInterrupted()) {
+            fail(new IOException("interrupted during the handshake with " + address));
+            break;
+          }
+          key.interestOps(interestOps());
+          selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos())));
+          selector.selectedKeys().clear();
+        }
+        key.cancel();
+        selector.selectNow();
+      }
+    }
+    if (phase == Phase.FAILED) {
+      throw failure;
+    }
+    return identity;
+  }
+
+  /**
+   * puts the handshake in the failed phase and closes the channel.
+   *
+   * @param cause
+   *          the cause of the failure.
+   */
+  private void fail(final IOException cause) {
+    phase = Phase.FAILED;
+    failure = cause;
+    try {
+      worker.close();
+    } catch (IOException e) {
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("problem when closing the connection");
+      }
+    }
+  }
+}
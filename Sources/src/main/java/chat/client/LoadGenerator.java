@@ -0,0 +1,972 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.client;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.GEN;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chat.client.algorithms.ListOfAlgorithms;
+import chat.client.algorithms.chat.Algorithm;
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.client.algorithms.chat.RoomContent;
+import chat.common.FullDuplexMsgWorker;
+import chat.common.LatencyHistogram;
+import chat.common.ReadMessageStatus;
+import chat.common.RollingHistogram;
+
+/**
+ * This class defines a load generator that drives many logical chat clients in a single JVM. The
+ * logical clients are distributed over a few selector threads, called reactors, so that thousands
+ * of clients do not need thousands of threads. The reactors drive the handshakes of the clients
+ * with their servers (see {@link Handshake}) in a bounded window, so that a mass startup neither
+ * spins nor waits behind a slow server. Each logical client has its own state (identity,
+ * vector clock and bag of messages) and uses the causal delivery of the chat algorithm of the
+ * client (see {@link ListOfAlgorithms}).
+ *
+ * The load is open: the senders send chat messages at a given aggregate rate, whatever the
+ * progress of the deliveries. The content of a message carries the instant at which the message
+ * was scheduled to be sent, so that the end-to-end latency (from the scheduled sending to the
+ * causal delivery at a receiver) includes the delays of the generator itself. The clients are
+ * spread in round robin over the servers given, which is the topology from the point of view of
+ * the clients; the topology of the servers is set when the servers are started.
+ *
+ * Besides the logical clients, the generator may open idle connections, e.g. to measure the
+ * memory of the servers per connection: an idle client only makes its handshake and leaves the
+ * room {@value ChatMessageContent#DEFAULT_ROOM}, so that its server keeps its connection open
+ * without forwarding it any message. The idle clients connect once all the logical clients have
+ * been identified.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LoadGenerator {
+  /**
+   * the maximum number of handshakes of a reactor that may be in progress at the same time (see
+   * {@link Handshake}).
+   */
+  private static final int CONNECT_WINDOW = 32;
+  /**
+   * the maximum duration in milliseconds of a selection while handshakes are in progress, so that
+   * their deadlines are checked.
+   */
+  private static final long HANDSHAKE_CHECK = 100;
+  /**
+   * the maximum number of messages sent by a reactor between two selections.
+   */
+  private static final int MAX_BATCH = 1000;
+  /**
+   * the separator between the scheduled sending instant and the padding in the content of the
+   * messages.
+   */
+  private static final char SEPARATOR = ':';
+  /**
+   * the polling period in milliseconds when waiting for the deliveries.
+   */
+  private static final long DRAIN_POLL = 10;
+  /**
+   * the number of nanoseconds per second.
+   */
+  private static final double NANOS_PER_SECOND = 1e9;
+  /**
+   * the number of nanoseconds per microsecond.
+   */
+  private static final double NANOS_PER_MICRO = 1e3;
+  /**
+   * the number of milliseconds per second.
+   */
+  private static final double MILLIS_PER_SECOND = 1e3;
+  /**
+   * the addresses of the servers.
+   */
+  private final List<InetSocketAddress> servers;
+  /**
+   * the number of logical clients.
+   */
+  private final int nbClients;
+  /**
+   * the number of logical clients that send messages.
+   */
+  private final int nbSenders;
+  /**
+   * the number of idle clients.
+   */
+  private final int nbIdle;
+  /**
+   * the aggregate sending rate in messages per second.
+   */
+  private final double rate;
+  /**
+   * the size of the payload of the messages in characters.
+   */
+  private final int payloadSize;
+  /**
+   * the padding of the content of the messages.
+   */
+  private final String padding;
+  /**
+   * the reactors.
+   */
+  private final Reactor[] reactors;
+  /**
+   * the threads of the reactors.
+   */
+  private final Thread[] threads;
+  /**
+   * the count down of the connections, which is decremented when a client has received its
+   * identity or when its connection has failed.
+   */
+  private final CountDownLatch handshakes;
+  /**
+   * the count down of the connections of the logical clients, which are all identified before the
+   * idle clients connect: the identities given by a server to its logical clients are thus the
+   * first ones, which do not overlap with the identities given by the other servers.
+   */
+  private final CountDownLatch activeHandshakes;
+  /**
+   * the number of connections that have failed or have been closed.
+   */
+  private final AtomicLong nbClosed = new AtomicLong();
+  /**
+   * the number of messages sent.
+   */
+  private final AtomicLong nbSent = new AtomicLong();
+  /**
+   * the number of messages delivered.
+   */
+  private final AtomicLong nbDelivered = new AtomicLong();
+  /**
+   * the end-to-end latencies in nanoseconds.
+   */
+  private final LatencyHistogram latency = new LatencyHistogram();
+  /**
+   * the times spent by the messages in the bags of the logical clients, in nanoseconds.
+   */
+  private final RollingHistogram bagDelay = new RollingHistogram();
+  /**
+   * the instant at which the sending has started, in nanoseconds.
+   */
+  private volatile long loadStart;
+  /**
+   * states whether the senders are sending messages.
+   */
+  private volatile boolean sending;
+  /**
+   * the duration of the sending and the duration until the last delivery, in nanoseconds.
+   */
+  private long sendDuration, deliveryDuration;
+
+  /**
+   * constructs a load generator without idle client. The connections are opened by the method
+   * {@link #connect(long)}.
+   *
+   * @param servers
+   *          the addresses of the servers.
+   * @param nbClients
+   *          the number of logical clients.
+   * @param nbSenders
+   *          the number of logical clients that send messages, the first ones.
+   * @param nbReactors
+   *          the number of reactors (selector threads).
+   * @param rate
+   *          the aggregate sending rate in messages per second.
+   * @param payloadSize
+   *          the size of the payload of the messages in characters.
+   */
+  public LoadGenerator(final List<InetSocketAddress> servers, final int nbClients,
+      final int nbSenders, final int nbReactors, final double rate, final int payloadSize) {
+    this(servers, nbClients, nbSenders, 0, nbReactors, rate, payloadSize);
+  }
+
+  /**
+   * constructs a load generator. The connections are opened by the method {@link #connect(long)}.
+   *
+   * @param servers
+   *          the addresses of the servers.
+   * @param nbClients
+   *          the number of logical clients.
+   * @param nbSenders
+   *          the number of logical clients that send messages, the first ones.
+   * @param nbIdle
+   *          the number of idle clients, which are spread over the servers as the logical
+   *          clients.
+   * @param nbReactors
+   *          the number of reactors (selector threads).
+   * @param rate
+   *          the aggregate sending rate in messages per second.
+   * @param payloadSize
+   *          the size of the payload of the messages in characters.
+   */
+  public LoadGenerator(final List<InetSocketAddress> servers, final int nbClients,
+      final int nbSenders, final int nbIdle, final int nbReactors, final double rate,
+      final int payloadSize) {
+    if (servers == null || servers.isEmpty()) {
+      throw new IllegalArgumentException("no server");
+    }
+    if (nbClients <= 0 || nbSenders < 0 || nbSenders > nbClients || nbIdle < 0) {
+      throw new IllegalArgumentException("invalid number of clients (" + nbClients + "), of "
+          + "senders (" + nbSenders + ") or of idle clients (" + nbIdle + ")");
+    }
+    if (nbReactors <= 0 || rate <= 0 || payloadSize < 0) {
+      throw new IllegalArgumentException("invalid number of reactors (" + nbReactors
+          + "), rate (" + rate + ") or payload size (" + payloadSize + ")");
+    }
+    this.servers = new ArrayList<>(servers);
+    this.nbClients = nbClients;
+    this.nbSenders = nbSenders;
+    this.nbIdle = nbIdle;
+    this.rate = rate;
+    this.payloadSize = payloadSize;
+    char[] pad = new char[payloadSize];
+    Arrays.fill(pad, 'x');
+    padding = new String(pad);
+    handshakes = new CountDownLatch(nbClients + nbIdle);
+    activeHandshakes = new CountDownLatch(nbClients);
+    reactors = new Reactor[Math.min(nbReactors, nbClients + nbIdle)];
+    threads = new Thread[reactors.length];
+    for (int i = 0; i < reactors.length; i++) {
+      try {
+        reactors[i] = new Reactor();
+      } catch (IOException e) {
+        throw new IllegalStateException("cannot create the selector");
+      }
+      threads[i] = new Thread(reactors[i], "chat-loadgen-" + i);
+      threads[i].setDaemon(true);
+    }
+    for (int c = 0; c < nbClients + nbIdle; c++) {
+      reactors[c % reactors.length].toConnect.add(new ClientSpec(
+          this.servers.get(c % this.servers.size()), c < nbSenders, c >= nbClients));
+    }
+    for (Reactor reactor : reactors) {
+      reactor.computePeriod();
+    }
+  }
+
+  /**
+   * starts the reactors and waits until all the logical and idle clients have received their
+   * identity.
+   *
+   * @param timeoutMillis
+   *          the maximum waiting duration in milliseconds.
+   * @throws IOException
+   *           the exception thrown when some connections have failed or have timed out.
+   * @throws InterruptedException
+   *           the exception thrown when the calling thread is interrupted.
+   */
+  public void connect(final long timeoutMillis) throws IOException, InterruptedException {
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    boolean completed = handshakes.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    if (!completed || nbClosed.get() > 0) {
+      throw new IOException((nbClients + nbIdle - handshakes.getCount() - nbClosed.get())
+          + " of " + (nbClients + nbIdle) + " clients connected (" + nbClosed.get()
+          + " failed)");
+    }
+  }
+
+  /**
+   * sends messages during the given duration, and then waits for the deliveries of the messages
+   * sent, until the given drain timeout.
+   *
+   * @param durationMillis
+   *          the duration of the sending in milliseconds.
+   * @param drainMillis
+   *          the maximum duration of the wait for the deliveries in milliseconds.
+   * @return {@code true} when all the messages sent have been delivered to all the other clients.
+   * @throws InterruptedException
+   *           the exception thrown when the calling thread is interrupted.
+   */
+  public boolean runLoad(final long durationMillis, final long drainMillis)
+      throws InterruptedException {
+    loadStart = System.nanoTime();
+    sending = true;
+    for (Reactor reactor : reactors) {
+      reactor.selector.wakeup();
+    }
+    Thread.sleep(durationMillis);
+    sending = false;
+    sendDuration = System.nanoTime() - loadStart;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+    List<CountDownLatch> acks = new ArrayList<>();
+    for (Reactor reactor : reactors) {
+      CountDownLatch ack = new CountDownLatch(1);
+      reactor.stopAck = ack;
+      reactor.selector.wakeup();
+      acks.add(ack);
+    }
+    for (CountDownLatch ack : acks) {
+      ack.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+    while (nbDelivered.get() < getNbExpectedDeliveries() && System.nanoTime() < deadline) {
+      Thread.sleep(DRAIN_POLL);
+    }
+    deliveryDuration = System.nanoTime() - loadStart;
+    return nbDelivered.get() >= getNbExpectedDeliveries();
+  }
+
+  /**
+   * stops the reactors, which close the connections.
+   *
+   * @throws InterruptedException
+   *           the exception thrown when the calling thread is interrupted.
+   */
+  public void close() throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  /**
+   * gets the number of messages sent.
+   *
+   * @return the number of messages.
+   */
+  public long getNbSent() {
+    return nbSent.get();
+  }
+
+  /**
+   * gets the number of messages delivered.
+   *
+   * @return the number of messages.
+   */
+  public long getNbDelivered() {
+    return nbDelivered.get();
+  }
+
+  /**
+   * gets the number of idle clients.
+   *
+   * @return the number of clients.
+   */
+  public int getNbIdle() {
+    return nbIdle;
+  }
+
+  /**
+   * gets the number of deliveries expected for the messages sent: each message is delivered to
+   * all the other logical clients.
+   *
+   * @return the number of deliveries.
+   */
+  public long getNbExpectedDeliveries() {
+    return nbSent.get() * (nbClients - 1);
+  }
+
+  /**
+   * gets the duration of the sending of the last run.
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getSendDuration() {
+    return sendDuration;
+  }
+
+  /**
+   * gets the duration of the last run until the last delivery or the drain timeout.
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getDeliveryDuration() {
+    return deliveryDuration;
+  }
+
+  /**
+   * gets the histogram of the end-to-end latencies in nanoseconds.
+   *
+   * @return the histogram.
+   */
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * gets the histogram of the times spent by the messages in the bags of the logical clients
+   * before their delivery, in nanoseconds.
+   *
+   * @return the histogram.
+   */
+  public RollingHistogram getBagDelay() {
+    return bagDelay;
+  }
+
+  /**
+   * builds the report of the last run: the configuration, the throughputs and the percentiles of
+   * the end-to-end latency in microseconds.
+   *
+   * @return the report.
+   */
+  public String report() {
+    double sendSeconds = sendDuration / NANOS_PER_SECOND;
+    double deliverySeconds = deliveryDuration / NANOS_PER_SECOND;
+    return String.format(Locale.ROOT, "clients=%d senders=%d idle=%d reactors=%d servers=%d"
+        + " rate=%.1f/s payload=%dB%n"
+        + "sent=%d in %.2fs (%.1f msg/s) delivered=%d/%d in %.2fs (%.1f msg/s) closed=%d%n"
+        + "latency (us): mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+        nbClients, nbSenders, nbIdle, reactors.length, servers.size(), rate, payloadSize,
+        nbSent.get(), sendSeconds, nbSent.get() / sendSeconds,
+        nbDelivered.get(), getNbExpectedDeliveries(), deliverySeconds,
+        nbDelivered.get() / deliverySeconds, nbClosed.get(),
+        latency.getMean() / NANOS_PER_MICRO, micros(50), micros(90), micros(99), micros(99.9),
+        latency.getMax() / NANOS_PER_MICRO);
+  }
+
+  /**
+   * gets a percentile of the end-to-end latency in microseconds.
+   *
+   * @param percentile
+   *          the percentile.
+   * @return the latency.
+   */
+  private double micros(final double percentile) {
+    return latency.getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+  }
+
+  /**
+   * counts down the handshake of a client that has been identified or whose connection has failed.
+   * The reactors are woken up when the last logical client is done, so that they connect their idle
+   * clients.
+   *
+   * @param idle
+   *          states whether the client is idle.
+   */
+  private void handshakeDone(final boolean idle) {
+    handshakes.countDown();
+    if (!idle) {
+      activeHandshakes.countDown();
+      if (activeHandshakes.getCount() == 0) {
+        for (Reactor reactor : reactors) {
+          reactor.selector.wakeup();
+        }
+      }
+    }
+  }
+
+  /**
+   * This class defines the specification of a logical client before its connection.
+   */
+  private static final class ClientSpec {
+    /**
+     * the address of the server.
+     */
+    private final InetSocketAddress server;
+    /**
+     * states whether the client sends messages.
+     */
+    private final boolean sender;
+    /**
+     * states whether the client is idle.
+     */
+    private final boolean idle;
+
+    /**
+     * constructs the specification.
+     *
+     * @param server
+     *          the address of the server.
+     * @param sender
+     *          states whether the client sends messages.
+     * @param idle
+     *          states whether the client is idle.
+     */
+    private ClientSpec(final InetSocketAddress server, final boolean sender,
+        final boolean idle) {
+      this.server = server;
+      this.sender = sender;
+      this.idle = idle;
+    }
+  }
+
+  /**
+   * This class defines the state of a logical client, whose deliveries are measured instead of
+   * being displayed.
+   */
+  private final class LoadState extends State {
+    /**
+     * constructs the state of a logical client, which shares the histogram of the times spent in
+     * the bag with the other logical clients.
+     */
+    private LoadState() {
+      super(LoadGenerator.this.bagDelay);
+    }
+
+    @Override
+    public void deliver(final ChatMessageContent msg) {
+      String content = msg.getContent();
+      int sep = content.indexOf(SEPARATOR);
+      if (sep > 0) {
+        latency.record(System.nanoTime() - Long.parseLong(content.substring(0, sep)));
+      }
+      nbDelivered.incrementAndGet();
+    }
+  }
+
+  /**
+   * This class defines a logical client: a message worker on a non blocking channel with the state
+   * of a chat client.
+   */
+  private final class LogicalClient extends FullDuplexMsgWorker {
+    /**
+     * the state of the client.
+     */
+    private final LoadState state = new LoadState();
+    /**
+     * states whether the client sends messages.
+     */
+    private final boolean sender;
+    /**
+     * states whether the client is idle.
+     */
+    private final boolean idle;
+    /**
+     * the handshake of the client with its server.
+     */
+    private final Handshake handshake;
+
+    /**
+     * constructs a logical client and starts its handshake.
+     *
+     * @param chan
+     *          the channel, which is not connected yet.
+     * @param server
+     *          the address of the server.
+     * @param sender
+     *          states whether the client sends messages.
+     * @param idle
+     *          states whether the client is idle.
+     */
+    private LogicalClient(final SocketChannel chan, final InetSocketAddress server,
+        final boolean sender, final boolean idle) {
+      super(chan);
+      this.sender = sender;
+      this.idle = idle;
+      handshake = new Handshake(this, server);
+    }
+
+    /**
+     * states whether the client has received its identity.
+     *
+     * @return {@code true} when identified.
+     */
+    private boolean isIdentified() {
+      return handshake.getPhase() == Handshake.Phase.IDENTIFIED;
+    }
+  }
+
+  /**
+   * This class defines a reactor: a selector thread that connects a subset of the logical clients,
+   * reads their messages, and sends the messages of its senders at its share of the aggregate
+   * rate.
+   */
+  private final class Reactor implements Runnable {
+    /**
+     * the selector.
+     */
+    private final Selector selector;
+    /**
+     * the specifications of the clients that are not connected yet.
+     */
+    private final ArrayDeque<ClientSpec> toConnect = new ArrayDeque<>();
+    /**
+     * the senders that are identified.
+     */
+    private final List<LogicalClient> senders = new ArrayList<>();
+    /**
+     * the logical clients of the reactor.
+     */
+    private final List<LogicalClient> clients = new ArrayList<>();
+    /**
+     * the clients whose handshake is in progress.
+     */
+    private final List<LogicalClient> handshaking = new ArrayList<>();
+    /**
+     * the period between two messages of the reactor in nanoseconds.
+     */
+    private long period;
+    /**
+     * the scheduled instant of the next message, or {@code -1} when the sending has not started.
+     */
+    private long nextSend = -1;
+    /**
+     * the index of the next sender.
+     */
+    private int nextSender;
+    /**
+     * the count down released by the reactor once it has seen the end of the sending, so that no
+     * message is sent after the drain has started; {@code null} when not requested.
+     */
+    private volatile CountDownLatch stopAck;
+
+    /**
+     * constructs a reactor.
+     *
+     * @throws IOException
+     *           the exception thrown when the selector cannot be opened.
+     */
+    private Reactor() throws IOException {
+      selector = Selector.open();
+    }
+
+    /**
+     * computes the period of the messages of the reactor from its share of the senders.
+     */
+    private void computePeriod() {
+      long mySenders = toConnect.stream().filter(s -> s.sender).count();
+      period = mySenders == 0 ? 0 : (long) (NANOS_PER_SECOND * nbSenders / (rate * mySenders));
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          CountDownLatch ack = stopAck;
+          if (ack != null && !sending) {
+            stopAck = null;
+            ack.countDown();
+          }
+          startConnections();
+          long wait = sendDueMessages();
+          if (wait == 0) {
+            selector.selectNow();
+          } else {
+            long timeout = wait < 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait));
+            if (!handshaking.isEmpty()) {
+              timeout = timeout == 0 ? HANDSHAKE_CHECK : Math.min(timeout, HANDSHAKE_CHECK);
+            }
+            selector.select(timeout);
+          }
+          for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+            SelectionKey key = it.next();
+            it.remove();
+            treatKey(key);
+          }
+          checkHandshakeDeadlines();
+        }
+      } catch (IOException e) {
+        GEN.error(e.getLocalizedMessage());
+      } finally {
+        for (LogicalClient client : clients) {
+          try {
+            client.close();
+          } catch (IOException e) {
+            COMM.warn(e.getLocalizedMessage());
+          }
+        }
+        try {
+          selector.close();
+        } catch (IOException e) {
+          COMM.warn(e.getLocalizedMessage());
+        }
+      }
+    }
+
+    /**
+     * starts the handshakes of the clients, in the limit of the connection window. The idle
+     * clients, which are the last ones, wait for the identification of all the logical clients.
+     */
+    private void startConnections() {
+      while (handshaking.size() < CONNECT_WINDOW && !toConnect.isEmpty()
+          && (!toConnect.peek().idle || activeHandshakes.getCount() == 0)) {
+        ClientSpec spec = toConnect.poll();
+        try {
+          LogicalClient client = new LogicalClient(SocketChannel.open(), spec.server,
+              spec.sender, spec.idle);
+          clients.add(client);
+          handshaking.add(client);
+          if (client.handshake.getPhase() == Handshake.Phase.FAILED) {
+            closeClient(client);
+          } else {
+            client.getChannel().register(selector, client.handshake.interestOps(), client);
+          }
+        } catch (IOException e) {
+          COMM.warn("cannot connect to " + spec.server + ": " + e.getLocalizedMessage());
+          nbClosed.incrementAndGet();
+          handshakeDone(spec.idle);
+        }
+      }
+    }
+
+    /**
+     * closes the connections of the clients whose handshake has timed out.
+     */
+    private void checkHandshakeDeadlines() {
+      for (LogicalClient client : new ArrayList<>(handshaking)) {
+        if (client.handshake.remainingNanos() <= 0
+            && client.handshake.step() == Handshake.Phase.FAILED) {
+          COMM.warn(client.handshake.getFailure().getLocalizedMessage());
+          closeClient(client);
+        }
+      }
+    }
+
+    /**
+     * sends the messages whose scheduled instant has passed, in the limit of {@link #MAX_BATCH}.
+     *
+     * @return the duration in nanoseconds until the next scheduled message, or {@code -1} when
+     *         there is no message to schedule.
+     */
+    private long sendDueMessages() {
+      if (!sending || period == 0 || senders.isEmpty()) {
+        nextSend = -1;
+        return -1;
+      }
+      if (nextSend < 0) {
+        nextSend = loadStart;
+      }
+      long now = System.nanoTime();
+      for (int i = 0; i < MAX_BATCH && nextSend <= now && sending; i++) {
+        LogicalClient client = senders.get(nextSender);
+        nextSender = (nextSender + 1) % senders.size();
+        send(client, nextSend);
+        nextSend += period;
+      }
+      return Math.max(0, nextSend - now);
+    }
+
+    /**
+     * sends a chat message from a logical client, as the method
+     * {@link Client#treatConsoleInput(String)} does.
+     *
+     * @param client
+     *          the logical client.
+     * @param scheduled
+     *          the scheduled instant of the message in nanoseconds.
+     */
+    private void send(final LogicalClient client, final long scheduled) {
+      State state = client.state;
+      try {
+        synchronized (state) {
+          state.horloge.incrementEntry(state.identity);
+          ChatMessageContent msg = new ChatMessageContent(state.identity,
+              scheduled + String.valueOf(SEPARATOR) + padding, state.horloge);
+          client.sendMsg(Algorithm.CHAT_MESSAGE.identifier(), state.identity, 0, msg);
+          state.nbChatMessageContentSent++;
+        }
+        nbSent.incrementAndGet();
+      } catch (IOException e) {
+        closeClient(client);
+      }
+    }
+
+    /**
+     * treats a selected key.
+     *
+     * @param key
+     *          the selection key.
+     */
+    private void treatKey(final SelectionKey key) {
+      LogicalClient client = (LogicalClient) key.attachment();
+      try {
+        if (!client.isIdentified()) {
+          Handshake.Phase phase = client.handshake.step();
+          if (phase == Handshake.Phase.FAILED) {
+            COMM.warn(client.handshake.getFailure().getLocalizedMessage());
+            closeClient(client);
+            return;
+          }
+          if (phase != Handshake.Phase.IDENTIFIED) {
+            key.interestOps(client.handshake.interestOps());
+            return;
+          }
+          identified(client);
+        }
+        if (key.isWritable()) {
+          client.flush();
+        }
+        if (key.isReadable()) {
+          ReadMessageStatus status;
+          while ((status = client.readMessage()) == ReadMessageStatus.ReadDataCompleted) {
+            treatMessage(client);
+          }
+          if (status == ReadMessageStatus.ChannelClosed) {
+            closeClient(client);
+          }
+        }
+      } catch (IOException e) {
+        if (LOG_ON && COMM.isDebugEnabled()) {
+          COMM.debug(e.getLocalizedMessage());
+        }
+        closeClient(client);
+      }
+    }
+
+    /**
+     * treats the end of the handshake of a logical client: the client takes its identity and is
+     * registered for reading the chat messages. An idle client leaves the room
+     * {@value ChatMessageContent#DEFAULT_ROOM}.
+     *
+     * @param client
+     *          the logical client.
+     * @throws IOException
+     *           the exception thrown when the channel cannot be registered.
+     */
+    private void identified(final LogicalClient client) throws IOException {
+      synchronized (client.state) {
+        client.state.identity = client.handshake.getIdentity();
+      }
+      handshaking.remove(client);
+      client.register(selector);
+      if (client.idle) {
+        client.sendMsg(Algorithm.LEAVE_ROOM.identifier(), client.state.identity, 0,
+            new RoomContent(ChatMessageContent.DEFAULT_ROOM));
+      }
+      if (client.sender) {
+        senders.add(client);
+      }
+      handshakeDone(client.idle);
+    }
+
+    /**
+     * treats a chat message received by a logical client: the message is given to the algorithms
+     * of the client, except for the idle clients, which ignore the messages received before their
+     * leaving of the room {@value ChatMessageContent#DEFAULT_ROOM}.
+     *
+     * @param client
+     *          the logical client.
+     * @throws IOException
+     *           the exception thrown when the message cannot be deserialised.
+     */
+    private void treatMessage(final LogicalClient client) throws IOException {
+      if (!client.idle) {
+        ListOfAlgorithms.execute(client.state, client.getInType(), client.getData());
+      }
+    }
+
+    /**
+     * closes the connection of a logical client.
+     *
+     * @param client
+     *          the logical client.
+     */
+    private void closeClient(final LogicalClient client) {
+      try {
+        client.close();
+      } catch (IOException e) {
+        COMM.warn(e.getLocalizedMessage());
+      }
+      if (clients.remove(client)) {
+        nbClosed.incrementAndGet();
+        if (handshaking.remove(client)) {
+          handshakeDone(client.idle);
+        } else if (client.sender) {
+          senders.remove(client);
+          nextSender = senders.isEmpty() ? 0 : nextSender % senders.size();
+        }
+      }
+    }
+  }
+
+  /**
+   * The method main of the load generator. The options are, with their default values:
+   * {@code -servers localhost:2050} (comma separated list of host:port), {@code -clients 100},
+   * {@code -senders <clients>}, {@code -idle 0}, {@code -reactors 1}, {@code -rate 100} (messages
+   * per second), {@code -payload 64} (characters), {@code -duration 10} (seconds),
+   * {@code -drain 10} (seconds).
+   *
+   * @param args
+   *          the command line arguments.
+   * @throws Exception
+   *           the exception thrown when the load cannot be generated.
+   */
+  public static void main(final String[] args) throws Exception {
+    List<InetSocketAddress> servers = new ArrayList<>();
+    int clients = 100;
+    int senders = -1;
+    int idle = 0;
+    int nbReactors = 1;
+    double rate = 100;
+    int payload = 64;
+    double duration = 10;
+    double drain = 10;
+    for (int i = 0; i + 1 < args.length; i = i + 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "-servers":
+          for (String server : value.split(",")) {
+            String[] hostPort = server.split(":");
+            servers.add(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+          }
+          break;
+        case "-clients":
+          clients = Integer.parseInt(value);
+          break;
+        case "-senders":
+          senders = Integer.parseInt(value);
+          break;
+        case "-idle":
+          idle = Integer.parseInt(value);
+          break;
+        case "-reactors":
+          nbReactors = Integer.parseInt(value);
+          break;
+        case "-rate":
+          rate = Double.parseDouble(value);
+          break;
+        case "-payload":
+          payload = Integer.parseInt(value);
+          break;
+        case "-duration":
+          duration = Double.parseDouble(value);
+          break;
+        case "-drain":
+          drain = Double.parseDouble(value);
+          break;
+        default:
+          GEN.fatal("usage: java -cp <classpath> chat.client.LoadGenerator [-servers host:port,...]"
+              + " [-clients n] [-senders n] [-idle n] [-reactors n] [-rate msg/s]"
+              + " [-payload chars] [-duration s] [-drain s]");
+          return;
+      }
+    }
+    if (servers.isEmpty()) {
+      servers.add(new InetSocketAddress("localhost", 2050));
+    }
+    LoadGenerator generator = new LoadGenerator(servers, clients,
+        senders < 0 ? clients : senders, idle, nbReactors, rate, payload);
+    try {
+      generator.connect((long) (drain * MILLIS_PER_SECOND));
+      generator.runLoad((long) (duration * MILLIS_PER_SECOND), (long) (drain * MILLIS_PER_SECOND));
+      System.out.println(generator.report());
+    } finally {
+      generator.close();
+    }
+  }
+}
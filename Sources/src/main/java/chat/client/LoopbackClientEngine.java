@@ -0,0 +1,188 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.client;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.GEN;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import chat.client.algorithms.ListOfAlgorithms;
+import chat.common.AbstractContent;
+import chat.common.ConnectionMetrics;
+import chat.common.LatencyHistogram;
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+import chat.common.PriorityLane;
+
+/**
+ * This class defines the engine of a client that uses an in-process {@link LoopbackNetwork}
+ * instead of a socket. The connection is opened by the constructor. The first message received is
+ * the identity of the client, and the next ones are given to the algorithms of the client by the
+ * thread running the scheduler of the network: the method {@link #run()} returns at once, and the
+ * method {@link #awaitHandshake()} runs the scheduler until the identity is received.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LoopbackClientEngine implements ClientEngine, MsgReceiver {
+  /**
+   * state of the client.
+   */
+  private final State state;
+  /**
+   * the network.
+   */
+  private final LoopbackNetwork network;
+  /**
+   * the message worker of the connection to the server.
+   */
+  private final LoopbackMsgWorker worker;
+  /**
+   * states whether the identity of the client has been received.
+   */
+  private boolean identified;
+
+  /**
+   * connects the client to a server.
+   *
+   * @param state
+   *          the client state object.
+   * @param network
+   *          the network.
+   * @param serverPortNb
+   *          the port number of the server.
+   * @throws IOException
+   *           the exception thrown when the server does not listen to the port.
+   */
+  public LoopbackClientEngine(final State state, final LoopbackNetwork network,
+      final int serverPortNb) throws IOException {
+    if (state == null || network == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + state + ", "
+          + network + ")");
+    }
+    this.state = state;
+    this.network = network;
+    this.worker = network.connect(serverPortNb, this);
+  }
+
+  /**
+   * runs the scheduler of the network until the identity of the client is received, at most
+   * during the timeout of the handshake in virtual time (see {@link Handshake#TIMEOUT_PROPERTY}).
+   */
+  @Override
+  public void awaitHandshake() throws IOException {
+    long timeout = TimeUnit.MILLISECONDS.toNanos(
+        Long.getLong(Handshake.TIMEOUT_PROPERTY, Handshake.DEFAULT_TIMEOUT));
+    if (!network.runUntil(this::isIdentified, timeout)) {
+      throw new SocketTimeoutException("identity not received from the chat server");
+    }
+  }
+
+  /**
+   * states whether the identity of the client has been received.
+   *
+   * @return {@code true} if the identity has been received.
+   */
+  private synchronized boolean isIdentified() {
+    return identified;
+  }
+
+  @Override
+  public void run() {
+    if (LOG_ON && GEN.isDebugEnabled()) {
+      GEN.debug("Client thread not used by the loopback engine");
+    }
+  }
+
+  @Override
+  public void received(final MsgWorker from, final int type, final int identity,
+      final int seqNumber, final Serializable msg) throws IOException {
+    received(from, type, identity, seqNumber, MsgWorker.UNTRACED, 0, msg);
+  }
+
+  @Override
+  public void received(final MsgWorker from, final int type, final int identity,
+      final int seqNumber, final long originTime, final int hops, final Serializable msg)
+      throws IOException {
+    boolean first;
+    synchronized (this) {
+      first = !identified;
+      if (first) {
+        if (!(msg instanceof Integer)) {
+          throw new IOException("first message from the server is not an identity (" + msg + ")");
+        }
+        synchronized (state) {
+          state.identity = (Integer) msg;
+        }
+        identified = true;
+      }
+    }
+    if (first) {
+      state.notifyObservers();
+    } else {
+      if (msg instanceof AbstractContent) {
+        ((AbstractContent) msg).setTrace(originTime, hops);
+      }
+      ListOfAlgorithms.execute(state, type, msg);
+    }
+  }
+
+  @Override
+  public void closed(final MsgWorker from) {
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("connection to the chat server closed");
+    }
+  }
+
+  @Override
+  public long sendMsg(final int type, final int identity, final int seqNumber,
+      final long originTime, final int hops, final Serializable s) throws IOException {
+    return worker.sendMsg(type, identity, seqNumber, originTime, hops, s);
+  }
+
+  @Override
+  public void close() throws IOException {
+    worker.close();
+  }
+
+  @Override
+  public int getOutQueueLength() {
+    return worker.getOutQueueLength();
+  }
+
+  @Override
+  public LatencyHistogram getQueueWait(final PriorityLane lane) {
+    return worker.getQueueWait(lane);
+  }
+
+  @Override
+  public ConnectionMetrics getMetrics() {
+    return worker.getMetrics();
+  }
+}
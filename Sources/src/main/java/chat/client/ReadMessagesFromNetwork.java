@@ -26,55 +26,64 @@ import static chat.common.Log.GEN;
 import static chat.common.Log.LOG_ON;
 
 import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import chat.client.algorithms.ListOfAlgorithms;
+import chat.common.AbstractContent;
 import chat.common.FullDuplexMsgWorker;
 import chat.common.ReadMessageStatus;
 
 /**
  * This class contains the chat client's thread waiting for messages from its server. The
- * constructor initialises the full message worker and the method {@code run} receives messages from
- * the server and dispatch them according to the message type using the method {@code execute} of
- * the class {@link chat.client.algorithms.ListOfAlgorithms}
+ * constructor initialises the full message worker and the method {@code run} performs the handshake
+ * with the server, and then receives messages from the server and dispatch them according to the
+ * message type using the method {@code execute} of the class
+ * {@link chat.client.algorithms.ListOfAlgorithms}
  * 
  * @author chris
  * @author Denis Conan
  * 
  */
 public class ReadMessagesFromNetwork extends FullDuplexMsgWorker
-    implements Runnable {
+    implements ClientEngine {
   /**
    * state of the client. This is where all the attributes of the chat client are stored.
    */
   private State state;
 
   /**
-   * constructs the thread of a client that is responsible for the reception of messages from the
-   * chat server. This thread is then a full duplex message worker. After the construction of the
-   * full message worker, the constructor receive its first message from the chat server that
-   * contains the identity of the server.
+   * the handshake with the server, which gives the identity of the client.
+   */
+  private final Handshake handshake;
+
+  /**
+   * the count down that is released when the handshake is terminated, successfully or not.
+   */
+  private final CountDownLatch handshakeDone = new CountDownLatch(1);
+
+  /**
+   * constructs the runnable of a client that is responsible for the reception of messages from the
+   * chat server. The runnable is also a full duplex message worker. The constructor only initiates
+   * the connection: the handshake, that is the connection and the reception of the first message
+   * of the server that contains the identity of the client, is performed by the thread of the
+   * runnable before it starts receiving the chat messages (see {@link Handshake}).
    * 
    * @param chan
-   *          the socket channel connecting the client to the server.
+   *          the socket channel, which is not connected yet.
    * @param state
    *          the client state object.
+   * @param address
+   *          the address of the server.
    */
-  public ReadMessagesFromNetwork(final SocketChannel chan, final State state) {
+  public ReadMessagesFromNetwork(final SocketChannel chan, final State state,
+      final SocketAddress address) {
     super(chan);
     this.state = state;
-    ReadMessageStatus msgState;
-    do {
-      msgState = readMessage();
-    } while (msgState != ReadMessageStatus.ReadDataCompleted);
-    try {
-      Integer idFromServer = (Integer) getData();
-      state.identity = idFromServer.intValue();
-    } catch (IOException e) {
-      throw new IllegalStateException(
-          "communication problem while getting" +
-                " the identity of the chat server" + state.identity);
-    }
+    handshake = new Handshake(this, address);
     assert invariant();
   }
 
@@ -87,12 +96,34 @@ public class ReadMessagesFromNetwork extends FullDuplexMsgWorker
    * @return a boolean stating whether the invariant is maintained.
    */
   public final boolean invariant() {
-    return state != null;
+    return state != null && handshake != null;
   }
 
   /**
-   * organizes an infinite loop to receive messages from the chat server and to execute the
-   * corresponding action. The action is searched for in the enumeration
+   * waits for the termination of the handshake with the server, at most until the deadline of the
+   * handshake.
+   *
+   * @throws IOException
+   *           the exception thrown when the handshake has failed or is not terminated in time.
+   */
+  @Override
+  public void awaitHandshake() throws IOException {
+    try {
+      if (!handshakeDone.await(Math.max(0, handshake.remainingNanos()), TimeUnit.NANOSECONDS)) {
+        throw new SocketTimeoutException("handshake with the chat server not terminated");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting for the handshake");
+    }
+    if (handshake.getPhase() != Handshake.Phase.IDENTIFIED) {
+      throw handshake.getFailure();
+    }
+  }
+
+  /**
+   * performs the handshake with the chat server and then organizes an infinite loop to receive
+   * messages from the chat server and to execute the corresponding action. The action is searched for in the enumeration
    * {@link chat.client.algorithms.ListOfAlgorithms} through the method
    * {@link chat.client.algorithms.ListOfAlgorithms#execute(State, int, Object)}.
    */
@@ -101,6 +132,19 @@ public class ReadMessagesFromNetwork extends FullDuplexMsgWorker
     if (LOG_ON && GEN.isDebugEnabled()) {
       GEN.debug("Client thread for rcving msgs from the network started");
     }
+    try {
+      int identity = handshake.await();
+      getChannel().configureBlocking(true);
+      synchronized (state) {
+        state.identity = identity;
+      }
+      state.notifyObservers();
+    } catch (IOException e) {
+      COMM.error("cannot connect to the chat server: " + e.getLocalizedMessage());
+      return;
+    } finally {
+      handshakeDone.countDown();
+    }
     ReadMessageStatus messState;
     while (!Thread.interrupted()) {
       try {
@@ -110,6 +154,9 @@ public class ReadMessagesFromNetwork extends FullDuplexMsgWorker
         } else {
           if (messState == ReadMessageStatus.ReadDataCompleted) {
             Object content = getData();
+            if (content instanceof AbstractContent) {
+              ((AbstractContent) content).setTrace(getInOriginTime(), getInHops());
+            }
             ListOfAlgorithms.execute(state, getInType(), content);
           }
         }
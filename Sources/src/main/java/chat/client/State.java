@@ -23,18 +23,26 @@ Contributor(s):
 package chat.client;
 
 import chat.common.AbstractState;
+import chat.common.RollingHistogram;
 import chat.common.VectorClock;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import chat.client.algorithms.chat.ChatMessageContent;
+import chat.server.Server;
 
 /**
- * This class defines the attributes of the state of the client. Since the class is only a data
- * structure with no methods, all the attributes are set as public, and as a consequence, special
- * care must be taken to access these attributes when multi-threading: The synchronized statement
- * must be used in this case.
+ * This class defines the attributes of the state of the client. Since the class is mainly a data
+ * structure, all the attributes are set as public, and as a consequence, special care must be taken
+ * to access these attributes when multi-threading: The synchronized statement must be used in this
+ * case. The only method, {@link #deliver(ChatMessageContent)}, is the delivery of a chat message to
+ * the user, which may be redefined in subclasses (e.g. by the load generator).
  * 
  * @author Denis Conan
  * @author Hamza Hassine
@@ -55,8 +63,94 @@ public class State extends AbstractState {
    * number of chat messages sent.
    */
   public int nbChatMessageContentSent;
+  /**
+   * number of chat messages delivered in causal order.
+   */
+  public int nbChatMessageContentDelivered;
 
+  /**
+   * the vector clock of the room {@value ChatMessageContent#DEFAULT_ROOM}.
+   */
   public VectorClock horloge = new VectorClock();
+  /**
+   * the vector clocks of the other rooms joined, the causal order being kept per room.
+   */
+  public final Map<String, VectorClock> roomClocks = new HashMap<>();
+  /**
+   * the rooms joined while the server had not followed their previous messages, with the senders
+   * from which the client knows the next message to deliver: the first message of another sender
+   * gives the point from which the messages of this sender are delivered.
+   */
+  public final Map<String, Set<Integer>> syncedSenders = new HashMap<>();
+  /**
+   * the rooms joined, as acknowledged by the server.
+   */
+  public final Set<String> rooms = new LinkedHashSet<>(
+      Collections.singleton(ChatMessageContent.DEFAULT_ROOM));
+  /**
+   * the room of the chat messages sent from the console.
+   */
+  public String room = ChatMessageContent.DEFAULT_ROOM;
 
   public List<ChatMessageContent> MsgBag = new ArrayList<ChatMessageContent>();
+  /**
+   * the histogram of the time from the reception of a chat message to its delivery out of the
+   * bag, in nanoseconds: the messages delivered at once spend a few microseconds in the bag, and
+   * the messages waiting for their causal predecessors make the tail of the histogram.
+   */
+  public final RollingHistogram bagDelay;
+  /**
+   * the histogram of the time from the sending of a traced chat message by its original client to
+   * its delivery, in nanoseconds. The origin time is taken with {@link System#nanoTime()}, hence
+   * the latencies are meaningful when the clients run on the same host.
+   */
+  public final RollingHistogram endToEnd = new RollingHistogram();
+  /**
+   * the histogram of the number of servers crossed by the traced chat messages delivered.
+   */
+  public final RollingHistogram hopCount = new RollingHistogram();
+
+  /**
+   * constructs the state of a client.
+   */
+  public State() {
+    this(new RollingHistogram());
+  }
+
+  /**
+   * constructs the state of a client that records the time spent in the bag in a given histogram,
+   * e.g. a histogram shared by the logical clients of the load generator.
+   *
+   * @param bagDelay
+   *          the histogram.
+   */
+  protected State(final RollingHistogram bagDelay) {
+    this.bagDelay = bagDelay;
+  }
+
+  /**
+   * gets the vector clock of a room.
+   *
+   * @param room
+   *          the room.
+   * @return the vector clock.
+   */
+  public VectorClock clock(final String room) {
+    if (ChatMessageContent.DEFAULT_ROOM.equals(room)) {
+      return horloge;
+    }
+    return roomClocks.computeIfAbsent(room, r -> new VectorClock());
+  }
+
+  /**
+   * delivers a chat message to the user once its causal predecessors have been delivered: the
+   * message is displayed in the console. The method is called in mutual exclusion on the state.
+   *
+   * @param msg
+   *          the message delivered.
+   */
+  public void deliver(final ChatMessageContent msg) {
+    System.out.println("client " + identity % Server.OFFSET_ID_CLIENT + " of server "
+        + identity / Server.OFFSET_ID_CLIENT + " receives " + msg);
+  }
 }
@@ -28,6 +28,8 @@ import java.util.Map;
 
 import chat.client.State;
 import chat.common.Action;
+import chat.common.DispatchEvent;
+import chat.common.FlightEvents;
 
 /**
  * This Enumeration type declares the algorithms of the chat client. For now, there is only one
@@ -82,6 +84,10 @@ public enum ListOfAlgorithms {
    *          content of the message just received.
    */
   public static void execute(final State state, final int actionIndex, final Object content) {
+    DispatchEvent event = FlightEvents.ENABLED ? new DispatchEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
     boolean executed = false;
     for (ListOfAlgorithms algorithm : Arrays.asList(values())) {
       for (Iterator<? extends Action<State>> actions = algorithm.mapOfActions
@@ -99,6 +105,12 @@ public enum ListOfAlgorithms {
         }
       }
     }
+    if (event != null && event.shouldCommit()) {
+      event.actionId = actionIndex;
+      event.contentClass = content == null ? null : content.getClass();
+      event.commit();
+    }
+    state.notifyObservers();
     if (!executed) {
       throw new IllegalArgumentException("Unknown action: " + actionIndex);
     }
@@ -21,15 +21,23 @@ Contributor(s):
  */
 package chat.client.algorithms.chat;
 
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import chat.client.State;
-import chat.server.Server;
+import chat.common.VectorClock;
 
 /**
  * This class defines the methods implementing the reaction of the state machine part concerning the
- * reception of chat messages. Since only one message content type is declared in the algorithm,
- * there is only one static method in this class.
+ * reception of chat messages and of the acknowledgements of the joining and of the leaving of
+ * rooms. The causal order is kept per room: a chat message is delivered when its causal
+ * predecessors in its room have been delivered. A client that joins a room in which messages have
+ * already been sent starts from the vector clock of the room at its server, which is received with
+ * the acknowledgement of the join, and the messages that precede this clock are dropped. When the
+ * server has only followed the room from this join on, the senders that are not in the vector clock
+ * are synchronised with their first message received. The vector clock of a room is kept when the
+ * client leaves the room, so that the messages sent after a new join follow the ones sent before.
  * 
  * @author Denis Conan
  * 
@@ -43,7 +51,13 @@ public final class Actions {
   }
 
   /**
-   * treats the reception of a chat message: the message is displayed in the console.
+   * treats the reception of a chat message: the message is put in the bag of received messages,
+   * and the messages of the bag whose causal predecessors in their room have been delivered are
+   * delivered (see {@link State#deliver(ChatMessageContent)}). The messages of the rooms left while
+   * they were in transit and the messages that precede the vector clock of the room are dropped.
+   * The time spent by every message in the bag is
+   * recorded in {@link State#bagDelay}, and the latency and hop count of the traced messages in
+   * {@link State#endToEnd} and {@link State#hopCount}.
    * 
    * @param state
    *          the state of the client.
@@ -53,7 +67,12 @@ public final class Actions {
   public static void receiveChatMessageContent(final State state,
       final ChatMessageContent content) {
     synchronized (state) {
+      if (!state.rooms.contains(content.getRoom())) {
+        return;
+      }
       state.nbChatMessageContentReceived++;
+      content.setReceivedAt(System.nanoTime());
+      synchronise(state, content);
       state.MsgBag.add(content);
       boolean exist = true;
       while (exist) {
@@ -61,21 +80,112 @@ public final class Actions {
         for (Iterator<ChatMessageContent> iterator = state.MsgBag.iterator(); iterator.hasNext();) {
           ChatMessageContent msg = iterator.next();
           int q = msg.getSender();
-          boolean condition = state.horloge.isPrecededByAndFIFO(msg.getHorloge(), q);
+          VectorClock clock = state.clock(msg.getRoom());
+          if (msg.getHorloge().getEntry(q) <= clock.getEntry(q)) {
+            iterator.remove();
+            continue;
+          }
+          boolean condition = clock.isPrecededByAndFIFO(msg.getHorloge(), q);
 
           if (condition) {
             exist = true;
-            System.out.println("client " + state.identity % Server.OFFSET_ID_CLIENT + " of server "
-                + state.identity / Server.OFFSET_ID_CLIENT + " receives " + content);
-
             iterator.remove();
             if (q != state.identity) {
-              state.horloge.incrementEntry(q);
+              clock.incrementEntry(q);
+            }
+            state.nbChatMessageContentDelivered++;
+            state.bagDelay.recordSince(msg.getReceivedAt());
+            if (msg.isTraced()) {
+              state.endToEnd.recordSince(msg.getOriginTime());
+              state.hopCount.record(msg.getHops());
             }
+            state.deliver(msg);
           }
         }
       }
 
     }
   }
+
+  /**
+   * synchronises the vector clock of a room joined while the server had not followed its previous
+   * messages with a message of a sender whose next message was unknown: the message is the next
+   * one of its sender, and the other unknown senders are caught up with the message, since their
+   * messages that precede it will not be received.
+   *
+   * @param state
+   *          the state of the client.
+   * @param content
+   *          the content of the message.
+   */
+  private static void synchronise(final State state, final ChatMessageContent content) {
+    Set<Integer> synced = state.syncedSenders.get(content.getRoom());
+    int q = content.getSender();
+    if (synced == null || synced.contains(q)) {
+      return;
+    }
+    VectorClock clock = state.clock(content.getRoom());
+    VectorClock horloge = content.getHorloge();
+    for (Integer r : horloge.identities()) {
+      int entry = r == q ? horloge.getEntry(r) - 1 : horloge.getEntry(r);
+      if (!synced.contains(r) && entry > clock.getEntry(r)) {
+        clock.setEntry(r, entry);
+      }
+    }
+    synced.add(q);
+  }
+
+  /**
+   * treats the acknowledgement of the joining of a room: the chat messages of the room are
+   * delivered from now on, starting from the vector clock of the room at the server.
+   *
+   * @param state
+   *          the state of the client.
+   * @param content
+   *          the content of the message.
+   */
+  public static void receiveJoinRoomContent(final State state, final RoomContent content) {
+    synchronized (state) {
+      state.rooms.add(content.getRoom());
+      VectorClock clock = state.clock(content.getRoom());
+      if (content.getClock() != null) {
+        clock.max(content.getClock());
+      }
+      if (content.isPartial()) {
+        Set<Integer> synced = new HashSet<>(clock.identities());
+        synced.add(state.identity);
+        state.syncedSenders.put(content.getRoom(), synced);
+      } else {
+        state.syncedSenders.remove(content.getRoom());
+      }
+    }
+  }
+
+  /**
+   * treats the acknowledgement of the leaving of a room: the messages of the room waiting in the
+   * bag are discarded. The entry of the client in the vector clock of the room is kept, so that the
+   * other clients accept its messages after a new join; the other entries are given again by the
+   * acknowledgement of the next join.
+   *
+   * @param state
+   *          the state of the client.
+   * @param content
+   *          the content of the message.
+   */
+  public static void receiveLeaveRoomContent(final State state, final RoomContent content) {
+    synchronized (state) {
+      state.rooms.remove(content.getRoom());
+      VectorClock clock = state.roomClocks.get(content.getRoom());
+      if (clock != null) {
+        VectorClock own = new VectorClock();
+        own.setEntry(state.identity, clock.getEntry(state.identity));
+        state.roomClocks.put(content.getRoom(), own);
+      }
+      state.syncedSenders.remove(content.getRoom());
+      state.MsgBag.removeIf(msg -> msg.getRoom().equals(content.getRoom()));
+      if (content.getRoom().equals(state.room)) {
+        state.room = ChatMessageContent.DEFAULT_ROOM;
+      }
+    }
+  }
 }
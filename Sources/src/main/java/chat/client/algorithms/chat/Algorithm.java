@@ -31,7 +31,8 @@ import chat.common.Action;
 
 /**
  * This Enumeration type declares the algorithm of the chat part of the client's
- * state machine. Only one message content type can be received.
+ * state machine: the chat messages, and the messages by which a client joins
+ * and leaves rooms, which the server sends back as acknowledgements.
  *
  * @author Denis Conan
  * @author Hamza Hassine
@@ -54,6 +55,40 @@ public enum Algorithm implements Action<State> {
 		public void execute(final State state, final AbstractContent content) {
 			Actions.receiveChatMessageContent(state, (ChatMessageContent) content);
 		}
+	},
+	/**
+	 * the enumerator for the action of the acknowledgement of the joining of a
+	 * room.
+	 */
+	JOIN_ROOM(RoomContent.class) {
+		/**
+		 * executes the action by calling a static method.
+		 * 
+		 * @param state
+		 *            the state of the client.
+		 * @param content
+		 *            the message to treat.
+		 */
+		public void execute(final State state, final AbstractContent content) {
+			Actions.receiveJoinRoomContent(state, (RoomContent) content);
+		}
+	},
+	/**
+	 * the enumerator for the action of the acknowledgement of the leaving of a
+	 * room.
+	 */
+	LEAVE_ROOM(RoomContent.class) {
+		/**
+		 * executes the action by calling a static method.
+		 * 
+		 * @param state
+		 *            the state of the client.
+		 * @param content
+		 *            the message to treat.
+		 */
+		public void execute(final State state, final AbstractContent content) {
+			Actions.receiveLeaveRoomContent(state, (RoomContent) content);
+		}
 	};
 
 	/**
@@ -28,7 +28,9 @@ import chat.common.AbstractContent;
 import chat.common.VectorClock;
 
 /**
- * This class defines the content of a chat message.
+ * This class defines the content of a chat message. A chat message is sent in a room: it is
+ * delivered to the clients that have joined the room, in the causal order of the messages of the
+ * room. All the clients are in the room {@value #DEFAULT_ROOM} when they connect.
  * 
  * @author Denis Conan
  * @author Hamza Hassine
@@ -39,11 +41,19 @@ public class ChatMessageContent extends AbstractContent {
   /**
    * version number for serialization.
    */
-  private static final long serialVersionUID = 2L;
+  private static final long serialVersionUID = 3L;
+  /**
+   * the room joined by all the clients when they connect.
+   */
+  public static final String DEFAULT_ROOM = "general";
   /**
    * the sender of the message.
    */
   private int sender;
+  /**
+   * the room of the message.
+   */
+  private String room;
   /**
    * the content of the message.
    */
@@ -52,20 +62,47 @@ public class ChatMessageContent extends AbstractContent {
    * Horloge
    */
   private VectorClock horloge;
+  /**
+   * the instant of the reception of the message by the client, in the time of
+   * {@link System#nanoTime()}, which is not serialised.
+   */
+  private transient long receivedAt;
 
   /**
-   * constructs the message.
+   * constructs a message of the room {@value #DEFAULT_ROOM}.
    * 
    * @param idSender
    *          the identifier of the sender.
    * @param content
    *          the content of the message.
+   * @param horloge
+   *          the vector clock of the room of the sender.
    */
   public ChatMessageContent(final int idSender, final String content,
       final VectorClock horloge) {
+    this(idSender, DEFAULT_ROOM, content, horloge);
+  }
+
+  /**
+   * constructs the message.
+   * 
+   * @param idSender
+   *          the identifier of the sender.
+   * @param room
+   *          the room of the message.
+   * @param content
+   *          the content of the message.
+   * @param horloge
+   *          the vector clock of the room of the sender.
+   */
+  public ChatMessageContent(final int idSender, final String room, final String content,
+      final VectorClock horloge) {
     if (idSender < 0) {
       throw new IllegalArgumentException("invalid id for the sender(" + idSender + ")");
     }
+    if (room == null || room.isEmpty()) {
+      throw new IllegalArgumentException("invalid room (" + room + ")");
+    }
     if (content == null) {
       throw new IllegalArgumentException("invalid content (null)");
     }
@@ -73,6 +110,7 @@ public class ChatMessageContent extends AbstractContent {
       throw new IllegalArgumentException("invalid horloge (null)");
     }
     sender = idSender;
+    this.room = room;
     this.content = content;
     this.horloge = horloge;
     assert invariant();
@@ -87,7 +125,16 @@ public class ChatMessageContent extends AbstractContent {
    * @return the boolean stating the invariant is maintained.
    */
   public final boolean invariant() {
-    return sender >= 0 && content != null;
+    return sender >= 0 && room != null && content != null;
+  }
+
+  /**
+   * gets the room of the message.
+   * 
+   * @return the room.
+   */
+  public String getRoom() {
+    return room;
   }
 
   /**
@@ -117,6 +164,25 @@ public class ChatMessageContent extends AbstractContent {
     return horloge;
   }
 
+  /**
+   * gets the instant of the reception of the message by the client.
+   *
+   * @return the instant, in the time of {@link System#nanoTime()}.
+   */
+  public long getReceivedAt() {
+    return receivedAt;
+  }
+
+  /**
+   * sets the instant of the reception of the message by the client.
+   *
+   * @param receivedAt
+   *          the instant, in the time of {@link System#nanoTime()}.
+   */
+  public void setReceivedAt(final long receivedAt) {
+    this.receivedAt = receivedAt;
+  }
+
   @Override
   public String toString() {
     if (LOG_ON && GEN.isInfoEnabled()) {
@@ -0,0 +1,118 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.client.algorithms.chat;
+
+import chat.common.AbstractContent;
+import chat.common.VectorClock;
+
+/**
+ * This class defines the content of the messages by which a client joins or leaves a room. The
+ * client sends the message to its server, which updates the rooms of the client and of its
+ * neighbours and sends the message back to the client as an acknowledgement. The acknowledgement
+ * of a join carries the vector clock of the messages of the room already forwarded by the server,
+ * from which the client starts, and states whether the server has only followed the room from this
+ * join on while other servers were already in it.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class RoomContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 2L;
+  /**
+   * the room.
+   */
+  private final String room;
+  /**
+   * the vector clock of the room at the server, or {@code null} in the requests of the client.
+   */
+  private final VectorClock clock;
+  /**
+   * whether the messages of the room sent before the join have not been followed by the server.
+   */
+  private final boolean partial;
+
+  /**
+   * constructs the content.
+   *
+   * @param room
+   *          the room.
+   */
+  public RoomContent(final String room) {
+    this(room, null, false);
+  }
+
+  /**
+   * constructs the acknowledgement of a join.
+   *
+   * @param room
+   *          the room.
+   * @param clock
+   *          the vector clock of the room at the server.
+   * @param partial
+   *          whether the messages of the room sent before the join have not been followed by the
+   *          server.
+   */
+  public RoomContent(final String room, final VectorClock clock, final boolean partial) {
+    if (room == null || room.isEmpty()) {
+      throw new IllegalArgumentException("invalid room (" + room + ")");
+    }
+    this.room = room;
+    this.clock = clock;
+    this.partial = partial;
+  }
+
+  /**
+   * gets the room.
+   *
+   * @return the room.
+   */
+  public String getRoom() {
+    return room;
+  }
+
+  /**
+   * gets the vector clock of the room at the server.
+   *
+   * @return the vector clock, or {@code null} in the requests of the client.
+   */
+  public VectorClock getClock() {
+    return clock;
+  }
+
+  /**
+   * states whether the messages of the room sent before the join have not been followed by the
+   * server.
+   *
+   * @return {@code true} if the history of the room is partially known.
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
+  @Override
+  public String toString() {
+    return "RoomContent [room=" + room + ", clock=" + clock + ", partial=" + partial + "]";
+  }
+}
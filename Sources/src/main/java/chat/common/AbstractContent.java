@@ -25,7 +25,9 @@ import java.io.Serializable;
 
 /**
  * This abstract class is the root of the message contents used in the client or
- * the server.
+ * the server. A content received in a frame with an extended header keeps the
+ * origin time and the hop count of the header, which are not serialised (see
+ * {@link MsgWorker#sendMsg(int, int, int, long, int, Serializable)}).
  * 
  * @author Denis Conan
  * @author Hamza Hassine
@@ -36,4 +38,59 @@ public abstract class AbstractContent implements Serializable {
 	 * version number for serialization.
 	 */
 	private static final long serialVersionUID = 2L;
+	/**
+	 * states whether the content has been received in a traced message.
+	 */
+	private transient boolean traced;
+	/**
+	 * the origin time of the message, in the time of {@link System#nanoTime()}.
+	 */
+	private transient long originTime;
+	/**
+	 * the number of servers crossed by the message.
+	 */
+	private transient int hops;
+
+	/**
+	 * sets the origin time and the hop count of the message that carried the
+	 * content.
+	 * 
+	 * @param originTime
+	 *            the origin time, or {@link MsgWorker#UNTRACED} when the message
+	 *            has been sent with the basic header.
+	 * @param hops
+	 *            the number of servers crossed by the message.
+	 */
+	public void setTrace(final long originTime, final int hops) {
+		this.traced = originTime != MsgWorker.UNTRACED;
+		this.originTime = originTime;
+		this.hops = hops;
+	}
+
+	/**
+	 * states whether the content has been received in a traced message.
+	 * 
+	 * @return {@code true} if the origin time and the hop count are known.
+	 */
+	public boolean isTraced() {
+		return traced;
+	}
+
+	/**
+	 * gets the origin time of the message that carried the content.
+	 * 
+	 * @return the origin time, in the time of {@link System#nanoTime()}.
+	 */
+	public long getOriginTime() {
+		return originTime;
+	}
+
+	/**
+	 * gets the number of servers crossed by the message that carried the content.
+	 * 
+	 * @return the hop count.
+	 */
+	public int getHops() {
+		return hops;
+	}
 }
@@ -21,11 +21,16 @@ Contributor(s):
  */
 package chat.common;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * This abstract class defines the type for a state of a client or a server. The
  * state is the first part of the context for the execution of actions (of
  * algorithms): see the method
- * {@link chat.common.Action#execute(AbstractState, AbstractContent)}.
+ * {@link chat.common.Action#execute(AbstractState, AbstractContent)}. The
+ * changes of the state can be observed (see {@link StateObserver}), e.g. by
+ * the scenarios that wait for a condition on the states.
  *
  * @author Denis Conan
  * @author Hamza Hassine
@@ -33,4 +38,40 @@ package chat.common;
  *
  */
 public abstract class AbstractState {
+  /**
+   * the observers of the state.
+   */
+  private final List<StateObserver> observers = new CopyOnWriteArrayList<>();
+
+  /**
+   * adds an observer of the state.
+   *
+   * @param observer
+   *          the observer.
+   */
+  public void addObserver(final StateObserver observer) {
+    if (observer == null) {
+      throw new IllegalArgumentException("no observer");
+    }
+    observers.add(observer);
+  }
+
+  /**
+   * removes an observer of the state.
+   *
+   * @param observer
+   *          the observer.
+   */
+  public void removeObserver(final StateObserver observer) {
+    observers.remove(observer);
+  }
+
+  /**
+   * notifies the observers that the state has changed.
+   */
+  public void notifyObservers() {
+    for (StateObserver observer : observers) {
+      observer.stateChanged(this);
+    }
+  }
 }
@@ -56,6 +56,18 @@ public interface Action<S extends AbstractState> {
    */
   int OFFSET_CLIENT_ALGORITHMS = 1000;
 
+  /**
+   * gets the priority lane of the messages of the action in the outbound queues (see
+   * {@link PriorityLane}). By default, the lane is given by the offset of the identifier; an
+   * action whose messages carry chat messages overrides the method to return
+   * {@link PriorityLane#DATA}.
+   *
+   * @return the priority lane.
+   */
+  default PriorityLane lane() {
+    return PriorityLane.ofOffset(identifier());
+  }
+
   /**
    * gets the type of the content/message to be treated.
    *
@@ -0,0 +1,683 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+ * This class defines the loggers of the chat (see {@link Log}): a facade of a log4j logger whose
+ * events are appended by a background thread. An event is published in a ring buffer of
+ * preallocated slots, with the instant and the thread of the call, and the background thread
+ * formats the message and gives it to the appenders of the log4j logger. Hence, the threads that
+ * log, e.g. the thread of the selector of a server, do not write to the console, and no object is
+ * allocated by the call, apart from the boxing of the arguments of primitive types and the strings
+ * of the mutable arguments.
+ *
+ * The messages are either objects, as with log4j, or parameterized: the placeholders {@code {}}
+ * of the format are replaced by the arguments when the event is appended, so that no string is
+ * built in the thread that logs, and nothing at all when the level is disabled. Only the immutable
+ * arguments, i.e. the strings, the boxed primitive types, the enumerations and the throwables, are
+ * formatted later by the background thread: the other arguments and messages, e.g. the tables of
+ * the state of a server or the contents of the messages, may be modified after the call by a thread
+ * that holds their lock, hence they are formatted by the thread that logs (see
+ * {@link #freeze(Object)}).
+ *
+ * When the ring buffer is full, the event is appended by the thread that logs, which slows it
+ * down instead of losing the event. The size of the ring buffer is set by the property
+ * {@link #RING_SIZE_PROPERTY}, and the property {@link #ASYNC_PROPERTY} set to {@code false}
+ * makes all the events appended by the threads that log.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class AsyncLogger {
+  /**
+   * the property stating whether the events are appended by the background thread.
+   */
+  public static final String ASYNC_PROPERTY = "chat.log.async";
+  /**
+   * the property giving the number of slots of the ring buffer, rounded up to a power of two.
+   */
+  public static final String RING_SIZE_PROPERTY = "chat.log.ringSize";
+  /**
+   * the default number of slots of the ring buffer.
+   */
+  public static final int DEFAULT_RING_SIZE = 8192;
+  /**
+   * the placeholder of the arguments in the formats.
+   */
+  private static final String PLACEHOLDER = "{}";
+  /**
+   * the fully qualified name of the class, given to log4j as the caller.
+   */
+  private static final String FQCN = AsyncLogger.class.getName();
+  /**
+   * the ring buffer, or {@code null} when the events are appended by the threads that log.
+   */
+  private static final Ring RING = Boolean.parseBoolean(System.getProperty(ASYNC_PROPERTY, "true"))
+      ? new Ring(Integer.getInteger(RING_SIZE_PROPERTY, DEFAULT_RING_SIZE)) : null;
+  /**
+   * the log4j logger, whose level and appenders are used.
+   */
+  private final Logger logger;
+
+  /**
+   * constructs the facade of a log4j logger.
+   *
+   * @param logger
+   *          the log4j logger.
+   */
+  private AsyncLogger(final Logger logger) {
+    this.logger = logger;
+  }
+
+  /**
+   * gets the facade of the log4j logger of a given name.
+   *
+   * @param name
+   *          the name of the logger.
+   * @return the facade.
+   */
+  public static AsyncLogger getLogger(final String name) {
+    return new AsyncLogger(Logger.getLogger(name));
+  }
+
+  /**
+   * gets the log4j logger.
+   *
+   * @return the logger.
+   */
+  public Logger getLogger() {
+    return logger;
+  }
+
+  /**
+   * sets the level of the log4j logger.
+   *
+   * @param level
+   *          the level.
+   */
+  public void setLevel(final Level level) {
+    logger.setLevel(level);
+  }
+
+  /**
+   * states whether the level TRACE is enabled.
+   *
+   * @return {@code true} if enabled.
+   */
+  public boolean isTraceEnabled() {
+    return logger.isTraceEnabled();
+  }
+
+  /**
+   * states whether the level DEBUG is enabled.
+   *
+   * @return {@code true} if enabled.
+   */
+  public boolean isDebugEnabled() {
+    return logger.isDebugEnabled();
+  }
+
+  /**
+   * states whether the level INFO is enabled.
+   *
+   * @return {@code true} if enabled.
+   */
+  public boolean isInfoEnabled() {
+    return logger.isInfoEnabled();
+  }
+
+  /**
+   * logs a message at the level TRACE.
+   *
+   * @param message
+   *          the message.
+   */
+  public void trace(final Object message) {
+    log(Level.TRACE, message, null, null, 0);
+  }
+
+  /**
+   * logs a parameterized message at the level TRACE.
+   *
+   * @param format
+   *          the format, with one placeholder.
+   * @param arg
+   *          the argument.
+   */
+  public void trace(final String format, final Object arg) {
+    log(Level.TRACE, format, arg, null, 1);
+  }
+
+  /**
+   * logs a parameterized message at the level TRACE.
+   *
+   * @param format
+   *          the format, with two placeholders.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   */
+  public void trace(final String format, final Object arg1, final Object arg2) {
+    log(Level.TRACE, format, arg1, arg2, 2);
+  }
+
+  /**
+   * logs a message at the level DEBUG.
+   *
+   * @param message
+   *          the message.
+   */
+  public void debug(final Object message) {
+    log(Level.DEBUG, message, null, null, 0);
+  }
+
+  /**
+   * logs a parameterized message at the level DEBUG.
+   *
+   * @param format
+   *          the format, with one placeholder.
+   * @param arg
+   *          the argument.
+   */
+  public void debug(final String format, final Object arg) {
+    log(Level.DEBUG, format, arg, null, 1);
+  }
+
+  /**
+   * logs a parameterized message at the level DEBUG.
+   *
+   * @param format
+   *          the format, with two placeholders.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   */
+  public void debug(final String format, final Object arg1, final Object arg2) {
+    log(Level.DEBUG, format, arg1, arg2, 2);
+  }
+
+  /**
+   * logs a message at the level INFO.
+   *
+   * @param message
+   *          the message.
+   */
+  public void info(final Object message) {
+    log(Level.INFO, message, null, null, 0);
+  }
+
+  /**
+   * logs a parameterized message at the level INFO.
+   *
+   * @param format
+   *          the format, with one placeholder.
+   * @param arg
+   *          the argument.
+   */
+  public void info(final String format, final Object arg) {
+    log(Level.INFO, format, arg, null, 1);
+  }
+
+  /**
+   * logs a parameterized message at the level INFO.
+   *
+   * @param format
+   *          the format, with two placeholders.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   */
+  public void info(final String format, final Object arg1, final Object arg2) {
+    log(Level.INFO, format, arg1, arg2, 2);
+  }
+
+  /**
+   * logs a message at the level WARN.
+   *
+   * @param message
+   *          the message.
+   */
+  public void warn(final Object message) {
+    log(Level.WARN, message, null, null, 0);
+  }
+
+  /**
+   * logs a parameterized message at the level WARN.
+   *
+   * @param format
+   *          the format, with one placeholder.
+   * @param arg
+   *          the argument.
+   */
+  public void warn(final String format, final Object arg) {
+    log(Level.WARN, format, arg, null, 1);
+  }
+
+  /**
+   * logs a parameterized message at the level WARN.
+   *
+   * @param format
+   *          the format, with two placeholders.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   */
+  public void warn(final String format, final Object arg1, final Object arg2) {
+    log(Level.WARN, format, arg1, arg2, 2);
+  }
+
+  /**
+   * logs a message at the level ERROR.
+   *
+   * @param message
+   *          the message.
+   */
+  public void error(final Object message) {
+    log(Level.ERROR, message, null, null, 0);
+  }
+
+  /**
+   * logs a parameterized message at the level ERROR.
+   *
+   * @param format
+   *          the format, with one placeholder.
+   * @param arg
+   *          the argument.
+   */
+  public void error(final String format, final Object arg) {
+    log(Level.ERROR, format, arg, null, 1);
+  }
+
+  /**
+   * logs a parameterized message at the level ERROR.
+   *
+   * @param format
+   *          the format, with two placeholders.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   */
+  public void error(final String format, final Object arg1, final Object arg2) {
+    log(Level.ERROR, format, arg1, arg2, 2);
+  }
+
+  /**
+   * logs a message at the level FATAL.
+   *
+   * @param message
+   *          the message.
+   */
+  public void fatal(final Object message) {
+    log(Level.FATAL, message, null, null, 0);
+  }
+
+  /**
+   * publishes an event when its level is enabled.
+   *
+   * @param level
+   *          the level of the event.
+   * @param message
+   *          the message, or the format of the message when there are arguments.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   * @param nbArgs
+   *          the number of arguments.
+   */
+  private void log(final Level level, final Object message, final Object arg1, final Object arg2,
+      final int nbArgs) {
+    if (!logger.isEnabledFor(level)) {
+      return;
+    }
+    long timeStamp = System.currentTimeMillis();
+    String threadName = Thread.currentThread().getName();
+    Object frozen = nbArgs > 0 ? message : freeze(message);
+    Object frozen1 = nbArgs > 0 ? freeze(arg1) : null;
+    Object frozen2 = nbArgs > 1 ? freeze(arg2) : null;
+    if (RING == null || !RING.publish(logger, level, timeStamp, threadName, frozen, frozen1,
+        frozen2, nbArgs)) {
+      append(logger, level, timeStamp, threadName, frozen, frozen1, frozen2, nbArgs);
+    }
+  }
+
+  /**
+   * gets the value of a message or of an argument that is formatted by the background thread: the
+   * immutable objects are kept, and the other ones are formatted by the thread that logs, since
+   * they may be modified after the call.
+   *
+   * @param arg
+   *          the message or the argument.
+   * @return the object or its string.
+   */
+  static Object freeze(final Object arg) {
+    if (arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+        || arg instanceof Short || arg instanceof Byte || arg instanceof Double
+        || arg instanceof Float || arg instanceof Character || arg instanceof Boolean
+        || arg instanceof Enum || arg instanceof Throwable) {
+      return arg;
+    }
+    return String.valueOf(arg);
+  }
+
+  /**
+   * formats the message of an event and gives the event to the appenders of the logger.
+   *
+   * @param logger
+   *          the logger.
+   * @param level
+   *          the level of the event.
+   * @param timeStamp
+   *          the instant of the event.
+   * @param threadName
+   *          the name of the thread that has logged the event.
+   * @param message
+   *          the message, or the format of the message when there are arguments.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   * @param nbArgs
+   *          the number of arguments.
+   */
+  private static void append(final Logger logger, final Level level, final long timeStamp,
+      final String threadName, final Object message, final Object arg1, final Object arg2,
+      final int nbArgs) {
+    Object rendered = message;
+    Throwable thrown = null;
+    if (nbArgs > 0) {
+      rendered = format((String) message, arg1, nbArgs > 1 ? arg2 : null, nbArgs);
+      Object last = nbArgs > 1 ? arg2 : arg1;
+      if (last instanceof Throwable) {
+        thrown = (Throwable) last;
+      }
+    }
+    logger.callAppenders(new LoggingEvent(FQCN, logger, timeStamp, level, rendered, threadName,
+        thrown == null ? null : new ThrowableInformation(thrown), null, null, null));
+  }
+
+  /**
+   * replaces the placeholders of a format by the arguments. The placeholders without argument are
+   * kept.
+   *
+   * @param format
+   *          the format.
+   * @param arg1
+   *          the first argument.
+   * @param arg2
+   *          the second argument.
+   * @param nbArgs
+   *          the number of arguments.
+   * @return the message.
+   */
+  static String format(final String format, final Object arg1, final Object arg2,
+      final int nbArgs) {
+    StringBuilder builder = new StringBuilder(format.length() + 32);
+    int from = 0;
+    for (int i = 0; i < nbArgs; i++) {
+      int at = format.indexOf(PLACEHOLDER, from);
+      if (at < 0) {
+        break;
+      }
+      builder.append(format, from, at).append(i == 0 ? arg1 : arg2);
+      from = at + PLACEHOLDER.length();
+    }
+    return builder.append(format, from, format.length()).toString();
+  }
+
+  /**
+   * waits until the events published have been appended, at most during a timeout.
+   *
+   * @param timeout
+   *          the timeout in milliseconds.
+   * @return {@code true} if all the events published have been appended.
+   */
+  public static boolean flush(final long timeout) {
+    return RING == null || RING.flush(timeout);
+  }
+
+  /**
+   * gets the number of events appended by the thread that logs because the ring buffer was full.
+   *
+   * @return the number of events.
+   */
+  public static long getNbOverflows() {
+    return RING == null ? 0 : RING.overflows.get();
+  }
+
+  /**
+   * This class defines a slot of the ring buffer. The fields are written by the thread that has
+   * claimed the slot, and are published by the volatile write of the sequence number.
+   */
+  private static final class Slot {
+    /**
+     * the sequence number of the event of the slot, or -1.
+     */
+    private volatile long sequence = -1;
+    /**
+     * the logger of the event.
+     */
+    private Logger logger;
+    /**
+     * the level of the event.
+     */
+    private Level level;
+    /**
+     * the instant of the event.
+     */
+    private long timeStamp;
+    /**
+     * the name of the thread that has logged the event.
+     */
+    private String threadName;
+    /**
+     * the message, or the format of the message.
+     */
+    private Object message;
+    /**
+     * the arguments of the message.
+     */
+    private Object arg1, arg2;
+    /**
+     * the number of arguments.
+     */
+    private int nbArgs;
+  }
+
+  /**
+   * This class defines the ring buffer of the events and its background thread. The producers
+   * claim a slot with a compare-and-set on the sequence of the next event, and the background
+   * thread is the only consumer. The background thread parks when the ring buffer is empty and is
+   * unparked by the producers.
+   */
+  private static final class Ring implements Runnable {
+    /**
+     * the maximum time in nanoseconds during which the background thread parks.
+     */
+    private static final long PARK = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * the slots.
+     */
+    private final Slot[] slots;
+    /**
+     * the mask giving the index of the slot of a sequence number.
+     */
+    private final int mask;
+    /**
+     * the sequence number of the next event to publish.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * the number of events appended by the producers because the ring buffer was full.
+     */
+    private final AtomicLong overflows = new AtomicLong();
+    /**
+     * the sequence number of the next event to append.
+     */
+    private volatile long consumed;
+    /**
+     * states whether the background thread is parked or about to park.
+     */
+    private volatile boolean parked;
+    /**
+     * the background thread.
+     */
+    private final Thread writer;
+
+    /**
+     * constructs the ring buffer and starts its background thread.
+     *
+     * @param size
+     *          the number of slots, rounded up to a power of two.
+     */
+    Ring(final int size) {
+      int capacity = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+      slots = new Slot[capacity];
+      for (int i = 0; i < capacity; i++) {
+        slots[i] = new Slot();
+      }
+      mask = capacity - 1;
+      writer = new Thread(this, "chat-log-writer");
+      writer.setDaemon(true);
+      writer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+    }
+
+    /**
+     * publishes an event.
+     *
+     * @param logger
+     *          the logger.
+     * @param level
+     *          the level of the event.
+     * @param timeStamp
+     *          the instant of the event.
+     * @param threadName
+     *          the name of the thread that logs the event.
+     * @param message
+     *          the message, or the format of the message.
+     * @param arg1
+     *          the first argument.
+     * @param arg2
+     *          the second argument.
+     * @param nbArgs
+     *          the number of arguments.
+     * @return {@code false} if the ring buffer is full or if the event is logged by the background
+     *         thread itself, then the event must be appended by the caller.
+     */
+    boolean publish(final Logger logger, final Level level, final long timeStamp,
+        final String threadName, final Object message, final Object arg1, final Object arg2,
+        final int nbArgs) {
+      if (Thread.currentThread() == writer) {
+        return false;
+      }
+      long seq;
+      do {
+        seq = claimed.get();
+        if (seq - consumed >= slots.length) {
+          overflows.incrementAndGet();
+          return false;
+        }
+      } while (!claimed.compareAndSet(seq, seq + 1));
+      Slot slot = slots[(int) seq & mask];
+      slot.logger = logger;
+      slot.level = level;
+      slot.timeStamp = timeStamp;
+      slot.threadName = threadName;
+      slot.message = message;
+      slot.arg1 = arg1;
+      slot.arg2 = arg2;
+      slot.nbArgs = nbArgs;
+      slot.sequence = seq;
+      if (parked) {
+        LockSupport.unpark(writer);
+      }
+      return true;
+    }
+
+    /**
+     * appends the events in the order of their sequence numbers.
+     */
+    @Override
+    public void run() {
+      long next = 0;
+      while (true) {
+        Slot slot = slots[(int) next & mask];
+        if (slot.sequence != next) {
+          parked = true;
+          if (slot.sequence != next) {
+            LockSupport.parkNanos(this, PARK);
+          }
+          parked = false;
+          continue;
+        }
+        try {
+          append(slot.logger, slot.level, slot.timeStamp, slot.threadName, slot.message,
+              slot.arg1, slot.arg2, slot.nbArgs);
+        } catch (RuntimeException e) {
+          e.printStackTrace();
+        }
+        slot.logger = null;
+        slot.message = null;
+        slot.arg1 = null;
+        slot.arg2 = null;
+        slot.threadName = null;
+        next++;
+        consumed = next;
+      }
+    }
+
+    /**
+     * waits until the events published have been appended, at most during a timeout.
+     *
+     * @param timeout
+     *          the timeout in milliseconds.
+     * @return {@code true} if all the events published have been appended.
+     */
+    boolean flush(final long timeout) {
+      long target = claimed.get();
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      while (consumed < target) {
+        if (System.nanoTime() - deadline > 0) {
+          return false;
+        }
+        LockSupport.unpark(writer);
+        Thread.yield();
+      }
+      return true;
+    }
+  }
+}
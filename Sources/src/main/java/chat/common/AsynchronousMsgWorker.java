@@ -0,0 +1,328 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines a message worker on top of an asynchronous socket channel (NIO.2). The frames
+ * are the same as the ones of the class {@link FullDuplexMsgWorker}. The reads and the writes are
+ * started by the worker and completed by the threads of the asynchronous channel group of the
+ * channel, which call the completion handlers:
+ * <ul>
+ * <li>the reception of a message is notified to a {@link MsgReceiver}, and the read of the next
+ * message is started when the receiver returns, so that the messages of a connection are treated in
+ * order;</li>
+ * <li>the messages to send are queued in an {@link OutboundQueue}, and only one write is pending at
+ * a time, the control lane first.</li>
+ * </ul>
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class AsynchronousMsgWorker implements MsgWorker {
+
+  /**
+   * the asynchronous socket channel.
+   */
+  private final AsynchronousSocketChannel rwChan;
+  /**
+   * the receiver of the messages.
+   */
+  private final MsgReceiver receiver;
+  /**
+   * the buffer of the header of the message being received.
+   */
+  private final ByteBuffer inHeader;
+  /**
+   * the buffer of the body of the message being received.
+   */
+  private ByteBuffer inBody;
+  /**
+   * the type, identity and sequence number of the message being received.
+   */
+  private int inType, inIdentity, inSeqNumber;
+  /**
+   * the number of bytes of the extension of the header at the beginning of the body buffer of the
+   * message being received, zero for a basic header.
+   */
+  private int inExtension;
+  /**
+   * the outbound queues of frames.
+   */
+  private final OutboundQueue outQueue;
+  /**
+   * the counters of the connection.
+   */
+  private final ConnectionMetrics metrics;
+  /**
+   * the frame being written, or {@code null} when no write is pending.
+   */
+  private volatile ByteBuffer[] outCurrent;
+  /**
+   * states whether the receiver has been told that the connection is closed.
+   */
+  private boolean closedNotified;
+  /**
+   * the completion handler of the reads of headers.
+   */
+  private final CompletionHandler<Integer, Void> headerHandler = new CompletionHandler<Integer,
+      Void>() {
+    @Override
+    public void completed(final Integer result, final Void attachment) {
+      if (result < 0) {
+        closeAndNotify();
+        return;
+      }
+      if (inHeader.hasRemaining()) {
+        rwChan.read(inHeader, null, this);
+        return;
+      }
+      inHeader.flip();
+      inType = inHeader.getInt();
+      inIdentity = inHeader.getInt();
+      inSeqNumber = inHeader.getInt();
+      int inSize = inHeader.getInt();
+      if (inSize < 0) {
+        COMM.warn("invalid message size ({})", inSize);
+        closeAndNotify();
+        return;
+      }
+      inExtension = (inType & FullDuplexMsgWorker.EXTENDED_HEADER) != 0
+          ? FullDuplexMsgWorker.EXTENSION_BYTES : 0;
+      inType &= ~FullDuplexMsgWorker.EXTENDED_HEADER;
+      inBody = ByteBuffer.allocate(inExtension + inSize);
+      rwChan.read(inBody, null, bodyHandler);
+    }
+
+    @Override
+    public void failed(final Throwable exc, final Void attachment) {
+      readFailed(exc);
+    }
+  };
+  /**
+   * the completion handler of the reads of bodies.
+   */
+  private final CompletionHandler<Integer, Void> bodyHandler = new CompletionHandler<Integer,
+      Void>() {
+    @Override
+    public void completed(final Integer result, final Void attachment) {
+      if (result < 0) {
+        closeAndNotify();
+        return;
+      }
+      if (inBody.hasRemaining()) {
+        rwChan.read(inBody, null, this);
+        return;
+      }
+      metrics.frameIn(FullDuplexMsgWorker.HEADER_BYTES + inBody.capacity());
+      long originTime = UNTRACED;
+      int hops = 0;
+      if (inExtension > 0) {
+        originTime = inBody.getLong(0);
+        hops = inBody.getInt(Long.BYTES);
+      }
+      Serializable msg;
+      try {
+        msg = FullDuplexMsgWorker.deserialize(inBody.array(), inExtension,
+            inBody.capacity() - inExtension);
+      } catch (IOException e) {
+        metrics.decodeError();
+        COMM.error(e.getLocalizedMessage());
+        startReading();
+        return;
+      }
+      if (msg == null) {
+        metrics.decodeError();
+      }
+      try {
+        receiver.received(AsynchronousMsgWorker.this, inType, inIdentity, inSeqNumber,
+            originTime, hops, msg);
+      } catch (IOException e) {
+        COMM.error(e.getLocalizedMessage());
+      }
+      startReading();
+    }
+
+    @Override
+    public void failed(final Throwable exc, final Void attachment) {
+      readFailed(exc);
+    }
+  };
+  /**
+   * the completion handler of the writes.
+   */
+  private final CompletionHandler<Long, Void> writeHandler = new CompletionHandler<Long,
+      Void>() {
+    @Override
+    public void completed(final Long result, final Void attachment) {
+      synchronized (AsynchronousMsgWorker.this) {
+        if (!outCurrent[outCurrent.length - 1].hasRemaining()) {
+          outCurrent = outQueue.poll();
+        }
+        if (outCurrent != null) {
+          rwChan.write(outCurrent, 0, outCurrent.length, 0, TimeUnit.MILLISECONDS, null, this);
+        }
+      }
+    }
+
+    @Override
+    public void failed(final Throwable exc, final Void attachment) {
+      if (LOG_ON && COMM.isDebugEnabled()) {
+        COMM.debug("write failed: {}", exc.getLocalizedMessage());
+      }
+      closeAndNotify();
+    }
+  };
+
+  /**
+   * constructs a message worker on a connected channel. The reads start with the method
+   * {@link #startReading()}.
+   *
+   * @param channel
+   *          the connected channel.
+   * @param receiver
+   *          the receiver of the messages.
+   */
+  public AsynchronousMsgWorker(final AsynchronousSocketChannel channel,
+      final MsgReceiver receiver) {
+    if (channel == null || receiver == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + channel + ", "
+          + receiver + ")");
+    }
+    rwChan = channel;
+    this.receiver = receiver;
+    inHeader = ByteBuffer.allocate(FullDuplexMsgWorker.HEADER_BYTES);
+    outQueue = new OutboundQueue();
+    metrics = new ConnectionMetrics(this::getOutQueueLength);
+    assert invariant();
+  }
+
+  /**
+   * checks the invariant of the class.
+   *
+   * @return a boolean stating whether the invariant is maintained.
+   */
+  private boolean invariant() {
+    return rwChan != null && receiver != null && inHeader != null && outQueue != null;
+  }
+
+  /**
+   * starts the read of the next message.
+   */
+  public void startReading() {
+    inHeader.clear();
+    try {
+      rwChan.read(inHeader, null, headerHandler);
+    } catch (RuntimeException e) {
+      readFailed(e);
+    }
+  }
+
+  @Override
+  public long sendMsg(final int type, final int identity, final int seqNumber,
+      final long originTime, final int hops, final Serializable s) throws IOException {
+    ByteBuffer[] frame = FullDuplexMsgWorker.encode(type, identity, seqNumber, originTime, hops,
+        s);
+    int headerBytes = frame[0].remaining();
+    int size = frame[1].remaining();
+    synchronized (this) {
+      if (!outQueue.add(type, frame)) {
+        metrics.frameDropped();
+        return 0;
+      }
+      if (outCurrent == null) {
+        outCurrent = outQueue.poll();
+        try {
+          rwChan.write(outCurrent, 0, outCurrent.length, 0, TimeUnit.MILLISECONDS, null,
+              writeHandler);
+        } catch (RuntimeException e) {
+          outCurrent = null;
+          throw new IOException("cannot write to the channel", e);
+        }
+      }
+    }
+    metrics.frameOut(headerBytes + size);
+    return size;
+  }
+
+  @Override
+  public void close() throws IOException {
+    rwChan.close();
+  }
+
+  @Override
+  public int getOutQueueLength() {
+    return outQueue.size() + (outCurrent == null ? 0 : 1);
+  }
+
+  @Override
+  public LatencyHistogram getQueueWait(final PriorityLane lane) {
+    return outQueue.getQueueWait(lane);
+  }
+
+  @Override
+  public ConnectionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * treats the failure of a read.
+   *
+   * @param exc
+   *          the cause of the failure.
+   */
+  private void readFailed(final Throwable exc) {
+    if (rwChan.isOpen()) {
+      COMM.warn(exc.getLocalizedMessage());
+    }
+    closeAndNotify();
+  }
+
+  /**
+   * closes the channel and notifies the receiver, once.
+   */
+  private void closeAndNotify() {
+    synchronized (this) {
+      if (closedNotified) {
+        return;
+      }
+      closedNotified = true;
+    }
+    try {
+      close();
+    } catch (IOException e) {
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("problem when closing the connection");
+      }
+    }
+    receiver.closed(this);
+  }
+}
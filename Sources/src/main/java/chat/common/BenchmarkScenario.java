@@ -0,0 +1,636 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import static chat.common.Log.GEN;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import chat.client.LoadGenerator;
+import chat.server.Server;
+
+/**
+ * This class defines the end-to-end benchmark of the chat over real sockets on the loopback
+ * interface. For every engine of the servers to compare, the benchmark starts the servers in the
+ * chosen {@link Topology}, attaches logical clients to every server with a {@link LoadGenerator},
+ * drives a fixed offered load, and measures:
+ * <ul>
+ * <li>the throughputs of the sendings and of the deliveries, and the delivery ratio;</li>
+ * <li>the percentiles of the end-to-end latency (scheduled sending to causal delivery);</li>
+ * <li>the ratio of the client messages received by the servers from their neighbours that are
+ * duplicates, which depends on the cycles of the topology;</li>
+ * <li>the CPU time and the heap of the process, the CPU time of the load generator being given
+ * apart, since the servers and the load generator run in the same process;</li>
+ * <li>the memory per connection: the heap after a collection and the resident set size of the
+ * process (on Linux) are measured once the servers are started and once all the clients are
+ * connected, with the number of threads; the client side of the connections, in the load
+ * generator, is the same for every engine. Idle clients may be added to the logical clients (see
+ * {@link LoadGenerator}), e.g. 10000 idle clients and 1000 active ones to compare the footprint
+ * of the engines {@code selector} and {@code virtual}.</li>
+ * </ul>
+ * Every run appends a JSON object on one line to the output file, so that the results can be
+ * tracked over time.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class BenchmarkScenario extends Scenario {
+  /**
+   * the waiting duration in milliseconds after the start of a server.
+   */
+  private static final long WAIT = 300;
+  /**
+   * the maximum number of servers, whose port numbers must not overlap.
+   */
+  private static final int MAX_SERVERS = 100;
+  /**
+   * the prefix of the names of the threads of the load generator.
+   */
+  private static final String GENERATOR_THREADS = "chat-loadgen-";
+  /**
+   * the number of nanoseconds per second.
+   */
+  private static final double NANOS_PER_SECOND = 1e9;
+  /**
+   * the number of nanoseconds per microsecond.
+   */
+  private static final double NANOS_PER_MICRO = 1e3;
+  /**
+   * the number of bytes per megabyte.
+   */
+  private static final double BYTES_PER_MB = 1024 * 1024;
+  /**
+   * the number of milliseconds per second.
+   */
+  private static final double MILLIS_PER_SECOND = 1e3;
+  /**
+   * the number of bytes per kilobyte.
+   */
+  private static final double BYTES_PER_KB = 1024;
+  /**
+   * the file of the status of the process, on Linux.
+   */
+  private static final String PROC_STATUS = "/proc/self/status";
+  /**
+   * the line of the resident set size in the status of the process.
+   */
+  private static final String VM_RSS = "VmRSS:";
+  /**
+   * the engines of the servers to compare.
+   */
+  private final List<String> engines;
+  /**
+   * the topology of the servers.
+   */
+  private final Topology topology;
+  /**
+   * the number of servers.
+   */
+  private final int nbServers;
+  /**
+   * the number of clients per server.
+   */
+  private final int clientsPerServer;
+  /**
+   * the number of clients that send messages.
+   */
+  private final int nbSenders;
+  /**
+   * the number of idle clients.
+   */
+  private final int nbIdle;
+  /**
+   * the number of reactors of the load generator.
+   */
+  private final int nbReactors;
+  /**
+   * the offered load in messages per second.
+   */
+  private final double rate;
+  /**
+   * the size of the payload of the messages in characters.
+   */
+  private final int payloadSize;
+  /**
+   * the duration of the sending in seconds.
+   */
+  private final double duration;
+  /**
+   * the maximum duration of the wait for the deliveries in seconds.
+   */
+  private final double drain;
+  /**
+   * the seed of the random topology.
+   */
+  private final long seed;
+  /**
+   * the probability of the links that are added to the spanning tree of the random topology.
+   */
+  private final double extraLinkProbability;
+  /**
+   * the file to which the results are appended.
+   */
+  private final String output;
+  /**
+   * the results of the runs, as JSON objects.
+   */
+  private final List<String> results = new ArrayList<>();
+
+  /**
+   * constructs a benchmark without idle client.
+   *
+   * @param engines
+   *          the engines of the servers to compare (see {@link Server#ENGINE_PROPERTY}).
+   * @param topology
+   *          the topology of the servers.
+   * @param nbServers
+   *          the number of servers.
+   * @param clientsPerServer
+   *          the number of clients per server.
+   * @param nbSenders
+   *          the number of clients that send messages.
+   * @param nbReactors
+   *          the number of reactors of the load generator.
+   * @param rate
+   *          the offered load in messages per second.
+   * @param payloadSize
+   *          the size of the payload of the messages in characters.
+   * @param duration
+   *          the duration of the sending in seconds.
+   * @param drain
+   *          the maximum duration of the wait for the deliveries in seconds.
+   * @param seed
+   *          the seed of the random topology.
+   * @param extraLinkProbability
+   *          the probability of the links added to the spanning tree of the random topology.
+   * @param output
+   *          the file to which the results are appended, or {@code null}.
+   */
+  public BenchmarkScenario(final List<String> engines, final Topology topology,
+      final int nbServers, final int clientsPerServer, final int nbSenders, final int nbReactors,
+      final double rate, final int payloadSize, final double duration, final double drain,
+      final long seed, final double extraLinkProbability, final String output) {
+    this(engines, topology, nbServers, clientsPerServer, nbSenders, 0, nbReactors, rate,
+        payloadSize, duration, drain, seed, extraLinkProbability, output);
+  }
+
+  /**
+   * constructs a benchmark.
+   *
+   * @param engines
+   *          the engines of the servers to compare (see {@link Server#ENGINE_PROPERTY}).
+   * @param topology
+   *          the topology of the servers.
+   * @param nbServers
+   *          the number of servers.
+   * @param clientsPerServer
+   *          the number of clients per server.
+   * @param nbSenders
+   *          the number of clients that send messages.
+   * @param nbIdle
+   *          the number of idle clients, spread over the servers, which connect after the other
+   *          clients and are not limited by {@link Server#OFFSET_ID_CLIENT}.
+   * @param nbReactors
+   *          the number of reactors of the load generator.
+   * @param rate
+   *          the offered load in messages per second.
+   * @param payloadSize
+   *          the size of the payload of the messages in characters.
+   * @param duration
+   *          the duration of the sending in seconds.
+   * @param drain
+   *          the maximum duration of the wait for the deliveries in seconds.
+   * @param seed
+   *          the seed of the random topology.
+   * @param extraLinkProbability
+   *          the probability of the links added to the spanning tree of the random topology.
+   * @param output
+   *          the file to which the results are appended, or {@code null}.
+   */
+  public BenchmarkScenario(final List<String> engines, final Topology topology,
+      final int nbServers, final int clientsPerServer, final int nbSenders, final int nbIdle,
+      final int nbReactors, final double rate, final int payloadSize, final double duration,
+      final double drain, final long seed, final double extraLinkProbability,
+      final String output) {
+    if (engines == null || engines.isEmpty() || topology == null) {
+      throw new IllegalArgumentException("no engine or no topology");
+    }
+    if (nbServers <= 0 || nbServers >= MAX_SERVERS) {
+      throw new IllegalArgumentException("invalid number of servers (" + nbServers + ")");
+    }
+    if (clientsPerServer <= 0 || clientsPerServer >= Server.OFFSET_ID_CLIENT) {
+      throw new IllegalArgumentException("invalid number of clients per server ("
+          + clientsPerServer + "), the identities of the clients would overlap");
+    }
+    if (nbIdle < 0) {
+      throw new IllegalArgumentException("invalid number of idle clients (" + nbIdle + ")");
+    }
+    this.engines = new ArrayList<>(engines);
+    this.topology = topology;
+    this.nbServers = nbServers;
+    this.clientsPerServer = clientsPerServer;
+    this.nbSenders = nbSenders;
+    this.nbIdle = nbIdle;
+    this.nbReactors = nbReactors;
+    this.rate = rate;
+    this.payloadSize = payloadSize;
+    this.duration = duration;
+    this.drain = drain;
+    this.seed = seed;
+    this.extraLinkProbability = extraLinkProbability;
+    this.output = output;
+  }
+
+  /**
+   * gets the results of the runs.
+   *
+   * @return the JSON objects, one per run.
+   */
+  public List<String> getResults() {
+    return results;
+  }
+
+  @Override
+  public void constructAndRun() throws Exception {
+    for (String engine : engines) {
+      String result = run(engine);
+      if (result != null) {
+        results.add(result);
+        System.out.println(result);
+        if (output != null) {
+          try (Writer writer = new OutputStreamWriter(new FileOutputStream(output, true),
+              StandardCharsets.UTF_8)) {
+            writer.write(result);
+            writer.write(System.lineSeparator());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * runs the benchmark with an engine.
+   *
+   * @param engine
+   *          the name of the engine.
+   * @return the result as a JSON object, or {@code null} when the engine is not available.
+   * @throws Exception
+   *           the exception thrown when the run fails.
+   */
+  private String run(final String engine) throws Exception {
+    List<List<Integer>> connections = topology.connections(nbServers, new Random(seed),
+        extraLinkProbability);
+    List<Server> servers = new ArrayList<>();
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    int nbLinks = 0;
+    try {
+      for (int i = 0; i < nbServers; i++) {
+        StringBuilder args = new StringBuilder(Integer.toString(i));
+        for (Integer j : connections.get(i)) {
+          args.append(" localhost ").append(j);
+          nbLinks++;
+        }
+        servers.add(instanciateAServer(args.toString(), engine));
+        addresses.add(new InetSocketAddress("localhost", Server.BASE_PORTNB_LISTEN_CLIENT + i));
+        sleep(WAIT);
+      }
+    } catch (IllegalStateException e) {
+      GEN.warn("engine " + engine + " not available: " + e.getLocalizedMessage());
+      stop(servers);
+      return null;
+    }
+    LoadGenerator generator = new LoadGenerator(addresses, nbServers * clientsPerServer,
+        Math.min(nbSenders, nbServers * clientsPerServer), nbIdle, nbReactors, rate,
+        payloadSize);
+    try {
+      System.gc();
+      Measures started = new Measures();
+      generator.connect((long) (drain * MILLIS_PER_SECOND));
+      System.gc();
+      Measures before = new Measures();
+      generator.runLoad((long) (duration * MILLIS_PER_SECOND),
+          (long) (drain * MILLIS_PER_SECOND));
+      Measures after = new Measures();
+      long fromServers = 0;
+      long duplicates = 0;
+      for (Server server : servers) {
+        fromServers += server.getMetrics().getClientMsgsFromServers();
+        duplicates += server.getMetrics().getDuplicateClientMsgs();
+      }
+      return toJson(engine, nbLinks, generator, fromServers, duplicates, started, before, after);
+    } finally {
+      generator.close();
+      stop(servers);
+    }
+  }
+
+  /**
+   * stops servers.
+   *
+   * @param servers
+   *          the servers.
+   * @throws InterruptedException
+   *           the exception thrown when the calling thread is interrupted.
+   */
+  private void stop(final List<Server> servers) throws InterruptedException {
+    for (Server server : servers) {
+      server.stopThreadReadMessagesFromNetwork();
+    }
+  }
+
+  /**
+   * builds the JSON object of the result of a run.
+   *
+   * @param engine
+   *          the name of the engine.
+   * @param nbLinks
+   *          the number of links between the servers.
+   * @param generator
+   *          the load generator.
+   * @param fromServers
+   *          the number of client messages received by the servers from their neighbours.
+   * @param duplicates
+   *          the number of these messages that are duplicates.
+   * @param started
+   *          the measures of the process once the servers are started, before the connections.
+   * @param before
+   *          the measures of the process before the run, once all the clients are connected.
+   * @param after
+   *          the measures of the process after the run.
+   * @return the JSON object.
+   */
+  private String toJson(final String engine, final int nbLinks, final LoadGenerator generator,
+      final long fromServers, final long duplicates, final Measures started,
+      final Measures before, final Measures after) {
+    LatencyHistogram latency = generator.getLatency();
+    double sendSeconds = generator.getSendDuration() / NANOS_PER_SECOND;
+    double deliverySeconds = generator.getDeliveryDuration() / NANOS_PER_SECOND;
+    double wallSeconds = (after.wallTime - before.wallTime) / NANOS_PER_SECOND;
+    double cpuSeconds = (after.processCpuTime - before.processCpuTime) / NANOS_PER_SECOND;
+    double generatorCpuSeconds = (after.generatorCpuTime - before.generatorCpuTime)
+        / NANOS_PER_SECOND;
+    long expected = generator.getNbExpectedDeliveries();
+    int connections = nbServers * clientsPerServer + nbIdle;
+    return String.format(Locale.ROOT, "{\"timestamp\":\"%s\",\"engine\":\"%s\","
+        + "\"topology\":\"%s\",\"servers\":%d,\"links\":%d,\"clientsPerServer\":%d,"
+        + "\"senders\":%d,\"idle\":%d,\"offeredRate\":%.1f,\"payload\":%d,\"durationSeconds\":%.3f,"
+        + "\"sent\":%d,\"delivered\":%d,\"expectedDeliveries\":%d,\"deliveryRatio\":%.4f,"
+        + "\"sendThroughput\":%.1f,\"deliveryThroughput\":%.1f,"
+        + "\"latencyMicros\":{\"mean\":%.1f,\"p50\":%.1f,\"p99\":%.1f,\"p999\":%.1f,"
+        + "\"max\":%.1f},"
+        + "\"interServer\":{\"received\":%d,\"duplicates\":%d,\"duplicateRatio\":%.4f},"
+        + "\"process\":{\"cpuSeconds\":%.3f,\"cpuCores\":%.2f,\"generatorCpuSeconds\":%.3f,"
+        + "\"serverCpuSeconds\":%.3f,\"gcCount\":%d,\"gcMillis\":%d,\"heapUsedMB\":%.1f,"
+        + "\"heapPeakMB\":%.1f},"
+        + "\"memory\":{\"connections\":%d,\"heapConnectedMB\":%.1f,\"rssConnectedMB\":%.1f,"
+        + "\"heapPerConnectionKB\":%.2f,\"rssPerConnectionKB\":%.2f,\"threads\":%d}}",
+        Instant.now(), engine, topology, nbServers, nbLinks, clientsPerServer,
+        Math.min(nbSenders, nbServers * clientsPerServer), nbIdle, rate, payloadSize, sendSeconds,
+        generator.getNbSent(), generator.getNbDelivered(), expected,
+        expected == 0 ? 1.0 : (double) generator.getNbDelivered() / expected,
+        generator.getNbSent() / sendSeconds, generator.getNbDelivered() / deliverySeconds,
+        latency.getMean() / NANOS_PER_MICRO, micros(latency, 50), micros(latency, 99),
+        micros(latency, 99.9), latency.getMax() / NANOS_PER_MICRO,
+        fromServers, duplicates, fromServers == 0 ? 0.0 : (double) duplicates / fromServers,
+        cpuSeconds, cpuSeconds / wallSeconds, generatorCpuSeconds,
+        cpuSeconds - generatorCpuSeconds, after.gcCount - before.gcCount,
+        after.gcMillis - before.gcMillis, after.heapUsed / BYTES_PER_MB,
+        after.heapPeak / BYTES_PER_MB, connections, before.heapUsed / BYTES_PER_MB,
+        before.rss / BYTES_PER_MB,
+        (before.heapUsed - started.heapUsed) / BYTES_PER_KB / connections,
+        before.rss < 0 || started.rss < 0 ? -1.0
+            : (before.rss - started.rss) / BYTES_PER_KB / connections,
+        before.threadCount);
+  }
+
+  /**
+   * gets the resident set size of the process.
+   *
+   * @return the size in bytes, or {@code -1} when it is not available, e.g. on another system
+   *         than Linux.
+   */
+  private static long residentSetSize() {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(PROC_STATUS), StandardCharsets.US_ASCII))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(VM_RSS)) {
+          String[] fields = line.substring(VM_RSS.length()).trim().split("\\s+");
+          return (long) (Long.parseLong(fields[0]) * BYTES_PER_KB);
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      return -1;
+    }
+    return -1;
+  }
+
+  /**
+   * gets a percentile of a latency histogram in microseconds.
+   *
+   * @param latency
+   *          the histogram in nanoseconds.
+   * @param percentile
+   *          the percentile.
+   * @return the latency.
+   */
+  private static double micros(final LatencyHistogram latency, final double percentile) {
+    return latency.getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+  }
+
+  /**
+   * This class defines the measures of the process at an instant. The construction resets the
+   * peak usages of the heap.
+   */
+  private static final class Measures {
+    /**
+     * the instant of the measures in nanoseconds.
+     */
+    private final long wallTime = System.nanoTime();
+    /**
+     * the CPU time of the process in nanoseconds, or {@code 0} when not available.
+     */
+    private final long processCpuTime;
+    /**
+     * the CPU time of the threads of the load generator in nanoseconds.
+     */
+    private long generatorCpuTime;
+    /**
+     * the number of collections.
+     */
+    private long gcCount;
+    /**
+     * the duration of the collections in milliseconds.
+     */
+    private long gcMillis;
+    /**
+     * the used heap in bytes.
+     */
+    private final long heapUsed;
+    /**
+     * the peak usage of the heap since the previous measures, in bytes.
+     */
+    private long heapPeak;
+    /**
+     * the resident set size of the process in bytes, or {@code -1} when not available.
+     */
+    private final long rss = residentSetSize();
+    /**
+     * the number of live platform threads.
+     */
+    private final int threadCount = ManagementFactory.getThreadMXBean().getThreadCount();
+
+    /**
+     * takes the measures.
+     */
+    private Measures() {
+      OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+      processCpuTime = os instanceof com.sun.management.OperatingSystemMXBean
+          ? ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() : 0;
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+        if (thread.getName().startsWith(GENERATOR_THREADS)) {
+          generatorCpuTime += Math.max(0, threads.getThreadCpuTime(thread.getId()));
+        }
+      }
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        gcCount += Math.max(0, gc.getCollectionCount());
+        gcMillis += Math.max(0, gc.getCollectionTime());
+      }
+      heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          heapPeak += pool.getPeakUsage().getUsed();
+          pool.resetPeakUsage();
+        }
+      }
+    }
+  }
+
+  /**
+   * The method main of the benchmark. The options are, with their default values:
+   * {@code -engines selector} (comma separated list, e.g. {@code selector,async,virtual}),
+   * {@code -topology ring} ({@code line}, {@code ring}, {@code star}, {@code mesh}, {@code tree}
+   * or {@code random}), {@code -servers 4}, {@code -clients 10} (per server),
+   * {@code -senders <all>}, {@code -idle 0} (in total), {@code -reactors 1}, {@code -rate 100}
+   * (messages per second), {@code -payload 64} (characters), {@code -duration 10} (seconds),
+   * {@code -drain 10} (seconds), {@code -seed 0}, {@code -extra 0.2} (probability of the extra
+   * links of the random topology) and {@code -output benchmark-results.json}.
+   *
+   * @param args
+   *          the command line arguments.
+   * @throws Exception
+   *           the exception thrown when the benchmark fails.
+   */
+  public static void main(final String[] args) throws Exception {
+    List<String> engines = Arrays.asList(Server.SELECTOR_ENGINE);
+    Topology topology = Topology.RING;
+    int servers = 4;
+    int clients = 10;
+    int senders = Integer.MAX_VALUE;
+    int idle = 0;
+    int reactors = 1;
+    double rate = 100;
+    int payload = 64;
+    double duration = 10;
+    double drain = 10;
+    long seed = 0;
+    double extra = 0.2;
+    String output = "benchmark-results.json";
+    for (int i = 0; i + 1 < args.length; i = i + 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "-engines":
+          engines = Arrays.asList(value.split(","));
+          break;
+        case "-topology":
+          topology = Topology.of(value);
+          break;
+        case "-servers":
+          servers = Integer.parseInt(value);
+          break;
+        case "-clients":
+          clients = Integer.parseInt(value);
+          break;
+        case "-senders":
+          senders = Integer.parseInt(value);
+          break;
+        case "-idle":
+          idle = Integer.parseInt(value);
+          break;
+        case "-reactors":
+          reactors = Integer.parseInt(value);
+          break;
+        case "-rate":
+          rate = Double.parseDouble(value);
+          break;
+        case "-payload":
+          payload = Integer.parseInt(value);
+          break;
+        case "-duration":
+          duration = Double.parseDouble(value);
+          break;
+        case "-drain":
+          drain = Double.parseDouble(value);
+          break;
+        case "-seed":
+          seed = Long.parseLong(value);
+          break;
+        case "-extra":
+          extra = Double.parseDouble(value);
+          break;
+        case "-output":
+          output = value;
+          break;
+        default:
+          GEN.fatal("usage: java -cp <classpath> chat.common.BenchmarkScenario"
+              + " [-engines e1,e2] [-topology line|ring|star|mesh|tree|random] [-servers k]"
+              + " [-clients m] [-senders n] [-idle n] [-reactors n] [-rate msg/s] [-payload chars]"
+              + " [-duration s] [-drain s] [-seed n] [-extra p] [-output file]");
+          return;
+      }
+    }
+    new BenchmarkScenario(engines, topology, servers, clients, senders, idle, reactors, rate,
+        payload, duration, drain, seed, extra, output).constructAndRun();
+    System.exit(0);
+  }
+}
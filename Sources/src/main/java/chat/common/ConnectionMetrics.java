@@ -0,0 +1,193 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * This class defines the counters of a connection, which are kept by its message worker (see
+ * {@link MsgWorker#getMetrics()}). The counters are {@link LongAdder}s, so that the threads sending
+ * on the same connection do not contend on a single variable, and so that counting allocates
+ * nothing. The depth of the outbound queue is read from the message worker when asked. All the
+ * getters read without locking, so that the console commands of the server (see
+ * {@link chat.server.AdminCommands}) never stall the threads of the engine.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class ConnectionMetrics implements ConnectionMetricsMXBean {
+  /**
+   * the number of bytes received.
+   */
+  private final LongAdder bytesIn = new LongAdder();
+  /**
+   * the number of bytes sent.
+   */
+  private final LongAdder bytesOut = new LongAdder();
+  /**
+   * the number of frames received.
+   */
+  private final LongAdder framesIn = new LongAdder();
+  /**
+   * the number of frames sent.
+   */
+  private final LongAdder framesOut = new LongAdder();
+  /**
+   * the number of frames whose body could not be deserialised.
+   */
+  private final LongAdder decodeErrors = new LongAdder();
+  /**
+   * the number of frames dropped because the lane {@link PriorityLane#DATA} of the outbound queue
+   * was full.
+   */
+  private final LongAdder droppedFrames = new LongAdder();
+  /**
+   * the depth of the outbound queue of the connection.
+   */
+  private final IntSupplier outQueueLength;
+  /**
+   * the date (see {@link System#nanoTime()}) of the creation of the counters, that is of the
+   * connection.
+   */
+  private final long connectedAt = System.nanoTime();
+  /**
+   * the round-trip time estimated on the connection in nanoseconds, or {@code -1}.
+   */
+  private volatile long roundTripTime = -1;
+
+  /**
+   * constructs the counters of a connection.
+   *
+   * @param outQueueLength
+   *          the supplier of the depth of the outbound queue of the connection.
+   */
+  public ConnectionMetrics(final IntSupplier outQueueLength) {
+    if (outQueueLength == null) {
+      throw new IllegalArgumentException("no supplier of the depth of the outbound queue");
+    }
+    this.outQueueLength = outQueueLength;
+  }
+
+  /**
+   * counts a frame received.
+   *
+   * @param bytes
+   *          the size of the frame, header included.
+   */
+  public void frameIn(final long bytes) {
+    framesIn.increment();
+    bytesIn.add(bytes);
+  }
+
+  /**
+   * counts a frame sent.
+   *
+   * @param bytes
+   *          the size of the frame, header included.
+   */
+  public void frameOut(final long bytes) {
+    framesOut.increment();
+    bytesOut.add(bytes);
+  }
+
+  /**
+   * counts a frame whose body could not be deserialised.
+   */
+  public void decodeError() {
+    decodeErrors.increment();
+  }
+
+  /**
+   * counts a frame dropped because the lane {@link PriorityLane#DATA} of the outbound queue was
+   * full (see {@link OutboundQueue}).
+   */
+  public void frameDropped() {
+    droppedFrames.increment();
+  }
+
+  /**
+   * sets the round-trip time estimated on the connection, e.g. by the heartbeats of the server.
+   *
+   * @param nanos
+   *          the round-trip time in nanoseconds.
+   */
+  public void setRoundTripTime(final long nanos) {
+    roundTripTime = nanos;
+  }
+
+  /**
+   * gets the date of the creation of the counters, that is of the connection.
+   *
+   * @return the date in the time of {@link System#nanoTime()}.
+   */
+  public long getConnectedAt() {
+    return connectedAt;
+  }
+
+  @Override
+  public long getBytesIn() {
+    return bytesIn.sum();
+  }
+
+  @Override
+  public long getBytesOut() {
+    return bytesOut.sum();
+  }
+
+  @Override
+  public long getFramesIn() {
+    return framesIn.sum();
+  }
+
+  @Override
+  public long getFramesOut() {
+    return framesOut.sum();
+  }
+
+  @Override
+  public long getDecodeErrors() {
+    return decodeErrors.sum();
+  }
+
+  @Override
+  public long getDroppedFrames() {
+    return droppedFrames.sum();
+  }
+
+  @Override
+  public int getOutQueueLength() {
+    return outQueueLength.getAsInt();
+  }
+
+  @Override
+  public long getRoundTripTime() {
+    return roundTripTime;
+  }
+
+  @Override
+  public String toString() {
+    return "framesIn=" + getFramesIn() + " bytesIn=" + getBytesIn() + " framesOut="
+        + getFramesOut() + " bytesOut=" + getBytesOut() + " decodeErrors=" + getDecodeErrors()
+        + " droppedFrames=" + getDroppedFrames() + " outQueueLength=" + getOutQueueLength();
+  }
+}
@@ -0,0 +1,87 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+/**
+ * This interface defines the metrics of a connection that are published through JMX (see
+ * {@link ConnectionMetrics}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface ConnectionMetricsMXBean {
+  /**
+   * gets the number of bytes received, headers included.
+   *
+   * @return the number of bytes.
+   */
+  long getBytesIn();
+
+  /**
+   * gets the number of bytes sent, headers included.
+   *
+   * @return the number of bytes.
+   */
+  long getBytesOut();
+
+  /**
+   * gets the number of frames received.
+   *
+   * @return the number of frames.
+   */
+  long getFramesIn();
+
+  /**
+   * gets the number of frames sent.
+   *
+   * @return the number of frames.
+   */
+  long getFramesOut();
+
+  /**
+   * gets the number of frames received whose body could not be deserialised.
+   *
+   * @return the number of frames.
+   */
+  long getDecodeErrors();
+
+  /**
+   * gets the number of frames dropped because the outbound queue of the data messages was full.
+   *
+   * @return the number of frames.
+   */
+  long getDroppedFrames();
+
+  /**
+   * gets the number of frames waiting to be written.
+   *
+   * @return the number of frames.
+   */
+  int getOutQueueLength();
+
+  /**
+   * gets the round-trip time estimated on the connection, smoothed over the heartbeats.
+   *
+   * @return the round-trip time in nanoseconds, or {@code -1} when it has not been measured.
+   */
+  long getRoundTripTime();
+}
@@ -0,0 +1,63 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * This class defines the flight recorder event of the execution of the action of a message by the
+ * algorithms of a server or of a client (see
+ * {@link chat.server.algorithms.ListOfAlgorithms#execute} and
+ * {@link chat.client.algorithms.ListOfAlgorithms#execute}). The event is only recorded when its
+ * duration exceeds the threshold, 1 ms by default (see the settings {@code chat.jfc}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+@Name("chat.Dispatch")
+@Label("Dispatch")
+@Category({"Chat", "Algorithms" })
+@Description("Execution of the action of a message")
+@StackTrace(false)
+@Threshold("1 ms")
+public class DispatchEvent extends jdk.jfr.Event {
+  /**
+   * the identifier of the action.
+   */
+  @Label("Action")
+  public int actionId;
+  /**
+   * the class of the content of the message.
+   */
+  @Label("Content Class")
+  public Class<?> contentClass;
+  /**
+   * states whether the action is executed by a server.
+   */
+  @Label("Server")
+  public boolean server;
+}
@@ -0,0 +1,414 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import static chat.common.Log.GEN;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import chat.client.Client;
+import chat.server.Server;
+import chat.server.algorithms.Dissemination;
+
+/**
+ * This class defines the benchmark of the modes of dissemination of the client messages between
+ * the servers (see {@link Dissemination}). A run starts the servers of a {@link Topology} in an
+ * in-process network, so that the results are deterministic, attaches a client to every server,
+ * and lets the clients send messages in turn, at a fixed interval of virtual time. The anti-entropy
+ * of the gossip is run by all the servers at every period of virtual time. The run measures:
+ * <ul>
+ * <li>the number of messages and of bytes sent by the servers to their neighbours, from the first
+ * client message to the quiescence of the network, including the digests and the rumours sent
+ * again by the anti-entropy;</li>
+ * <li>the mean and the maximum of the time, in virtual time, from the sending of a message to its
+ * delivery by all the other clients;</li>
+ * <li>the duplicates received by the servers, the digests sent and the messages missed by the
+ * push of the gossip and repaired by the anti-entropy.</li>
+ * </ul>
+ * Every run appends a JSON object on one line to the output file, as {@link BenchmarkScenario}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class DisseminationBenchmark extends Scenario {
+  /**
+   * the maximum number of servers, whose port numbers must not overlap.
+   */
+  private static final int MAX_SERVERS = 100;
+  /**
+   * the maximum duration of the dissemination of a message in virtual time, in milliseconds.
+   */
+  private static final long TIMEOUT = 60_000;
+  /**
+   * the number of nanoseconds per microsecond.
+   */
+  private static final double NANOS_PER_MICRO = 1e3;
+  /**
+   * the mode of dissemination.
+   */
+  private final Dissemination mode;
+  /**
+   * the topology of the servers.
+   */
+  private final Topology topology;
+  /**
+   * the number of servers.
+   */
+  private final int nbServers;
+  /**
+   * the number of neighbours to which the gossip forwards a message.
+   */
+  private final int fanOut;
+  /**
+   * the number of client messages.
+   */
+  private final int nbMessages;
+  /**
+   * the interval between two client messages, in nanoseconds of virtual time.
+   */
+  private final long interval;
+  /**
+   * the period of the anti-entropy, in nanoseconds of virtual time.
+   */
+  private final long period;
+  /**
+   * the seed of the random topology and of the network.
+   */
+  private final long seed;
+  /**
+   * the servers of the run.
+   */
+  private final List<Server> servers = new ArrayList<>();
+  /**
+   * the clients of the run, one per server.
+   */
+  private final List<Client> clients = new ArrayList<>();
+  /**
+   * the number of links between the servers.
+   */
+  private int nbLinks;
+  /**
+   * whether the rounds of the anti-entropy are scheduled.
+   */
+  private boolean gossiping;
+  /**
+   * the result of the run, as a JSON object, or {@code null}.
+   */
+  private String result;
+
+  /**
+   * constructs a run of the benchmark.
+   *
+   * @param mode
+   *          the mode of dissemination.
+   * @param topology
+   *          the topology of the servers.
+   * @param nbServers
+   *          the number of servers.
+   * @param fanOut
+   *          the number of neighbours to which the gossip forwards a message.
+   * @param nbMessages
+   *          the number of client messages.
+   * @param interval
+   *          the interval between two client messages, in milliseconds of virtual time.
+   * @param period
+   *          the period of the anti-entropy, in milliseconds of virtual time.
+   * @param seed
+   *          the seed of the random topology and of the network.
+   */
+  public DisseminationBenchmark(final Dissemination mode, final Topology topology,
+      final int nbServers, final int fanOut, final int nbMessages, final long interval,
+      final long period, final long seed) {
+    super(new LoopbackNetwork(seed));
+    if (mode == null || topology == null) {
+      throw new IllegalArgumentException("no mode or no topology");
+    }
+    if (nbServers <= 1 || nbServers >= MAX_SERVERS) {
+      throw new IllegalArgumentException("invalid number of servers (" + nbServers + ")");
+    }
+    if (fanOut <= 0 || nbMessages <= 0 || interval < 0 || period <= 0) {
+      throw new IllegalArgumentException("invalid fan-out (" + fanOut + "), number of messages ("
+          + nbMessages + "), interval (" + interval + ") or period (" + period + ")");
+    }
+    this.mode = mode;
+    this.topology = topology;
+    this.nbServers = nbServers;
+    this.fanOut = fanOut;
+    this.nbMessages = nbMessages;
+    this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+    this.period = TimeUnit.MILLISECONDS.toNanos(period);
+    this.seed = seed;
+  }
+
+  /**
+   * gets the result of the run.
+   *
+   * @return the JSON object, or {@code null} before the run.
+   */
+  public String getResult() {
+    return result;
+  }
+
+  /**
+   * gets the servers of the run.
+   *
+   * @return the servers.
+   */
+  public List<Server> getServers() {
+    return servers;
+  }
+
+  @Override
+  public void constructAndRun() throws Exception {
+    List<List<Integer>> connections = topology.connections(nbServers, new Random(seed), 0.2);
+    for (int i = 0; i < nbServers; i++) {
+      StringBuilder args = new StringBuilder(Integer.toString(i));
+      for (Integer j : connections.get(i)) {
+        args.append(" localhost ").append(j);
+        nbLinks++;
+      }
+      Server server = instanciateAServer(args.toString());
+      server.setDissemination(mode);
+      server.getState().setGossipFanOut(fanOut);
+      servers.add(server);
+    }
+    getNetwork().runUntilQuiescent();
+    for (int i = 0; i < nbServers; i++) {
+      clients.add(instanciateAClient(Server.BASE_PORTNB_LISTEN_CLIENT + i));
+    }
+    getNetwork().runUntilQuiescent();
+    if (mode == Dissemination.GOSSIP) {
+      gossiping = true;
+      getNetwork().schedule(period, this::antiEntropy);
+    }
+    long[] before = sent();
+    int[] expected = new int[nbServers];
+    long totalLatency = 0;
+    long maxLatency = 0;
+    for (int m = 0; m < nbMessages; m++) {
+      int sender = m % nbServers;
+      emulateAnInputLineFromTheConsoleForAClient(clients.get(sender), "message " + m);
+      for (int i = 0; i < nbServers; i++) {
+        if (i != sender) {
+          expected[i]++;
+        }
+      }
+      long latency = await(allDelivered(expected), TIMEOUT);
+      totalLatency += latency;
+      maxLatency = Math.max(maxLatency, latency);
+      sleep(TimeUnit.NANOSECONDS.toMillis(interval));
+    }
+    gossiping = false;
+    getNetwork().runUntilQuiescent();
+    long[] after = sent();
+    long[] counters = counters();
+    result = String.format(Locale.ROOT, "{\"timestamp\":\"%s\",\"mode\":\"%s\","
+        + "\"topology\":\"%s\",\"servers\":%d,\"links\":%d,\"fanOut\":%d,\"messages\":%d,"
+        + "\"frames\":%d,\"bytes\":%d,\"framesPerMessage\":%.1f,\"meanLatencyMicros\":%.1f,"
+        + "\"maxLatencyMicros\":%.1f,\"duplicates\":%d,\"digests\":%d,\"repaired\":%d}",
+        Instant.now(), mode.modeName(), topology, nbServers, nbLinks,
+        mode == Dissemination.GOSSIP ? fanOut : 0, nbMessages, after[0] - before[0],
+        after[1] - before[1], (double) (after[0] - before[0]) / nbMessages,
+        totalLatency / NANOS_PER_MICRO / nbMessages, maxLatency / NANOS_PER_MICRO, counters[0],
+        counters[1], counters[2]);
+  }
+
+  /**
+   * runs a round of the anti-entropy on all the servers, and schedules the next round.
+   */
+  private void antiEntropy() {
+    if (!gossiping) {
+      return;
+    }
+    for (Server server : servers) {
+      server.gossip();
+    }
+    getNetwork().schedule(period, this::antiEntropy);
+  }
+
+  /**
+   * counts the messages and the bytes sent by the servers to their neighbours.
+   *
+   * @return the number of messages and the number of bytes.
+   */
+  private long[] sent() {
+    long[] counts = new long[2];
+    for (Server server : servers) {
+      for (MsgWorker worker : server.getState().getServerWorkersView()) {
+        counts[0] += worker.getMetrics().getFramesOut();
+        counts[1] += worker.getMetrics().getBytesOut();
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * sums the counters of the servers.
+   *
+   * @return the numbers of duplicates, of digests and of repaired messages.
+   */
+  private long[] counters() {
+    long[] counts = new long[3];
+    for (Server server : servers) {
+      counts[0] += server.getMetrics().getDuplicateClientMsgs();
+      counts[1] += server.getMetrics().getDigestsSent();
+      counts[2] += server.getMetrics().getRumoursRepaired();
+    }
+    return counts;
+  }
+
+  /**
+   * builds the condition that holds when every client has delivered the expected number of
+   * messages.
+   *
+   * @param expected
+   *          the number of messages per client.
+   * @return the condition.
+   */
+  private BooleanSupplier allDelivered(final int[] expected) {
+    return () -> {
+      for (int i = 0; i < nbServers; i++) {
+        if (!nbDelivered(clients.get(i), expected[i]).getAsBoolean()) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  /**
+   * The method main of the benchmark. The options are, with their default values:
+   * {@code -modes flooding,gossip} (comma separated list), {@code -topologies mesh,random} (comma
+   * separated list of {@code line}, {@code ring}, {@code star}, {@code mesh}, {@code tree} or
+   * {@code random}), {@code -sizes 16,50} (comma separated list of numbers of servers),
+   * {@code -fanout 4}, {@code -messages 100}, {@code -interval 50} (milliseconds),
+   * {@code -period 200} (milliseconds), {@code -seed 0} and
+   * {@code -output dissemination-results.json}.
+   *
+   * @param args
+   *          the command line arguments.
+   * @throws Exception
+   *           the exception thrown when the benchmark fails.
+   */
+  public static void main(final String[] args) throws Exception {
+    List<Dissemination> modes = Arrays.asList(Dissemination.values());
+    List<Topology> topologies = Arrays.asList(Topology.MESH, Topology.RANDOM);
+    List<Integer> sizes = Arrays.asList(16, 50);
+    int fanOut = Dissemination.DEFAULT_FANOUT;
+    int messages = 100;
+    long interval = 50;
+    long period = Dissemination.DEFAULT_PERIOD;
+    long seed = 0;
+    String output = "dissemination-results.json";
+    for (int i = 0; i + 1 < args.length; i = i + 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "-modes":
+          modes = new ArrayList<>();
+          for (String name : value.split(",")) {
+            modes.add(Dissemination.of(name));
+          }
+          break;
+        case "-topologies":
+          topologies = new ArrayList<>();
+          for (String name : value.split(",")) {
+            topologies.add(Topology.of(name));
+          }
+          break;
+        case "-sizes":
+          sizes = new ArrayList<>();
+          for (String size : value.split(",")) {
+            sizes.add(Integer.parseInt(size));
+          }
+          break;
+        case "-fanout":
+          fanOut = Integer.parseInt(value);
+          break;
+        case "-messages":
+          messages = Integer.parseInt(value);
+          break;
+        case "-interval":
+          interval = Long.parseLong(value);
+          break;
+        case "-period":
+          period = Long.parseLong(value);
+          break;
+        case "-seed":
+          seed = Long.parseLong(value);
+          break;
+        case "-output":
+          output = value;
+          break;
+        default:
+          GEN.fatal("usage: java -cp <classpath> chat.common.DisseminationBenchmark"
+              + " [-modes m1,m2] [-topologies t1,t2] [-sizes n1,n2] [-fanout k]"
+              + " [-messages m] [-interval ms] [-period ms] [-seed n] [-output file]");
+          return;
+      }
+    }
+    for (Topology topology : topologies) {
+      for (int size : sizes) {
+        for (Dissemination mode : modes) {
+          DisseminationBenchmark run = new DisseminationBenchmark(mode, topology, size, fanOut,
+              messages, interval, period, seed);
+          run.constructAndRun();
+          System.out.println(run.getResult());
+          append(output, run.getResult());
+        }
+      }
+    }
+    System.exit(0);
+  }
+
+  /**
+   * appends a result to the output file.
+   *
+   * @param output
+   *          the file to which the results are appended, or {@code null}.
+   * @param line
+   *          the result.
+   * @throws IOException
+   *           the exception thrown when the file cannot be written.
+   */
+  private static void append(final String output, final String line) throws IOException {
+    if (output == null) {
+      return;
+    }
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(output, true),
+        StandardCharsets.UTF_8)) {
+      writer.write(line);
+      writer.write(System.lineSeparator());
+    }
+  }
+}
@@ -0,0 +1,364 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import static chat.common.Log.GEN;
+import static chat.server.algorithms.election.Actions.LEADER;
+import static chat.server.algorithms.election.Actions.NON_LEADER;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import chat.server.Server;
+import chat.server.algorithms.ElectionAlgorithm;
+
+/**
+ * This class defines the benchmark of the message complexity of the election algorithms (see
+ * {@link ElectionAlgorithm}). A run starts the servers of a {@link Topology} in an in-process
+ * network, so that the results are deterministic, lets the connections settle, starts the election
+ * on some servers, and measures:
+ * <ul>
+ * <li>the number of messages and of bytes sent by the servers to their neighbours, from the start
+ * of the election to the quiescence of the network, which includes the messages sent after the
+ * convergence;</li>
+ * <li>the time of convergence, in virtual time, i.e. the time at which all the servers know the
+ * leader of the round, with the latency of the links of the network;</li>
+ * <li>the number of initiators suppressed because they had joined the wave of a better initiator
+ * (see {@link chat.server.algorithms.election.Actions}).</li>
+ * </ul>
+ * The ring algorithms are only run on rings of at least three servers, and the bully algorithm on
+ * fully connected clusters. The initiators are the servers of greatest identities, so that the
+ * leader, which is the server {@code 0}, is an initiator only when all the servers are initiators.
+ * Every run appends a JSON object on one line to the output file, as
+ * {@link BenchmarkScenario}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class ElectionBenchmark extends Scenario {
+  /**
+   * the maximum number of servers, whose port numbers must not overlap.
+   */
+  private static final int MAX_SERVERS = 100;
+  /**
+   * the maximum duration of the election in virtual time, in milliseconds.
+   */
+  private static final long TIMEOUT = 60_000;
+  /**
+   * the number of nanoseconds per microsecond.
+   */
+  private static final double NANOS_PER_MICRO = 1e3;
+  /**
+   * the election algorithm.
+   */
+  private final ElectionAlgorithm algorithm;
+  /**
+   * the topology of the servers.
+   */
+  private final Topology topology;
+  /**
+   * the number of servers.
+   */
+  private final int nbServers;
+  /**
+   * the number of servers that start the election.
+   */
+  private final int nbInitiators;
+  /**
+   * the seed of the random topology and of the network.
+   */
+  private final long seed;
+  /**
+   * the servers of the run.
+   */
+  private final List<Server> servers = new ArrayList<>();
+  /**
+   * the number of links between the servers.
+   */
+  private int nbLinks;
+  /**
+   * the result of the run, as a JSON object, or {@code null}.
+   */
+  private String result;
+
+  /**
+   * constructs a run of the benchmark.
+   *
+   * @param algorithm
+   *          the election algorithm.
+   * @param topology
+   *          the topology of the servers.
+   * @param nbServers
+   *          the number of servers.
+   * @param nbInitiators
+   *          the number of servers that start the election.
+   * @param seed
+   *          the seed of the random topology and of the network.
+   */
+  public ElectionBenchmark(final ElectionAlgorithm algorithm, final Topology topology,
+      final int nbServers, final int nbInitiators, final long seed) {
+    super(new LoopbackNetwork(seed));
+    if (algorithm == null || topology == null) {
+      throw new IllegalArgumentException("no algorithm or no topology");
+    }
+    if (nbServers <= 0 || nbServers >= MAX_SERVERS) {
+      throw new IllegalArgumentException("invalid number of servers (" + nbServers + ")");
+    }
+    this.algorithm = algorithm;
+    this.topology = topology;
+    this.nbServers = nbServers;
+    this.nbInitiators = Math.max(1, Math.min(nbInitiators, nbServers));
+    this.seed = seed;
+  }
+
+  /**
+   * states whether an election algorithm can run on a topology.
+   *
+   * @param algorithm
+   *          the election algorithm.
+   * @param topology
+   *          the topology of the servers.
+   * @param nbServers
+   *          the number of servers.
+   * @return {@code true} if the algorithm can run.
+   */
+  public static boolean isApplicable(final ElectionAlgorithm algorithm, final Topology topology,
+      final int nbServers) {
+    switch (algorithm) {
+      case CHANG_ROBERTS:
+      case HIRSCHBERG_SINCLAIR:
+        return topology == Topology.RING && nbServers > 2;
+      case BULLY:
+        return topology == Topology.MESH;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * gets the result of the run.
+   *
+   * @return the JSON object, or {@code null} before the run.
+   */
+  public String getResult() {
+    return result;
+  }
+
+  /**
+   * gets the servers of the run.
+   *
+   * @return the servers.
+   */
+  public List<Server> getServers() {
+    return servers;
+  }
+
+  @Override
+  public void constructAndRun() throws Exception {
+    List<List<Integer>> connections = topology.connections(nbServers, new Random(seed), 0.2);
+    for (int i = 0; i < nbServers; i++) {
+      StringBuilder args = new StringBuilder(Integer.toString(i));
+      for (Integer j : connections.get(i)) {
+        args.append(" localhost ").append(j);
+        nbLinks++;
+      }
+      Server server = instanciateAServer(args.toString());
+      server.setElectionAlgorithm(algorithm);
+      servers.add(server);
+    }
+    getNetwork().runUntilQuiescent();
+    long[] before = sent();
+    for (int i = nbServers - 1; i >= nbServers - nbInitiators; i--) {
+      algorithm.start(servers.get(i).getState());
+    }
+    long convergence = await(agreeOnALeader(), TIMEOUT);
+    getNetwork().runUntilQuiescent();
+    long[] after = sent();
+    result = String.format(Locale.ROOT, "{\"timestamp\":\"%s\",\"algorithm\":\"%s\","
+        + "\"topology\":\"%s\",\"servers\":%d,\"links\":%d,\"initiators\":%d,"
+        + "\"messages\":%d,\"bytes\":%d,\"convergenceMicros\":%.1f,\"suppressed\":%d,"
+        + "\"leader\":%d}",
+        Instant.now(), algorithm.algorithmName(), topology, nbServers, nbLinks, nbInitiators,
+        after[0] - before[0], after[1] - before[1], convergence / NANOS_PER_MICRO, suppressed(),
+        servers.get(0).getState().getWin());
+  }
+
+  /**
+   * counts the initiators suppressed by the servers.
+   *
+   * @return the number of initiators.
+   */
+  private long suppressed() {
+    long nb = 0;
+    for (Server server : servers) {
+      nb += server.getMetrics().getSuppressedInitiators();
+    }
+    return nb;
+  }
+
+  /**
+   * counts the messages and the bytes sent by the servers to their neighbours.
+   *
+   * @return the number of messages and the number of bytes.
+   */
+  private long[] sent() {
+    long[] counts = new long[2];
+    for (Server server : servers) {
+      for (MsgWorker worker : server.getState().getServerWorkersView()) {
+        counts[0] += worker.getMetrics().getFramesOut();
+        counts[1] += worker.getMetrics().getBytesOut();
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * builds the condition that holds when all the servers have terminated the same round of the
+   * election with the same leader.
+   *
+   * @return the condition.
+   */
+  private BooleanSupplier agreeOnALeader() {
+    return () -> {
+      int epoch = servers.get(0).getState().getElectionEpoch();
+      int win = servers.get(0).getState().getWin();
+      int nbLeaders = 0;
+      for (Server server : servers) {
+        String status = server.getState().getStatus();
+        if (server.getState().getElectionEpoch() != epoch || server.getState().getWin() != win
+            || !(LEADER.equals(status) || NON_LEADER.equals(status))) {
+          return false;
+        }
+        if (LEADER.equals(status)) {
+          nbLeaders++;
+        }
+      }
+      return win != -1 && nbLeaders == 1;
+    };
+  }
+
+  /**
+   * The method main of the benchmark. The options are, with their default values:
+   * {@code -algorithms echo,chang-roberts,hirschberg-sinclair,bully} (comma separated list),
+   * {@code -topologies ring,mesh} (comma separated list of {@code line}, {@code ring},
+   * {@code star}, {@code mesh}, {@code tree} or {@code random}), {@code -sizes 4,8,16} (comma
+   * separated list of numbers of servers), {@code -initiators <all>}, {@code -seed 0} and
+   * {@code -output election-results.json}. The combinations of an algorithm and of a topology on
+   * which the algorithm cannot run are skipped.
+   *
+   * @param args
+   *          the command line arguments.
+   * @throws Exception
+   *           the exception thrown when the benchmark fails.
+   */
+  public static void main(final String[] args) throws Exception {
+    List<ElectionAlgorithm> algorithms = Arrays.asList(ElectionAlgorithm.values());
+    List<Topology> topologies = Arrays.asList(Topology.RING, Topology.MESH);
+    List<Integer> sizes = Arrays.asList(4, 8, 16);
+    int initiators = Integer.MAX_VALUE;
+    long seed = 0;
+    String output = "election-results.json";
+    for (int i = 0; i + 1 < args.length; i = i + 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "-algorithms":
+          algorithms = new ArrayList<>();
+          for (String name : value.split(",")) {
+            algorithms.add(ElectionAlgorithm.of(name));
+          }
+          break;
+        case "-topologies":
+          topologies = new ArrayList<>();
+          for (String name : value.split(",")) {
+            topologies.add(Topology.of(name));
+          }
+          break;
+        case "-sizes":
+          sizes = new ArrayList<>();
+          for (String size : value.split(",")) {
+            sizes.add(Integer.parseInt(size));
+          }
+          break;
+        case "-initiators":
+          initiators = Integer.parseInt(value);
+          break;
+        case "-seed":
+          seed = Long.parseLong(value);
+          break;
+        case "-output":
+          output = value;
+          break;
+        default:
+          GEN.fatal("usage: java -cp <classpath> chat.common.ElectionBenchmark"
+              + " [-algorithms a1,a2] [-topologies t1,t2] [-sizes n1,n2] [-initiators k]"
+              + " [-seed n] [-output file]");
+          return;
+      }
+    }
+    for (Topology topology : topologies) {
+      for (int size : sizes) {
+        for (ElectionAlgorithm algorithm : algorithms) {
+          if (!isApplicable(algorithm, topology, size)) {
+            continue;
+          }
+          ElectionBenchmark run = new ElectionBenchmark(algorithm, topology, size, initiators,
+              seed);
+          run.constructAndRun();
+          System.out.println(run.getResult());
+          append(output, run.getResult());
+        }
+      }
+    }
+    System.exit(0);
+  }
+
+  /**
+   * appends a result to the output file.
+   *
+   * @param output
+   *          the file to which the results are appended, or {@code null}.
+   * @param line
+   *          the result.
+   * @throws IOException
+   *           the exception thrown when the file cannot be written.
+   */
+  private static void append(final String output, final String line) throws IOException {
+    if (output == null) {
+      return;
+    }
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(output, true),
+        StandardCharsets.UTF_8)) {
+      writer.write(line);
+      writer.write(System.lineSeparator());
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+/**
+ * This class states once whether the flight recorder events of the chat (see
+ * {@link FrameReadEvent}, {@link FrameWriteEvent}, {@link DispatchEvent} and {@link ForwardEvent})
+ * may be created. The events extend {@code jdk.jfr.Event}, which is missing in the Java 8 runtimes
+ * before 8u262: the events are then not created at all, and the code that records them is a no-op,
+ * instead of throwing a {@link NoClassDefFoundError} on the paths of the messages.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class FlightEvents {
+  /**
+   * the name of the base class of the events.
+   */
+  private static final String EVENT_CLASS = "jdk.jfr.Event";
+  /**
+   * states whether the events may be created.
+   */
+  public static final boolean ENABLED = isAvailable();
+
+  /**
+   * avoids the creation of instances.
+   */
+  private FlightEvents() {
+  }
+
+  /**
+   * states whether the base class of the events is available in the runtime.
+   *
+   * @return {@code true} if the events may be created.
+   */
+  private static boolean isAvailable() {
+    try {
+      Class.forName(EVENT_CLASS, false, FlightEvents.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+}
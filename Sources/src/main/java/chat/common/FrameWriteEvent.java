@@ -0,0 +1,64 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * This class defines the flight recorder event of the sending of a frame by a
+ * {@link FullDuplexMsgWorker}: the serialisation of the message, its queueing, and its writing
+ * when the frames are written by the thread that sends them. The event is only recorded when its
+ * duration exceeds the threshold, 1 ms by default (see the settings {@code chat.jfc}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+@Name("chat.FrameWrite")
+@Label("Frame Write")
+@Category({"Chat", "Network" })
+@Description("Sending of a frame by a message worker")
+@StackTrace(false)
+@Threshold("1 ms")
+public class FrameWriteEvent extends jdk.jfr.Event {
+  /**
+   * the type of the message.
+   */
+  @Label("Frame Type")
+  public int frameType;
+  /**
+   * the size of the frame, header included.
+   */
+  @Label("Size")
+  @DataAmount
+  public int size;
+  /**
+   * the number of frames waiting in the outbound queues after the sending.
+   */
+  @Label("Queue Length")
+  public int queueLength;
+}
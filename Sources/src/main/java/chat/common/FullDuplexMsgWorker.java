@@ -31,7 +31,12 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.Semaphore;
 
 /**
  * This class defines a message as a set of byte buffers.
@@ -45,17 +50,52 @@ import java.nio.channels.SocketChannel;
  * <li>the data as a serialized object</li>
  * </ul>
  *
+ * A traced message has an extended header: the flag {@link #EXTENDED_HEADER} is set in its type,
+ * and the origin time (a long) and the hop count (an int) of the message follow the size. The
+ * frames with the basic header are still accepted.
+ *
+ * The messages to send are queued in one outbound queue per {@link PriorityLane}: the control
+ * messages of the algorithms of the servers are written before the chat messages that are still
+ * waiting in the queue. When the channel is in non blocking mode and the socket buffer is full, the
+ * rest of the queue is written when the selector states that the channel is writable again (see
+ * {@link #register(Selector)} and {@link #flush()}). Alternatively, a dedicated writer thread
+ * can be attached to the worker (see {@link #useDedicatedWriter()}): the frames are then written
+ * in blocking mode by this thread, and the senders only queue them.
+ *
  * @author chris
  * @author Denis Conan
  * 
  */
-public class FullDuplexMsgWorker {
+public class FullDuplexMsgWorker implements MsgWorker {
   /**
    * this arrays can contain message headers in the first buffer (fixed size) and message body which
-   * size is described in the header. We need two ByteBuffers due to asynchronism in input and
-   * output. Put and get operations are not done at once.
+   * size is described in the header. We need two ByteBuffers due to asynchronism in input. Put and
+   * get operations are not done at once.
+   */
+  private ByteBuffer[] inBuffers;
+  /**
+   * the outbound queues of frames, one per priority lane.
+   */
+  private final OutboundQueue outQueue;
+  /**
+   * the counters of the connection.
+   */
+  private final ConnectionMetrics metrics;
+  /**
+   * the frame being written, which may have been partially written. A frame that has started to be
+   * written is always completed before the next one, whatever its lane.
+   */
+  private volatile ByteBuffer[] outCurrent;
+  /**
+   * the selection key of the channel when it is registered to a selector, otherwise {@code null}.
    */
-  private ByteBuffer[] inBuffers, outBuffers;
+  private SelectionKey selectionKey;
+  /**
+   * the permits counting the frames queued for the dedicated writer thread, or {@code null} when
+   * the frames are written by the threads that send them. A semaphore is used instead of a monitor
+   * so that a waiting writer does not pin the carrier of a virtual thread.
+   */
+  private Semaphore writerPermits;
   /**
    * read message status, to describe completeness of data reception.
    */
@@ -80,10 +120,35 @@ public class FullDuplexMsgWorker {
    * the sequence number of the last message (sent / received).
    */
   private int inSeqNumber, outSeqNumber;
+  /**
+   * the origin time of the last message received, or {@link MsgWorker#UNTRACED}.
+   */
+  private long inOriginTime = UNTRACED;
+  /**
+   * the hop count of the last message received.
+   */
+  private int inHops;
+  /**
+   * the number of bytes of the extension of the header at the beginning of the body buffer of the
+   * last message received, zero for a basic header.
+   */
+  private int inExtension;
   /**
    * the size of headers.
    */
   private static final int SIZE_HEADER = 4;
+  /**
+   * the size of headers in bytes.
+   */
+  public static final int HEADER_BYTES = Integer.SIZE * SIZE_HEADER / Byte.SIZE;
+  /**
+   * the flag set in the type of the frames with an extended header.
+   */
+  public static final int EXTENDED_HEADER = 0x40000000;
+  /**
+   * the size in bytes of the extension of the header: the origin time and the hop count.
+   */
+  public static final int EXTENSION_BYTES = (Long.SIZE + Integer.SIZE) / Byte.SIZE;
 
   /**
    * is the public constructor for an open channel---i.e., after accept.
@@ -93,11 +158,10 @@ public class FullDuplexMsgWorker {
    */
   public FullDuplexMsgWorker(final SocketChannel channel) {
     inBuffers = new ByteBuffer[2];
-    outBuffers = new ByteBuffer[2];
-    inBuffers[0] = ByteBuffer.allocate(Integer.SIZE * SIZE_HEADER / Byte.SIZE);
-    outBuffers[0] = ByteBuffer.allocate(Integer.SIZE * SIZE_HEADER / Byte.SIZE);
+    inBuffers[0] = ByteBuffer.allocate(HEADER_BYTES);
     inBuffers[1] = null;
-    outBuffers[1] = null;
+    outQueue = new OutboundQueue();
+    metrics = new ConnectionMetrics(this::getOutQueueLength);
     readState = ReadMessageStatus.ReadUnstarted;
     rwChan = channel;
     assert invariant();
@@ -113,8 +177,8 @@ public class FullDuplexMsgWorker {
    * @return a boolean stating whether the invariant is maintained.
    */
   private boolean invariant() {
-    return inBuffers != null && outBuffers != null && (inBuffers[0].capacity() > 0)
-        && (outBuffers[0].capacity() > 0) && rwChan != null;
+    return inBuffers != null && (inBuffers[0].capacity() > 0) && outQueue != null
+        && rwChan != null;
   }
 
   /**
@@ -127,6 +191,22 @@ public class FullDuplexMsgWorker {
     rwChan.configureBlocking(false);
   }
 
+  /**
+   * registers the channel to a selector for reading. The selection key is kept so that the
+   * interest for writing is set when the outbound queues cannot be flushed at once. The worker is
+   * attached to the selection key.
+   *
+   * @param selector
+   *          the selector.
+   * @return the selection key.
+   * @throws ClosedChannelException
+   *           the exception thrown when the channel is closed.
+   */
+  public SelectionKey register(final Selector selector) throws ClosedChannelException {
+    selectionKey = rwChan.register(selector, SelectionKey.OP_READ, this);
+    return selectionKey;
+  }
+
   /**
    * gets the current channel of this worker.
    *
@@ -145,38 +225,297 @@ public class FullDuplexMsgWorker {
    *          the identity to be inserted in the message to send.
    * @param seqNumber
    *          the sequence number of the message to send.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED} for a basic header.
+   * @param hops
+   *          the hop count of the message.
    * @param s
    *          the content of the message as a serialised object.
-   * @return size of the data send.
+   * @return size of the data send, or {@code 0} when the frame is dropped because the outbound
+   *         queue of the data messages is full (see {@link OutboundQueue}).
    * @throws IOException
    *           the exception thrown in case of IO problem.
    */
+  @Override
   public long sendMsg(final int type, final int identity, final int seqNumber,
-      final Serializable s) throws IOException {
+      final long originTime, final int hops, final Serializable s) throws IOException {
+    FrameWriteEvent event = FlightEvents.ENABLED ? new FrameWriteEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
+    ByteBuffer[] frame = encode(type, identity, seqNumber, originTime, hops, s);
+    int headerBytes = frame[0].remaining();
+    int size = frame[1].remaining();
+    synchronized (this) {
+      if (!outQueue.add(type, frame)) {
+        metrics.frameDropped();
+        return 0;
+      }
+      outType = type;
+      outSize = size;
+      outIdentity = identity;
+      outSeqNumber = seqNumber;
+      if (writerPermits != null) {
+        writerPermits.release();
+      } else {
+        flush();
+      }
+    }
+    metrics.frameOut(headerBytes + size);
+    if (event != null && event.shouldCommit()) {
+      event.frameType = type;
+      event.size = headerBytes + size;
+      event.queueLength = getOutQueueLength();
+      event.commit();
+    }
+    assert invariant();
+    return size;
+  }
 
+  /**
+   * serialises an object.
+   *
+   * @param s
+   *          the object.
+   * @return the bytes of the serialised object.
+   * @throws IOException
+   *           the exception thrown in case of serialisation problem.
+   */
+  public static byte[] serialize(final Serializable s) throws IOException {
     ByteArrayOutputStream bo = new ByteArrayOutputStream();
-    int size;
     ObjectOutputStream oo = new ObjectOutputStream(bo);
     oo.writeObject(s);
     oo.close();
-    size = bo.size();
-    outType = type;
-    outSize = size;
-    outIdentity = identity;
-    outSeqNumber = seqNumber;
-    outBuffers[0].clear();
-    outBuffers[0].putInt(outType);
-    outBuffers[0].putInt(outIdentity);
-    outBuffers[0].putInt(outSeqNumber);
-    outBuffers[0].putInt(outSize);
-    outBuffers[0].flip();
-    outBuffers[1] = ByteBuffer.allocate(size);
-    outBuffers[1].put(bo.toByteArray());
+    byte[] data = bo.toByteArray();
     bo.close();
-    outBuffers[1].flip();
-    rwChan.write(outBuffers);
-    assert invariant();
-    return size;
+    return data;
+  }
+
+  /**
+   * deserialises an object.
+   *
+   * @param data
+   *          the bytes of the serialised object.
+   * @return the object, or {@code null} if its class is unknown.
+   * @throws IOException
+   *           the exception thrown in case of deserialisation problem.
+   */
+  public static Serializable deserialize(final byte[] data) throws IOException {
+    return deserialize(data, 0, data.length);
+  }
+
+  /**
+   * deserialises an object from a part of an array.
+   *
+   * @param data
+   *          the array.
+   * @param offset
+   *          the index of the first byte of the serialised object.
+   * @param length
+   *          the number of bytes of the serialised object.
+   * @return the object, or {@code null} if its class is unknown.
+   * @throws IOException
+   *           the exception thrown in case of deserialisation problem.
+   */
+  public static Serializable deserialize(final byte[] data, final int offset, final int length)
+      throws IOException {
+    Serializable res = null;
+    try {
+      ByteArrayInputStream bi = new ByteArrayInputStream(data, offset, length);
+      ObjectInputStream oi = new ObjectInputStream(bi);
+      res = (Serializable) oi.readObject();
+      oi.close();
+      bi.close();
+    } catch (ClassNotFoundException e) {
+      COMM.warn(e.getLocalizedMessage());
+      e.printStackTrace();
+    }
+    return res;
+  }
+
+  /**
+   * builds the frame of a message: the header (type, identity, sequence number and size) and the
+   * body (the serialised object).
+   *
+   * @param type
+   *          message type.
+   * @param identity
+   *          the identity to be inserted in the message to send.
+   * @param seqNumber
+   *          the sequence number of the message to send.
+   * @param s
+   *          the content of the message as a serialised object.
+   * @return the header and the body, ready to be written.
+   * @throws IOException
+   *           the exception thrown in case of serialisation problem.
+   */
+  public static ByteBuffer[] encode(final int type, final int identity, final int seqNumber,
+      final Serializable s) throws IOException {
+    return encode(type, identity, seqNumber, UNTRACED, 0, s);
+  }
+
+  /**
+   * builds the frame of a message, with an extended header when the message is traced.
+   *
+   * @param type
+   *          message type.
+   * @param identity
+   *          the identity to be inserted in the message to send.
+   * @param seqNumber
+   *          the sequence number of the message to send.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED} for a basic header.
+   * @param hops
+   *          the hop count of the message.
+   * @param s
+   *          the content of the message as a serialised object.
+   * @return the header and the body, ready to be written.
+   * @throws IOException
+   *           the exception thrown in case of serialisation problem.
+   */
+  public static ByteBuffer[] encode(final int type, final int identity, final int seqNumber,
+      final long originTime, final int hops, final Serializable s) throws IOException {
+    byte[] data = serialize(s);
+    boolean traced = originTime != UNTRACED;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + (traced ? EXTENSION_BYTES : 0));
+    header.putInt(traced ? type | EXTENDED_HEADER : type);
+    header.putInt(identity);
+    header.putInt(seqNumber);
+    header.putInt(data.length);
+    if (traced) {
+      header.putLong(originTime);
+      header.putInt(hops);
+    }
+    header.flip();
+    return new ByteBuffer[] {header, ByteBuffer.wrap(data) };
+  }
+
+  /**
+   * writes the frames of the outbound queues, the control lane first. In blocking mode, all the
+   * frames are written. In non blocking mode, the method stops when the socket buffer is full: if
+   * the channel is registered to a selector, the interest for writing is then set, and the method
+   * must be called again when the channel becomes writable; the interest for writing is removed
+   * when the queues are empty.
+   *
+   * @return {@code true} when the outbound queues are empty.
+   * @throws IOException
+   *           the exception thrown in case of IO problem.
+   */
+  public synchronized boolean flush() throws IOException {
+    while (true) {
+      if (outCurrent == null) {
+        outCurrent = outQueue.poll();
+        if (outCurrent == null) {
+          break;
+        }
+      }
+      rwChan.write(outCurrent);
+      if (outCurrent[outCurrent.length - 1].hasRemaining()) {
+        if (rwChan.isBlocking()) {
+          continue;
+        }
+        setWriteInterest(true);
+        return false;
+      }
+      outCurrent = null;
+    }
+    setWriteInterest(false);
+    return true;
+  }
+
+  /**
+   * states that the frames are written by a dedicated writer thread that calls
+   * {@link #writeNextFrame()} in loop. The channel must be in blocking mode.
+   */
+  public synchronized void useDedicatedWriter() {
+    if (writerPermits == null) {
+      writerPermits = new Semaphore(getOutQueueLength());
+    }
+  }
+
+  /**
+   * waits for the next frame of the outbound queues, the control lane first, and writes it. This
+   * method is called in loop by the dedicated writer thread (see {@link #useDedicatedWriter()}).
+   * The monitor of the worker is not held while writing, so that the senders are not blocked by a
+   * slow remote end point.
+   *
+   * @throws IOException
+   *           the exception thrown in case of IO problem.
+   * @throws InterruptedException
+   *           the exception thrown when the writer thread is interrupted.
+   */
+  public void writeNextFrame() throws IOException, InterruptedException {
+    writerPermits.acquire();
+    ByteBuffer[] frame;
+    synchronized (this) {
+      frame = outQueue.poll();
+      if (frame == null) {
+        return;
+      }
+      outCurrent = frame;
+    }
+    while (frame[frame.length - 1].hasRemaining()) {
+      rwChan.write(frame);
+    }
+    synchronized (this) {
+      outCurrent = null;
+    }
+  }
+
+  /**
+   * sets or removes the interest for writing in the selection key, if any.
+   *
+   * @param on
+   *          states whether the interest for writing is set or removed.
+   */
+  private void setWriteInterest(final boolean on) {
+    if (selectionKey == null || !selectionKey.isValid()) {
+      return;
+    }
+    try {
+      int ops = selectionKey.interestOps();
+      if (on && (ops & SelectionKey.OP_WRITE) == 0) {
+        selectionKey.interestOps(ops | SelectionKey.OP_WRITE);
+        selectionKey.selector().wakeup();
+      } else if (!on && (ops & SelectionKey.OP_WRITE) != 0) {
+        selectionKey.interestOps(ops & ~SelectionKey.OP_WRITE);
+      }
+    } catch (CancelledKeyException e) {
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("selection key cancelled while flushing");
+      }
+    }
+  }
+
+  /**
+   * gets the histogram of the time (in nanoseconds) spent by the frames of a priority lane in the
+   * outbound queue. The metric of the lane {@link PriorityLane#CONTROL} measures how long the
+   * control messages wait behind the messages that were queued before them.
+   *
+   * @param lane
+   *          the priority lane.
+   * @return the histogram.
+   */
+  @Override
+  public LatencyHistogram getQueueWait(final PriorityLane lane) {
+    return outQueue.getQueueWait(lane);
+  }
+
+  @Override
+  public ConnectionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * gets the number of frames waiting in the outbound queues, including the frame being written.
+   * The depth is read without taking the lock of the message worker, so that the gauges do not
+   * wait for the thread writing to the connection.
+   *
+   * @return the number of frames.
+   */
+  @Override
+  public int getOutQueueLength() {
+    return outQueue.size() + (outCurrent == null ? 0 : 1);
   }
 
   /**
@@ -185,6 +524,7 @@ public class FullDuplexMsgWorker {
    * @throws IOException
    *           the exception thrown in case of problem.
    */
+  @Override
   public void close() throws IOException {
     rwChan.close();
   }
@@ -195,6 +535,10 @@ public class FullDuplexMsgWorker {
    * @return a ReadMessageStatus to specify read progress.
    */
   public ReadMessageStatus readMessage() {
+    FrameReadEvent event = FlightEvents.ENABLED ? new FrameReadEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
     int recvSize;
     if (readState == ReadMessageStatus.ReadUnstarted) {
       inBuffers[0].clear();
@@ -210,7 +554,7 @@ public class FullDuplexMsgWorker {
         try {
           recvSize = rwChan.read(inBuffers[0]);
           if (LOG_ON && COMM.isTraceEnabled()) {
-            COMM.trace("Received       : " + recvSize);
+            COMM.trace("Received       : {}", recvSize);
           }
           if (recvSize == 0) {
             assert invariant();
@@ -248,22 +592,23 @@ public class FullDuplexMsgWorker {
       }
       inBuffers[0].flip();
       if (LOG_ON && COMM.isTraceEnabled()) {
-        COMM.trace("Position and limit : "
-            + inBuffers[0].position() + " " + inBuffers[0].limit());
+        COMM.trace("Position and limit : {} {}", inBuffers[0].position(), inBuffers[0].limit());
       }
       inType = inBuffers[0].getInt();
       inIdentity = inBuffers[0].getInt();
       inSeqNumber = inBuffers[0].getInt();
       inSize = inBuffers[0].getInt();
+      inExtension = (inType & EXTENDED_HEADER) != 0 ? EXTENSION_BYTES : 0;
+      inType &= ~EXTENDED_HEADER;
       if (LOG_ON && COMM.isTraceEnabled()) {
-        COMM.trace("Message type and size : " + inType + " " + inSize);
+        COMM.trace("Message type and size : {} {}", inType, inSize);
       }
       inBuffers[0].rewind();
       readState = ReadMessageStatus.ReadHeaderCompleted;
     }
     if (readState == ReadMessageStatus.ReadHeaderCompleted) {
-      if (inBuffers[1] == null || inBuffers[1].capacity() != inSize) {
-        inBuffers[1] = ByteBuffer.allocate(inSize);
+      if (inBuffers[1] == null || inBuffers[1].capacity() != inExtension + inSize) {
+        inBuffers[1] = ByteBuffer.allocate(inExtension + inSize);
       }
       readState = ReadMessageStatus.ReadDataStarted;
     }
@@ -272,7 +617,7 @@ public class FullDuplexMsgWorker {
         try {
           recvSize = rwChan.read(inBuffers[1]);
           if (LOG_ON && COMM.isTraceEnabled()) {
-            COMM.trace("Received       : " + recvSize);
+            COMM.trace("Received       : {}", recvSize);
           }
           if (recvSize == 0) {
             assert invariant();
@@ -304,11 +649,25 @@ public class FullDuplexMsgWorker {
         }
       }
       if (LOG_ON && COMM.isTraceEnabled()) {
-        COMM.trace("Position and capacity : " + inBuffers[1].position()
-            + " " + inBuffers[1].capacity());
+        COMM.trace("Position and capacity : {} {}", inBuffers[1].position(),
+            inBuffers[1].capacity());
       }
       if (inBuffers[1].position() == inBuffers[1].capacity()) {
         readState = ReadMessageStatus.ReadDataCompleted;
+        if (inExtension > 0) {
+          inOriginTime = inBuffers[1].getLong(0);
+          inHops = inBuffers[1].getInt(Long.BYTES);
+        } else {
+          inOriginTime = UNTRACED;
+          inHops = 0;
+        }
+        metrics.frameIn(HEADER_BYTES + inExtension + inSize);
+        if (event != null && event.shouldCommit()) {
+          event.frameType = inType;
+          event.size = HEADER_BYTES + inExtension + inSize;
+          event.traced = inExtension > 0;
+          event.commit();
+        }
       }
     }
     return readState;
@@ -327,17 +686,13 @@ public class FullDuplexMsgWorker {
     Serializable res = null;
     if (readState == ReadMessageStatus.ReadDataCompleted) {
       try {
-        inBuffers[1].flip();
-        byte[] cpBb = new byte[inBuffers[1].limit()];
-        inBuffers[1].get(cpBb);
-        ByteArrayInputStream bi = new ByteArrayInputStream(inBuffers[1].array());
-        ObjectInputStream oi = new ObjectInputStream(bi);
-        res = (Serializable) oi.readObject();
-        oi.close();
-        bi.close();
-      } catch (ClassNotFoundException e) {
-        COMM.warn(e.getLocalizedMessage());
-        e.printStackTrace();
+        res = deserialize(inBuffers[1].array(), inExtension, inSize);
+      } catch (IOException e) {
+        metrics.decodeError();
+        throw e;
+      }
+      if (res == null) {
+        metrics.decodeError();
       }
     }
     inBuffers[1].rewind();
@@ -371,4 +726,23 @@ public class FullDuplexMsgWorker {
   public int getInSeqNumber() {
     return inSeqNumber;
   }
+
+  /**
+   * gets the origin time of the last message received.
+   *
+   * @return the origin time, or {@link MsgWorker#UNTRACED} if the message has been sent with the
+   *         basic header.
+   */
+  public long getInOriginTime() {
+    return inOriginTime;
+  }
+
+  /**
+   * gets the hop count of the last message received.
+   *
+   * @return the number of servers crossed by the last message received.
+   */
+  public int getInHops() {
+    return inHops;
+  }
 }
@@ -24,6 +24,8 @@ package chat.common;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import chat.client.algorithms.chat.ChatMessageContent;
 import chat.server.algorithms.election.ElectionTokenContent;
 
@@ -45,6 +47,12 @@ public final class Interceptor {
    */
   private static boolean interceptionEnabled = false;
 
+  /**
+   * the network whose virtual time is used to delay the messages, or {@code null} when the messages
+   * are delayed by threads sleeping for the delay.
+   */
+  private static LoopbackNetwork scheduler = null;
+
   /**
    * number of milliseconds for delaying messages.
    */
@@ -77,6 +85,32 @@ public final class Interceptor {
     Interceptor.interceptionEnabled = interceptionEnabled;
   }
 
+  /**
+   * sets the network whose virtual time is used to delay the messages, so that the delayed messages
+   * are treated by the thread running the scheduler of the network, in a deterministic order.
+   *
+   * @param scheduler
+   *          the network, or {@code null} for delaying the messages with threads.
+   */
+  public static void setScheduler(final LoopbackNetwork scheduler) {
+    Interceptor.scheduler = scheduler;
+  }
+
+  /**
+   * delays the treatment of a message.
+   *
+   * @param delayed
+   *          the treatment of the message.
+   */
+  private static void delay(final TreatDelayedMessage<?, ?> delayed) {
+    LoopbackNetwork network = scheduler;
+    if (network == null) {
+      new Thread(delayed).start();
+    } else {
+      network.schedule(TimeUnit.MILLISECONDS.toNanos(TreatDelayedMessage.DELAY), delayed::treat);
+    }
+  }
+
   /**
    * intercepts the receipt of a message. This is where is introduced some non-determinism for
    * integration testing of the distributed algorithms. This method is called by the default method
@@ -98,10 +132,8 @@ public final class Interceptor {
       ElectionTokenContent content = (ElectionTokenContent) msg;
       chat.server.State st = (chat.server.State) state;
       if (content.getInitiator() == content.getSender()) {
-        new Thread(
-            new TreatDelayedMessage<chat.server.State, ElectionTokenContent>(st,
-                content, st.currKey))
-                .start();
+        delay(new TreatDelayedMessage<chat.server.State, ElectionTokenContent>(st,
+            content, st.currWorker));
       } else {
         set.add(msg);
       }
@@ -109,9 +141,7 @@ public final class Interceptor {
       ChatMessageContent content = (ChatMessageContent) msg;
       chat.client.State st = (chat.client.State) state;
       if (content.getSender() == 0 && st.identity == 2) {
-        new Thread(
-            new TreatDelayedMessage<chat.client.State, ChatMessageContent>(st, content, null))
-            .start();
+        delay(new TreatDelayedMessage<chat.client.State, ChatMessageContent>(st, content, null));
       } else {
         set.add(msg);
       }
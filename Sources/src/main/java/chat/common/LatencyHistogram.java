@@ -0,0 +1,235 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class defines a latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * Values (typically durations in nanoseconds) are counted in buckets whose width doubles every
+ * power of two, each power of two being split into {@link #SUB_BUCKET_COUNT} sub-buckets. The
+ * relative error of a reported value is therefore bounded by {@code 1 / SUB_BUCKET_COUNT}.
+ *
+ * The method {@link #record(long)} does not allocate and can be called concurrently by several
+ * threads. The read operations (percentiles, mean, etc.) may be called concurrently with
+ * recordings; they then return an approximate view of the histogram.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LatencyHistogram {
+  /**
+   * the number of bits of the sub-bucket index.
+   */
+  private static final int SUB_BUCKET_BITS = 4;
+  /**
+   * the number of sub-buckets per power of two.
+   */
+  public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  /**
+   * the highest power of two that is tracked: greater values are counted in the last bucket. With
+   * nanoseconds, {@code 2^47} is approximately 39 hours.
+   */
+  private static final int MAX_EXPONENT = 47;
+  /**
+   * the number of counters of the histogram.
+   */
+  private static final int COUNTS_LENGTH = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+  /**
+   * the percentage corresponding to the whole population.
+   */
+  private static final double HUNDRED = 100.0;
+  /**
+   * the counters of the buckets.
+   */
+  private final AtomicLongArray counts;
+  /**
+   * the number of recorded values.
+   */
+  private final AtomicLong totalCount;
+  /**
+   * the sum of the recorded values.
+   */
+  private final AtomicLong totalSum;
+  /**
+   * the greatest recorded value.
+   */
+  private final AtomicLong maxValue;
+
+  /**
+   * constructs an empty histogram.
+   */
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(COUNTS_LENGTH);
+    totalCount = new AtomicLong();
+    totalSum = new AtomicLong();
+    maxValue = new AtomicLong();
+  }
+
+  /**
+   * computes the index of the bucket of a value.
+   *
+   * @param value
+   *          the value, which is greater than or equal to 0.
+   * @return the index of the bucket.
+   */
+  static int indexOf(final long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return COUNTS_LENGTH - 1;
+    }
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * computes the greatest value that is counted in a bucket.
+   *
+   * @param index
+   *          the index of the bucket.
+   * @return the greatest value of the bucket.
+   */
+  static long highestValueOf(final int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKET_COUNT;
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((SUB_BUCKET_COUNT + subBucket) << shift) + (1L << shift) - 1;
+  }
+
+  /**
+   * records a value. Negative values are recorded as {@code 0}.
+   *
+   * @param value
+   *          the value to record.
+   */
+  public void record(final long value) {
+    long v = Math.max(0, value);
+    counts.incrementAndGet(indexOf(v));
+    totalCount.incrementAndGet();
+    totalSum.addAndGet(v);
+    long max = maxValue.get();
+    while (v > max && !maxValue.compareAndSet(max, v)) {
+      max = maxValue.get();
+    }
+  }
+
+  /**
+   * gets the number of recorded values.
+   *
+   * @return the number of values.
+   */
+  public long getCount() {
+    return totalCount.get();
+  }
+
+  /**
+   * gets the greatest recorded value.
+   *
+   * @return the maximum, or {@code 0} if the histogram is empty.
+   */
+  public long getMax() {
+    return maxValue.get();
+  }
+
+  /**
+   * gets the mean of the recorded values.
+   *
+   * @return the mean, or {@code 0} if the histogram is empty.
+   */
+  public double getMean() {
+    long count = totalCount.get();
+    return count == 0 ? 0 : (double) totalSum.get() / count;
+  }
+
+  /**
+   * gets the value at a given percentile, that is the greatest value of the bucket in which the
+   * percentile falls (capped by the maximum recorded value).
+   *
+   * @param percentile
+   *          the percentile, between {@code 0} and {@code 100}.
+   * @return the value, or {@code 0} if the histogram is empty.
+   */
+  public long getValueAtPercentile(final double percentile) {
+    long count = totalCount.get();
+    if (count == 0) {
+      return 0;
+    }
+    double p = Math.min(Math.max(percentile, 0), HUNDRED);
+    long target = Math.max(1, (long) Math.ceil(p / HUNDRED * count));
+    long cumulated = 0;
+    for (int i = 0; i < COUNTS_LENGTH; i++) {
+      cumulated += counts.get(i);
+      if (cumulated >= target) {
+        return Math.min(highestValueOf(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * adds the values recorded in another histogram to this histogram. Recordings in the other
+   * histogram that are concurrent with the addition may be partially added.
+   *
+   * @param other
+   *          the other histogram.
+   */
+  public void add(final LatencyHistogram other) {
+    for (int i = 0; i < COUNTS_LENGTH; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+    totalCount.addAndGet(other.totalCount.get());
+    totalSum.addAndGet(other.totalSum.get());
+    long v = other.maxValue.get();
+    long max = maxValue.get();
+    while (v > max && !maxValue.compareAndSet(max, v)) {
+      max = maxValue.get();
+    }
+  }
+
+  /**
+   * resets the histogram. Recordings that are concurrent with the reset may be partially lost.
+   */
+  public void reset() {
+    for (int i = 0; i < COUNTS_LENGTH; i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    totalSum.set(0);
+    maxValue.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + getCount() + " mean=" + (long) getMean() + " p50="
+        + getValueAtPercentile(50) + " p99=" + getValueAtPercentile(99) + " max=" + getMax();
+  }
+}
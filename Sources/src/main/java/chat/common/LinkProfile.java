@@ -0,0 +1,409 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines the emulated conditions of a link of a {@link LoopbackNetwork}: the
+ * distribution of the latency, the bandwidth, and the probabilities of loss, of duplication and of
+ * reordering of the messages. A profile is immutable, and is applied independently to both
+ * directions of the connections of the link.
+ *
+ * A profile is written as a list of settings {@code key=value} separated by spaces, for instance
+ * {@code latency=20ms jitter=5ms distribution=normal bandwidth=10Mbps loss=0.1%}, the settings that
+ * are not given keeping the values of {@link #PERFECT}:
+ * <ul>
+ * <li>{@code latency} and {@code jitter} are durations with the units {@code ns}, {@code us},
+ * {@code ms} or {@code s};</li>
+ * <li>{@code distribution} is one of the values of {@link Distribution};</li>
+ * <li>{@code bandwidth} is a rate with the units {@code bps}, {@code kbps}, {@code Mbps} or
+ * {@code Gbps}, or {@code unlimited};</li>
+ * <li>{@code loss}, {@code duplicate} and {@code reorder} are probabilities, written as numbers
+ * between 0 and 1 or as percentages.</li>
+ * </ul>
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class LinkProfile {
+  /**
+   * the bandwidth of the links whose bandwidth is not limited.
+   */
+  public static final long UNLIMITED = 0;
+  /**
+   * the profile of a link without latency, loss, duplication nor reordering.
+   */
+  public static final LinkProfile PERFECT = new LinkProfile(Distribution.CONSTANT, 0, 0, UNLIMITED,
+      0, 0, 0);
+
+  /**
+   * This enumeration defines the distributions of the latency of the messages.
+   */
+  public enum Distribution {
+    /**
+     * the latency is always {@code latency}, the jitter being ignored.
+     */
+    CONSTANT,
+    /**
+     * the latency is drawn uniformly between {@code latency} and {@code latency + jitter}.
+     */
+    UNIFORM,
+    /**
+     * the latency is drawn from a normal distribution of mean {@code latency} and of standard
+     * deviation {@code jitter}, the negative values being replaced by 0.
+     */
+    NORMAL,
+    /**
+     * the latency is {@code latency} plus a delay drawn from an exponential distribution of mean
+     * {@code jitter}, which gives the long tail of the congested wide area links.
+     */
+    EXPONENTIAL;
+
+    @Override
+    public String toString() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  /**
+   * the distribution of the latency.
+   */
+  private final Distribution distribution;
+  /**
+   * the latency in nanoseconds.
+   */
+  private final long latency;
+  /**
+   * the jitter in nanoseconds.
+   */
+  private final long jitter;
+  /**
+   * the bandwidth in bits per second, or {@link #UNLIMITED}.
+   */
+  private final long bandwidth;
+  /**
+   * the probability of loss of a message.
+   */
+  private final double loss;
+  /**
+   * the probability of duplication of a message.
+   */
+  private final double duplicate;
+  /**
+   * the probability of reordering of a message.
+   */
+  private final double reorder;
+
+  /**
+   * constructs a profile.
+   *
+   * @param distribution
+   *          the distribution of the latency.
+   * @param latency
+   *          the latency in nanoseconds.
+   * @param jitter
+   *          the jitter in nanoseconds, whose meaning depends on the distribution.
+   * @param bandwidth
+   *          the bandwidth in bits per second, or {@link #UNLIMITED}.
+   * @param loss
+   *          the probability that a message is lost.
+   * @param duplicate
+   *          the probability that a message is received twice.
+   * @param reorder
+   *          the probability that a message is held back and received after the messages sent
+   *          after it.
+   */
+  public LinkProfile(final Distribution distribution, final long latency, final long jitter,
+      final long bandwidth, final double loss, final double duplicate, final double reorder) {
+    if (distribution == null) {
+      throw new IllegalArgumentException("no distribution");
+    }
+    if (latency < 0 || jitter < 0 || bandwidth < 0) {
+      throw new IllegalArgumentException("negative latency, jitter or bandwidth (" + latency + ", "
+          + jitter + ", " + bandwidth + ")");
+    }
+    checkProbability("loss", loss);
+    checkProbability("duplicate", duplicate);
+    checkProbability("reorder", reorder);
+    this.distribution = distribution;
+    this.latency = latency;
+    this.jitter = jitter;
+    this.bandwidth = bandwidth;
+    this.loss = loss;
+    this.duplicate = duplicate;
+    this.reorder = reorder;
+  }
+
+  /**
+   * checks that a value is a probability.
+   *
+   * @param name
+   *          the name of the setting.
+   * @param value
+   *          the value.
+   */
+  private static void checkProbability(final String name, final double value) {
+    if (!(value >= 0 && value <= 1)) {
+      throw new IllegalArgumentException(name + " is not a probability (" + value + ")");
+    }
+  }
+
+  /**
+   * parses a profile, the settings that are not given keeping the values of a base profile.
+   *
+   * @param settings
+   *          the settings {@code key=value} separated by spaces.
+   * @param base
+   *          the base profile.
+   * @return the profile.
+   */
+  public static LinkProfile parse(final String settings, final LinkProfile base) {
+    Distribution distribution = base.distribution;
+    long latency = base.latency;
+    long jitter = base.jitter;
+    long bandwidth = base.bandwidth;
+    double loss = base.loss;
+    double duplicate = base.duplicate;
+    double reorder = base.reorder;
+    for (String setting : settings.trim().split("\\s+")) {
+      if (setting.isEmpty()) {
+        continue;
+      }
+      int equal = setting.indexOf('=');
+      if (equal <= 0) {
+        throw new IllegalArgumentException("setting without value: " + setting);
+      }
+      String key = setting.substring(0, equal).toLowerCase(Locale.ROOT);
+      String value = setting.substring(equal + 1);
+      switch (key) {
+        case "distribution":
+          distribution = Distribution.valueOf(value.toUpperCase(Locale.ROOT));
+          break;
+        case "latency":
+          latency = parseDuration(value);
+          break;
+        case "jitter":
+          jitter = parseDuration(value);
+          break;
+        case "bandwidth":
+          bandwidth = parseBandwidth(value);
+          break;
+        case "loss":
+          loss = parseProbability(value);
+          break;
+        case "duplicate":
+          duplicate = parseProbability(value);
+          break;
+        case "reorder":
+          reorder = parseProbability(value);
+          break;
+        default:
+          throw new IllegalArgumentException("unknown setting: " + key);
+      }
+    }
+    return new LinkProfile(distribution, latency, jitter, bandwidth, loss, duplicate, reorder);
+  }
+
+  /**
+   * parses a duration.
+   *
+   * @param value
+   *          the duration with its unit.
+   * @return the duration in nanoseconds.
+   */
+  static long parseDuration(final String value) {
+    String v = value.toLowerCase(Locale.ROOT);
+    TimeUnit unit;
+    int suffix;
+    if (v.endsWith("ns")) {
+      unit = TimeUnit.NANOSECONDS;
+      suffix = 2;
+    } else if (v.endsWith("us")) {
+      unit = TimeUnit.MICROSECONDS;
+      suffix = 2;
+    } else if (v.endsWith("ms")) {
+      unit = TimeUnit.MILLISECONDS;
+      suffix = 2;
+    } else if (v.endsWith("s")) {
+      unit = TimeUnit.SECONDS;
+      suffix = 1;
+    } else {
+      throw new IllegalArgumentException("duration without unit: " + value);
+    }
+    double amount = Double.parseDouble(v.substring(0, v.length() - suffix));
+    return (long) (amount * unit.toNanos(1));
+  }
+
+  /**
+   * parses a bandwidth.
+   *
+   * @param value
+   *          the bandwidth with its unit, or {@code unlimited}.
+   * @return the bandwidth in bits per second.
+   */
+  static long parseBandwidth(final String value) {
+    String v = value.toLowerCase(Locale.ROOT);
+    if (v.equals("unlimited")) {
+      return UNLIMITED;
+    }
+    if (!v.endsWith("bps")) {
+      throw new IllegalArgumentException("bandwidth without unit: " + value);
+    }
+    v = v.substring(0, v.length() - "bps".length());
+    long factor = 1;
+    if (v.endsWith("k")) {
+      factor = 1_000L;
+    } else if (v.endsWith("m")) {
+      factor = 1_000_000L;
+    } else if (v.endsWith("g")) {
+      factor = 1_000_000_000L;
+    }
+    if (factor != 1) {
+      v = v.substring(0, v.length() - 1);
+    }
+    return (long) (Double.parseDouble(v) * factor);
+  }
+
+  /**
+   * parses a probability.
+   *
+   * @param value
+   *          the probability, as a number between 0 and 1 or as a percentage.
+   * @return the probability.
+   */
+  static double parseProbability(final String value) {
+    if (value.endsWith("%")) {
+      return Double.parseDouble(value.substring(0, value.length() - 1)) / 100;
+    }
+    return Double.parseDouble(value);
+  }
+
+  /**
+   * draws the latency of a message.
+   *
+   * @param random
+   *          the random generator.
+   * @return the latency in nanoseconds.
+   */
+  long nextLatency(final Random random) {
+    if (jitter == 0) {
+      return latency;
+    }
+    switch (distribution) {
+      case UNIFORM:
+        return latency + (long) (random.nextDouble() * (jitter + 1));
+      case NORMAL:
+        return Math.max(0, latency + (long) (random.nextGaussian() * jitter));
+      case EXPONENTIAL:
+        return latency + (long) (-Math.log(1 - random.nextDouble()) * jitter);
+      default:
+        return latency;
+    }
+  }
+
+  /**
+   * computes the time of transmission of a frame on the link.
+   *
+   * @param bytes
+   *          the size of the frame in bytes.
+   * @return the time in nanoseconds, 0 when the bandwidth is not limited.
+   */
+  long transmissionTime(final long bytes) {
+    if (bandwidth == UNLIMITED) {
+      return 0;
+    }
+    return (long) (bytes * 8 * 1e9 / bandwidth);
+  }
+
+  /**
+   * gets the distribution of the latency.
+   *
+   * @return the distribution.
+   */
+  public Distribution getDistribution() {
+    return distribution;
+  }
+
+  /**
+   * gets the latency.
+   *
+   * @return the latency in nanoseconds.
+   */
+  public long getLatency() {
+    return latency;
+  }
+
+  /**
+   * gets the jitter.
+   *
+   * @return the jitter in nanoseconds.
+   */
+  public long getJitter() {
+    return jitter;
+  }
+
+  /**
+   * gets the bandwidth.
+   *
+   * @return the bandwidth in bits per second, or {@link #UNLIMITED}.
+   */
+  public long getBandwidth() {
+    return bandwidth;
+  }
+
+  /**
+   * gets the probability of loss of a message.
+   *
+   * @return the probability.
+   */
+  public double getLoss() {
+    return loss;
+  }
+
+  /**
+   * gets the probability of duplication of a message.
+   *
+   * @return the probability.
+   */
+  public double getDuplicate() {
+    return duplicate;
+  }
+
+  /**
+   * gets the probability of reordering of a message.
+   *
+   * @return the probability.
+   */
+  public double getReorder() {
+    return reorder;
+  }
+
+  @Override
+  public String toString() {
+    return "distribution=" + distribution + " latency=" + latency + "ns jitter=" + jitter
+        + "ns bandwidth=" + (bandwidth == UNLIMITED ? "unlimited" : bandwidth + "bps") + " loss="
+        + loss + " duplicate=" + duplicate + " reorder=" + reorder;
+  }
+}
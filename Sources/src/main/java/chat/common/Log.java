@@ -23,13 +23,16 @@ package chat.common;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
-import org.apache.log4j.Logger;
 
 /**
  * This class contains the configuration of some logging facilities.
  * 
  * To recapitulate, logging levels are: TRACE, DEBUG, INFO, WARN, ERROR, FATAL.
  * 
+ * The loggers are {@link AsyncLogger}s: the events are appended to the console by a background
+ * thread, and the messages may be parameterized, e.g.
+ * {@code COMM.info("Send message to {} server end points", nbServers)}.
+ * 
  * @author Denis Conan
  * 
  */
@@ -45,7 +48,7 @@ public final class Log {
   /**
    * logger object for the general part.
    */
-  public static final Logger GEN = Logger.getLogger(LOGGER_NAME_GEN);
+  public static final AsyncLogger GEN = AsyncLogger.getLogger(LOGGER_NAME_GEN);
   /**
    * name of logger for the communication part.
    */
@@ -53,7 +56,7 @@ public final class Log {
   /**
    * logger object for the communication part.
    */
-  public static final Logger COMM = Logger.getLogger(LOGGER_NAME_COMM);
+  public static final AsyncLogger COMM = AsyncLogger.getLogger(LOGGER_NAME_COMM);
   /**
    * name of logger for the testing part (used in JUnit classes).
    */
@@ -61,7 +64,7 @@ public final class Log {
   /**
    * logger object for the testing part.
    */
-  public static final Logger TEST = Logger.getLogger(LOGGER_NAME_GEN);
+  public static final AsyncLogger TEST = AsyncLogger.getLogger(LOGGER_NAME_GEN);
   /**
    * name of logger for the chat algorithm.
    */
@@ -69,7 +72,7 @@ public final class Log {
   /**
    * logger object for the chat algorithm.
    */
-  public static final Logger CHAT = Logger.getLogger(LOGGER_NAME_CHAT);
+  public static final AsyncLogger CHAT = AsyncLogger.getLogger(LOGGER_NAME_CHAT);
   /**
    * name of logger for the election algorithm.
    */
@@ -77,7 +80,7 @@ public final class Log {
   /**
    * logger object for the election algorithm.
    */
-  public static final Logger ELECTION = Logger.getLogger(LOGGER_NAME_ELECTION);
+  public static final AsyncLogger ELECTION = AsyncLogger.getLogger(LOGGER_NAME_ELECTION);
 
   /**
    * static configuration, which can be changed by command line options.
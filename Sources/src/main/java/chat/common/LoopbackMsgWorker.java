@@ -0,0 +1,287 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import static chat.common.Log.COMM;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.ClosedChannelException;
+import java.util.EnumMap;
+
+/**
+ * This class defines the end point of a connection of a {@link LoopbackNetwork}. The message sent
+ * is serialised at once, which isolates the sender from the receiver as with a socket, and its
+ * reception by the remote end point is scheduled in the virtual time of the network, after the
+ * latency of the message and after the reception of the messages sent before on the connection.
+ * The reception deserialises the message and gives it to the {@link MsgReceiver} of the remote end
+ * point.
+ *
+ * The {@link LinkProfile} of the connection is applied to every message: the message is first
+ * transmitted after the frames sent before, at the bandwidth of the link, then it is lost, or
+ * received after its latency, and possibly received a second time after another latency. A message
+ * held back by the emulation of reordering is received after another latency too, and does not
+ * delay the messages sent after it.
+ *
+ * The frames are never queued: the priority lanes have no effect, and the histograms of the time
+ * spent in the outbound queue stay empty.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LoopbackMsgWorker implements MsgWorker {
+  /**
+   * the network of the connection.
+   */
+  private final LoopbackNetwork network;
+  /**
+   * the receiver of the messages sent by the remote end point.
+   */
+  private final MsgReceiver receiver;
+  /**
+   * the profile of the link.
+   */
+  private final LinkProfile profile;
+  /**
+   * the counters of the connection.
+   */
+  private final ConnectionMetrics metrics = new ConnectionMetrics(this::getOutQueueLength);
+  /**
+   * the remote end point.
+   */
+  private LoopbackMsgWorker peer;
+  /**
+   * the virtual time of the reception of the last message sent, which keeps the order of the
+   * messages of the connection.
+   */
+  private long lastArrival;
+  /**
+   * the virtual time of the last reception scheduled, which delays the closing of the remote end
+   * point.
+   */
+  private long lastDelivery;
+  /**
+   * the virtual time at the end of the transmission of the last frame sent.
+   */
+  private long transmitted;
+  /**
+   * the number of messages sent and not yet received by the remote end point, which is only
+   * modified when holding the lock.
+   */
+  private volatile int inFlight;
+  /**
+   * states whether the end point is closed.
+   */
+  private boolean closed;
+  /**
+   * the histograms of the time spent in the outbound queue, which stay empty.
+   */
+  private final EnumMap<PriorityLane, LatencyHistogram> queueWaits =
+      new EnumMap<>(PriorityLane.class);
+
+  /**
+   * constructs an end point, which is connected by the network.
+   *
+   * @param network
+   *          the network.
+   * @param receiver
+   *          the receiver of the messages sent by the remote end point.
+   * @param profile
+   *          the profile of the link.
+   */
+  LoopbackMsgWorker(final LoopbackNetwork network, final MsgReceiver receiver,
+      final LinkProfile profile) {
+    this.network = network;
+    this.receiver = receiver;
+    this.profile = profile;
+    for (PriorityLane lane : PriorityLane.values()) {
+      queueWaits.put(lane, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * sets the remote end point.
+   *
+   * @param peer
+   *          the remote end point.
+   */
+  void setPeer(final LoopbackMsgWorker peer) {
+    this.peer = peer;
+  }
+
+  @Override
+  public long sendMsg(final int type, final int identity, final int seqNumber,
+      final long originTime, final int hops, final Serializable s) throws IOException {
+    byte[] data = FullDuplexMsgWorker.serialize(s);
+    int headerBytes = FullDuplexMsgWorker.HEADER_BYTES
+        + (originTime != UNTRACED ? FullDuplexMsgWorker.EXTENSION_BYTES : 0);
+    int bytes = headerBytes + data.length;
+    long arrival;
+    long duplicateArrival = -1;
+    synchronized (this) {
+      if (closed) {
+        throw new ClosedChannelException();
+      }
+      transmitted = Math.max(network.now(), transmitted) + profile.transmissionTime(bytes);
+      metrics.frameOut(bytes);
+      if (network.nextFault(profile.getLoss())) {
+        network.countLost();
+        return bytes;
+      }
+      arrival = transmitted + network.nextLatency(profile);
+      if (network.nextFault(profile.getReorder())) {
+        arrival += network.nextLatency(profile);
+        network.countReordered();
+      } else {
+        arrival = Math.max(arrival, lastArrival);
+        lastArrival = arrival;
+      }
+      lastDelivery = Math.max(lastDelivery, arrival);
+      inFlight++;
+      if (network.nextFault(profile.getDuplicate())) {
+        duplicateArrival = arrival + network.nextLatency(profile);
+        lastDelivery = Math.max(lastDelivery, duplicateArrival);
+        inFlight++;
+        network.countDuplicated();
+      }
+    }
+    Runnable delivery = () -> {
+      synchronized (this) {
+        inFlight--;
+      }
+      peer.receive(type, identity, seqNumber, originTime, hops, headerBytes, data);
+    };
+    network.scheduleAt(arrival, delivery);
+    if (duplicateArrival >= 0) {
+      network.scheduleAt(duplicateArrival, delivery);
+    }
+    return bytes;
+  }
+
+  /**
+   * receives a message sent by the remote end point. The message is dropped when the end point is
+   * closed.
+   *
+   * @param type
+   *          message's type.
+   * @param identity
+   *          sender's identity.
+   * @param seqNumber
+   *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the hop count of the message.
+   * @param headerBytes
+   *          the size of the header of the frame in bytes.
+   * @param data
+   *          the serialised message.
+   */
+  private void receive(final int type, final int identity, final int seqNumber,
+      final long originTime, final int hops, final int headerBytes, final byte[] data) {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+    }
+    metrics.frameIn(headerBytes + data.length);
+    try {
+      Serializable msg;
+      try {
+        msg = FullDuplexMsgWorker.deserialize(data);
+      } catch (IOException e) {
+        metrics.decodeError();
+        throw e;
+      }
+      if (msg == null) {
+        metrics.decodeError();
+      }
+      receiver.received(this, type, identity, seqNumber, originTime, hops, msg);
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+      close();
+    }
+  }
+
+  /**
+   * closes the connection. The remote end point is closed after the reception of the messages
+   * already sent.
+   */
+  @Override
+  public void close() {
+    long arrival;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      arrival = Math.max(network.now() + network.nextLatency(profile), lastDelivery);
+    }
+    closeAndNotify();
+    network.scheduleAt(arrival, peer::closeAndNotify);
+  }
+
+  /**
+   * closes the end point and notifies the receiver, once.
+   */
+  private void closeAndNotify() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    receiver.closed(this);
+  }
+
+  /**
+   * states whether the end point is closed.
+   *
+   * @return {@code true} if the end point is closed.
+   */
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * gets the profile of the link.
+   *
+   * @return the profile.
+   */
+  public LinkProfile getProfile() {
+    return profile;
+  }
+
+  @Override
+  public int getOutQueueLength() {
+    return inFlight;
+  }
+
+  @Override
+  public LatencyHistogram getQueueWait(final PriorityLane lane) {
+    return queueWaits.get(lane);
+  }
+
+  @Override
+  public ConnectionMetrics getMetrics() {
+    return metrics;
+  }
+}
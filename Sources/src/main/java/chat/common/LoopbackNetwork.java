@@ -0,0 +1,628 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class defines an in-process network that connects the chat servers and the chat clients of
+ * a scenario without sockets, together with a deterministic scheduler. The messages sent on a
+ * connection of the network (see {@link LoopbackMsgWorker}) are not written to the kernel: they
+ * are serialised and their reception is scheduled as an event of a virtual time, after a latency
+ * drawn from a seeded random generator. The events are executed one at a time by the thread that
+ * runs the scheduler (see {@link #runFor(long)}, {@link #runUntil(BooleanSupplier, long)} and
+ * {@link #runUntilQuiescent()}), in the order of their virtual times, and in the order of their
+ * scheduling for equal times. Hence:
+ * <ul>
+ * <li>a scenario runs as fast as the CPU allows, since waiting for a duration only advances the
+ * virtual time;</li>
+ * <li>a scenario run with the same seed is replayed exactly, provided that the scenario only acts
+ * on the servers and on the clients from the thread running the scheduler;</li>
+ * <li>the messages of a connection are received in the order of their sending, as with TCP, and a
+ * connection is opened at once, the listening end point being called back during the connect.</li>
+ * </ul>
+ *
+ * The conditions of the links can be emulated with a {@link LinkProfile} per link: the latency
+ * follows the distribution of the profile, the frames of a direction of a connection are
+ * transmitted one after the other at the bandwidth of the profile, and the messages are lost,
+ * duplicated or held back (and hence reordered) with the probabilities of the profile. The profile
+ * of a connection is the profile given for its pair of ports (see
+ * {@link #setProfile(int, int, LinkProfile)}), else the profile given for one of its ports (see
+ * {@link #setProfile(int, LinkProfile)}), else the default profile of the network. The random
+ * choices use the seeded generator of the network, so that the emulation is replayed too.
+ *
+ * The end points are designated by their port numbers, the host names being ignored. The servers
+ * use the network with the engine {@link chat.server.Server#LOOPBACK_ENGINE}, and the clients with
+ * the constructor {@link chat.client.Client#Client(LoopbackNetwork, int)}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LoopbackNetwork {
+  /**
+   * the default latency of the messages, in nanoseconds.
+   */
+  public static final long DEFAULT_LATENCY = TimeUnit.MICROSECONDS.toNanos(100);
+  /**
+   * the local port of the connections opened by the end points that do not listen, such as the
+   * clients.
+   */
+  public static final int ANONYMOUS = -1;
+  /**
+   * the maximum number of events executed by {@link #runUntilQuiescent()}, in order to detect the
+   * scenarios that never become quiescent.
+   */
+  private static final long MAX_EVENTS = 100_000_000L;
+
+  /**
+   * This interface defines the listening end point of a port.
+   */
+  public interface Acceptor {
+    /**
+     * is called when a connection to the port is opened. The messages sent by the remote end point
+     * are received by the receiver given when listening, after the return of this method.
+     *
+     * @param worker
+     *          the message worker of the local end point of the new connection.
+     * @throws IOException
+     *           the exception thrown in case of problem when accepting the connection.
+     */
+    void accepted(LoopbackMsgWorker worker) throws IOException;
+  }
+
+  /**
+   * This class defines a listening port.
+   */
+  private static final class Listener {
+    /**
+     * the receiver of the messages of the accepted connections.
+     */
+    private final MsgReceiver receiver;
+    /**
+     * the listening end point.
+     */
+    private final Acceptor acceptor;
+
+    /**
+     * constructs a listening port.
+     *
+     * @param receiver
+     *          the receiver of the messages of the accepted connections.
+     * @param acceptor
+     *          the listening end point.
+     */
+    private Listener(final MsgReceiver receiver, final Acceptor acceptor) {
+      this.receiver = receiver;
+      this.acceptor = acceptor;
+    }
+  }
+
+  /**
+   * This class defines an event of the scheduler.
+   */
+  private static final class Event implements Comparable<Event> {
+    /**
+     * the virtual time of the event, in nanoseconds.
+     */
+    private final long time;
+    /**
+     * the rank of the scheduling of the event, which orders the events of equal times.
+     */
+    private final long rank;
+    /**
+     * the task of the event.
+     */
+    private final Runnable task;
+
+    /**
+     * constructs an event.
+     *
+     * @param time
+     *          the virtual time of the event.
+     * @param rank
+     *          the rank of the scheduling of the event.
+     * @param task
+     *          the task of the event.
+     */
+    private Event(final long time, final long rank, final Runnable task) {
+      this.time = time;
+      this.rank = rank;
+      this.task = task;
+    }
+
+    @Override
+    public int compareTo(final Event other) {
+      int result = Long.compare(time, other.time);
+      return result != 0 ? result : Long.compare(rank, other.rank);
+    }
+  }
+
+  /**
+   * the random generator of the latencies and of the emulated faults.
+   */
+  private final Random random;
+  /**
+   * the profile of the links that have no specific profile.
+   */
+  private final LinkProfile defaultProfile;
+  /**
+   * the profiles of the connections to or from a port.
+   */
+  private final Map<Integer, LinkProfile> portProfiles = new HashMap<>();
+  /**
+   * the profiles of the connections between two ports, the key being computed by
+   * {@link #link(int, int)}.
+   */
+  private final Map<Long, LinkProfile> linkProfiles = new HashMap<>();
+  /**
+   * the events that are not yet executed.
+   */
+  private final PriorityQueue<Event> events = new PriorityQueue<>();
+  /**
+   * the listening ports.
+   */
+  private final Map<Integer, Listener> listeners = new HashMap<>();
+  /**
+   * the current virtual time, in nanoseconds.
+   */
+  private long now;
+  /**
+   * the number of events scheduled so far.
+   */
+  private long nbScheduled;
+  /**
+   * the number of events executed so far.
+   */
+  private long nbExecuted;
+  /**
+   * the number of messages lost by the emulation of the links.
+   */
+  private long nbLost;
+  /**
+   * the number of messages duplicated by the emulation of the links.
+   */
+  private long nbDuplicated;
+  /**
+   * the number of messages held back by the emulation of the links.
+   */
+  private long nbReordered;
+
+  /**
+   * constructs a network with the default latency and no jitter.
+   *
+   * @param seed
+   *          the seed of the random generator of the latencies.
+   */
+  public LoopbackNetwork(final long seed) {
+    this(seed, DEFAULT_LATENCY, 0);
+  }
+
+  /**
+   * constructs a network.
+   *
+   * @param seed
+   *          the seed of the random generator of the latencies.
+   * @param latency
+   *          the minimum latency of the messages, in nanoseconds.
+   * @param jitter
+   *          the maximum additional latency of the messages, in nanoseconds: the latency of every
+   *          message is drawn uniformly between {@code latency} and {@code latency + jitter}.
+   */
+  public LoopbackNetwork(final long seed, final long latency, final long jitter) {
+    this(seed, new LinkProfile(LinkProfile.Distribution.UNIFORM, latency, jitter,
+        LinkProfile.UNLIMITED, 0, 0, 0));
+  }
+
+  /**
+   * constructs a network whose links are emulated.
+   *
+   * @param seed
+   *          the seed of the random generator of the latencies and of the emulated faults.
+   * @param defaultProfile
+   *          the profile of the links that have no specific profile.
+   */
+  public LoopbackNetwork(final long seed, final LinkProfile defaultProfile) {
+    if (defaultProfile == null) {
+      throw new IllegalArgumentException("no default profile");
+    }
+    this.random = new Random(seed);
+    this.defaultProfile = defaultProfile;
+  }
+
+  /**
+   * computes the key of the link between two ports, which does not depend on the order of the
+   * ports.
+   *
+   * @param port1
+   *          the first port number.
+   * @param port2
+   *          the second port number.
+   * @return the key.
+   */
+  private static long link(final int port1, final int port2) {
+    return ((long) Math.min(port1, port2) << Integer.SIZE)
+        | (Math.max(port1, port2) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * sets the profile of the connections to or from a port that have no profile for their pair of
+   * ports. The connections already opened keep their profile.
+   *
+   * @param port
+   *          the port number.
+   * @param profile
+   *          the profile.
+   */
+  public synchronized void setProfile(final int port, final LinkProfile profile) {
+    if (profile == null) {
+      throw new IllegalArgumentException("no profile");
+    }
+    portProfiles.put(port, profile);
+  }
+
+  /**
+   * sets the profile of the connections between two ports. The connections already opened keep
+   * their profile.
+   *
+   * @param port1
+   *          the first port number.
+   * @param port2
+   *          the second port number.
+   * @param profile
+   *          the profile.
+   */
+  public synchronized void setProfile(final int port1, final int port2,
+      final LinkProfile profile) {
+    if (profile == null) {
+      throw new IllegalArgumentException("no profile");
+    }
+    linkProfiles.put(link(port1, port2), profile);
+  }
+
+  /**
+   * gets the profile of the connections between two ports.
+   *
+   * @param localPort
+   *          the local port number of the connecting end point, or {@link #ANONYMOUS}.
+   * @param port
+   *          the listening port number.
+   * @return the profile.
+   */
+  public synchronized LinkProfile getProfile(final int localPort, final int port) {
+    LinkProfile profile = linkProfiles.get(link(localPort, port));
+    if (profile == null) {
+      profile = portProfiles.get(localPort);
+    }
+    if (profile == null) {
+      profile = portProfiles.get(port);
+    }
+    return profile != null ? profile : defaultProfile;
+  }
+
+  /**
+   * listens to a port.
+   *
+   * @param port
+   *          the port number.
+   * @param receiver
+   *          the receiver of the messages of the accepted connections.
+   * @param acceptor
+   *          the listening end point.
+   * @throws IOException
+   *           the exception thrown when the port is already used.
+   */
+  public synchronized void listen(final int port, final MsgReceiver receiver,
+      final Acceptor acceptor) throws IOException {
+    if (receiver == null || acceptor == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + receiver + ", "
+          + acceptor + ")");
+    }
+    if (listeners.containsKey(port)) {
+      throw new IOException("port " + port + " already used");
+    }
+    listeners.put(port, new Listener(receiver, acceptor));
+  }
+
+  /**
+   * stops listening to a port. The connections already accepted are not closed.
+   *
+   * @param port
+   *          the port number.
+   */
+  public synchronized void unlisten(final int port) {
+    listeners.remove(port);
+  }
+
+  /**
+   * opens a connection to a listening port from an end point that does not listen. The listening
+   * end point is called back before the method returns.
+   *
+   * @param port
+   *          the port number.
+   * @param receiver
+   *          the receiver of the messages sent by the listening end point.
+   * @return the message worker of the local end point of the new connection.
+   * @throws IOException
+   *           the exception thrown when no end point listens to the port.
+   */
+  public LoopbackMsgWorker connect(final int port, final MsgReceiver receiver)
+      throws IOException {
+    return connect(ANONYMOUS, port, receiver);
+  }
+
+  /**
+   * opens a connection to a listening port. The local port only selects the profile of the
+   * connection. The listening end point is called back before the method returns.
+   *
+   * @param localPort
+   *          the port number the local end point listens to, or {@link #ANONYMOUS}.
+   * @param port
+   *          the port number.
+   * @param receiver
+   *          the receiver of the messages sent by the listening end point.
+   * @return the message worker of the local end point of the new connection.
+   * @throws IOException
+   *           the exception thrown when no end point listens to the port.
+   */
+  public LoopbackMsgWorker connect(final int localPort, final int port,
+      final MsgReceiver receiver) throws IOException {
+    if (receiver == null) {
+      throw new IllegalArgumentException("no receiver");
+    }
+    Listener listener;
+    synchronized (this) {
+      listener = listeners.get(port);
+    }
+    if (listener == null) {
+      throw new ConnectException("connection refused on port " + port);
+    }
+    LinkProfile profile = getProfile(localPort, port);
+    LoopbackMsgWorker local = new LoopbackMsgWorker(this, receiver, profile);
+    LoopbackMsgWorker remote = new LoopbackMsgWorker(this, listener.receiver, profile);
+    local.setPeer(remote);
+    remote.setPeer(local);
+    listener.acceptor.accepted(remote);
+    return local;
+  }
+
+  /**
+   * draws the latency of a message.
+   *
+   * @param profile
+   *          the profile of the link.
+   * @return the latency in nanoseconds.
+   */
+  synchronized long nextLatency(final LinkProfile profile) {
+    return profile.nextLatency(random);
+  }
+
+  /**
+   * draws whether an emulated fault occurs. The random generator is not used when the probability
+   * is 0, so that the networks without faults replay the same latencies.
+   *
+   * @param probability
+   *          the probability of the fault.
+   * @return {@code true} if the fault occurs.
+   */
+  synchronized boolean nextFault(final double probability) {
+    return probability > 0 && random.nextDouble() < probability;
+  }
+
+  /**
+   * counts a message lost by the emulation of a link.
+   */
+  synchronized void countLost() {
+    nbLost++;
+  }
+
+  /**
+   * counts a message duplicated by the emulation of a link.
+   */
+  synchronized void countDuplicated() {
+    nbDuplicated++;
+  }
+
+  /**
+   * counts a message held back by the emulation of a link.
+   */
+  synchronized void countReordered() {
+    nbReordered++;
+  }
+
+  /**
+   * gets the number of messages lost by the emulation of the links.
+   *
+   * @return the number of messages.
+   */
+  public synchronized long getNbLost() {
+    return nbLost;
+  }
+
+  /**
+   * gets the number of messages duplicated by the emulation of the links.
+   *
+   * @return the number of messages.
+   */
+  public synchronized long getNbDuplicated() {
+    return nbDuplicated;
+  }
+
+  /**
+   * gets the number of messages held back by the emulation of the links.
+   *
+   * @return the number of messages.
+   */
+  public synchronized long getNbReordered() {
+    return nbReordered;
+  }
+
+  /**
+   * gets the current virtual time.
+   *
+   * @return the virtual time in nanoseconds.
+   */
+  public synchronized long now() {
+    return now;
+  }
+
+  /**
+   * gets the number of events executed so far.
+   *
+   * @return the number of events.
+   */
+  public synchronized long getNbExecuted() {
+    return nbExecuted;
+  }
+
+  /**
+   * gets the number of events scheduled and not yet executed.
+   *
+   * @return the number of events.
+   */
+  public synchronized int getNbPending() {
+    return events.size();
+  }
+
+  /**
+   * schedules a task after a delay of virtual time.
+   *
+   * @param delay
+   *          the delay in nanoseconds.
+   * @param task
+   *          the task.
+   */
+  public synchronized void schedule(final long delay, final Runnable task) {
+    scheduleAt(now + Math.max(0, delay), task);
+  }
+
+  /**
+   * schedules a task at an instant of the virtual time. An instant in the past is replaced by the
+   * current virtual time.
+   *
+   * @param time
+   *          the virtual time in nanoseconds.
+   * @param task
+   *          the task.
+   */
+  synchronized void scheduleAt(final long time, final Runnable task) {
+    if (task == null) {
+      throw new IllegalArgumentException("no task");
+    }
+    events.add(new Event(Math.max(now, time), nbScheduled++, task));
+  }
+
+  /**
+   * executes the next event whose virtual time is not after a deadline. The virtual time is
+   * advanced to the time of the event. The task is executed without holding the lock of the
+   * network, so that it can schedule other events.
+   *
+   * @param deadline
+   *          the deadline in virtual nanoseconds.
+   * @return {@code true} if an event has been executed.
+   */
+  private boolean step(final long deadline) {
+    Event event;
+    synchronized (this) {
+      event = events.peek();
+      if (event == null || event.time > deadline) {
+        return false;
+      }
+      events.poll();
+      now = event.time;
+      nbExecuted++;
+    }
+    event.task.run();
+    return true;
+  }
+
+  /**
+   * computes the virtual time at the end of a duration, which is bounded by
+   * {@link Long#MAX_VALUE}.
+   *
+   * @param duration
+   *          the duration in nanoseconds.
+   * @return the virtual time in nanoseconds.
+   */
+  private synchronized long deadline(final long duration) {
+    long deadline = now + Math.max(0, duration);
+    return deadline < now ? Long.MAX_VALUE : deadline;
+  }
+
+  /**
+   * executes the events during a duration of virtual time, and then advances the virtual time to
+   * the end of the duration.
+   *
+   * @param duration
+   *          the duration in nanoseconds.
+   */
+  public void runFor(final long duration) {
+    long deadline = deadline(duration);
+    while (step(deadline)) {
+      continue;
+    }
+    synchronized (this) {
+      now = Math.max(now, deadline);
+    }
+  }
+
+  /**
+   * executes the events until a condition holds, the condition being evaluated before every event,
+   * or until a duration of virtual time has elapsed, or until there is no more event.
+   *
+   * @param condition
+   *          the condition.
+   * @param timeout
+   *          the maximum duration in nanoseconds.
+   * @return the value of the condition when the method returns.
+   */
+  public boolean runUntil(final BooleanSupplier condition, final long timeout) {
+    long deadline = deadline(timeout);
+    while (!condition.getAsBoolean()) {
+      if (!step(deadline)) {
+        return condition.getAsBoolean();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * executes the events until there is no more event.
+   *
+   * @return the number of events executed.
+   */
+  public long runUntilQuiescent() {
+    long nb = 0;
+    while (step(Long.MAX_VALUE)) {
+      if (++nb > MAX_EVENTS) {
+        throw new IllegalStateException("the network does not become quiescent");
+      }
+    }
+    return nb;
+  }
+}
@@ -0,0 +1,92 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * This interface defines the receiving side of a connection whose messages are pushed by the
+ * transport, as opposed to the connections whose messages are read by the thread of an engine
+ * (see {@link FullDuplexMsgWorker#readMessage()}). The messages of a connection are given one at a
+ * time, in the order of their sending.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface MsgReceiver {
+  /**
+   * treats a message that has just been received.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   * @param type
+   *          message's type.
+   * @param identity
+   *          sender's identity.
+   * @param seqNumber
+   *          message's sequence number.
+   * @param msg
+   *          message as a serializable object.
+   * @throws IOException
+   *           the exception thrown in case of communication problem during the treatment.
+   */
+  void received(MsgWorker worker, int type, int identity, int seqNumber, Serializable msg)
+      throws IOException;
+
+  /**
+   * treats a message that has just been received, with the origin time and hop count of its
+   * header. By default, they are ignored.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   * @param type
+   *          message's type.
+   * @param identity
+   *          sender's identity.
+   * @param seqNumber
+   *          message's sequence number.
+   * @param originTime
+   *          the instant of the sending of the message by its original sender, or
+   *          {@link MsgWorker#UNTRACED} when the message has been sent with the basic header.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param msg
+   *          message as a serializable object.
+   * @throws IOException
+   *           the exception thrown in case of communication problem during the treatment.
+   */
+  default void received(final MsgWorker worker, final int type, final int identity,
+      final int seqNumber, final long originTime, final int hops, final Serializable msg)
+      throws IOException {
+    received(worker, type, identity, seqNumber, msg);
+  }
+
+  /**
+   * is called once when the connection has been closed, either by the remote end point or
+   * because of a communication problem.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   */
+  void closed(MsgWorker worker);
+}
@@ -0,0 +1,123 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * This interface defines the sending side of a connection, as seen by the algorithms and by the
+ * forwarding of the server. A message worker also identifies the connection: the server keeps the
+ * message workers of its neighbours and of its clients, and the algorithms designate the neighbour
+ * to which a message is sent by its message worker. The reception of the messages is left to the
+ * engine that created the message worker (see {@link chat.server.ServerEngine}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface MsgWorker {
+  /**
+   * the origin time of the messages that are not traced. These messages are sent with the basic
+   * header, without origin time and hop count.
+   */
+  long UNTRACED = Long.MIN_VALUE;
+
+  /**
+   * sends a message that is not traced. The message is queued in the lane of its type (see
+   * {@link PriorityLane}) and is written as soon as possible.
+   *
+   * @param type
+   *          message type.
+   * @param identity
+   *          the identity to be inserted in the message to send.
+   * @param seqNumber
+   *          the sequence number of the message to send.
+   * @param s
+   *          the content of the message as a serialised object.
+   * @return size of the data send.
+   * @throws IOException
+   *           the exception thrown in case of IO problem.
+   */
+  default long sendMsg(final int type, final int identity, final int seqNumber,
+      final Serializable s) throws IOException {
+    return sendMsg(type, identity, seqNumber, UNTRACED, 0, s);
+  }
+
+  /**
+   * sends a message with the extended header: the origin time of the message and the number of
+   * servers it has crossed are carried along with the message, so that the latency of the message
+   * can be measured at its final reception. The origin time is taken with
+   * {@link System#nanoTime()}, which is monotonic but only comparable within one host.
+   *
+   * @param type
+   *          message type.
+   * @param identity
+   *          the identity to be inserted in the message to send.
+   * @param seqNumber
+   *          the sequence number of the message to send.
+   * @param originTime
+   *          the instant of the sending of the message by its original sender, or
+   *          {@link #UNTRACED} to send the message with the basic header.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param s
+   *          the content of the message as a serialised object.
+   * @return size of the data send.
+   * @throws IOException
+   *           the exception thrown in case of IO problem.
+   */
+  long sendMsg(int type, int identity, int seqNumber, long originTime, int hops, Serializable s)
+      throws IOException;
+
+  /**
+   * closes the connection.
+   *
+   * @throws IOException
+   *           the exception thrown in case of problem.
+   */
+  void close() throws IOException;
+
+  /**
+   * gets the number of frames waiting to be written.
+   *
+   * @return the number of frames.
+   */
+  int getOutQueueLength();
+
+  /**
+   * gets the histogram of the time (in nanoseconds) spent by the frames of a priority lane in the
+   * outbound queue.
+   *
+   * @param lane
+   *          the priority lane.
+   * @return the histogram.
+   */
+  LatencyHistogram getQueueWait(PriorityLane lane);
+
+  /**
+   * gets the counters of the connection: bytes and frames in and out, decode errors and depth of
+   * the outbound queue.
+   *
+   * @return the counters.
+   */
+  ConnectionMetrics getMetrics();
+}
@@ -0,0 +1,321 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import static chat.common.Log.GEN;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import chat.server.Server;
+import chat.server.algorithms.MutualExclusionAlgorithm;
+
+/**
+ * This class defines the benchmark of the algorithms of mutual exclusion (see
+ * {@link MutualExclusionAlgorithm}). A run starts the servers of a {@link Topology} in an
+ * in-process network, so that the results are deterministic, creates the token of Raymond's
+ * algorithm at the server {@code 0}, then makes every server request the same number of critical
+ * sections at once, and measures:
+ * <ul>
+ * <li>the number of messages and of bytes sent by the servers to their neighbours, from the
+ * requests to the quiescence of the network, and the number of messages per entry in a critical
+ * section; the messages of the creation of the token are given apart;</li>
+ * <li>the time from the requests to the last entry, in virtual time.</li>
+ * </ul>
+ * The algorithm of Ricart and Agrawala is only run on fully connected clusters. Every run appends a
+ * JSON object on one line to the output file, as {@link BenchmarkScenario}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class MutexBenchmark extends Scenario {
+  /**
+   * the maximum number of servers, whose port numbers must not overlap.
+   */
+  private static final int MAX_SERVERS = 100;
+  /**
+   * the maximum duration of the run in virtual time, in milliseconds.
+   */
+  private static final long TIMEOUT = 60_000;
+  /**
+   * the number of nanoseconds per microsecond.
+   */
+  private static final double NANOS_PER_MICRO = 1e3;
+  /**
+   * the algorithm of mutual exclusion.
+   */
+  private final MutualExclusionAlgorithm algorithm;
+  /**
+   * the topology of the servers.
+   */
+  private final Topology topology;
+  /**
+   * the number of servers.
+   */
+  private final int nbServers;
+  /**
+   * the number of critical sections requested by every server.
+   */
+  private final int sectionsPerServer;
+  /**
+   * the seed of the random topology and of the network.
+   */
+  private final long seed;
+  /**
+   * the servers of the run.
+   */
+  private final List<Server> servers = new ArrayList<>();
+  /**
+   * the identities of the servers in the order of their entries in the critical section.
+   */
+  private final List<Integer> entries = new ArrayList<>();
+  /**
+   * the result of the run, as a JSON object, or {@code null}.
+   */
+  private String result;
+
+  /**
+   * constructs a run of the benchmark.
+   *
+   * @param algorithm
+   *          the algorithm of mutual exclusion.
+   * @param topology
+   *          the topology of the servers.
+   * @param nbServers
+   *          the number of servers.
+   * @param sectionsPerServer
+   *          the number of critical sections requested by every server.
+   * @param seed
+   *          the seed of the random topology and of the network.
+   */
+  public MutexBenchmark(final MutualExclusionAlgorithm algorithm, final Topology topology,
+      final int nbServers, final int sectionsPerServer, final long seed) {
+    super(new LoopbackNetwork(seed));
+    if (algorithm == null || topology == null) {
+      throw new IllegalArgumentException("no algorithm or no topology");
+    }
+    if (nbServers <= 0 || nbServers >= MAX_SERVERS) {
+      throw new IllegalArgumentException("invalid number of servers (" + nbServers + ")");
+    }
+    if (sectionsPerServer <= 0) {
+      throw new IllegalArgumentException("invalid number of critical sections ("
+          + sectionsPerServer + ")");
+    }
+    this.algorithm = algorithm;
+    this.topology = topology;
+    this.nbServers = nbServers;
+    this.sectionsPerServer = sectionsPerServer;
+    this.seed = seed;
+  }
+
+  /**
+   * states whether an algorithm of mutual exclusion can run on a topology.
+   *
+   * @param algorithm
+   *          the algorithm of mutual exclusion.
+   * @param topology
+   *          the topology of the servers.
+   * @return {@code true} if the algorithm can run.
+   */
+  public static boolean isApplicable(final MutualExclusionAlgorithm algorithm,
+      final Topology topology) {
+    return algorithm != MutualExclusionAlgorithm.RICART_AGRAWALA || topology == Topology.MESH;
+  }
+
+  /**
+   * gets the result of the run.
+   *
+   * @return the JSON object, or {@code null} before the run.
+   */
+  public String getResult() {
+    return result;
+  }
+
+  /**
+   * gets the identities of the servers in the order of their entries in the critical section.
+   *
+   * @return the identities.
+   */
+  public List<Integer> getEntries() {
+    return entries;
+  }
+
+  @Override
+  public void constructAndRun() throws Exception {
+    List<List<Integer>> connections = topology.connections(nbServers, new Random(seed), 0.2);
+    int nbLinks = 0;
+    for (int i = 0; i < nbServers; i++) {
+      StringBuilder args = new StringBuilder(Integer.toString(i));
+      for (Integer j : connections.get(i)) {
+        args.append(" localhost ").append(j);
+        nbLinks++;
+      }
+      Server server = instanciateAServer(args.toString());
+      server.setMutexAlgorithm(algorithm);
+      servers.add(server);
+    }
+    getNetwork().runUntilQuiescent();
+    long[] setup = sent();
+    if (algorithm == MutualExclusionAlgorithm.RAYMOND) {
+      emulateAnInputLineFromTheConsoleForAServer(servers.get(0), "Token");
+      getNetwork().runUntilQuiescent();
+    }
+    long[] before = sent();
+    for (int k = 0; k < sectionsPerServer; k++) {
+      for (Server server : servers) {
+        int identity = server.getState().getIdentity();
+        server.requestCriticalSection(() -> entries.add(identity));
+      }
+    }
+    long completion = await(() -> entries.size() == nbServers * sectionsPerServer, TIMEOUT);
+    getNetwork().runUntilQuiescent();
+    long[] after = sent();
+    long messages = after[0] - before[0];
+    result = String.format(Locale.ROOT, "{\"timestamp\":\"%s\",\"algorithm\":\"%s\","
+        + "\"topology\":\"%s\",\"servers\":%d,\"links\":%d,\"sectionsPerServer\":%d,"
+        + "\"entries\":%d,\"messages\":%d,\"messagesPerEntry\":%.2f,\"bytes\":%d,"
+        + "\"setupMessages\":%d,\"completionMicros\":%.1f}",
+        Instant.now(), algorithm.algorithmName(), topology, nbServers, nbLinks,
+        sectionsPerServer, entries.size(), messages, (double) messages / entries.size(),
+        after[1] - before[1], before[0] - setup[0], completion / NANOS_PER_MICRO);
+  }
+
+  /**
+   * counts the messages and the bytes sent by the servers to their neighbours.
+   *
+   * @return the number of messages and the number of bytes.
+   */
+  private long[] sent() {
+    long[] counts = new long[2];
+    for (Server server : servers) {
+      for (MsgWorker worker : server.getState().getServerWorkersView()) {
+        counts[0] += worker.getMetrics().getFramesOut();
+        counts[1] += worker.getMetrics().getBytesOut();
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * The method main of the benchmark. The options are, with their default values:
+   * {@code -algorithms raymond,ricart-agrawala} (comma separated list),
+   * {@code -topologies tree,mesh} (comma separated list of {@code line}, {@code ring},
+   * {@code star}, {@code mesh}, {@code tree} or {@code random}), {@code -sizes 7,15,31} (comma
+   * separated list of numbers of servers), {@code -sections 1} (per server), {@code -seed 0} and
+   * {@code -output mutex-results.json}. The combinations of an algorithm and of a topology on
+   * which the algorithm cannot run are skipped.
+   *
+   * @param args
+   *          the command line arguments.
+   * @throws Exception
+   *           the exception thrown when the benchmark fails.
+   */
+  public static void main(final String[] args) throws Exception {
+    List<MutualExclusionAlgorithm> algorithms = Arrays.asList(MutualExclusionAlgorithm.values());
+    List<Topology> topologies = Arrays.asList(Topology.TREE, Topology.MESH);
+    List<Integer> sizes = Arrays.asList(7, 15, 31);
+    int sections = 1;
+    long seed = 0;
+    String output = "mutex-results.json";
+    for (int i = 0; i + 1 < args.length; i = i + 2) {
+      String value = args[i + 1];
+      switch (args[i]) {
+        case "-algorithms":
+          algorithms = new ArrayList<>();
+          for (String name : value.split(",")) {
+            algorithms.add(MutualExclusionAlgorithm.of(name));
+          }
+          break;
+        case "-topologies":
+          topologies = new ArrayList<>();
+          for (String name : value.split(",")) {
+            topologies.add(Topology.of(name));
+          }
+          break;
+        case "-sizes":
+          sizes = new ArrayList<>();
+          for (String size : value.split(",")) {
+            sizes.add(Integer.parseInt(size));
+          }
+          break;
+        case "-sections":
+          sections = Integer.parseInt(value);
+          break;
+        case "-seed":
+          seed = Long.parseLong(value);
+          break;
+        case "-output":
+          output = value;
+          break;
+        default:
+          GEN.fatal("usage: java -cp <classpath> chat.common.MutexBenchmark"
+              + " [-algorithms a1,a2] [-topologies t1,t2] [-sizes n1,n2] [-sections k]"
+              + " [-seed n] [-output file]");
+          return;
+      }
+    }
+    for (Topology topology : topologies) {
+      for (int size : sizes) {
+        for (MutualExclusionAlgorithm algorithm : algorithms) {
+          if (!isApplicable(algorithm, topology)) {
+            continue;
+          }
+          MutexBenchmark run = new MutexBenchmark(algorithm, topology, size, sections, seed);
+          run.constructAndRun();
+          System.out.println(run.getResult());
+          append(output, run.getResult());
+        }
+      }
+    }
+    System.exit(0);
+  }
+
+  /**
+   * appends a result to the output file.
+   *
+   * @param output
+   *          the file to which the results are appended, or {@code null}.
+   * @param line
+   *          the result.
+   * @throws IOException
+   *           the exception thrown when the file cannot be written.
+   */
+  private static void append(final String output, final String line) throws IOException {
+    if (output == null) {
+      return;
+    }
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(output, true),
+        StandardCharsets.UTF_8)) {
+      writer.write(line);
+      writer.write(System.lineSeparator());
+    }
+  }
+}
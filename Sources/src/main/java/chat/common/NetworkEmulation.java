@@ -0,0 +1,216 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import chat.server.Server;
+
+/**
+ * This class reads the emulation files, which configure the links of a {@link LoopbackNetwork} in
+ * terms of chat servers. An emulation file contains one directive per line, the empty lines and
+ * the lines starting with {@code #} being ignored:
+ * <ul>
+ * <li>{@code seed <n>} sets the seed of the random generator of the network;</li>
+ * <li>{@code default <profile>} sets the default profile of the links;</li>
+ * <li>{@code link <i> <j> <profile>} sets the profile of the link between the servers {@code i}
+ * and {@code j};</li>
+ * <li>{@code server <i> <profile>} sets the profile of the links of the server {@code i} with the
+ * other servers;</li>
+ * <li>{@code clients <i> <profile>} sets the profile of the links of the server {@code i} with its
+ * clients.</li>
+ * </ul>
+ *
+ * The profiles are written as in {@link LinkProfile#parse(String, LinkProfile)}, the settings that
+ * are not given keeping the values of the default profile. For example, the following file
+ * emulates a wide area network in which the link between the servers 0 and 1 is a slow
+ * intercontinental link:
+ *
+ * <pre>
+ * seed 1
+ * default distribution=normal latency=20ms jitter=5ms bandwidth=100Mbps
+ * link 0 1 latency=120ms bandwidth=2Mbps reorder=1%
+ * clients 0 latency=1ms jitter=0ms
+ * </pre>
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class NetworkEmulation {
+
+  /**
+   * avoids the instantiation of this class.
+   */
+  private NetworkEmulation() {
+  }
+
+  /**
+   * reads an emulation file and creates the network that it configures.
+   *
+   * @param location
+   *          the path of the file, or the name of a resource of the class path.
+   * @return the network.
+   * @throws IOException
+   *           the exception thrown when the file cannot be read.
+   */
+  public static LoopbackNetwork load(final String location) throws IOException {
+    Path path = Paths.get(location);
+    if (Files.isRegularFile(path)) {
+      try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+        return load(reader);
+      }
+    }
+    InputStream in = NetworkEmulation.class.getClassLoader().getResourceAsStream(location);
+    if (in == null) {
+      throw new FileNotFoundException("no emulation file " + location);
+    }
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return load(reader);
+    }
+  }
+
+  /**
+   * reads an emulation file and creates the network that it configures.
+   *
+   * @param reader
+   *          the reader of the file.
+   * @return the network.
+   * @throws IOException
+   *           the exception thrown when the file cannot be read.
+   */
+  public static LoopbackNetwork load(final Reader reader) throws IOException {
+    BufferedReader in = new BufferedReader(reader);
+    long seed = 0;
+    LinkProfile defaultProfile = new LinkProfile(LinkProfile.Distribution.UNIFORM,
+        LoopbackNetwork.DEFAULT_LATENCY, 0, LinkProfile.UNLIMITED, 0, 0, 0);
+    Map<Integer, String[]> directives = new LinkedHashMap<>();
+    int lineNb = 0;
+    String line;
+    while ((line = in.readLine()) != null) {
+      lineNb++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] words = line.split("\\s+");
+      try {
+        switch (words[0].toLowerCase(Locale.ROOT)) {
+          case "seed":
+            seed = Long.parseLong(words[words.length - 1]);
+            break;
+          case "default":
+            defaultProfile = LinkProfile.parse(settings(words, 1), defaultProfile);
+            break;
+          case "link":
+          case "server":
+          case "clients":
+            directives.put(lineNb, words);
+            break;
+          default:
+            throw new IllegalArgumentException("unknown directive " + words[0]);
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("line " + lineNb + ": " + e.getMessage(), e);
+      }
+    }
+    LoopbackNetwork network = new LoopbackNetwork(seed, defaultProfile);
+    for (Map.Entry<Integer, String[]> directive : directives.entrySet()) {
+      try {
+        configure(network, directive.getValue(), defaultProfile);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("line " + directive.getKey() + ": " + e.getMessage(),
+            e);
+      }
+    }
+    return network;
+  }
+
+  /**
+   * joins the settings of a profile.
+   *
+   * @param words
+   *          the words of the directive.
+   * @param from
+   *          the index of the first setting.
+   * @return the settings separated by spaces.
+   */
+  private static String settings(final String[] words, final int from) {
+    return String.join(" ", Arrays.asList(words).subList(Math.min(from, words.length),
+        words.length));
+  }
+
+  /**
+   * applies a directive {@code link}, {@code server} or {@code clients} to a network.
+   *
+   * @param network
+   *          the network.
+   * @param words
+   *          the words of the directive.
+   * @param defaultProfile
+   *          the default profile of the network.
+   */
+  private static void configure(final LoopbackNetwork network, final String[] words,
+      final LinkProfile defaultProfile) {
+    String directive = words[0].toLowerCase(Locale.ROOT);
+    int nbServers = directive.equals("link") ? 2 : 1;
+    if (words.length <= nbServers) {
+      throw new IllegalArgumentException("missing server number");
+    }
+    LinkProfile profile = LinkProfile.parse(settings(words, 1 + nbServers), defaultProfile);
+    int server = Integer.parseInt(words[1]);
+    switch (directive) {
+      case "link":
+        network.setProfile(serverPort(server), serverPort(Integer.parseInt(words[2])), profile);
+        break;
+      case "server":
+        network.setProfile(serverPort(server), profile);
+        break;
+      default:
+        network.setProfile(Server.BASE_PORTNB_LISTEN_CLIENT + server, profile);
+        break;
+    }
+  }
+
+  /**
+   * computes the port number for accepting connections from servers of a server.
+   *
+   * @param server
+   *          the server number.
+   * @return the port number.
+   */
+  private static int serverPort(final int server) {
+    return Server.BASE_PORTNB_LISTEN_CLIENT + server + Server.OFFSET_PORTNB_LISTEN_SERVER;
+  }
+}
@@ -0,0 +1,200 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+
+/**
+ * This class defines the outbound queue of a connection, with one queue of frames per
+ * {@link PriorityLane}. A frame is an array of byte buffers: the header followed by the body. The
+ * frames of the lane {@link PriorityLane#CONTROL} are dequeued before the frames of the lane
+ * {@link PriorityLane#DATA}. The time spent by the frames in the queue is recorded per lane.
+ *
+ * The lane {@link PriorityLane#DATA} is bounded by the system property
+ * {@value #DATA_LIMIT_PROPERTY}, so that a slow peer does not make the memory of the sender grow
+ * without limit: past the limit, the new data frames are dropped, and counted by the connection
+ * (see {@link ConnectionMetrics#frameDropped()}). The lane {@link PriorityLane#CONTROL} is not
+ * bounded, since its frames are few and the algorithms of the servers do not tolerate their loss.
+ *
+ * The methods are {@code synchronized}: the frames are queued by the threads sending messages and
+ * dequeued by the thread writing to the connection. The number of frames is {@code volatile}, so
+ * that the gauges of the depth of the queue (see {@link ConnectionMetrics}) never wait for the
+ * writing thread.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class OutboundQueue {
+  /**
+   * the system property setting the maximum number of frames of the lane
+   * {@link PriorityLane#DATA}, {@code 0} disabling the limit.
+   */
+  public static final String DATA_LIMIT_PROPERTY = "chat.outbound.dataLimit";
+  /**
+   * the default maximum number of frames of the lane {@link PriorityLane#DATA}.
+   */
+  public static final int DEFAULT_DATA_LIMIT = 10_000;
+  /**
+   * the queues of frames, one per priority lane.
+   */
+  private final EnumMap<PriorityLane, ArrayDeque<Frame>> queues;
+  /**
+   * the histograms of the time spent by the frames in the queues, one per priority lane. They are
+   * created when the first frame of the lane is dequeued.
+   */
+  private final EnumMap<PriorityLane, LatencyHistogram> queueWaits;
+  /**
+   * the number of frames in the queues, which is only modified when holding the lock.
+   */
+  private volatile int size;
+  /**
+   * the maximum number of frames of the lane {@link PriorityLane#DATA}, or {@code 0}.
+   */
+  private final int dataLimit;
+
+  /**
+   * constructs empty queues, whose lane {@link PriorityLane#DATA} is bounded by the system
+   * property {@value #DATA_LIMIT_PROPERTY}.
+   */
+  public OutboundQueue() {
+    this(Integer.getInteger(DATA_LIMIT_PROPERTY, DEFAULT_DATA_LIMIT));
+  }
+
+  /**
+   * constructs empty queues.
+   *
+   * @param dataLimit
+   *          the maximum number of frames of the lane {@link PriorityLane#DATA}, {@code 0}
+   *          disabling the limit.
+   */
+  public OutboundQueue(final int dataLimit) {
+    if (dataLimit < 0) {
+      throw new IllegalArgumentException("invalid limit of the data lane (" + dataLimit + ")");
+    }
+    this.dataLimit = dataLimit;
+    queues = new EnumMap<>(PriorityLane.class);
+    for (PriorityLane lane : PriorityLane.values()) {
+      queues.put(lane, new ArrayDeque<>());
+    }
+    queueWaits = new EnumMap<>(PriorityLane.class);
+  }
+
+  /**
+   * queues a frame in the lane of its message type, unless the lane {@link PriorityLane#DATA} of
+   * the frame is full.
+   *
+   * @param type
+   *          the message type of the frame.
+   * @param buffers
+   *          the header and the body of the frame.
+   * @return {@code false} if the frame has been dropped.
+   */
+  public synchronized boolean add(final int type, final ByteBuffer[] buffers) {
+    PriorityLane lane = PriorityLane.of(type);
+    ArrayDeque<Frame> queue = queues.get(lane);
+    if (lane == PriorityLane.DATA && dataLimit > 0 && queue.size() >= dataLimit) {
+      return false;
+    }
+    queue.add(new Frame(lane, buffers));
+    size++;
+    return true;
+  }
+
+  /**
+   * removes the next frame, in the order of the priority lanes, and records the time it has spent
+   * in the queue.
+   *
+   * @return the header and the body of the frame, or {@code null} if the queues are empty.
+   */
+  public synchronized ByteBuffer[] poll() {
+    for (PriorityLane lane : PriorityLane.values()) {
+      Frame frame = queues.get(lane).poll();
+      if (frame != null) {
+        size--;
+        getQueueWait(lane).record(System.nanoTime() - frame.enqueueTime);
+        return frame.buffers;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * gets the number of frames in the queues, without taking the lock.
+   *
+   * @return the number of frames.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * gets the histogram of the time (in nanoseconds) spent by the frames of a priority lane in the
+   * queue. The metric of the lane {@link PriorityLane#CONTROL} measures how long the control
+   * messages wait behind the messages that were queued before them.
+   *
+   * @param lane
+   *          the priority lane.
+   * @return the histogram.
+   */
+  public synchronized LatencyHistogram getQueueWait(final PriorityLane lane) {
+    LatencyHistogram histogram = queueWaits.get(lane);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      queueWaits.put(lane, histogram);
+    }
+    return histogram;
+  }
+
+  /**
+   * This class defines a frame waiting in a queue.
+   */
+  private static final class Frame {
+    /**
+     * the priority lane of the frame.
+     */
+    private final PriorityLane lane;
+    /**
+     * the header and the body of the frame.
+     */
+    private final ByteBuffer[] buffers;
+    /**
+     * the date (see {@link System#nanoTime()}) at which the frame has been queued.
+     */
+    private final long enqueueTime;
+
+    /**
+     * constructs a frame.
+     *
+     * @param lane
+     *          the priority lane.
+     * @param buffers
+     *          the header and the body.
+     */
+    Frame(final PriorityLane lane, final ByteBuffer[] buffers) {
+      this.lane = lane;
+      this.buffers = buffers;
+      this.enqueueTime = System.nanoTime();
+    }
+  }
+}
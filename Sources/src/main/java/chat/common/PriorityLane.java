@@ -0,0 +1,100 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This Enumeration type declares the priority lanes of the outbound queue of a full duplex message
+ * worker. The frames of the lane {@link #CONTROL} are always written before the frames of the lane
+ * {@link #DATA}, so that the messages of the algorithms of the servers (e.g. the election) do not
+ * wait behind a burst of chat messages. The lane of a message type is given by its offset, unless
+ * its action states another lane (see {@link Action#lane()}), e.g. the messages of the servers that
+ * carry chat messages are in the lane {@link #DATA}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public enum PriorityLane {
+  /**
+   * the lane of the messages of the algorithms of the servers.
+   */
+  CONTROL,
+  /**
+   * the lane of the messages of the algorithms of the clients, e.g. chat messages.
+   */
+  DATA;
+
+  /**
+   * the lanes of the message types whose action states another lane than the one of its offset.
+   */
+  private static final Map<Integer, PriorityLane> OVERRIDES = new ConcurrentHashMap<>();
+
+  /**
+   * gets the lane of a message type: the lane registered by its action, or else the lane of its
+   * offset (see {@link #ofOffset(int)}).
+   *
+   * @param type
+   *          the message type.
+   * @return the lane of the message type.
+   */
+  public static PriorityLane of(final int type) {
+    PriorityLane lane = ofOffset(type);
+    if (lane == CONTROL && !OVERRIDES.isEmpty()) {
+      PriorityLane override = OVERRIDES.get(type);
+      if (override != null) {
+        return override;
+      }
+    }
+    return lane;
+  }
+
+  /**
+   * gets the lane of a message type given by its offset. The message types of the algorithms of
+   * the servers, which start at {@link Action#OFFSET_SERVER_ALGORITHMS}, are control messages.
+   *
+   * @param type
+   *          the message type.
+   * @return the lane of the message type.
+   */
+  public static PriorityLane ofOffset(final int type) {
+    if (type >= Action.OFFSET_SERVER_ALGORITHMS && type < Action.OFFSET_CLIENT_ALGORITHMS) {
+      return CONTROL;
+    }
+    return DATA;
+  }
+
+  /**
+   * registers the lane of the message type of an action, when it is not the lane of its offset.
+   * The enumerations of the algorithms register their actions when they are initialised, that is
+   * before their first message is sent.
+   *
+   * @param action
+   *          the action.
+   */
+  public static void register(final Action<?> action) {
+    if (action.lane() != ofOffset(action.identifier())) {
+      OVERRIDES.put(action.identifier(), action.lane());
+    }
+  }
+}
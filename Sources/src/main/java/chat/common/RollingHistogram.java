@@ -0,0 +1,209 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class defines a latency histogram that rolls over in intervals of a fixed duration: the
+ * values are recorded in the histogram of the current interval, which becomes the histogram of the
+ * last interval when the interval is over. The percentiles of the last interval show the spikes
+ * that the histogram of the whole run hides, and the histogram of the whole run is kept too (see
+ * {@link #getTotal()}).
+ *
+ * The rollover is done by the first recording after the end of the interval, so that no thread is
+ * needed; the recording that rolls over allocates the histogram of the next interval, the other
+ * recordings allocate nothing. The duration of the intervals is given by the system property
+ * {@value #INTERVAL_PROPERTY} in milliseconds. As with {@link LatencyHistogram#reset()},
+ * recordings that are concurrent with a rollover may be missing from the histogram of the whole
+ * run.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class RollingHistogram {
+  /**
+   * the name of the system property giving the duration of the intervals, in milliseconds.
+   */
+  public static final String INTERVAL_PROPERTY = "chat.histograms.interval";
+  /**
+   * the default duration of the intervals, in milliseconds.
+   */
+  public static final long DEFAULT_INTERVAL = 10_000;
+  /**
+   * the duration of the intervals, in nanoseconds.
+   */
+  private final long interval;
+  /**
+   * the start of the current interval, in the time of {@link System#nanoTime()}.
+   */
+  private final AtomicLong intervalStart;
+  /**
+   * the histogram of the current interval.
+   */
+  private volatile LatencyHistogram current = new LatencyHistogram();
+  /**
+   * the histogram of the last completed interval.
+   */
+  private volatile LatencyHistogram lastInterval = new LatencyHistogram();
+  /**
+   * the histogram of the completed intervals.
+   */
+  private final LatencyHistogram completed = new LatencyHistogram();
+  /**
+   * the number of completed intervals.
+   */
+  private long nbIntervals;
+
+  /**
+   * constructs a histogram whose intervals last the duration given by the system property
+   * {@value #INTERVAL_PROPERTY}.
+   */
+  public RollingHistogram() {
+    this(TimeUnit.MILLISECONDS.toNanos(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL)));
+  }
+
+  /**
+   * constructs a histogram.
+   *
+   * @param interval
+   *          the duration of the intervals, in nanoseconds.
+   */
+  public RollingHistogram(final long interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("invalid interval (" + interval + ")");
+    }
+    this.interval = interval;
+    this.intervalStart = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * records a value.
+   *
+   * @param value
+   *          the value to record, typically a duration in nanoseconds.
+   */
+  public void record(final long value) {
+    rollIfDue(System.nanoTime());
+    current.record(value);
+  }
+
+  /**
+   * records the duration from an instant to now.
+   *
+   * @param start
+   *          the instant, in the time of {@link System#nanoTime()}.
+   */
+  public void recordSince(final long start) {
+    long now = System.nanoTime();
+    rollIfDue(now);
+    current.record(now - start);
+  }
+
+  /**
+   * rolls over when the current interval is over.
+   *
+   * @param now
+   *          the current instant, in the time of {@link System#nanoTime()}.
+   */
+  private void rollIfDue(final long now) {
+    long start = intervalStart.get();
+    if (now - start >= interval && intervalStart.compareAndSet(start, now)) {
+      roll();
+    }
+  }
+
+  /**
+   * ends the current interval now.
+   */
+  public void rollover() {
+    intervalStart.set(System.nanoTime());
+    roll();
+  }
+
+  /**
+   * makes the histogram of the current interval the histogram of the last interval.
+   */
+  private synchronized void roll() {
+    LatencyHistogram done = current;
+    current = new LatencyHistogram();
+    completed.add(done);
+    lastInterval = done;
+    nbIntervals++;
+  }
+
+  /**
+   * gets the histogram of the last completed interval, which is not modified afterwards, except by
+   * recordings concurrent with the rollover.
+   *
+   * @return the histogram.
+   */
+  public LatencyHistogram getLastInterval() {
+    return lastInterval;
+  }
+
+  /**
+   * gets the histogram of the current interval.
+   *
+   * @return the histogram.
+   */
+  public LatencyHistogram getCurrentInterval() {
+    return current;
+  }
+
+  /**
+   * computes the histogram of the whole run, that is of the completed intervals and of the current
+   * interval.
+   *
+   * @return a new histogram.
+   */
+  public synchronized LatencyHistogram getTotal() {
+    LatencyHistogram total = new LatencyHistogram();
+    total.add(completed);
+    total.add(current);
+    return total;
+  }
+
+  /**
+   * gets the number of completed intervals.
+   *
+   * @return the number of intervals.
+   */
+  public synchronized long getNbIntervals() {
+    return nbIntervals;
+  }
+
+  /**
+   * gets the duration of the intervals.
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  @Override
+  public String toString() {
+    return "last interval: " + getLastInterval() + " | total: " + getTotal();
+  }
+}
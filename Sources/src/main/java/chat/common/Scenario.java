@@ -8,6 +8,9 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 
 import chat.client.Client;
 import chat.server.Server;
@@ -17,6 +20,18 @@ import chat.server.Server;
  * clients and several servers in the same virtual machine and for executing a sequence of actions
  * in response to user inputs (e.g. chat message on clients or command lines on servers) and to
  * messages received from the network.
+ *
+ * By default, the clients and the servers are connected by sockets. A scenario constructed with a
+ * {@link LoopbackNetwork} connects them through the in-process network instead: the method
+ * {@link #sleep(long)} then runs the scheduler of the network during the duration in virtual time,
+ * the messages delayed by the {@link Interceptor} are delayed in virtual time, and the scenario
+ * runs as fast as the CPU allows and is replayed exactly from one run to the other.
+ *
+ * Rather than sleeping for a fixed duration, a scenario can wait for a condition on the states of
+ * its clients and servers with the method {@link #await(BooleanSupplier, long)}, e.g. with the
+ * conditions {@link #nbDelivered(Client, int)}, {@link #statusIs(Server, String)} or
+ * {@link #msgBagDrained(Client)}. The condition is evaluated after every change of these states
+ * (see {@link StateObserver}), and the method returns the time taken to satisfy the condition.
  * 
  * @author Denis Conan
  */
@@ -29,13 +44,55 @@ public abstract class Scenario {
    * the collection of servers.
    */
   private List<Server> servers;
+  /**
+   * the in-process network of the scenario, or {@code null} when the scenario uses sockets.
+   */
+  private final LoopbackNetwork network;
+  /**
+   * the lock of the counter of the changes of the states.
+   */
+  private final Object changes = new Object();
+  /**
+   * the number of changes of the states of the clients and of the servers of the scenario.
+   */
+  private long nbChanges;
+  /**
+   * the observer of the states of the clients and of the servers of the scenario.
+   */
+  private final StateObserver observer = state -> {
+    synchronized (changes) {
+      nbChanges++;
+      changes.notifyAll();
+    }
+  };
 
   /**
    * constructs a scenario, that is initialize the data structures.
    */
   public Scenario() {
+    this(null);
+  }
+
+  /**
+   * constructs a scenario whose clients and servers are connected through an in-process network.
+   *
+   * @param network
+   *          the network, or {@code null} for using sockets.
+   */
+  public Scenario(final LoopbackNetwork network) {
     clients = new ArrayList<>();
     servers = new ArrayList<>();
+    this.network = network;
+    Interceptor.setScheduler(network);
+  }
+
+  /**
+   * gets the in-process network of the scenario.
+   *
+   * @return the network, or {@code null} when the scenario uses sockets.
+   */
+  public LoopbackNetwork getNetwork() {
+    return network;
   }
 
   /**
@@ -49,7 +106,9 @@ public abstract class Scenario {
    *           the exception thrown in case network configuration problem.
    */
   public Client instanciateAClient(final int serverPortNb) throws UnknownHostException {
-    Client chatClient = new Client(InetAddress.getLocalHost().getHostName(), serverPortNb);
+    Client chatClient = network != null ? new Client(network, serverPortNb)
+        : new Client(InetAddress.getLocalHost().getHostName(), serverPortNb);
+    chatClient.getState().addObserver(observer);
     chatClient.startThreadReadMessagesFromNetwork();
     clients.add(chatClient);
     return chatClient;
@@ -83,8 +142,26 @@ public abstract class Scenario {
    * @return the new server.
    */
   public Server instanciateAServer(final String args) {
-    Server chatServer = new Server(args.split("\\s+"));
+    Server chatServer = network != null ? new Server(args.split("\\s+"), network)
+        : new Server(args.split("\\s+"));
+    chatServer.getState().addObserver(observer);
+    chatServer.startThreadReadMessagesFromNetwork();
+    servers.add(chatServer);
+    return chatServer;
+  }
 
+  /**
+   * instanciates a server with a given engine. See {@link #instanciateAServer(String)}.
+   *
+   * @param args
+   *          the argument of the server as written when starting the server in a separate process.
+   * @param engineName
+   *          the name of the engine of the server (see {@link Server#ENGINE_PROPERTY}).
+   * @return the new server.
+   */
+  public Server instanciateAServer(final String args, final String engineName) {
+    Server chatServer = new Server(args.split("\\s+"), engineName);
+    chatServer.getState().addObserver(observer);
     chatServer.startThreadReadMessagesFromNetwork();
     servers.add(chatServer);
     return chatServer;
@@ -114,14 +191,139 @@ public abstract class Scenario {
    */
   public abstract void constructAndRun() throws Exception;
 
+  /**
+   * waits until a condition on the states of the clients and of the servers of the scenario holds.
+   * With sockets, the condition is evaluated after every change of these states; with an
+   * in-process network, the scheduler of the network runs until the condition holds, the condition
+   * being evaluated before every event, and the time is the virtual time.
+   *
+   * @param condition
+   *          the condition.
+   * @param timeoutMillis
+   *          the maximum duration of the wait in milliseconds.
+   * @return the duration of the wait in nanoseconds, that is the time of convergence.
+   * @throws TimeoutException
+   *           the exception thrown when the condition does not hold before the timeout.
+   * @throws InterruptedException
+   *           the exception thrown when the thread is interrupted while waiting.
+   */
+  public long await(final BooleanSupplier condition, final long timeoutMillis)
+      throws TimeoutException, InterruptedException {
+    long timeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    if (network != null) {
+      long start = network.now();
+      if (!network.runUntil(condition, timeout)) {
+        throw new TimeoutException("condition not satisfied after " + timeoutMillis
+            + " ms of virtual time");
+      }
+      return network.now() - start;
+    }
+    long start = System.nanoTime();
+    long seen;
+    synchronized (changes) {
+      seen = nbChanges;
+    }
+    while (!condition.getAsBoolean()) {
+      synchronized (changes) {
+        while (nbChanges == seen) {
+          long remaining = start + timeout - System.nanoTime();
+          if (remaining <= 0) {
+            throw new TimeoutException("condition not satisfied after " + timeoutMillis + " ms");
+          }
+          TimeUnit.NANOSECONDS.timedWait(changes, remaining);
+        }
+        seen = nbChanges;
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * builds the conjunction of conditions.
+   *
+   * @param conditions
+   *          the conditions.
+   * @return the condition that holds when all the conditions hold.
+   */
+  public static BooleanSupplier allOf(final BooleanSupplier... conditions) {
+    return () -> {
+      for (BooleanSupplier condition : conditions) {
+        if (!condition.getAsBoolean()) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  /**
+   * builds the condition "the client has delivered at least a number of chat messages".
+   *
+   * @param client
+   *          the client.
+   * @param nb
+   *          the number of chat messages.
+   * @return the condition.
+   */
+  public static BooleanSupplier nbDelivered(final Client client, final int nb) {
+    return () -> {
+      synchronized (client.getState()) {
+        return client.getState().nbChatMessageContentDelivered >= nb;
+      }
+    };
+  }
+
+  /**
+   * builds the condition "the status of the server is the given one".
+   *
+   * @param server
+   *          the server.
+   * @param status
+   *          the status, e.g. {@code leader}.
+   * @return the condition.
+   */
+  public static BooleanSupplier statusIs(final Server server, final String status) {
+    return () -> {
+      synchronized (server.getState()) {
+        return status.equals(server.getState().getStatus());
+      }
+    };
+  }
+
+  /**
+   * builds the condition "the client has received chat messages and has no chat message waiting
+   * for its causal predecessors".
+   *
+   * @param client
+   *          the client.
+   * @return the condition.
+   */
+  public static BooleanSupplier msgBagDrained(final Client client) {
+    return () -> {
+      synchronized (client.getState()) {
+        return client.getState().nbChatMessageContentReceived > 0
+            && client.getState().MsgBag.isEmpty();
+      }
+    };
+  }
+
   /**
    * is a utility method to encapsulate {@code Thread.sleep} with an log message in case of an
-   * {@code InterruptedException} is thrown.
+   * {@code InterruptedException} is thrown. With an in-process network, the scheduler of the
+   * network runs during the duration in virtual time instead, and, as with {@code Thread.sleep},
+   * the interrupted status of the thread is cleared.
    *
    * @param millis
    *          the timeout duration in milliseconds.
    */
   public void sleep(final long millis) {
+    if (network != null) {
+      if (Thread.interrupted() && LOG_ON && GEN.isTraceEnabled()) {
+        GEN.trace("interrupted status cleared");
+      }
+      network.runFor(TimeUnit.MILLISECONDS.toNanos(millis));
+      return;
+    }
     try {
       Thread.sleep(millis);
     } catch (InterruptedException e) {
@@ -0,0 +1,42 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+/**
+ * This interface defines an observer of the state of a client or of a server (see
+ * {@link AbstractState#addObserver(StateObserver)}). The observer is notified after every change
+ * of the state made by the algorithms, by the connections or by the console. It may be notified
+ * while the lock of the state is held, and must therefore neither block nor take other locks than
+ * its own.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface StateObserver {
+  /**
+   * is called after a change of a state.
+   *
+   * @param state
+   *          the state.
+   */
+  void stateChanged(AbstractState state);
+}
@@ -0,0 +1,139 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This enumeration defines the topologies of the networks of servers of the benchmarks. The servers
+ * are numbered from {@code 0} and are started in order: a server only opens connections to servers
+ * with lower numbers, which are already started.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public enum Topology {
+  /**
+   * the server {@code i} is linked to the server {@code i - 1}.
+   */
+  LINE,
+  /**
+   * a line whose last server is linked to the first one.
+   */
+  RING,
+  /**
+   * every server is linked to the server {@code 0}.
+   */
+  STAR,
+  /**
+   * every server is linked to all the other servers.
+   */
+  MESH,
+  /**
+   * a balanced binary tree: the server {@code i} is linked to the server {@code (i - 1) / 2}.
+   */
+  TREE,
+  /**
+   * a random spanning tree, to which links are added with a given probability.
+   */
+  RANDOM;
+
+  /**
+   * computes, for every server, the servers with lower numbers to which it opens a connection.
+   *
+   * @param nbServers
+   *          the number of servers.
+   * @param random
+   *          the random generator of the topology {@link #RANDOM}.
+   * @param extraLinkProbability
+   *          the probability of every link that is not in the spanning tree of the topology
+   *          {@link #RANDOM}.
+   * @return the lists of the servers to connect to, indexed by the number of the server.
+   */
+  public List<List<Integer>> connections(final int nbServers, final Random random,
+      final double extraLinkProbability) {
+    if (nbServers <= 0) {
+      throw new IllegalArgumentException("invalid number of servers (" + nbServers + ")");
+    }
+    List<List<Integer>> result = new ArrayList<>();
+    for (int i = 0; i < nbServers; i++) {
+      List<Integer> targets = new ArrayList<>();
+      switch (this) {
+        case LINE:
+        case RING:
+          if (i > 0) {
+            targets.add(i - 1);
+          }
+          if (this == RING && i == nbServers - 1 && nbServers > 2) {
+            targets.add(0);
+          }
+          break;
+        case STAR:
+          if (i > 0) {
+            targets.add(0);
+          }
+          break;
+        case MESH:
+          for (int j = 0; j < i; j++) {
+            targets.add(j);
+          }
+          break;
+        case TREE:
+          if (i > 0) {
+            targets.add((i - 1) / 2);
+          }
+          break;
+        default:
+          if (i > 0) {
+            int parent = random.nextInt(i);
+            for (int j = 0; j < i; j++) {
+              if (j == parent || random.nextDouble() < extraLinkProbability) {
+                targets.add(j);
+              }
+            }
+          }
+          break;
+      }
+      result.add(targets);
+    }
+    return result;
+  }
+
+  /**
+   * gets the topology of a name, ignoring the case.
+   *
+   * @param name
+   *          the name, e.g. {@code ring}.
+   * @return the topology.
+   */
+  public static Topology of(final String name) {
+    return valueOf(name.toUpperCase(Locale.ROOT));
+  }
+
+  @Override
+  public String toString() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+}
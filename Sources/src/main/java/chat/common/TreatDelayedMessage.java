@@ -22,8 +22,6 @@ Contributor(s):
 */
 package chat.common;
 
-import java.nio.channels.SelectionKey;
-
 import chat.client.algorithms.chat.ChatMessageContent;
 import chat.server.algorithms.election.ElectionTokenContent;
 
@@ -51,13 +49,13 @@ public class TreatDelayedMessage<S extends AbstractState, C extends AbstractCont
    */
   private C content;
   /**
-   * the selection from which the message should be received later.
+   * the message worker of the connection from which the message should be received later.
    */
-  private SelectionKey key;
+  private MsgWorker worker;
   /**
-   * the delay.
+   * the delay in milliseconds.
    */
-  private static final long DELAY = 50;
+  static final long DELAY = 50;
 
   /**
    * the constructor.
@@ -68,15 +66,16 @@ public class TreatDelayedMessage<S extends AbstractState, C extends AbstractCont
    * @param content
    * 
    *          the content of the delayed message.
-   * @param key
+   * @param worker
    * 
-   *          the selection from which the message should be received later.
+   *          the message worker of the connection from which the message should be received
+   *          later.
    */
   public TreatDelayedMessage(final S state, final C content,
-      final SelectionKey key) {
+      final MsgWorker worker) {
     this.state = state;
     this.content = content;
-    this.key = key;
+    this.worker = worker;
   }
 
   @Override
@@ -87,16 +86,22 @@ public class TreatDelayedMessage<S extends AbstractState, C extends AbstractCont
       e.printStackTrace();
       return;
     }
+    treat();
+  }
 
+  /**
+   * treats the delayed message, without waiting.
+   */
+  public void treat() {
     // Interceptor.setInterceptionEnabled(true);
     if (content instanceof ElectionTokenContent) {
-      ((chat.server.State) state).currKey = key;
+      ((chat.server.State) state).currWorker = worker;
       chat.server.algorithms.election.Algorithm.TOKEN_MESSAGE
           .execute((chat.server.State) state, content);
     } else if (content instanceof ChatMessageContent) {
       chat.client.algorithms.chat.Algorithm.CHAT_MESSAGE
           .execute((chat.client.State) state, content);
     }
-
+    state.notifyObservers();
   }
 }
@@ -25,8 +25,10 @@ import static chat.common.Log.GEN;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class defines a vector clock with a Map. A vector clock is serializable to be inserted in
@@ -117,6 +119,15 @@ public class VectorClock implements Serializable, Cloneable {
     assert invariant();
   }
 
+  /**
+   * gets the identifiers of the processes present in the vector clock.
+   * 
+   * @return the identifiers, which cannot be modified.
+   */
+  public Set<Integer> identities() {
+    return Collections.unmodifiableSet(vectorClock.keySet());
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Object clone() {
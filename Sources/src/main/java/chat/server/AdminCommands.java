@@ -0,0 +1,311 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import chat.common.ConnectionMetrics;
+import chat.common.LatencyHistogram;
+import chat.common.MsgWorker;
+import chat.common.RollingHistogram;
+
+/**
+ * This class defines the commands of the console of a server that show its state for on-box
+ * triage. The same commands are served by the admin socket of the server (see
+ * {@link AdminSocket}):
+ * <ul>
+ * <li>{@value #STATS}: the counters of the client messages, the throughput and the latency
+ * percentiles of the last interval of the histograms, and the depths of the outbound queues;</li>
+ * <li>{@value #PEERS}: the connections with the neighbouring servers, with their round-trip time
+ * and their backlog;</li>
+ * <li>{@value #CLIENTS}: the connections with the local clients, with their backlog and their
+ * rate of messages;</li>
+ * <li>{@value #ELECTION}: the variables of the election;</li>
+ * <li>{@value #DEDUP}: the size of the table of the last sequence numbers of the clients;</li>
+ * <li>{@value #HISTOGRAMS}: the dump of the latency histograms (see
+ * {@link ServerMetrics#dumpHistograms()}).</li>
+ * </ul>
+ *
+ * The commands read the counters and the volatile copies of the sets of connections (see
+ * {@link State#getServerWorkersView()}) without taking the lock of the state of the server. The
+ * output is therefore a snapshot that may be slightly inconsistent between two lines, but these
+ * commands never stall the engine of the server. The command {@value #ELECTION} reads the
+ * immutable copy of the variables of the election (see {@link State#getElectionSnapshot()}), so
+ * that its line is consistent although these variables are modified when holding the lock.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class AdminCommands {
+  /**
+   * the command showing the counters, the throughput, the latencies and the queue depths.
+   */
+  public static final String STATS = "stats";
+  /**
+   * the command showing the connections with the neighbouring servers.
+   */
+  public static final String PEERS = "peers";
+  /**
+   * the command showing the connections with the local clients.
+   */
+  public static final String CLIENTS = "clients";
+  /**
+   * the command showing the variables of the election.
+   */
+  public static final String ELECTION = "election";
+  /**
+   * the command showing the size of the table of the last sequence numbers of the clients.
+   */
+  public static final String DEDUP = "dedup";
+  /**
+   * the command dumping the latency histograms.
+   */
+  public static final String HISTOGRAMS = "histograms";
+  /**
+   * the names of the commands.
+   */
+  public static final List<String> COMMANDS = Collections.unmodifiableList(
+      Arrays.asList(STATS, PEERS, CLIENTS, ELECTION, DEDUP, HISTOGRAMS));
+  /**
+   * the number of nanoseconds per second.
+   */
+  private static final double NANOS_PER_SECOND = 1e9;
+  /**
+   * the state of the server.
+   */
+  private final State state;
+  /**
+   * the counters of the server.
+   */
+  private final ServerMetrics metrics;
+
+  /**
+   * constructs the commands of a server.
+   *
+   * @param state
+   *          the state of the server.
+   * @param metrics
+   *          the counters of the server.
+   */
+  public AdminCommands(final State state, final ServerMetrics metrics) {
+    if (state == null) {
+      throw new IllegalArgumentException("no state");
+    }
+    if (metrics == null) {
+      throw new IllegalArgumentException("no metrics");
+    }
+    this.state = state;
+    this.metrics = metrics;
+  }
+
+  /**
+   * states whether a line is one of the commands.
+   *
+   * @param line
+   *          the line.
+   * @return {@code true} if the line is a command.
+   */
+  public static boolean isCommand(final String line) {
+    return line != null && COMMANDS.contains(line.trim());
+  }
+
+  /**
+   * executes a command.
+   *
+   * @param line
+   *          the command.
+   * @return the output of the command, or {@code null} if the line is not a command.
+   */
+  public String execute(final String line) {
+    if (!isCommand(line)) {
+      return null;
+    }
+    switch (line.trim()) {
+      case STATS:
+        return stats();
+      case PEERS:
+        return peers();
+      case CLIENTS:
+        return clients();
+      case ELECTION:
+        return election();
+      case DEDUP:
+        return dedup();
+      default:
+        return metrics.dumpHistograms();
+    }
+  }
+
+  /**
+   * shows the counters of the client messages, the throughput and the latency percentiles of the
+   * last interval, and the depths of the outbound queues.
+   *
+   * @return the output of the command.
+   */
+  public String stats() {
+    RollingHistogram forwardTime = metrics.getForwardTime();
+    double intervalSeconds = forwardTime.getInterval() / NANOS_PER_SECOND;
+    StringBuilder out = new StringBuilder();
+    out.append("stats of server ").append(state.getIdentity()).append(" (last interval of ")
+        .append(TimeUnit.NANOSECONDS.toMillis(forwardTime.getInterval())).append(" ms)\n");
+    out.append("  client messages fromClients=").append(metrics.getClientMsgsFromClients())
+        .append(" fromServers=").append(metrics.getClientMsgsFromServers())
+        .append(" duplicates=").append(metrics.getDuplicateClientMsgs())
+        .append(" forwards=").append(metrics.getForwards())
+        .append(" forwardedFrames=").append(metrics.getForwardedFrames()).append('\n');
+    out.append("  throughput forwards/s=")
+        .append(rate(forwardTime.getLastInterval().getCount(), intervalSeconds))
+        .append(" actions/s=")
+        .append(rate(metrics.getExecuteTime().getLastInterval().getCount(), intervalSeconds))
+        .append('\n');
+    out.append("  queues servers ").append(queues(state.getServerWorkersView()))
+        .append(" clients ").append(queues(state.getClientWorkersView())).append('\n');
+    out.append("  select-to-decode ").append(percentiles(metrics.getSelectToDecode()))
+        .append('\n');
+    out.append("  execute          ").append(percentiles(metrics.getExecuteTime())).append('\n');
+    out.append("  forward          ").append(percentiles(metrics.getForwardTime())).append('\n');
+    out.append("  election         ").append(percentiles(metrics.getElectionTime()))
+        .append('\n');
+    out.append("  mutex-wait       ").append(percentiles(metrics.getMutexWait()));
+    return out.toString();
+  }
+
+  /**
+   * shows the connections with the neighbouring servers.
+   *
+   * @return the output of the command.
+   */
+  public String peers() {
+    List<MsgWorker> workers = state.getServerWorkersView();
+    StringBuilder out = new StringBuilder();
+    out.append("peers of server ").append(state.getIdentity()).append(" (")
+        .append(workers.size()).append(')');
+    for (int i = 0; i < workers.size(); i++) {
+      ConnectionMetrics connection = workers.get(i).getMetrics();
+      long rtt = connection.getRoundTripTime();
+      out.append("\n  #").append(i).append(" rtt=")
+          .append(rtt < 0 ? "-" : TimeUnit.NANOSECONDS.toMicros(rtt) + "us")
+          .append(" backlog=").append(connection.getOutQueueLength())
+          .append(" framesIn=").append(connection.getFramesIn())
+          .append(" framesOut=").append(connection.getFramesOut())
+          .append(" bytesOut=").append(connection.getBytesOut());
+    }
+    return out.toString();
+  }
+
+  /**
+   * shows the connections with the local clients. The rates are the average rates since the
+   * opening of the connections.
+   *
+   * @return the output of the command.
+   */
+  public String clients() {
+    List<MsgWorker> workers = state.getClientWorkersView();
+    long now = System.nanoTime();
+    StringBuilder out = new StringBuilder();
+    out.append("clients of server ").append(state.getIdentity()).append(" (")
+        .append(workers.size()).append(')');
+    for (int i = 0; i < workers.size(); i++) {
+      ConnectionMetrics connection = workers.get(i).getMetrics();
+      double seconds = (now - connection.getConnectedAt()) / NANOS_PER_SECOND;
+      out.append("\n  #").append(i)
+          .append(" backlog=").append(connection.getOutQueueLength())
+          .append(" in/s=").append(rate(connection.getFramesIn(), seconds))
+          .append(" out/s=").append(rate(connection.getFramesOut(), seconds))
+          .append(" framesIn=").append(connection.getFramesIn())
+          .append(" framesOut=").append(connection.getFramesOut());
+    }
+    return out.toString();
+  }
+
+  /**
+   * shows the variables of the election, as last published by the algorithms.
+   *
+   * @return the output of the command.
+   */
+  public String election() {
+    return "election of server " + state.getIdentity() + " algorithm="
+        + state.getServer().getElectionAlgorithm().algorithmName() + " "
+        + state.getElectionSnapshot();
+  }
+
+  /**
+   * shows the size of the table of the last sequence numbers of the clients.
+   *
+   * @return the output of the command.
+   */
+  public String dedup() {
+    return "dedup of server " + state.getIdentity() + " entries=" + metrics.getDedupEntries()
+        + " duplicates=" + metrics.getDuplicateClientMsgs();
+  }
+
+  /**
+   * formats the depths of the outbound queues of connections.
+   *
+   * @param workers
+   *          the message workers of the connections.
+   * @return the total and the maximum of the depths.
+   */
+  private static String queues(final List<MsgWorker> workers) {
+    long total = 0;
+    int max = 0;
+    for (MsgWorker worker : workers) {
+      int length = worker.getOutQueueLength();
+      total += length;
+      max = Math.max(max, length);
+    }
+    return "n=" + workers.size() + " total=" + total + " max=" + max;
+  }
+
+  /**
+   * formats the percentiles of the last interval of a histogram.
+   *
+   * @param histogram
+   *          the histogram.
+   * @return the percentiles in nanoseconds.
+   */
+  private static String percentiles(final RollingHistogram histogram) {
+    LatencyHistogram last = histogram.getLastInterval();
+    return "p50=" + last.getValueAtPercentile(50) + " p99=" + last.getValueAtPercentile(99)
+        + " p99.9=" + last.getValueAtPercentile(99.9) + " max=" + last.getMax();
+  }
+
+  /**
+   * formats a rate.
+   *
+   * @param count
+   *          the number of events.
+   * @param seconds
+   *          the duration in seconds.
+   * @return the rate per second, with one decimal.
+   */
+  private static String rate(final long count, final double seconds) {
+    if (seconds <= 0) {
+      return "0.0";
+    }
+    return String.format(Locale.ROOT, "%.1f", count / seconds);
+  }
+}
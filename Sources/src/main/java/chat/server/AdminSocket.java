@@ -0,0 +1,187 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class defines the admin socket of a server, which serves the console commands of
+ * {@link AdminCommands} to local tools, e.g. {@code nc localhost 2251} for the server 1. The
+ * socket only accepts connections on the loopback interface. A request is a line holding a
+ * command; the response is the output of the command followed by an empty line. The connections
+ * are served one at a time by a daemon thread, which never takes the lock of the state of the
+ * server.
+ *
+ * The port number of the admin socket of the server {@code i} is
+ * {@code Server.BASE_PORTNB_LISTEN_CLIENT + i + OFFSET_PORTNB_ADMIN}. The admin socket is disabled
+ * by setting the system property {@value #ADMIN_PROPERTY} to {@code false}, and is not opened by
+ * the servers of the engine {@link Server#LOOPBACK_ENGINE}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class AdminSocket implements Runnable, Closeable {
+  /**
+   * the name of the system property that enables the admin socket.
+   */
+  public static final String ADMIN_PROPERTY = "chat.server.admin";
+  /**
+   * the offset of the port number of the admin socket.
+   */
+  public static final int OFFSET_PORTNB_ADMIN = 200;
+  /**
+   * the commands served.
+   */
+  private final AdminCommands commands;
+  /**
+   * the socket accepting the connections.
+   */
+  private final ServerSocket serverSocket;
+  /**
+   * the connection being served, or {@code null}.
+   */
+  private volatile Socket current;
+
+  /**
+   * opens the admin socket on the loopback interface.
+   *
+   * @param commands
+   *          the commands served.
+   * @param port
+   *          the port number.
+   * @throws IOException
+   *           the exception thrown when the socket cannot be opened.
+   */
+  public AdminSocket(final AdminCommands commands, final int port) throws IOException {
+    if (commands == null) {
+      throw new IllegalArgumentException("no commands");
+    }
+    this.commands = commands;
+    serverSocket = new ServerSocket();
+    serverSocket.setReuseAddress(true);
+    try {
+      serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    } catch (IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+  }
+
+  /**
+   * gets the port number of the admin socket.
+   *
+   * @return the port number.
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * starts the daemon thread serving the connections.
+   *
+   * @param identity
+   *          the identity of the server, which names the thread.
+   */
+  public void start(final int identity) {
+    Thread thread = new Thread(this, "chat-admin-" + identity);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * accepts and serves the connections until the admin socket is closed.
+   */
+  @Override
+  public void run() {
+    while (!serverSocket.isClosed()) {
+      try (Socket socket = serverSocket.accept()) {
+        current = socket;
+        serve(socket);
+      } catch (SocketException e) {
+        if (LOG_ON && COMM.isTraceEnabled()) {
+          COMM.trace("admin socket closed: {}", e.getLocalizedMessage());
+        }
+      } catch (IOException e) {
+        COMM.warn("admin connection failed: {}", e.getLocalizedMessage());
+      } finally {
+        current = null;
+      }
+    }
+  }
+
+  /**
+   * serves the requests of a connection.
+   *
+   * @param socket
+   *          the socket of the connection.
+   * @throws IOException
+   *           the exception thrown in case of communication problem.
+   */
+  private void serve(final Socket socket) throws IOException {
+    BufferedReader in = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    PrintWriter out = new PrintWriter(
+        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      String output = commands.execute(line);
+      if (output == null) {
+        output = "unknown command (" + line.trim() + "), commands: " + AdminCommands.COMMANDS;
+      }
+      out.print(output);
+      out.print("\n\n");
+      out.flush();
+    }
+  }
+
+  /**
+   * closes the admin socket and the connection being served.
+   *
+   * @throws IOException
+   *           the exception thrown in case of problem.
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    Socket socket = current;
+    if (socket != null) {
+      socket.close();
+    }
+  }
+}
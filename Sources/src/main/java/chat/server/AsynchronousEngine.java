@@ -0,0 +1,303 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.GEN;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import chat.common.AsynchronousMsgWorker;
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+
+/**
+ * This class defines the engine of the chat server that uses the asynchronous channels of NIO.2.
+ * The accepts, the reads and the writes are completed by the threads of an asynchronous channel
+ * group, which give the messages received to the server (see {@link AsynchronousMsgWorker}). The
+ * size of the pool of threads of the group is given by the system property
+ * {@link #THREADS_PROPERTY}, and is by default the number of available processors.
+ *
+ * The engine is selected with the engine name {@link Server#ASYNC_ENGINE}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class AsynchronousEngine implements ServerEngine {
+  /**
+   * the name of the system property giving the number of threads of the channel group.
+   */
+  public static final String THREADS_PROPERTY = "chat.server.async.threads";
+  /**
+   * backward reference to the server in order to give it the messages received.
+   */
+  private final Server server;
+  /**
+   * the channel group of the channels of the engine.
+   */
+  private final AsynchronousChannelGroup group;
+  /**
+   * server socket channel for accepting client connections.
+   */
+  private final AsynchronousServerSocketChannel listenChanClient;
+  /**
+   * server socket channel for accepting server connections.
+   */
+  private final AsynchronousServerSocketChannel listenChanServer;
+  /**
+   * the message workers of the open connections.
+   */
+  private final Set<AsynchronousMsgWorker> workers;
+  /**
+   * the receiver of the messages of the connections with servers.
+   */
+  private final MsgReceiver fromServers = new MsgReceiver() {
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final Serializable msg) throws IOException {
+      server.receiveFromServer(worker, type, identity, seqNumber, MsgWorker.UNTRACED, 0, msg);
+    }
+
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final long originTime, final int hops, final Serializable msg)
+        throws IOException {
+      server.receiveFromServer(worker, type, identity, seqNumber, originTime, hops, msg);
+    }
+
+    @Override
+    public void closed(final MsgWorker worker) {
+      workers.remove(worker);
+      server.unregisterServer(worker);
+    }
+  };
+  /**
+   * the receiver of the messages of the connections with clients.
+   */
+  private final MsgReceiver fromClients = new MsgReceiver() {
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final Serializable msg) throws IOException {
+      server.receiveFromClient(worker, type, identity, MsgWorker.UNTRACED, 0, msg);
+    }
+
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final long originTime, final int hops, final Serializable msg)
+        throws IOException {
+      server.receiveFromClient(worker, type, identity, originTime, hops, msg);
+    }
+
+    @Override
+    public void closed(final MsgWorker worker) {
+      workers.remove(worker);
+      server.unregisterClient(worker);
+    }
+  };
+
+  /**
+   * creates the channel group and the channels that are accepting connections from clients and
+   * servers.
+   *
+   * @param server
+   *          the reference to the server.
+   * @param state
+   *          the reference to the state object of the server.
+   * @param clientPort
+   *          the port number for accepting connections from clients.
+   * @param serverPort
+   *          the port number for accepting connections from servers.
+   */
+  public AsynchronousEngine(final Server server, final State state, final int clientPort,
+      final int serverPort) {
+    if (server == null || state == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + server
+          + ", " + state + ")");
+    }
+    this.server = server;
+    int nbThreads = Integer.getInteger(THREADS_PROPERTY,
+        Runtime.getRuntime().availableProcessors());
+    try {
+      group = AsynchronousChannelGroup.withFixedThreadPool(nbThreads, r -> {
+        Thread t = new Thread(r, "chat-server-" + state.getIdentity() + "-async");
+        t.setDaemon(true);
+        return t;
+      });
+      listenChanClient = AsynchronousServerSocketChannel.open(group);
+      listenChanServer = AsynchronousServerSocketChannel.open(group);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot open the server sockets");
+    }
+    try {
+      listenChanClient.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      listenChanServer.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot set the SO_REUSEADDR option");
+    }
+    try {
+      listenChanClient.bind(new InetSocketAddress(clientPort));
+      listenChanServer.bind(new InetSocketAddress(serverPort));
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot bind to a server socket");
+    }
+    workers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("  listenChanClient ok on port " + clientPort);
+      COMM.info("  listenChanServer ok on port " + serverPort);
+    }
+  }
+
+  @Override
+  public MsgWorker connectToServer(final InetSocketAddress address) throws IOException {
+    AsynchronousSocketChannel rwChan = AsynchronousSocketChannel.open(group);
+    try {
+      rwChan.connect(address).get();
+    } catch (InterruptedException e) {
+      rwChan.close();
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while connecting to " + address);
+    } catch (ExecutionException e) {
+      rwChan.close();
+      throw new IOException("cannot connect to " + address, e.getCause());
+    }
+    AsynchronousMsgWorker worker = new AsynchronousMsgWorker(rwChan, fromServers);
+    workers.add(worker);
+    server.registerServer(worker);
+    worker.startReading();
+    return worker;
+  }
+
+  /**
+   * starts accepting the connections and waits for the interruption of the thread of the server.
+   * The channels and the channel group are then closed.
+   */
+  @Override
+  public void run() {
+    if (LOG_ON && GEN.isDebugEnabled()) {
+      GEN.debug("Server thread for rcving msgs from the network started (asynchronous channels)");
+    }
+    listenChanClient.accept(null, new Acceptor(listenChanClient, fromClients));
+    listenChanServer.accept(null, new Acceptor(listenChanServer, fromServers));
+    try {
+      while (!group.awaitTermination(1, TimeUnit.DAYS)) {
+        continue;
+      }
+    } catch (InterruptedException e) {
+      if (LOG_ON && GEN.isDebugEnabled()) {
+        GEN.debug("Server thread for rcving msgs from the network interrupted");
+      }
+    } finally {
+      shutdown();
+    }
+  }
+
+  /**
+   * This class defines the completion handler of the accepts of a listening channel. The next
+   * accept is started once a connection has been registered.
+   */
+  private final class Acceptor implements CompletionHandler<AsynchronousSocketChannel, Void> {
+    /**
+     * the listening channel.
+     */
+    private final AsynchronousServerSocketChannel listenChan;
+    /**
+     * the receiver of the messages of the accepted connections.
+     */
+    private final MsgReceiver receiver;
+
+    /**
+     * constructs the completion handler.
+     *
+     * @param listenChan
+     *          the listening channel.
+     * @param receiver
+     *          the receiver of the messages of the accepted connections.
+     */
+    private Acceptor(final AsynchronousServerSocketChannel listenChan,
+        final MsgReceiver receiver) {
+      this.listenChan = listenChan;
+      this.receiver = receiver;
+    }
+
+    @Override
+    public void completed(final AsynchronousSocketChannel rwChan, final Void attachment) {
+      AsynchronousMsgWorker worker = new AsynchronousMsgWorker(rwChan, receiver);
+      workers.add(worker);
+      try {
+        if (receiver == fromServers) {
+          server.registerServer(worker);
+        } else {
+          server.registerClient(worker);
+        }
+        worker.startReading();
+      } catch (IOException e) {
+        COMM.error(e.getLocalizedMessage());
+      }
+      listenChan.accept(null, this);
+    }
+
+    @Override
+    public void failed(final Throwable exc, final Void attachment) {
+      if (listenChan.isOpen()) {
+        COMM.error(exc.getLocalizedMessage());
+        listenChan.accept(null, this);
+      }
+    }
+  }
+
+  /**
+   * closes the listening channels and the open connections, and shuts down the channel group.
+   */
+  private void shutdown() {
+    try {
+      listenChanClient.close();
+      listenChanServer.close();
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+    }
+    for (AsynchronousMsgWorker worker : workers) {
+      try {
+        worker.close();
+      } catch (IOException e) {
+        COMM.warn(e.getLocalizedMessage());
+      }
+    }
+    try {
+      group.shutdownNow();
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+    }
+  }
+}
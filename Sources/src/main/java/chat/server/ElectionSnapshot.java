@@ -0,0 +1,145 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+/**
+ * This class defines the immutable copies of the variables of the election of a server. A copy is
+ * published by {@link State#publishElection()} when holding the lock of the state, at the end of
+ * the treatment that modifies the variables, and is read without taking the lock, e.g. by the
+ * console commands of the server (see {@link AdminCommands#election()}). The variables of a copy
+ * are therefore consistent with each other.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class ElectionSnapshot {
+  /**
+   * the epoch of the round.
+   */
+  private final int epoch;
+  /**
+   * the status of the server in the round.
+   */
+  private final String status;
+  /**
+   * the current active wave, i.e. the initiator of the best wave seen.
+   */
+  private final int caw;
+  /**
+   * the parent of the server in the wave.
+   */
+  private final int parent;
+  /**
+   * the winner of the round, or {@code -1}.
+   */
+  private final int win;
+  /**
+   * the numbers of tokens and of leader messages received.
+   */
+  private final int rec;
+  private final int lrec;
+  /**
+   * the phase of the candidacy in the election of Hirschberg and Sinclair.
+   */
+  private final int phase;
+  /**
+   * the number of messages of the election sent in the round.
+   */
+  private final int sent;
+
+  /**
+   * is the constructor of a copy of the variables of the election.
+   *
+   * @param epoch
+   *          the epoch of the round.
+   * @param status
+   *          the status of the server.
+   * @param caw
+   *          the current active wave.
+   * @param parent
+   *          the parent in the wave.
+   * @param win
+   *          the winner.
+   * @param rec
+   *          the number of tokens received.
+   * @param lrec
+   *          the number of leader messages received.
+   * @param phase
+   *          the phase of the candidacy.
+   * @param sent
+   *          the number of messages sent.
+   */
+  public ElectionSnapshot(final int epoch, final String status, final int caw, final int parent,
+      final int win, final int rec, final int lrec, final int phase, final int sent) {
+    this.epoch = epoch;
+    this.status = status;
+    this.caw = caw;
+    this.parent = parent;
+    this.win = win;
+    this.rec = rec;
+    this.lrec = lrec;
+    this.phase = phase;
+    this.sent = sent;
+  }
+
+  public int getEpoch() {
+    return epoch;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public int getCaw() {
+    return caw;
+  }
+
+  public int getParent() {
+    return parent;
+  }
+
+  public int getWin() {
+    return win;
+  }
+
+  public int getRec() {
+    return rec;
+  }
+
+  public int getLrec() {
+    return lrec;
+  }
+
+  public int getPhase() {
+    return phase;
+  }
+
+  public int getSent() {
+    return sent;
+  }
+
+  @Override
+  public String toString() {
+    return "epoch=" + epoch + " status=" + status + " caw=" + caw + " parent=" + parent + " win="
+        + win + " rec=" + rec + " lrec=" + lrec + " phase=" + phase + " sent=" + sent;
+  }
+}
@@ -0,0 +1,272 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import chat.common.ConnectionMetrics;
+import chat.common.MsgWorker;
+import chat.server.algorithms.heartbeat.Algorithm;
+import chat.server.algorithms.heartbeat.HeartbeatContent;
+
+/**
+ * This class defines the heartbeats of the links of a server with its neighbours. At every tick
+ * (see {@link #tick()}), the server sends a ping to each neighbour, which answers with a pong (see
+ * {@link chat.server.algorithms.heartbeat.Actions}). The arrivals of the pongs feed a phi-accrual
+ * failure detector per link (see {@link PhiAccrualDetector}), and the round-trip times measured
+ * from the pongs are smoothed as in TCP and published as the round-trip time of the connection
+ * (see {@link ConnectionMetrics#getRoundTripTime()}). A link whose level of suspicion exceeds the
+ * threshold is torn down: the connection is closed and unregistered, so that the messages are no
+ * longer queued for a dead neighbour, e.g. on a half-open TCP connection.
+ *
+ * The ticks are given by a timer of the server, with the period given by the system property
+ * {@value #PERIOD_PROPERTY} in milliseconds (default {@value #DEFAULT_PERIOD}), except with the
+ * engine {@link Server#LOOPBACK_ENGINE}, whose virtual time would never become quiescent: the
+ * scenarios call {@link Server#heartbeat()} instead. The threshold of phi is given by
+ * {@value #THRESHOLD_PROPERTY} (default {@value #DEFAULT_THRESHOLD}) and the acceptable pause by
+ * {@value #PAUSE_PROPERTY} in milliseconds (default {@value #DEFAULT_PAUSE}). The detectors are
+ * guarded by the state of the server.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class Heartbeats {
+  /**
+   * the name of the system property giving the period of the heartbeats in milliseconds; the
+   * timer is disabled with {@code 0}.
+   */
+  public static final String PERIOD_PROPERTY = "chat.server.heartbeat.period";
+  /**
+   * the name of the system property giving the threshold of the level of suspicion.
+   */
+  public static final String THRESHOLD_PROPERTY = "chat.server.heartbeat.threshold";
+  /**
+   * the name of the system property giving the acceptable pause in milliseconds.
+   */
+  public static final String PAUSE_PROPERTY = "chat.server.heartbeat.pause";
+  /**
+   * the default period of the heartbeats, in milliseconds.
+   */
+  public static final long DEFAULT_PERIOD = 1000;
+  /**
+   * the default threshold of the level of suspicion.
+   */
+  public static final double DEFAULT_THRESHOLD = 8;
+  /**
+   * the default acceptable pause, in milliseconds.
+   */
+  public static final long DEFAULT_PAUSE = 3000;
+  /**
+   * the number of intervals of the sliding windows of the detectors.
+   */
+  private static final int WINDOW_SIZE = 100;
+  /**
+   * the ratio between the period and the lower bound of the standard deviation of the intervals.
+   */
+  private static final int MIN_DEVIATION_RATIO = 10;
+  /**
+   * the weight of the new sample in the smoothed round-trip time, as a power of 2 (1/8 as in TCP).
+   */
+  private static final int SMOOTHING_SHIFT = 3;
+  /**
+   * the server.
+   */
+  private final Server server;
+  /**
+   * the state of the server.
+   */
+  private final State state;
+  /**
+   * the clock, in nanoseconds.
+   */
+  private final LongSupplier clock;
+  /**
+   * the period of the heartbeats, in nanoseconds.
+   */
+  private final long period;
+  /**
+   * the threshold of the level of suspicion.
+   */
+  private final double threshold;
+  /**
+   * the acceptable pause, in nanoseconds.
+   */
+  private final long pause;
+  /**
+   * the detectors of the links, which are created at the first tick of the links.
+   */
+  private final Map<MsgWorker, PhiAccrualDetector> detectors = new HashMap<>();
+
+  /**
+   * constructs the heartbeats of a server, configured with the system properties.
+   *
+   * @param server
+   *          the server.
+   * @param state
+   *          the state of the server.
+   * @param clock
+   *          the clock in nanoseconds, e.g. the virtual time of a loopback network.
+   */
+  public Heartbeats(final Server server, final State state, final LongSupplier clock) {
+    this(server, state, clock, Long.getLong(PERIOD_PROPERTY, DEFAULT_PERIOD),
+        Double.parseDouble(System.getProperty(THRESHOLD_PROPERTY,
+            String.valueOf(DEFAULT_THRESHOLD))),
+        Long.getLong(PAUSE_PROPERTY, DEFAULT_PAUSE));
+  }
+
+  /**
+   * constructs the heartbeats of a server.
+   *
+   * @param server
+   *          the server.
+   * @param state
+   *          the state of the server.
+   * @param clock
+   *          the clock in nanoseconds.
+   * @param periodMillis
+   *          the period of the heartbeats in milliseconds, or {@code 0} when there is no timer, in
+   *          which case the default period is the estimate of the intervals between pongs.
+   * @param threshold
+   *          the threshold of the level of suspicion.
+   * @param pauseMillis
+   *          the acceptable pause in milliseconds.
+   */
+  public Heartbeats(final Server server, final State state, final LongSupplier clock,
+      final long periodMillis, final double threshold, final long pauseMillis) {
+    if (server == null || state == null || clock == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + server + ", " + state
+          + ", " + clock + ")");
+    }
+    if (periodMillis < 0 || threshold <= 0 || pauseMillis < 0) {
+      throw new IllegalArgumentException("invalid parameters (" + periodMillis + ", " + threshold
+          + ", " + pauseMillis + ")");
+    }
+    this.server = server;
+    this.state = state;
+    this.clock = clock;
+    this.period = TimeUnit.MILLISECONDS.toNanos(periodMillis == 0 ? DEFAULT_PERIOD : periodMillis);
+    this.threshold = threshold;
+    this.pause = TimeUnit.MILLISECONDS.toNanos(pauseMillis);
+  }
+
+  /**
+   * gets the period of the heartbeats.
+   *
+   * @return the period in nanoseconds.
+   */
+  public long getPeriod() {
+    return period;
+  }
+
+  /**
+   * sends a ping to every neighbour whose link is not suspected, and tears down the links whose
+   * level of suspicion exceeds the threshold.
+   */
+  public void tick() {
+    List<MsgWorker> suspected = new ArrayList<>();
+    synchronized (state) {
+      long now = clock.getAsLong();
+      for (Iterator<MsgWorker> links = detectors.keySet().iterator(); links.hasNext();) {
+        if (!state.allServerWorkers.contains(links.next())) {
+          links.remove();
+        }
+      }
+      for (MsgWorker worker : state.allServerWorkers) {
+        PhiAccrualDetector detector = detectors.get(worker);
+        if (detector == null) {
+          detector = new PhiAccrualDetector(WINDOW_SIZE, period / MIN_DEVIATION_RATIO, pause,
+              period, now);
+          detectors.put(worker, detector);
+        }
+        double phi = detector.phi(now);
+        if (phi > threshold) {
+          COMM.warn("tearing down a link of server {} (phi={})", state.getIdentity(), phi);
+          suspected.add(worker);
+          continue;
+        }
+        try {
+          worker.sendMsg(Algorithm.PING_MESSAGE.identifier(), state.getIdentity(),
+              state.seqNumber, new HeartbeatContent(now));
+        } catch (IOException e) {
+          COMM.warn("cannot send a ping: {}", e.getLocalizedMessage());
+        }
+      }
+    }
+    for (MsgWorker worker : suspected) {
+      try {
+        worker.close();
+      } catch (IOException e) {
+        if (LOG_ON && COMM.isDebugEnabled()) {
+          COMM.debug("closing a suspected link: {}", e.getLocalizedMessage());
+        }
+      }
+      server.unregisterServer(worker);
+      server.getMetrics().linkTeardown();
+    }
+  }
+
+  /**
+   * treats the pong of a ping: the arrival is a heartbeat of the link and the round-trip time is
+   * measured. This method is called when holding the lock of the state.
+   *
+   * @param worker
+   *          the message worker of the link.
+   * @param sendTime
+   *          the sending time of the ping.
+   */
+  public void pong(final MsgWorker worker, final long sendTime) {
+    long now = clock.getAsLong();
+    PhiAccrualDetector detector = detectors.get(worker);
+    if (detector != null) {
+      detector.heartbeat(now);
+    }
+    long rtt = Math.max(0, now - sendTime);
+    ConnectionMetrics metrics = worker.getMetrics();
+    long smoothed = metrics.getRoundTripTime();
+    metrics.setRoundTripTime(smoothed < 0 ? rtt
+        : smoothed + ((rtt - smoothed) >> SMOOTHING_SHIFT));
+  }
+
+  /**
+   * computes the level of suspicion of a link.
+   *
+   * @param worker
+   *          the message worker of the link.
+   * @return the level of suspicion, or {@code 0} if the link has not been ticked yet.
+   */
+  public double phi(final MsgWorker worker) {
+    synchronized (state) {
+      PhiAccrualDetector detector = detectors.get(worker);
+      return detector == null ? 0 : detector.phi(clock.getAsLong());
+    }
+  }
+}
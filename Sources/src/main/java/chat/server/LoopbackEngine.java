@@ -0,0 +1,178 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.GEN;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+
+/**
+ * This class defines the engine of the chat server that uses an in-process
+ * {@link LoopbackNetwork} instead of sockets. The messages are given to the server by the thread
+ * running the scheduler of the network, and the engine has therefore nothing to do in the thread
+ * of the server: the method {@link #run()} returns at once.
+ *
+ * The engine is selected with the engine name {@link Server#LOOPBACK_ENGINE}, the network being
+ * given to the constructor of the server (see {@link Server#Server(String[], LoopbackNetwork)}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LoopbackEngine implements ServerEngine {
+  /**
+   * backward reference to the server in order to give it the messages received.
+   */
+  private final Server server;
+  /**
+   * the network.
+   */
+  private final LoopbackNetwork network;
+  /**
+   * the port number for accepting connections from servers, which selects the profile of the
+   * connections to the other servers.
+   */
+  private final int serverPort;
+  /**
+   * the receiver of the messages of the connections with servers.
+   */
+  private final MsgReceiver fromServers = new MsgReceiver() {
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final Serializable msg) throws IOException {
+      server.receiveFromServer(worker, type, identity, seqNumber, MsgWorker.UNTRACED, 0, msg);
+    }
+
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final long originTime, final int hops, final Serializable msg)
+        throws IOException {
+      server.receiveFromServer(worker, type, identity, seqNumber, originTime, hops, msg);
+    }
+
+    @Override
+    public void closed(final MsgWorker worker) {
+      server.unregisterServer(worker);
+    }
+  };
+  /**
+   * the receiver of the messages of the connections with clients.
+   */
+  private final MsgReceiver fromClients = new MsgReceiver() {
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final Serializable msg) throws IOException {
+      server.receiveFromClient(worker, type, identity, MsgWorker.UNTRACED, 0, msg);
+    }
+
+    @Override
+    public void received(final MsgWorker worker, final int type, final int identity,
+        final int seqNumber, final long originTime, final int hops, final Serializable msg)
+        throws IOException {
+      server.receiveFromClient(worker, type, identity, originTime, hops, msg);
+    }
+
+    @Override
+    public void closed(final MsgWorker worker) {
+      server.unregisterClient(worker);
+    }
+  };
+
+  /**
+   * listens to the ports of the server in the network.
+   *
+   * @param server
+   *          the reference to the server.
+   * @param state
+   *          the reference to the state object of the server.
+   * @param clientPort
+   *          the port number for accepting connections from clients.
+   * @param serverPort
+   *          the port number for accepting connections from servers.
+   * @param network
+   *          the network.
+   */
+  public LoopbackEngine(final Server server, final State state, final int clientPort,
+      final int serverPort, final LoopbackNetwork network) {
+    if (server == null || state == null || network == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + server
+          + ", " + state + ", " + network + ")");
+    }
+    this.server = server;
+    this.network = network;
+    this.serverPort = serverPort;
+    try {
+      network.listen(clientPort, fromClients, server::registerClient);
+      network.listen(serverPort, fromServers, server::registerServer);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot listen to the loopback ports: "
+          + e.getLocalizedMessage());
+    }
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("  loopback ports " + clientPort + " and " + serverPort + " ok");
+    }
+  }
+
+  @Override
+  public MsgWorker connectToServer(final InetSocketAddress address) throws IOException {
+    LoopbackMsgWorker worker = network.connect(serverPort, address.getPort(), fromServers);
+    server.registerServer(worker);
+    return worker;
+  }
+
+  /**
+   * gets the virtual time of the network.
+   *
+   * @return the virtual time in nanoseconds.
+   */
+  @Override
+  public long now() {
+    return network.now();
+  }
+
+  /**
+   * schedules a task of the server in the virtual time of the network.
+   *
+   * @param delay
+   *          the delay in nanoseconds.
+   * @param task
+   *          the task.
+   */
+  public void schedule(final long delay, final Runnable task) {
+    network.schedule(delay, task);
+  }
+
+  @Override
+  public void run() {
+    if (LOG_ON && GEN.isDebugEnabled()) {
+      GEN.debug("Server thread not used by the loopback engine");
+    }
+  }
+}
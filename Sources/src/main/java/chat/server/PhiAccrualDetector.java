@@ -0,0 +1,169 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+/**
+ * This class defines a phi-accrual failure detector of a link, in the style of Hayashibara et al.
+ * Instead of a boolean suspicion after a fixed timeout, the detector gives a level of suspicion
+ * {@code phi} that grows with the time elapsed since the last heartbeat, relatively to the
+ * distribution of the intervals between the heartbeats observed so far: {@code phi = 1} means a
+ * probability of 10% that the next heartbeat is still coming, {@code phi = 8} a probability of
+ * 10<sup>-8</sup>. The distribution is approximated by a normal distribution whose mean and
+ * standard deviation are computed on a sliding window of the last intervals, the mean being
+ * increased by an acceptable pause (e.g. for garbage collections) and the standard deviation
+ * being bounded below, as in Akka.
+ *
+ * The detector starts with two intervals around an estimate of the first interval, so that a link
+ * whose first heartbeat never arrives is suspected too. The detector does not lock: it is used
+ * when holding the lock of the state of the server. The times are in nanoseconds.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class PhiAccrualDetector {
+  /**
+   * the intervals of the sliding window, as a ring.
+   */
+  private final long[] intervals;
+  /**
+   * the lower bound of the standard deviation.
+   */
+  private final double minStdDeviation;
+  /**
+   * the pause added to the mean of the intervals.
+   */
+  private final long acceptablePause;
+  /**
+   * the number of intervals in the window.
+   */
+  private int count;
+  /**
+   * the index of the next interval in the ring.
+   */
+  private int next;
+  /**
+   * the sum of the intervals in the window.
+   */
+  private double sum;
+  /**
+   * the sum of the squares of the intervals in the window.
+   */
+  private double sumOfSquares;
+  /**
+   * the time of the last heartbeat.
+   */
+  private long lastHeartbeat;
+
+  /**
+   * constructs a detector.
+   *
+   * @param windowSize
+   *          the number of intervals of the sliding window.
+   * @param minStdDeviation
+   *          the lower bound of the standard deviation.
+   * @param acceptablePause
+   *          the pause added to the mean of the intervals.
+   * @param firstEstimate
+   *          the estimate of the first interval, typically the period of the heartbeats.
+   * @param now
+   *          the current time, which is taken as the time of a first heartbeat.
+   */
+  public PhiAccrualDetector(final int windowSize, final long minStdDeviation,
+      final long acceptablePause, final long firstEstimate, final long now) {
+    if (windowSize < 2) {
+      throw new IllegalArgumentException("window too small (" + windowSize + ")");
+    }
+    if (minStdDeviation <= 0 || acceptablePause < 0 || firstEstimate <= 0) {
+      throw new IllegalArgumentException("invalid parameters (" + minStdDeviation + ", "
+          + acceptablePause + ", " + firstEstimate + ")");
+    }
+    this.intervals = new long[windowSize];
+    this.minStdDeviation = minStdDeviation;
+    this.acceptablePause = acceptablePause;
+    long deviation = firstEstimate / 4;
+    addInterval(firstEstimate - deviation);
+    addInterval(firstEstimate + deviation);
+    this.lastHeartbeat = now;
+  }
+
+  /**
+   * records the arrival of a heartbeat.
+   *
+   * @param now
+   *          the time of the arrival.
+   */
+  public void heartbeat(final long now) {
+    if (now > lastHeartbeat) {
+      addInterval(now - lastHeartbeat);
+      lastHeartbeat = now;
+    }
+  }
+
+  /**
+   * adds an interval to the window, replacing the oldest one when the window is full.
+   *
+   * @param interval
+   *          the interval.
+   */
+  private void addInterval(final long interval) {
+    if (count == intervals.length) {
+      long oldest = intervals[next];
+      sum -= oldest;
+      sumOfSquares -= (double) oldest * oldest;
+    } else {
+      count++;
+    }
+    intervals[next] = interval;
+    next = (next + 1) % intervals.length;
+    sum += interval;
+    sumOfSquares += (double) interval * interval;
+  }
+
+  /**
+   * computes the level of suspicion of the link.
+   *
+   * @param now
+   *          the current time.
+   * @return the level of suspicion, {@code 0} just after a heartbeat.
+   */
+  public double phi(final long now) {
+    double mean = sum / count;
+    double variance = Math.max(0, sumOfSquares / count - mean * mean);
+    double stdDeviation = Math.max(Math.sqrt(variance), minStdDeviation);
+    double y = (now - lastHeartbeat - mean - acceptablePause) / stdDeviation;
+    // logistic approximation of the cumulative distribution function of the normal distribution
+    double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+    if (y > 0) {
+      return -Math.log10(e / (1.0 + e));
+    }
+    return -Math.log10(1.0 - 1.0 / (1.0 + e));
+  }
+
+  /**
+   * gets the time of the last heartbeat.
+   *
+   * @return the time.
+   */
+  public long getLastHeartbeat() {
+    return lastHeartbeat;
+  }
+}
@@ -27,20 +27,25 @@ import static chat.common.Log.LOG_ON;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.Set;
 
 import chat.common.FullDuplexMsgWorker;
+import chat.common.MsgWorker;
 import chat.common.ReadMessageStatus;
 
 /**
- * This class defines the main of the chat server. It configures the server, connects to existing
- * chat servers, waits for connections from other chat servers and from chat clients, and forwards
- * chat messages received from chat clients to other 'local' chat clients and to the other chat
- * servers.
+ * This class defines the default engine of the chat server, which is organised around a selector.
+ * It waits for connections from other chat servers and from chat clients, and gives the messages
+ * received to the server, which forwards chat messages received from chat clients to other 'local'
+ * chat clients and to the other chat servers.
  * 
  * The chat servers can be organised into a network topology forming cycles since the method
  * <tt>forward</tt> is only called when the message to forward has not already been received and
@@ -52,7 +57,7 @@ import chat.common.ReadMessageStatus;
  * @author Majdi Haouech
  *
  */
-public class ReadMessagesFromNetwork implements Runnable {
+public class ReadMessagesFromNetwork implements ServerEngine {
   /**
    * backward reference to the server selector object in order to use its methods to send messages.
    */
@@ -87,53 +92,113 @@ public class ReadMessagesFromNetwork implements Runnable {
    * state of the server object. This is where all the attributes of the chat server are stored.
    */
   private State state;
+  /**
+   * the instant of the return of the last {@code select}, in the time of {@link System#nanoTime()}.
+   */
+  private long selectReturned;
 
   /**
-   * initialises the collection attributes and the state of the server, and creates the channels
-   * that are accepting connections from clients and servers.
+   * creates the selector and the channels that are accepting connections from clients and servers.
    * 
    * @param server
    *          the reference to the server.
-   * @param selector
-   *          the selector.
-   * @param acceptClientKey
-   *          the selection key for accepting client connections.
-   * @param listenChanClient
-   *          the server socket channel for accepting client connections.
-   * @param acceptServerKey
-   *          the selection key for accepting server connections.
-   * @param listenChanServer
-   *          the server socket channel for accepting server connections.
    * @param state
    *          the reference to the state objec of the server where all the attributes are stored.
+   * @param clientPort
+   *          the port number for accepting connections from clients.
+   * @param serverPort
+   *          the port number for accepting connections from servers.
    */
-  public ReadMessagesFromNetwork(final Server server, final Selector selector,
-      final SelectionKey acceptClientKey, final ServerSocketChannel listenChanClient,
-      final SelectionKey acceptServerKey, final ServerSocketChannel listenChanServer,
-      final State state) {
-    if (server == null || selector == null || acceptClientKey == null
-        || listenChanClient == null || acceptServerKey == null
-        || listenChanServer == null|| state == null) {
+  public ReadMessagesFromNetwork(final Server server, final State state, final int clientPort,
+      final int serverPort) {
+    if (server == null || state == null) {
       if (LOG_ON) {
-        GEN.error("One of the argument is null (" + server + ", "
-            + selector + ", " + acceptClientKey + ", " + listenChanClient + ", "
-            + acceptServerKey + ", " + listenChanClient + ", " + state + ")");
+        GEN.error("One of the argument is null (" + server + ", " + state + ")");
       }
       throw new IllegalArgumentException("One of the argument is null (" + server
-          + ", " + selector + ", " + acceptClientKey + ", " + listenChanClient + ", "
-          + acceptServerKey + ", " + listenChanClient + ", " + state + ")");
+          + ", " + state + ")");
     }
     this.state = state;
-    this.selector = selector;
-    this.acceptClientKey = acceptClientKey;
-    this.listenChanClient = listenChanClient;
-    this.acceptServerKey = acceptServerKey;
-    this.listenChanServer = listenChanServer;
     this.server = server;
+    InetSocketAddress rcvAddressClient;
+    InetSocketAddress rcvAddressServer;
+    try {
+      selector = Selector.open();
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot create the selector");
+    }
+    try {
+      listenChanClient = ServerSocketChannel.open();
+      listenChanClient.configureBlocking(false);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot set the blocking option to a server socket");
+    }
+    try {
+      listenChanServer = ServerSocketChannel.open();
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "cannot open the server socket" + " for accepting server connections");
+    }
+    try {
+      rcvAddressClient = new InetSocketAddress(clientPort);
+      listenChanClient.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      rcvAddressServer = new InetSocketAddress(serverPort);
+      listenChanServer.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot set the SO_REUSEADDR option");
+    }
+    try {
+      listenChanClient.bind(rcvAddressClient);
+      listenChanServer.bind(rcvAddressServer);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot bind to a server socket");
+    }
+    try {
+      listenChanClient.configureBlocking(false);
+      listenChanServer.configureBlocking(false);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot set the blocking option");
+    }
+    try {
+      acceptClientKey = listenChanClient.register(selector,
+          SelectionKey.OP_ACCEPT);
+      acceptServerKey = listenChanServer.register(selector,
+          SelectionKey.OP_ACCEPT);
+    } catch (ClosedChannelException e) {
+      throw new IllegalStateException("cannot register a server socket");
+    }
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("  listenChanClient ok on port "
+          + listenChanClient.socket().getLocalPort());
+      COMM.info("  listenChanServer ok on port "
+          + listenChanServer.socket().getLocalPort());
+    }
+  }
+
+  /**
+   * connects socket, creates MsgWorker, and registers selection key of the remote server.
+   *
+   * @param address
+   *          the address of the remote server.
+   * @return the message worker of the connection.
+   * @throws IOException
+   *           the exception thrown in case of communication problem.
+   */
+  @Override
+  public MsgWorker connectToServer(final InetSocketAddress address) throws IOException {
+    SocketChannel rwChan = SocketChannel.open();
+    // connect sending socket to remote port
+    rwChan.socket().connect(address);
+    FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
+    worker.configureNonBlocking();
+    server.registerServer(worker);
+    worker.register(selector);
+    return worker;
   }
 
   /**
-   * is the infinite loop organised around the call to select.
+   * is the infinite loop organised around the call to select. The channels are closed when the
+   * thread is interrupted.
    */
   @Override
   public void run() {
@@ -143,6 +208,7 @@ public class ReadMessagesFromNetwork implements Runnable {
     while (!Thread.interrupted()) {
       try {
         selector.select();
+        selectReturned = System.nanoTime();
       } catch (IOException e) {
         COMM.fatal(e.getLocalizedMessage());
         e.printStackTrace();
@@ -153,12 +219,12 @@ public class ReadMessagesFromNetwork implements Runnable {
       while (readyIter.hasNext()) {
         SelectionKey key = readyIter.next();
         readyIter.remove();
-        if (key.isAcceptable()) {
+        if (key.isValid() && key.isAcceptable()) {
           try {
             if (key.equals(acceptServerKey)) {
-              server.acceptNewServer(listenChanServer);
+              acceptNewServer(listenChanServer);
             } else if (key.equals(acceptClientKey)) {
-              server.acceptNewClient(listenChanClient);
+              acceptNewClient(listenChanClient);
             } else {
               COMM.fatal("unknown accept");
               return;
@@ -168,37 +234,116 @@ public class ReadMessagesFromNetwork implements Runnable {
             e.printStackTrace();
           }
         }
-        if (key.isReadable()) {
-          FullDuplexMsgWorker serverWorker = null;
+        if (key.isValid() && key.isWritable()) {
+          flushWorker((FullDuplexMsgWorker) key.attachment());
+        }
+        if (key.isValid() && key.isReadable()) {
+          FullDuplexMsgWorker worker = (FullDuplexMsgWorker) key.attachment();
+          boolean fromServer;
+          boolean fromClient;
           synchronized (state) {
-            state.currKey = key;
-            serverWorker = state.allServerWorkers.get(key);
+            fromServer = state.allServerWorkers.contains(worker);
+            fromClient = state.allClientWorkers.contains(worker);
           }
-          if (serverWorker != null) {
-            treatMessageFromNeighbouringServer(key, serverWorker);
+          if (fromServer) {
+            treatMessageFromNeighbouringServer(worker);
           }
-          FullDuplexMsgWorker clientWorker = null;
-          synchronized (state) {
-            clientWorker = state.allClientWorkers.get(key);
-          }
-          if (clientWorker != null) {
-            treatMessageFromLocalClient(key, clientWorker);
+          if (fromClient) {
+            treatMessageFromLocalClient(worker);
           }
         }
       }
     }
+    shutdown();
+  }
+
+  /**
+   * closes the listening channels, the connections and the selector. This method is called when
+   * the thread of the server is interrupted.
+   */
+  private void shutdown() {
+    try {
+      listenChanClient.close();
+      listenChanServer.close();
+      for (SelectionKey key : selector.keys()) {
+        key.channel().close();
+      }
+      selector.close();
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * accepts connection (socket level), creates MsgWorker, and registers selection key of the remote
+   * server. This method is called when accepting a connection from a remote server.
+   * 
+   * @param sc
+   *          server socket channel.
+   * @throws IOException
+   *           the exception thrown in case of communication problem.
+   */
+  private void acceptNewServer(final ServerSocketChannel sc) throws IOException {
+    SocketChannel rwChan = sc.accept();
+    if (rwChan != null) {
+      try {
+        FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
+        worker.configureNonBlocking();
+        worker.register(selector);
+        server.registerServer(worker);
+      } catch (ClosedChannelException e) {
+        COMM.error(e.getLocalizedMessage());
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * accepts connection (socket level), creates MsgWorker, and registers selection key of the local
+   * client. This method is called when accepting a connection from a local client.
+   * 
+   * @param sc
+   *          server socket channel.
+   * @throws IOException
+   *           the exception thrown in case of communication problem.
+   */
+  private void acceptNewClient(final ServerSocketChannel sc) throws IOException {
+    SocketChannel rwChan = sc.accept();
+    if (rwChan != null) {
+      try {
+        FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
+        worker.configureNonBlocking();
+        worker.register(selector);
+        server.registerClient(worker);
+      } catch (ClosedChannelException e) {
+        COMM.error(e.getLocalizedMessage());
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * writes the frames that are waiting in the outbound queues of a worker whose channel has become
+   * writable. The control frames are written first.
+   *
+   * @param worker
+   *          the worker attached to the selection key.
+   */
+  private void flushWorker(final FullDuplexMsgWorker worker) {
+    try {
+      worker.flush();
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+    }
   }
 
   /**
    * treats the messages received from a neighbouring server.
    *
-   * @param key
-   *          the selection key corresponding to the worker.
    * @param readWorker
    *          the worker to read the message from.
    */
-  private void treatMessageFromNeighbouringServer(final SelectionKey key,
-      final FullDuplexMsgWorker readWorker) {
+  private void treatMessageFromNeighbouringServer(final FullDuplexMsgWorker readWorker) {
     // message comes from another server
     try {
       ReadMessageStatus status;
@@ -206,46 +351,14 @@ public class ReadMessagesFromNetwork implements Runnable {
       if (status == ReadMessageStatus.ChannelClosed) {
         // remote end point has been closed
         readWorker.close();
-        synchronized (state) {
-          state.allServerWorkers.remove(key);
-          if (LOG_ON && COMM.isInfoEnabled()) {
-            COMM.info("Closing a channel");
-            COMM.debug("  allServerWorkers.size() = "
-                + state.allServerWorkers.size());
-          }
-        }
+        server.unregisterServer(readWorker);
       }
       if (status == ReadMessageStatus.ReadDataCompleted) {
-        int messType = readWorker.getInType();
         Serializable msg = readWorker.getData();
-        if (LOG_ON && COMM.isInfoEnabled()) {
-          COMM.info("Message received " + readWorker.getInSeqNumber()
-            + ", " + msg + ", " + msg.getClass().getName());
-        }
-        if (messType < chat.common.Action.OFFSET_CLIENT_ALGORITHMS) {
-          // message for server
-          if (LOG_ON && COMM.isTraceEnabled()) {
-            COMM.trace("Going to execute action" + " for message type #"
-                + messType + " on content " + msg);
-          }
-          chat.server.algorithms.ListOfAlgorithms.execute(state, messType, msg);
-        } else {
-          // client message to forward
-          int identity = readWorker.getInIdentity();
-          int seqNumber = readWorker.getInSeqNumber();
-          synchronized (state) {
-            if (state.clientSeqNumbers.get(identity) == null) {
-              state.clientSeqNumbers.put(identity, seqNumber);
-              server.forward(key, messType, identity, seqNumber, msg);
-            } else {
-              if (seqNumber > state.clientSeqNumbers.get(identity)) {
-                // not already forwarded
-                state.clientSeqNumbers.put(identity, seqNumber);
-                server.forward(key, messType, identity, seqNumber, msg);
-              }
-            }
-          }
-        }
+        server.getMetrics().getSelectToDecode().recordSince(selectReturned);
+        server.receiveFromServer(readWorker, readWorker.getInType(), readWorker.getInIdentity(),
+            readWorker.getInSeqNumber(), readWorker.getInOriginTime(), readWorker.getInHops(),
+            msg);
       }
     } catch (IOException e) {
       COMM.error(e.getLocalizedMessage());
@@ -253,40 +366,24 @@ public class ReadMessagesFromNetwork implements Runnable {
   }
 
   /**
-   * treats the messages received from a neighbouring server.
+   * treats the messages received from a local client.
    *
-   * @param key
-   *          the selection key corresponding to the worker.
    * @param readWorker
    *          the worker to read the message from.
    */
-  private void treatMessageFromLocalClient(final SelectionKey key,
-      final FullDuplexMsgWorker readWorker) {
+  private void treatMessageFromLocalClient(final FullDuplexMsgWorker readWorker) {
     try {
       ReadMessageStatus status;
       status = readWorker.readMessage();
       if (status == ReadMessageStatus.ChannelClosed) {
         readWorker.close();
-        synchronized (state) {
-          state.allClientWorkers.remove(key);
-          if (LOG_ON && COMM.isInfoEnabled()) {
-            COMM.info("Closing a channel");
-            COMM.debug("allClientWorkers.size() = " + state.allClientWorkers.size());
-          }
-        }
+        server.unregisterClient(readWorker);
       }
       if (status == ReadMessageStatus.ReadDataCompleted) {
-        int messType = readWorker.getInType();
         Serializable msg = readWorker.getData();
-        if (LOG_ON && COMM.isInfoEnabled()) {
-          COMM.info("Message received " + msg + " " + msg.getClass().getName());
-        }
-        int identity = readWorker.getInIdentity();
-        synchronized (state) {
-          int seqNumber = state.seqNumber++;
-          state.clientSeqNumbers.put(identity, seqNumber);
-          server.forward(key, messType, identity, seqNumber, msg);
-        }
+        server.getMetrics().getSelectToDecode().recordSince(selectReturned);
+        server.receiveFromClient(readWorker, readWorker.getInType(), readWorker.getInIdentity(),
+            readWorker.getInOriginTime(), readWorker.getInHops(), msg);
       }
     } catch (IOException e) {
       COMM.error(e.getStackTrace());
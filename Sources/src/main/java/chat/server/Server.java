@@ -24,22 +24,53 @@ package chat.server;
 import static chat.common.Log.COMM;
 import static chat.common.Log.GEN;
 import static chat.common.Log.LOG_ON;
+import static chat.server.algorithms.gossip.Actions.exchangeDigests;
+import static chat.server.algorithms.gossip.Actions.isGossiped;
+import static chat.server.algorithms.gossip.Actions.isNewRumour;
+import static chat.server.algorithms.gossip.Actions.peers;
+import static chat.server.algorithms.rooms.Actions.clientJoined;
+import static chat.server.algorithms.rooms.Actions.clientLeft;
+import static chat.server.algorithms.rooms.Actions.dedupEntries;
+import static chat.server.algorithms.rooms.Actions.isFlooded;
+import static chat.server.algorithms.rooms.Actions.isMember;
+import static chat.server.algorithms.rooms.Actions.isNew;
+import static chat.server.algorithms.rooms.Actions.isRouted;
+import static chat.server.algorithms.rooms.Actions.isSender;
+import static chat.server.algorithms.rooms.Actions.joinAck;
+import static chat.server.algorithms.rooms.Actions.joinRoom;
+import static chat.server.algorithms.rooms.Actions.leaveRoom;
+import static chat.server.algorithms.rooms.Actions.linkAdded;
+import static chat.server.algorithms.rooms.Actions.linkLost;
+import static chat.server.algorithms.rooms.Actions.nextHopToHome;
+import static chat.server.algorithms.rooms.Actions.recordClock;
+import static chat.server.algorithms.rooms.Actions.roomOf;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.StandardSocketOptions;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-
-import chat.common.FullDuplexMsgWorker;
-import chat.server.algorithms.election.Algorithm;
-import chat.server.algorithms.election.ElectionTokenContent;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import chat.client.algorithms.chat.Algorithm;
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.client.algorithms.chat.RoomContent;
+import chat.common.Action;
+import chat.common.FlightEvents;
+import chat.common.ForwardEvent;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgWorker;
+import chat.server.algorithms.Dissemination;
+import chat.server.algorithms.ElectionAlgorithm;
+import chat.server.algorithms.MutualExclusionAlgorithm;
+import chat.server.algorithms.election.Actions;
+import chat.server.algorithms.gossip.BloomFilter;
+import chat.server.algorithms.gossip.RumourContent;
+import chat.server.algorithms.rooms.HomeContent;
 
 /**
  * This class defines server object. The server ojbect connects to existing chat servers,
@@ -50,6 +81,11 @@ import chat.server.algorithms.election.ElectionTokenContent;
  * The chat servers can be organised into a network topology forming cycles since the method
  * <tt>forward</tt> is only called when the message to forward has not already been received and
  * forwarded.
+ *
+ * The network part of the server is delegated to an engine (see {@link ServerEngine}), which is
+ * selected when the server is created: the default engine is the selector loop of the class
+ * {@link ReadMessagesFromNetwork}; when the server is built with the profile {@code java21}, the
+ * engine {@code virtual} runs one virtual thread per connection.
  * 
  * @author chris
  * @author Denis Conan
@@ -61,11 +97,36 @@ public class Server {
   /**
    * the base of the port number for connecting to clients.
    */
-  private static final int BASE_PORTNB_LISTEN_CLIENT = 2050;
+  public static final int BASE_PORTNB_LISTEN_CLIENT = 2050;
   /**
    * the offset of the port number for connecting to servers.
    */
-  private static final int OFFSET_PORTNB_LISTEN_SERVER = 100;
+  public static final int OFFSET_PORTNB_LISTEN_SERVER = 100;
+  /**
+   * the name of the system property selecting the engine of the servers.
+   */
+  public static final String ENGINE_PROPERTY = "chat.server.engine";
+  /**
+   * the name of the engine organised around a selector, which is the default engine.
+   */
+  public static final String SELECTOR_ENGINE = "selector";
+  /**
+   * the name of the engine running one virtual thread per connection.
+   */
+  public static final String VIRTUAL_ENGINE = "virtual";
+  /**
+   * the name of the engine using the asynchronous channels of NIO.2.
+   */
+  public static final String ASYNC_ENGINE = "async";
+  /**
+   * the name of the engine using an in-process network instead of sockets.
+   */
+  public static final String LOOPBACK_ENGINE = "loopback";
+  /**
+   * the class of the engine running one virtual thread per connection. The class is only compiled
+   * with the profile {@code java21}, and is therefore loaded by reflection.
+   */
+  private static final String VIRTUAL_ENGINE_CLASS = "chat.server.VirtualThreadEngine";
   /**
    * the number of clients that have openned a connection to this server till the beginning of its
    * execution. Each client is assigned an identity in the form of an integer and this identity is
@@ -78,14 +139,64 @@ public class Server {
    */
   private final State state;
   /**
-   * the selector.
+   * the server-wide counters of the server, published through JMX with the counters of its
+   * connections.
+   */
+  private final ServerMetrics metrics;
+  /**
+   * the console commands showing the state of the server, which are also served by the admin
+   * socket.
+   */
+  private final AdminCommands adminCommands;
+  /**
+   * the admin socket of the server, or {@code null} when disabled.
+   */
+  private AdminSocket adminSocket;
+  /**
+   * the heartbeats and the failure detectors of the links with the neighbouring servers.
+   */
+  private final Heartbeats heartbeats;
+  /**
+   * the election algorithm started by the command {@code Initiator} and after the loss of a link
+   * (see {@link ElectionAlgorithm#ELECTION_PROPERTY}).
+   */
+  private volatile ElectionAlgorithm electionAlgorithm;
+  /**
+   * the algorithm of mutual exclusion of the critical sections of the server (see
+   * {@link MutualExclusionAlgorithm#MUTEX_PROPERTY}).
    */
-  private Selector selector;
+  private volatile MutualExclusionAlgorithm mutexAlgorithm;
   /**
-   * the runnable object of the server that receives the messages from the chat clients and the
-   * other chat servers.
+   * the back-off of the initiators of the echo election, in nanoseconds per unit of identity (see
+   * {@link Actions#BACKOFF_PROPERTY}).
    */
-  private ReadMessagesFromNetwork runnableToRcvMsgs;
+  private volatile long electionBackoff;
+  /**
+   * the mode of dissemination of the client messages of the flooded rooms (see
+   * {@link Dissemination#DISSEMINATION_PROPERTY}).
+   */
+  private volatile Dissemination dissemination;
+  /**
+   * the period of the anti-entropy of the gossip, in nanoseconds (see
+   * {@link Dissemination#PERIOD_PROPERTY}).
+   */
+  private final long gossipPeriod;
+  /**
+   * the timer of the server, which executes the heartbeats and the tasks scheduled by the
+   * algorithms (see {@link #schedule(long, Runnable)}), or {@code null} with the engine
+   * {@link #LOOPBACK_ENGINE}, whose tasks are scheduled in the virtual time of the network.
+   */
+  private volatile ScheduledExecutorService timer;
+  /**
+   * the size of the data sent by the current forward, which is read by the flight recorder event
+   * of the forward (see {@link ForwardEvent}). The attribute is guarded by the state.
+   */
+  private long forwardedBytes;
+  /**
+   * the engine of the server that receives the messages from the chat clients and the other chat
+   * servers.
+   */
+  private ServerEngine engine;
   /**
    * the thread of the server that receives the messages from the chat clients and the other chat
    * servers.
@@ -93,10 +204,11 @@ public class Server {
   private Thread threadToRcvMsgs;
 
   /**
-   * initialises the collection attributes and the state of the server, and creates the channels
-   * that are accepting connections from clients and servers. At the end of the constructor, the
-   * server opens connections to the other servers (hostname, identifier) that are provided in the
-   * command line arguments.
+   * initialises the collection attributes and the state of the server, and creates the engine,
+   * which opens the channels that are accepting connections from clients and servers. At the end
+   * of the constructor, the server opens connections to the other servers (hostname, identifier)
+   * that are provided in the command line arguments. The engine is selected with the system
+   * property {@link #ENGINE_PROPERTY}.
    *
    * NB: after the construction of a client object, the thread for reading messages must be started
    * using the method {@link startThreadReadMessagesFromNetwork}.
@@ -105,71 +217,75 @@ public class Server {
    *          java command arguments.
    */
   public Server(final String[] args) {
+    this(args, System.getProperty(ENGINE_PROPERTY, SELECTOR_ENGINE));
+  }
+
+  /**
+   * initialises the collection attributes and the state of the server, and creates the given
+   * engine. See {@link #Server(String[])}.
+   *
+   * @param args
+   *          java command arguments.
+   * @param engineName
+   *          the name of the engine: {@link #SELECTOR_ENGINE}, {@link #VIRTUAL_ENGINE} or
+   *          {@link #ASYNC_ENGINE} ({@link #LOOPBACK_ENGINE} needs a network, see
+   *          {@link #Server(String[], LoopbackNetwork)}).
+   */
+  public Server(final String[] args, final String engineName) {
+    this(args, engineName, null);
+  }
+
+  /**
+   * initialises the collection attributes and the state of the server, and creates the engine
+   * {@link #LOOPBACK_ENGINE} in the given network. See {@link #Server(String[])}.
+   *
+   * @param args
+   *          java command arguments.
+   * @param network
+   *          the in-process network.
+   */
+  public Server(final String[] args, final LoopbackNetwork network) {
+    this(args, LOOPBACK_ENGINE, network);
+  }
+
+  /**
+   * initialises the collection attributes and the state of the server, and creates the given
+   * engine. See {@link #Server(String[])}.
+   *
+   * @param args
+   *          java command arguments.
+   * @param engineName
+   *          the name of the engine.
+   * @param network
+   *          the in-process network of the engine {@link #LOOPBACK_ENGINE}, or {@code null}.
+   */
+  private Server(final String[] args, final String engineName, final LoopbackNetwork network) {
     int identity = Integer.parseInt(args[0]);
     int portnum = BASE_PORTNB_LISTEN_CLIENT + Integer.parseInt(args[0]);
     state = new State(identity, this);
-    InetSocketAddress rcvAddressClient;
-    InetSocketAddress rcvAddressServer;
-    try {
-      selector = Selector.open();
-    } catch (IOException e) {
-      throw new IllegalStateException("cannot create the selector");
-    }
-    ServerSocketChannel listenChanClient = null;
-    ServerSocketChannel listenChanServer = null;
-    try {
-      listenChanClient = ServerSocketChannel.open();
-      listenChanClient.configureBlocking(false);
-    } catch (IOException e) {
-      throw new IllegalStateException("cannot set the blocking option to a server socket");
-    }
-    try {
-      listenChanServer = ServerSocketChannel.open();
-    } catch (IOException e) {
-      throw new IllegalStateException(
-          "cannot open the server socket" + " for accepting server connections");
-    }
-    try {
-      rcvAddressClient = new InetSocketAddress(portnum);
-      listenChanClient.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-      rcvAddressServer = new InetSocketAddress(portnum
-          + OFFSET_PORTNB_LISTEN_SERVER);
-      listenChanServer.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-    } catch (IOException e) {
-      throw new IllegalStateException("cannot set the SO_REUSEADDR option");
-    }
-    try {
-      listenChanClient.bind(rcvAddressClient);
-      listenChanServer.bind(rcvAddressServer);
-    } catch (IOException e) {
-      throw new IllegalStateException("cannot bind to a server socket");
+    metrics = new ServerMetrics(state);
+    metrics.register();
+    adminCommands = new AdminCommands(state, metrics);
+    engine = createEngine(engineName, portnum, portnum + OFFSET_PORTNB_LISTEN_SERVER, network);
+    threadToRcvMsgs = new Thread(engine);
+    heartbeats = new Heartbeats(this, state, engine::now);
+    electionAlgorithm = ElectionAlgorithm.fromProperty();
+    mutexAlgorithm = MutualExclusionAlgorithm.fromProperty();
+    electionBackoff = TimeUnit.MICROSECONDS.toNanos(
+        Long.getLong(Actions.BACKOFF_PROPERTY, Actions.DEFAULT_BACKOFF));
+    dissemination = Dissemination.fromProperty();
+    gossipPeriod = TimeUnit.MILLISECONDS.toNanos(
+        Long.getLong(Dissemination.PERIOD_PROPERTY, Dissemination.DEFAULT_PERIOD));
+    state.setGossipFanOut(Integer.getInteger(Dissemination.FANOUT_PROPERTY,
+        Dissemination.DEFAULT_FANOUT));
+    Integer rumours = Integer.getInteger(Dissemination.CAPACITY_PROPERTY);
+    if (rumours != null) {
+      state.setRumours(new BloomFilter(rumours, Dissemination.FALSE_POSITIVES));
     }
-    try {
-      listenChanClient.configureBlocking(false);
-      listenChanServer.configureBlocking(false);
-    } catch (IOException e) {
-      throw new IllegalStateException("cannot set the blocking option");
-    }
-    SelectionKey acceptClientKey = null;
-    SelectionKey acceptServerKey = null;
-    try {
-      acceptClientKey = listenChanClient.register(selector,
-          SelectionKey.OP_ACCEPT);
-      acceptServerKey = listenChanServer.register(selector,
-          SelectionKey.OP_ACCEPT);
-    } catch (ClosedChannelException e) {
-      throw new IllegalStateException("cannot register a server socket");
+    if (!LOOPBACK_ENGINE.equals(engineName)
+        && Boolean.parseBoolean(System.getProperty(AdminSocket.ADMIN_PROPERTY, "true"))) {
+      openAdminSocket(portnum + AdminSocket.OFFSET_PORTNB_ADMIN);
     }
-    if (LOG_ON && COMM.isInfoEnabled()) {
-      COMM.info("  listenChanClient ok on port "
-          + listenChanClient.socket().getLocalPort());
-      COMM.info("  listenChanServer ok on port "
-          + listenChanServer.socket().getLocalPort());
-    }
-    runnableToRcvMsgs = new ReadMessagesFromNetwork(this, selector,
-        acceptClientKey, listenChanClient, acceptServerKey,
-        listenChanServer, state);
-    threadToRcvMsgs = new Thread(runnableToRcvMsgs);
     for (int i = 1; i < args.length; i = i + 2) {
       try {
         addServer(args[i], (BASE_PORTNB_LISTEN_CLIENT
@@ -185,13 +301,88 @@ public class Server {
     assert invariant();
   }
 
+  /**
+   * creates the engine of the server.
+   *
+   * @param engineName
+   *          the name of the engine.
+   * @param clientPort
+   *          the port number for accepting connections from clients.
+   * @param serverPort
+   *          the port number for accepting connections from servers.
+   * @param network
+   *          the in-process network of the engine {@link #LOOPBACK_ENGINE}, or {@code null}.
+   * @return the engine.
+   */
+  private ServerEngine createEngine(final String engineName, final int clientPort,
+      final int serverPort, final LoopbackNetwork network) {
+    if (SELECTOR_ENGINE.equals(engineName)) {
+      return new ReadMessagesFromNetwork(this, state, clientPort, serverPort);
+    } else if (ASYNC_ENGINE.equals(engineName)) {
+      return new AsynchronousEngine(this, state, clientPort, serverPort);
+    } else if (LOOPBACK_ENGINE.equals(engineName)) {
+      if (network == null) {
+        throw new IllegalStateException("the engine " + LOOPBACK_ENGINE
+            + " needs a loopback network");
+      }
+      return new LoopbackEngine(this, state, clientPort, serverPort, network);
+    } else if (VIRTUAL_ENGINE.equals(engineName)) {
+      try {
+        return (ServerEngine) Class.forName(VIRTUAL_ENGINE_CLASS)
+            .getConstructor(Server.class, State.class, int.class, int.class)
+            .newInstance(this, state, clientPort, serverPort);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("the engine " + VIRTUAL_ENGINE
+            + " needs a build with the profile java21");
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException("cannot create the engine " + engineName, e.getCause());
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("cannot create the engine " + engineName, e);
+      }
+    }
+    throw new IllegalArgumentException("unknown engine (" + engineName + ")");
+  }
+
+  /**
+   * opens the admin socket of the server and starts its thread. The server runs without admin
+   * socket when the port is not available.
+   *
+   * @param port
+   *          the port number of the admin socket.
+   */
+  private void openAdminSocket(final int port) {
+    try {
+      adminSocket = new AdminSocket(adminCommands, port);
+      adminSocket.start(state.getIdentity());
+    } catch (IOException e) {
+      COMM.warn("cannot open the admin socket on port {}: {}", port, e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * closes the admin socket of the server, if any.
+   */
+  private void closeAdminSocket() {
+    if (adminSocket != null) {
+      try {
+        adminSocket.close();
+      } catch (IOException e) {
+        COMM.warn("cannot close the admin socket: {}", e.getLocalizedMessage());
+      }
+      adminSocket = null;
+    }
+  }
+
   /**
    * checks the invariant of the class.
    *
    * @return a boolean stating whether the invariant is maintained.
    */
   public boolean invariant() {
-    return clientNumber >= 0 && state != null && runnableToRcvMsgs != null
+    return clientNumber >= 0 && state != null && engine != null
         && threadToRcvMsgs != null && state.invariant();
   }
 
@@ -201,10 +392,133 @@ public class Server {
    */
   public void startThreadReadMessagesFromNetwork() {
     threadToRcvMsgs.start();
+    if (!(engine instanceof LoopbackEngine)) {
+      timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "chat-timer-" + state.getIdentity());
+        thread.setDaemon(true);
+        return thread;
+      });
+      if (Long.getLong(Heartbeats.PERIOD_PROPERTY, Heartbeats.DEFAULT_PERIOD) > 0) {
+        timer.scheduleAtFixedRate(this::heartbeat, heartbeats.getPeriod(),
+            heartbeats.getPeriod(), TimeUnit.NANOSECONDS);
+      }
+      if (dissemination == Dissemination.GOSSIP && gossipPeriod > 0) {
+        timer.scheduleAtFixedRate(this::gossip, gossipPeriod, gossipPeriod,
+            TimeUnit.NANOSECONDS);
+      }
+    }
   }
 
   /**
-   * treats an input line from the console.
+   * schedules a task of the algorithms after a delay in the clock of the engine: the task is
+   * executed by the timer of the server, or by the scheduler of the in-process network with the
+   * engine {@link #LOOPBACK_ENGINE}. The task is executed at once when the server is not started.
+   *
+   * @param delay
+   *          the delay in nanoseconds.
+   * @param task
+   *          the task, which takes the lock of the state if needed.
+   */
+  public void schedule(final long delay, final Runnable task) {
+    if (engine instanceof LoopbackEngine) {
+      ((LoopbackEngine) engine).schedule(delay, task);
+      return;
+    }
+    ScheduledExecutorService current = timer;
+    if (current == null) {
+      task.run();
+      return;
+    }
+    try {
+      current.schedule(() -> {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          GEN.error("scheduled task failed: {}", e.getLocalizedMessage());
+        }
+      }, delay, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      if (LOG_ON && GEN.isDebugEnabled()) {
+        GEN.debug("task not scheduled, the server is stopping");
+      }
+    }
+  }
+
+  /**
+   * gets the current time of the engine of the server, which is the virtual time of the network
+   * with the engine {@link #LOOPBACK_ENGINE}.
+   *
+   * @return the current time in nanoseconds.
+   */
+  public long now() {
+    return engine.now();
+  }
+
+  /**
+   * sends the heartbeats to the neighbouring servers and tears down the links that are suspected
+   * (see {@link Heartbeats#tick()}). This method is called by the timer of the heartbeats, and by
+   * the scenarios of the engine {@link #LOOPBACK_ENGINE}, which has no timer.
+   */
+  public void heartbeat() {
+    try {
+      heartbeats.tick();
+    } catch (RuntimeException e) {
+      COMM.error("heartbeat failed: {}", e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * starts a round of the anti-entropy of the gossip (see
+   * {@link chat.server.algorithms.gossip.Actions#exchangeDigests(State)}). This method is called
+   * by the timer of the server in the mode {@link Dissemination#GOSSIP}, and by the scenarios of
+   * the engine {@link #LOOPBACK_ENGINE}, which has no timer.
+   */
+  public void gossip() {
+    try {
+      boolean sent;
+      synchronized (state) {
+        sent = exchangeDigests(state);
+      }
+      if (sent) {
+        metrics.digestSent();
+      }
+    } catch (RuntimeException e) {
+      COMM.error("gossip failed: {}", e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * stops the timer of the server, if any.
+   */
+  private void stopTimer() {
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+  }
+
+  /**
+   * stops the thread that is responsible for reading messages and waits for its termination. The
+   * engine closes its channels when the thread terminates, so that the port numbers can be reused
+   * by another server of the same process.
+   *
+   * @throws InterruptedException
+   *           the exception thrown when the calling thread is interrupted while waiting.
+   */
+  public void stopThreadReadMessagesFromNetwork() throws InterruptedException {
+    threadToRcvMsgs.interrupt();
+    stopTimer();
+    threadToRcvMsgs.join();
+    metrics.unregister();
+    closeAdminSocket();
+  }
+
+  /**
+   * treats an input line from the console: {@code Initiator} starts an election with the election
+   * algorithm of the server, {@code Initiator <algorithm>} selects the election algorithm before
+   * starting the election, {@code Token} creates the token of Raymond's algorithm of mutual
+   * exclusion at this server, {@code quit} stops the server, and the commands of
+   * {@link AdminCommands} print the state of the server.
    *
    * @param line
    *          the content of the message
@@ -214,20 +528,23 @@ public class Server {
     if (line == null) {
       throw new IllegalArgumentException("no command line");
     } else if (line.equals("Initiator")) {
-      synchronized (state) {
-        state.setStatus("Initiator");
-        state.setCaw(state.getIdentity());
-        try {
-          sendToAllServers(Algorithm.TOKEN_MESSAGE.identifier(),
-              state.getIdentity(), state.seqNumber,
-              new ElectionTokenContent(state.getIdentity(), state.getIdentity())
-              );
-
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
+      electionAlgorithm.start(state);
+      state.notifyObservers();
+    } else if (line.startsWith("Initiator ")) {
+      try {
+        electionAlgorithm = ElectionAlgorithm.of(line.substring("Initiator ".length()).trim());
+      } catch (IllegalArgumentException e) {
+        GEN.warn(e.getLocalizedMessage());
+        return;
       }
+      electionAlgorithm.start(state);
+      state.notifyObservers();
+    } else if (line.equals("Token")) {
+      chat.server.algorithms.raymond.Actions.createToken(state);
+      state.notifyObservers();
 
+    } else if (AdminCommands.isCommand(line)) {
+      System.out.println(adminCommands.execute(line));
     } else {
 
       if (LOG_ON && GEN.isDebugEnabled()) {
@@ -237,6 +554,9 @@ public class Server {
     }
 
     if (line.equals("quit")) {
+      metrics.unregister();
+      closeAdminSocket();
+      stopTimer();
       threadToRcvMsgs.interrupt();
       Thread.currentThread().interrupt();
       return;
@@ -251,9 +571,139 @@ public class Server {
   }
 
   /**
-   * connects socket, creates MsgWorker, and registers selection key of the remote server. This
-   * method is called when connecting to a remote server. Connection data are provided as arguments
-   * to the main.
+   * gets the server-wide counters of the server.
+   *
+   * @return the counters.
+   */
+  public ServerMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * gets the console commands showing the state of the server.
+   *
+   * @return the commands.
+   */
+  public AdminCommands getAdminCommands() {
+    return adminCommands;
+  }
+
+  /**
+   * gets the heartbeats and the failure detectors of the links with the neighbouring servers.
+   *
+   * @return the heartbeats.
+   */
+  public Heartbeats getHeartbeats() {
+    return heartbeats;
+  }
+
+  /**
+   * gets the election algorithm of the server.
+   *
+   * @return the election algorithm.
+   */
+  public ElectionAlgorithm getElectionAlgorithm() {
+    return electionAlgorithm;
+  }
+
+  /**
+   * sets the election algorithm of the server, which is started by the command {@code Initiator}
+   * and after the loss of a link.
+   *
+   * @param electionAlgorithm
+   *          the election algorithm.
+   */
+  public void setElectionAlgorithm(final ElectionAlgorithm electionAlgorithm) {
+    this.electionAlgorithm = electionAlgorithm;
+  }
+
+  /**
+   * gets the back-off of the initiators of the echo election.
+   *
+   * @return the back-off, in nanoseconds per unit of identity.
+   */
+  public long getElectionBackoff() {
+    return electionBackoff;
+  }
+
+  /**
+   * sets the back-off of the initiators of the echo election.
+   *
+   * @param electionBackoff
+   *          the back-off, in nanoseconds per unit of identity, {@code 0} disabling the back-off.
+   */
+  public void setElectionBackoff(final long electionBackoff) {
+    this.electionBackoff = electionBackoff;
+  }
+
+  /**
+   * gets the mode of dissemination of the client messages of the flooded rooms.
+   *
+   * @return the mode.
+   */
+  public Dissemination getDissemination() {
+    return dissemination;
+  }
+
+  /**
+   * sets the mode of dissemination of the client messages of the flooded rooms. All the servers of
+   * the cluster must use the same mode, which is set before the first client message; the timer of
+   * the anti-entropy is only started for the mode given at the construction of the server.
+   *
+   * @param dissemination
+   *          the mode.
+   */
+  public void setDissemination(final Dissemination dissemination) {
+    this.dissemination = dissemination;
+  }
+
+  /**
+   * gets the algorithm of mutual exclusion of the server.
+   *
+   * @return the algorithm of mutual exclusion.
+   */
+  public MutualExclusionAlgorithm getMutexAlgorithm() {
+    return mutexAlgorithm;
+  }
+
+  /**
+   * sets the algorithm of mutual exclusion of the server. All the servers of the cluster must use
+   * the same algorithm.
+   *
+   * @param mutexAlgorithm
+   *          the algorithm of mutual exclusion.
+   */
+  public void setMutexAlgorithm(final MutualExclusionAlgorithm mutexAlgorithm) {
+    this.mutexAlgorithm = mutexAlgorithm;
+  }
+
+  /**
+   * requests a critical section, i.e. an operation executed by one server of the cluster at a
+   * time, e.g. the moderation of a room or the compaction of a history. The section is executed
+   * when the server has obtained the permission to enter, either by the calling thread or by the
+   * thread that receives the permission; with Raymond's algorithm, a token must have been created
+   * (see the command {@code Token}).
+   *
+   * @param section
+   *          the code of the critical section.
+   */
+  public void requestCriticalSection(final Runnable section) {
+    mutexAlgorithm.request(state, section);
+    state.notifyObservers();
+  }
+
+  /**
+   * gets the admin socket of the server.
+   *
+   * @return the admin socket, or {@code null} when disabled.
+   */
+  public AdminSocket getAdminSocket() {
+    return adminSocket;
+  }
+
+  /**
+   * opens a connection to a remote server through the engine. This method is called when
+   * connecting to a remote server. Connection data are provided as arguments to the main.
    * 
    * @param host
    *          remote host's name.
@@ -263,102 +713,356 @@ public class Server {
    *           the exception thrown in case of communication problem.
    */
   public void addServer(final String host, final int port) throws IOException {
-    Socket rwSock;
-    SocketChannel rwChan;
-    InetSocketAddress rcvAddress;
     if (LOG_ON && COMM.isInfoEnabled()) {
-      COMM.info("Opening connection with server on host " + host
-          + " on port " + port);
+      COMM.info("Opening connection with server on host {} on port {}", host, port);
     }
-    InetAddress destAddr = InetAddress.getByName(host);
-    rwChan = SocketChannel.open();
-    rwSock = rwChan.socket();
     // obtain the IP address of the target host
-    rcvAddress = new InetSocketAddress(destAddr, port);
-    // connect sending socket to remote port
-    rwSock.connect(rcvAddress);
-    FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
-    worker.configureNonBlocking();
-    SelectionKey serverKey = rwChan.register(selector, SelectionKey.OP_READ);
+    InetAddress destAddr = InetAddress.getByName(host);
+    engine.connectToServer(new InetSocketAddress(destAddr, port));
+  }
+
+  /**
+   * registers the message worker of a new connection with a remote server, to which the interests
+   * in the rooms known by this server are sent. This method is called by the engine when a
+   * connection with a remote server has been opened or accepted.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   */
+  public void registerServer(final MsgWorker worker) {
     synchronized (state) {
-      state.allServerWorkers.put(serverKey, worker);
+      state.allServerWorkers.add(worker);
+      state.publishWorkers();
       if (LOG_ON && COMM.isDebugEnabled()) {
-        COMM.debug("allServerWorkers.size() = "
-            + state.allServerWorkers.size());
+        COMM.debug("allServerWorkers.size() = {}", state.allServerWorkers.size());
       }
+      linkAdded(state, worker);
     }
+    metrics.registerConnection(worker, "server");
+    state.notifyObservers();
   }
 
   /**
-   * accepts connection (socket level), creates MsgWorker, and registers selection key of the remote
-   * server. This method is called when accepting a connection from a remote server.
+   * the offset to compute the identity of the new client has a function of the identity of the
+   * server and the number of connected clients.
+   */
+  public static final int OFFSET_ID_CLIENT = 100;
+
+  /**
+   * registers the message worker of a new connection with a local client, and sends its identity
+   * to the client, followed by the acknowledgement of its joining of the room
+   * {@value ChatMessageContent#DEFAULT_ROOM} with the vector clock of the room. This method is
+   * called by the engine when a connection from a local client has been accepted.
    * 
-   * @param sc
-   *          server socket channel.
+   * @param worker
+   *          the message worker of the connection.
    * @throws IOException
    *           the exception thrown in case of communication problem.
    */
-  public void acceptNewServer(final ServerSocketChannel sc) throws IOException {
-    SocketChannel rwChan;
-    SelectionKey newKey;
-    rwChan = sc.accept();
-    if (rwChan != null) {
-      try {
-        FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
-        worker.configureNonBlocking();
-        newKey = rwChan.register(selector, SelectionKey.OP_READ);
-        synchronized (state) {
-          state.allServerWorkers.put(newKey, worker);
-          if (LOG_ON && COMM.isDebugEnabled()) {
-            COMM.debug("allServerWorkers.size() = "
-                + state.allServerWorkers.size());
-          }
-        }
-      } catch (ClosedChannelException e) {
-        COMM.error(e.getLocalizedMessage());
-        e.printStackTrace();
+  public void registerClient(final MsgWorker worker) throws IOException {
+    synchronized (state) {
+      state.allClientWorkers.add(worker);
+      state.publishWorkers();
+      int identity = state.getIdentity() * OFFSET_ID_CLIENT + clientNumber;
+      clientJoined(state, worker, identity);
+      worker.sendMsg(0, state.getIdentity(), state.seqNumber, Integer.valueOf(identity));
+      worker.sendMsg(Algorithm.JOIN_ROOM.identifier(), state.getIdentity(), state.seqNumber,
+          joinAck(state, ChatMessageContent.DEFAULT_ROOM));
+      clientNumber++;
+    }
+    metrics.registerConnection(worker, "client");
+    state.notifyObservers();
+  }
+
+  /**
+   * unregisters the message worker of a connection with a remote server that has been closed. The
+   * routes of the rooms through the link are dropped, and the loss of the link triggers a new round
+   * of the election (see {@link ElectionAlgorithm#linkLost(State)}).
+   *
+   * @param worker
+   *          the message worker of the connection.
+   */
+  public void unregisterServer(final MsgWorker worker) {
+    boolean removed;
+    synchronized (state) {
+      removed = state.allServerWorkers.remove(worker);
+      state.publishWorkers();
+      if (removed) {
+        linkLost(state, worker);
       }
+      if (LOG_ON && COMM.isInfoEnabled()) {
+        COMM.info("Closing a channel");
+        COMM.debug("  allServerWorkers.size() = {}", state.allServerWorkers.size());
+      }
+    }
+    metrics.unregisterConnection(worker);
+    if (removed) {
+      electionAlgorithm.linkLost(state);
     }
+    state.notifyObservers();
   }
 
   /**
-   * the offset to compute the identity of the new client has a function of the identity of the
-   * server and the number of connected clients.
+   * unregisters the message worker of a connection with a local client that has been closed. The
+   * client leaves its rooms.
+   *
+   * @param worker
+   *          the message worker of the connection.
    */
-  public static final int OFFSET_ID_CLIENT = 100;
+  public void unregisterClient(final MsgWorker worker) {
+    synchronized (state) {
+      state.allClientWorkers.remove(worker);
+      state.publishWorkers();
+      clientLeft(state, worker);
+      if (LOG_ON && COMM.isInfoEnabled()) {
+        COMM.info("Closing a channel");
+        COMM.debug("allClientWorkers.size() = {}", state.allClientWorkers.size());
+      }
+    }
+    metrics.unregisterConnection(worker);
+    state.notifyObservers();
+  }
 
   /**
-   * accepts connection (socket level), creates MsgWorker, and registers selection key of the local
-   * client. This method is called when accepting a connection from a local client.
-   * 
-   * @param sc
-   *          server socket channel.
+   * treats a message received from a neighbouring server. The messages of the algorithms of the
+   * server are given to the corresponding action, and the client messages are forwarded when they
+   * have not already been forwarded. The treatment is done in mutual exclusion on the state of the
+   * server, so that the engines may call this method from several threads.
+   *
+   * @param worker
+   *          the message worker of the connection from which the message has been received.
+   * @param type
+   *          message's type.
+   * @param identity
+   *          sender's identity.
+   * @param seqNumber
+   *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param msg
+   *          message as a serializable object.
    * @throws IOException
-   *           the exception thrown in case of communication problem.
+   *           the communication exception thrown when forwarding the message.
    */
-  public void acceptNewClient(final ServerSocketChannel sc) throws IOException {
-    SocketChannel rwChan;
-    SelectionKey newKey;
-    rwChan = sc.accept();
-    if (rwChan != null) {
-      try {
-        FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
-        worker.configureNonBlocking();
-        newKey = rwChan.register(selector, SelectionKey.OP_READ);
-        synchronized (state) {
-          state.allClientWorkers.put(newKey, worker);
-          worker.sendMsg(0, state.getIdentity(), state.seqNumber,
-              Integer.valueOf(state.getIdentity() * OFFSET_ID_CLIENT
-                   + clientNumber));
-          clientNumber++;
-        }
-      } catch (ClosedChannelException e) {
-        COMM.error(e.getLocalizedMessage());
-        e.printStackTrace();
+  public void receiveFromServer(final MsgWorker worker, final int type, final int identity,
+      final int seqNumber, final long originTime, final int hops, final Serializable msg)
+      throws IOException {
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("Message received {}, {}", seqNumber, msg);
+    }
+    if (type < Action.OFFSET_CLIENT_ALGORITHMS) {
+      // message for server
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("Going to execute action for message type #{} on content {}", type, msg);
+      }
+      synchronized (state) {
+        state.currWorker = worker;
+        long start = System.nanoTime();
+        chat.server.algorithms.ListOfAlgorithms.execute(state, type, msg);
+        metrics.getExecuteTime().recordSince(start);
       }
+    } else {
+      // client message to forward
+      receiveClientMsg(worker, type, identity, seqNumber, originTime, hops, msg);
+      state.notifyObservers();
     }
   }
 
+  /**
+   * treats a client message sent again by a neighbour by the anti-entropy of the gossip, as the
+   * client messages received from the neighbours.
+   *
+   * @param worker
+   *          the message worker of the connection from which the message has been received.
+   * @param rumour
+   *          the client message with its header.
+   * @throws IOException
+   *           the communication exception thrown when forwarding the message.
+   */
+  public void receiveRumour(final MsgWorker worker, final RumourContent rumour)
+      throws IOException {
+    synchronized (state) {
+      if (receiveClientMsg(worker, rumour.getType(), rumour.getIdentity(),
+          rumour.getSeqNumber(), rumour.getOriginTime(), rumour.getHops(),
+          rumour.getMessage())) {
+        metrics.rumourRepaired();
+      }
+    }
+  }
+
+  /**
+   * forwards a client message received from a neighbour when it has not already been received.
+   * The duplicates are dropped by the last sequence numbers of the clients, or by the Bloom filter
+   * of the gossip (see {@link Dissemination}).
+   *
+   * @param worker
+   *          the message worker of the connection from which the message has been received.
+   * @param type
+   *          message's type.
+   * @param identity
+   *          sender's identity.
+   * @param seqNumber
+   *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param msg
+   *          message as a serializable object.
+   * @return {@code true} if the message was new.
+   * @throws IOException
+   *           the communication exception thrown when forwarding the message.
+   */
+  private boolean receiveClientMsg(final MsgWorker worker, final int type, final int identity,
+      final int seqNumber, final long originTime, final int hops, final Serializable msg)
+      throws IOException {
+    synchronized (state) {
+      metrics.clientMsgFromServer();
+      String room = roomOf(msg);
+      boolean fresh = isGossiped(state, room)
+          ? isNewRumour(state, type, identity, seqNumber, originTime, hops, msg)
+          : isNew(state, room, identity, seqNumber);
+      if (!fresh) {
+        metrics.duplicateClientMsg();
+        return false;
+      }
+      // not already forwarded
+      metrics.setDedupEntries(dedupEntries(state));
+      forward(worker, type, identity, seqNumber, originTime, hops, msg);
+      return true;
+    }
+  }
+
+  /**
+   * treats a message received from a local client: the server assigns a sequence number to the
+   * message and forwards it to the other clients and to the neighbouring servers, or relays it
+   * towards the home server of its room (see
+   * {@link #toHome(MsgWorker, int, int, long, int, ChatMessageContent)}). The messages by
+   * which the client joins or leaves a room are not forwarded (see
+   * {@link #treatRoomRequest(MsgWorker, int, int, Serializable)}).
+   *
+   * @param worker
+   *          the message worker of the connection from which the message has been received.
+   * @param type
+   *          message's type.
+   * @param identity
+   *          sender's identity.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param msg
+   *          message as a serializable object.
+   * @throws IOException
+   *           the communication exception thrown when forwarding the message.
+   */
+  public void receiveFromClient(final MsgWorker worker, final int type, final int identity,
+      final long originTime, final int hops, final Serializable msg) throws IOException {
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("Message received {} {}", msg, msg.getClass().getName());
+    }
+    if (type == Algorithm.JOIN_ROOM.identifier() || type == Algorithm.LEAVE_ROOM.identifier()) {
+      treatRoomRequest(worker, type, identity, msg);
+      return;
+    }
+    metrics.clientMsgFromClient();
+    synchronized (state) {
+      int seqNumber = state.seqNumber++;
+      if (isGossiped(state, roomOf(msg))) {
+        isNewRumour(state, type, identity, seqNumber, originTime, hops, msg);
+        forward(worker, type, identity, seqNumber, originTime, hops, msg);
+      } else if (isFlooded(roomOf(msg))) {
+        state.clientSeqNumbers.put(identity, seqNumber);
+        metrics.setDedupEntries(dedupEntries(state));
+        forward(worker, type, identity, seqNumber, originTime, hops, msg);
+      } else {
+        toHome(worker, identity, seqNumber, originTime, hops, (ChatMessageContent) msg);
+      }
+    }
+    state.notifyObservers();
+  }
+
+  /**
+   * relays a chat message of a room that is not flooded towards the home server of the room, or,
+   * when this server is the home server or cannot reach it, fans the message out to the clients and
+   * the servers of the room (see {@link chat.server.algorithms.rooms.Actions}). The sequence number
+   * of the message is the one given by the server of the sender, so that the duplicates are
+   * dropped as for the flooded messages.
+   *
+   * @param except
+   *          the message worker of the sender when it is a local client, or {@code null}.
+   * @param identity
+   *          sender's identity.
+   * @param seqNumber
+   *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param msg
+   *          the chat message.
+   * @throws IOException
+   *           the communication exception thrown when sending the message.
+   */
+  public void toHome(final MsgWorker except, final int identity, final int seqNumber,
+      final long originTime, final int hops, final ChatMessageContent msg) throws IOException {
+    synchronized (state) {
+      MsgWorker next = nextHopToHome(state, msg.getRoom(), hops);
+      if (next != null) {
+        metrics.relayedToHome();
+        sendToAServer(next, chat.server.algorithms.rooms.Algorithm.HOME_MESSAGE.identifier(),
+            state.getIdentity(), state.seqNumber,
+            new HomeContent(identity, seqNumber, originTime, hops + 1, msg));
+        return;
+      }
+      if (!isNew(state, msg.getRoom(), identity, seqNumber)) {
+        metrics.duplicateClientMsg();
+        return;
+      }
+      metrics.homeMsg();
+      metrics.setDedupEntries(dedupEntries(state));
+      forward(except, Algorithm.CHAT_MESSAGE.identifier(), identity, seqNumber, originTime, hops,
+          msg);
+    }
+  }
+
+  /**
+   * treats the message by which a local client joins or leaves a room, and sends the message back
+   * to the client as an acknowledgement. The acknowledgement of a join carries the vector clock of
+   * the room at the server.
+   *
+   * @param worker
+   *          the message worker of the client.
+   * @param type
+   *          message's type.
+   * @param identity
+   *          client's identity.
+   * @param msg
+   *          message as a serializable object.
+   * @throws IOException
+   *           the communication exception thrown when sending the acknowledgement.
+   */
+  private void treatRoomRequest(final MsgWorker worker, final int type, final int identity,
+      final Serializable msg) throws IOException {
+    if (!(msg instanceof RoomContent)) {
+      throw new IllegalArgumentException("The content is not of the right type (" + msg + "/"
+          + RoomContent.class + ")");
+    }
+    String room = ((RoomContent) msg).getRoom();
+    synchronized (state) {
+      if (type == Algorithm.JOIN_ROOM.identifier()) {
+        joinRoom(state, worker, room);
+        worker.sendMsg(type, identity, state.seqNumber, joinAck(state, room));
+      } else {
+        leaveRoom(state, worker, room);
+        worker.sendMsg(type, identity, state.seqNumber, msg);
+      }
+    }
+    state.notifyObservers();
+  }
+
   /**
    * sends a message to all the remote servers / neighbours connected to this server. This is a
    * utility method for implementing distributed algorithms in the servers' state machine: use this
@@ -380,7 +1084,7 @@ public class Server {
     synchronized (state) {
       state.seqNumber++;
       // send to all the servers, thus first argument is null
-      forwardServers(null, type, identity, seqNumber, msg);
+      forwardServers(null, null, type, identity, seqNumber, MsgWorker.UNTRACED, 0, msg);
     }
   }
 
@@ -389,8 +1093,8 @@ public class Server {
    * implementing distributed algorithms in the servers' state machine: use this method when this
    * server needs sending messages to a given neighbour.
    * 
-   * @param targetKey
-   *          selection key of the neighbour.
+   * @param target
+   *          message worker of the neighbour.
    * @param type
    *          message's type.
    * @param identity
@@ -402,21 +1106,19 @@ public class Server {
    * @throws IOException
    *           the communication exception thrown when sending the message.
    */
-  public void sendToAServer(final SelectionKey targetKey,
+  public void sendToAServer(final MsgWorker target,
       final int type, final int identity, final int seqNumber,
       final Serializable mgg) throws IOException {
     synchronized (state) {
       state.seqNumber++;
-      FullDuplexMsgWorker sendWorker = state.allServerWorkers.get(targetKey);
-      if (sendWorker == null) {
-        COMM.warn("Bad receiver for server key " + targetKey);
+      if (!state.allServerWorkers.contains(target)) {
+        COMM.warn("Bad receiver for server worker " + target);
       } else {
-        sendWorker.sendMsg(type, identity, seqNumber, mgg);
+        target.sendMsg(type, identity, seqNumber, mgg);
       }
     }
     if (LOG_ON && COMM.isInfoEnabled()) {
-      COMM.info("Send message of type " + type
-          + " to server of identity " + identity);
+      COMM.info("Send message of type {} to server of identity {}", type, identity);
     }
   }
 
@@ -425,8 +1127,8 @@ public class Server {
    * This is a utility method for implementing distributed algorithms in the servers' state machine:
    * use this method when this server needs sending messages to all its neighbours, except one.
    * 
-   * @param exceptKey
-   *          the selection key of the server to exclude in the forwarding.
+   * @param except
+   *          the message worker of the server to exclude in the forwarding.
    * @param type
    *          message's type.
    * @param identity
@@ -438,21 +1140,23 @@ public class Server {
    * @throws IOException
    *           the communication exception thrown when sending the message.
    */
-  public void sendToAllServersExceptOne(final SelectionKey exceptKey,
+  public void sendToAllServersExceptOne(final MsgWorker except,
       final int type, final int identity, final int seqNumber,
       final Serializable s) throws IOException {
     synchronized (state) {
       state.seqNumber++;
-      forwardServers(exceptKey, type, identity, seqNumber, s);
+      forwardServers(except, null, type, identity, seqNumber, MsgWorker.UNTRACED, 0, s);
     }
   }
 
   /**
-   * forwards a message to all the clients and the servers, except the entity (client or server)
-   * from which the message has just been received.
+   * forwards a message to the clients and the servers of its room, except the entity (client or
+   * server) from which the message has just been received (see
+   * {@link chat.server.algorithms.rooms.Actions}). The hop count of the message is incremented,
+   * so that a traced message received by a client counts the servers it has crossed.
    *
-   * @param exceptKey
-   *          selection key to exclude from the set of target connections, e.g., selection key of
+   * @param except
+   *          message worker to exclude from the set of target connections, e.g., message worker of
    *          the entity from which the message has been received.
    * @param type
    *          message's type.
@@ -460,110 +1164,149 @@ public class Server {
    *          sender's identity.
    * @param seqNumber
    *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message before this server.
    * @param msg
    *          message as a serializable object.
    * @throws IOException
    *           the communication exception thrown when sending the message.
    */
-  void forward(final SelectionKey exceptKey, final int type,
-      final int identity, final int seqNumber,
+  void forward(final MsgWorker except, final int type,
+      final int identity, final int seqNumber, final long originTime, final int hops,
       final Serializable msg) throws IOException {
-    forwardServers(exceptKey, type, identity, seqNumber, msg);
-    forwardClients(exceptKey, type, identity, seqNumber, msg);
+    ForwardEvent event = FlightEvents.ENABLED ? new ForwardEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
+    long start = System.nanoTime();
+    synchronized (state) {
+      forwardedBytes = 0;
+      String room = roomOf(msg);
+      recordClock(state, msg);
+      int fanOut = forwardServers(except, room, type, identity, seqNumber, originTime, hops + 1,
+          msg) + forwardClients(except, room, type, identity, seqNumber, originTime, hops + 1, msg);
+      metrics.forward(fanOut, start);
+      if (event != null && event.shouldCommit()) {
+        event.server = state.getIdentity();
+        event.fanOut = fanOut;
+        event.bytes = forwardedBytes;
+        event.commit();
+      }
+    }
   }
 
   /**
    * forwards a message to all the servers, except the server from which the message has just been
-   * received.
+   * received. The messages of the rooms that are not flooded are only sent on the links through
+   * which servers with clients in the room are reached, and the messages of the flooded rooms are
+   * only sent to some neighbours chosen at random in the mode {@link Dissemination#GOSSIP}.
    *
-   * @param exceptKey
-   *    selection key to exclude from the set of target connections, e.g., selection key of
-   *    the entity from which the message has been received.
+   * @param except
+   *          message worker to exclude from the set of target connections, e.g., message worker of
+   *          the entity from which the message has been received.
+   * @param room
+   *          the room of the message, or {@code null} for the messages of the algorithms of the
+   *          servers.
    * @param type
    *          message's type.
    * @param identity
    *          sender's identity.
    * @param seqNumber
    *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the hop count of the message.
    * @param msg
    *          message as a serializable object.
+   * @return the number of servers to which the message has been sent.
    * @throws IOException
    *           the communication exception thrown when sending the message.
    */
-  private void forwardServers(final SelectionKey exceptKey,
-      final int type, final int identity, final int seqNumber,
-      final Serializable msg) throws IOException {
+  private int forwardServers(final MsgWorker except, final String room,
+      final int type, final int identity, final int seqNumber, final long originTime,
+      final int hops, final Serializable msg) throws IOException {
     int nbServers = 0;
     synchronized (state) {
-      for (SelectionKey target : state.allServerWorkers.keySet()) {
-        if (target == exceptKey) {
+      Collection<MsgWorker> targets = isGossiped(state, room) ? peers(state, except)
+          : state.allServerWorkers;
+      for (MsgWorker target : targets) {
+        if (target == except) {
           if (LOG_ON && COMM.isDebugEnabled()) {
             COMM.debug("do not send to a server "
-                + "because (target == exceptKey)");
+                + "because (target == except)");
           }
           continue;
         }
-        FullDuplexMsgWorker worker = state.allServerWorkers.get(target);
-        if (worker == null) {
-          COMM.warn("Bad worker for server key " + target);
-        } else {
-          worker.sendMsg(type, identity, seqNumber, msg);
-          nbServers++;
+        if (!isFlooded(room) && !isRouted(state, target, room)) {
+          continue;
         }
+        forwardedBytes += target.sendMsg(type, identity, seqNumber, originTime, hops, msg);
+        nbServers++;
       }
     }
     if (LOG_ON && COMM.isInfoEnabled()) {
-      COMM.info("Send message to " + nbServers + " server end points");
+      COMM.info("Send message to {} server end points", nbServers);
     }
+    return nbServers;
   }
 
   /**
-   * forwards a message to all the clients, except the client from which the message has just been
-   * received.
+   * forwards a message to all the clients of its room, except the client from which the message
+   * has just been received.
    * 
-   * @param exceptKey
-   *          selection key to exclude from the set of target connections, e.g., selection key of
+   * @param except
+   *          message worker to exclude from the set of target connections, e.g., message worker of
    *          the entity from which the message has been received.
+   * @param room
+   *          the room of the message.
    * @param type
    *          message's type.
    * @param identity
    *          sender's identity.
    * @param seqNumber
    *          message's sequence number.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the hop count of the message.
    * @param msg
    *          message as an serializable object.
+   * @return the number of clients to which the message has been sent.
    * @throws IOException
    *           the communication exception thrown when sending the message.
    */
-  private void forwardClients(final SelectionKey exceptKey,
-      final int type, final int identity, final int seqNumber,
-      final Serializable msg) throws IOException {
+  private int forwardClients(final MsgWorker except, final String room,
+      final int type, final int identity, final int seqNumber, final long originTime,
+      final int hops, final Serializable msg) throws IOException {
 
     int nbClients = 0;
     synchronized (state) {
 
-      for (SelectionKey target : state.allClientWorkers.keySet()) {
+      for (MsgWorker target : state.allClientWorkers) {
 
-        if (target == exceptKey) {
+        if (target == except) {
           if (LOG_ON && COMM.isDebugEnabled()) {
             COMM.debug("do not send to a client "
-                + "because (target == exceptKey)");
+                + "because (target == except)");
           }
           continue;
         }
-        FullDuplexMsgWorker clientWorker = state.allClientWorkers.get(target);
-
-        if (clientWorker == null) {
-          COMM.warn("Bad receiver for key " + target);
-        } else {
-          clientWorker.sendMsg(type, identity, seqNumber, msg);
-          nbClients++;
+        if (!isMember(state, target, room)
+            || !isFlooded(room) && isSender(state, target, identity)) {
+          // the sender does not receive its message back from the home server
+          continue;
         }
+        forwardedBytes += target.sendMsg(type, identity, seqNumber, originTime, hops, msg);
+        nbClients++;
       }
     }
 
     if (LOG_ON && COMM.isInfoEnabled()) {
-      COMM.info("Send message to " + nbClients + " client end points");
+      COMM.info("Send message to {} client end points", nbClients);
     }
+    return nbClients;
   }
 }
@@ -0,0 +1,74 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import chat.common.MsgWorker;
+
+/**
+ * This interface defines the execution model of the network part of a server, called an engine.
+ * The engine accepts the connections from the clients and from the other servers, opens the
+ * connections to the other servers, reads the messages, and gives them to the server through the
+ * methods
+ * {@link Server#receiveFromServer(MsgWorker, int, int, int, long, int, java.io.Serializable)} and
+ * {@link Server#receiveFromClient(MsgWorker, int, int, long, int, java.io.Serializable)}. The
+ * connections are declared to the server with the methods
+ * {@link Server#registerServer(MsgWorker)}, {@link Server#registerClient(MsgWorker)},
+ * {@link Server#unregisterServer(MsgWorker)} and {@link Server#unregisterClient(MsgWorker)}. Hence,
+ * the forwarding and the algorithms do not depend on the engine.
+ *
+ * The method {@link Runnable#run()} is executed by the thread of the server that receives the
+ * messages from the network: it returns when this thread is interrupted, or at once for the
+ * {@link LoopbackEngine}, whose messages are given by the thread running the scheduler of the
+ * in-process network.
+ *
+ * The engine is selected when the server is created, with the name of the engine (see
+ * {@link Server#ENGINE_PROPERTY}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface ServerEngine extends Runnable {
+  /**
+   * opens a connection to a remote server, creates the message worker of the connection and
+   * registers it to the server.
+   *
+   * @param address
+   *          the address of the remote server.
+   * @return the message worker of the connection.
+   * @throws IOException
+   *           the exception thrown in case of communication problem.
+   */
+  MsgWorker connectToServer(InetSocketAddress address) throws IOException;
+
+  /**
+   * gets the current time of the engine, which is the clock of the heartbeats (see
+   * {@link Heartbeats}).
+   *
+   * @return the current time in nanoseconds, by default {@link System#nanoTime()}.
+   */
+  default long now() {
+    return System.nanoTime();
+  }
+}
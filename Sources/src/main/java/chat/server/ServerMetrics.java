@@ -0,0 +1,567 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import chat.common.MsgWorker;
+import chat.common.RollingHistogram;
+
+/**
+ * This class defines the server-wide counters of a server and publishes them through JMX, together
+ * with the counters of the connections of the server (see {@link chat.common.ConnectionMetrics}).
+ * The counters are {@link LongAdder}s, which allocate nothing when counting. The MBeans are
+ * registered in the platform MBean server under the domain {@value #DOMAIN}:
+ * <ul>
+ * <li>{@code chat:type=Server,identity=<identity>} for the server;</li>
+ * <li>{@code chat:type=Connection,server=<identity>,peer=<server|client>,id=<n>} for every
+ * connection, from its registration to its unregistration by the server.</li>
+ * </ul>
+ *
+ * The server also records latency histograms that roll over in intervals (see
+ * {@link RollingHistogram}), which are dumped with the console command {@code histograms} (see
+ * {@link #dumpHistograms()}):
+ * <ul>
+ * <li>the time from the return of {@code select} to the decoding of a frame, with the engine
+ * {@link Server#SELECTOR_ENGINE};</li>
+ * <li>the time spent in {@link chat.server.algorithms.ListOfAlgorithms#execute};</li>
+ * <li>the time spent forwarding a client message to all its targets;</li>
+ * <li>the time from the joining of a round of the election to the knowledge of its leader.</li>
+ * </ul>
+ *
+ * The MBeans can be scraped with any JMX client, e.g. {@code jconsole} or a Prometheus JMX
+ * exporter. The publication is disabled by setting the system property {@value #JMX_PROPERTY} to
+ * {@code false}. The MBean of a server replaces the MBean of a previous server of the same identity
+ * in the same process, as in the scenarios of the tests.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+  /**
+   * the JMX domain of the MBeans.
+   */
+  public static final String DOMAIN = "chat";
+  /**
+   * the name of the system property that enables the publication through JMX.
+   */
+  public static final String JMX_PROPERTY = "chat.server.jmx";
+  /**
+   * the generator of the numbers of the connections in the names of their MBeans.
+   */
+  private static final AtomicLong CONNECTION_IDS = new AtomicLong();
+  /**
+   * the state of the server, which gives the numbers of connections.
+   */
+  private final State state;
+  /**
+   * the number of client messages received from the local clients.
+   */
+  private final LongAdder clientMsgsFromClients = new LongAdder();
+  /**
+   * the number of client messages received from the neighbouring servers.
+   */
+  private final LongAdder clientMsgsFromServers = new LongAdder();
+  /**
+   * the number of client messages dropped because they had already been forwarded.
+   */
+  private final LongAdder duplicateClientMsgs = new LongAdder();
+  /**
+   * the number of client messages forwarded.
+   */
+  private final LongAdder forwards = new LongAdder();
+  /**
+   * the number of frames sent when forwarding the client messages.
+   */
+  private final LongAdder forwardedFrames = new LongAdder();
+  /**
+   * the largest fan-out of a forward.
+   */
+  private final LongAccumulator maxForwardFanOut = new LongAccumulator(Math::max, 0);
+  /**
+   * the number of links with neighbouring servers torn down by the failure detector.
+   */
+  private final LongAdder linkTeardowns = new LongAdder();
+  /**
+   * the number of messages of the election discarded because they belong to an old round.
+   */
+  private final LongAdder staleElectionMsgs = new LongAdder();
+  /**
+   * the number of messages of the election sent by the server.
+   */
+  private final LongAdder electionMsgs = new LongAdder();
+  /**
+   * the number of initiators of the election suppressed because they were dominated.
+   */
+  private final LongAdder suppressedInitiators = new LongAdder();
+  /**
+   * the number of chat messages of the rooms fanned out by the server as their home server.
+   */
+  private final LongAdder homeMsgs = new LongAdder();
+  /**
+   * the number of chat messages of the rooms relayed towards their home server.
+   */
+  private final LongAdder relayedToHome = new LongAdder();
+  /**
+   * the number of digests of the anti-entropy of the gossip sent by the server.
+   */
+  private final LongAdder digestsSent = new LongAdder();
+  /**
+   * the number of client messages missed by the gossip and received by the anti-entropy.
+   */
+  private final LongAdder rumoursRepaired = new LongAdder();
+  /**
+   * the number of entries of the table of the last sequence numbers of the clients (see
+   * {@link State#clientSeqNumbers}), which is published when the table grows so that it is read
+   * without taking the lock of the state.
+   */
+  private volatile int dedupEntries;
+  /**
+   * the histogram of the time from the return of {@code select} to the decoding of a frame.
+   */
+  private final RollingHistogram selectToDecode = new RollingHistogram();
+  /**
+   * the histogram of the time spent in the actions of the algorithms.
+   */
+  private final RollingHistogram executeTime = new RollingHistogram();
+  /**
+   * the histogram of the time spent forwarding a client message.
+   */
+  private final RollingHistogram forwardTime = new RollingHistogram();
+  /**
+   * the histogram of the time from the joining of a round of the election to the knowledge of its
+   * leader.
+   */
+  private final RollingHistogram electionTime = new RollingHistogram();
+  /**
+   * the histogram of the time from the request of a critical section to its entry.
+   */
+  private final RollingHistogram mutexWait = new RollingHistogram();
+  /**
+   * the MBean server, or {@code null} when the publication through JMX is disabled.
+   */
+  private final MBeanServer mbeanServer;
+  /**
+   * the names of the MBeans of the connections.
+   */
+  private final Map<MsgWorker, ObjectName> connections = new HashMap<>();
+  /**
+   * the name of the MBean of the server, or {@code null} when not registered.
+   */
+  private ObjectName name;
+
+  /**
+   * constructs the counters of a server.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public ServerMetrics(final State state) {
+    if (state == null) {
+      throw new IllegalArgumentException("no state");
+    }
+    this.state = state;
+    this.mbeanServer = Boolean.parseBoolean(System.getProperty(JMX_PROPERTY, "true"))
+        ? ManagementFactory.getPlatformMBeanServer() : null;
+  }
+
+  /**
+   * counts a client message received from a local client.
+   */
+  void clientMsgFromClient() {
+    clientMsgsFromClients.increment();
+  }
+
+  /**
+   * counts a client message received from a neighbouring server.
+   */
+  void clientMsgFromServer() {
+    clientMsgsFromServers.increment();
+  }
+
+  /**
+   * counts a client message dropped because it had already been forwarded.
+   */
+  void duplicateClientMsg() {
+    duplicateClientMsgs.increment();
+  }
+
+  /**
+   * counts a forward of a client message and records its duration.
+   *
+   * @param fanOut
+   *          the number of end points to which the message has been sent.
+   * @param start
+   *          the start of the forward, in the time of {@link System#nanoTime()}.
+   */
+  void forward(final int fanOut, final long start) {
+    forwardTime.recordSince(start);
+    forwards.increment();
+    forwardedFrames.add(fanOut);
+    maxForwardFanOut.accumulate(fanOut);
+  }
+
+  /**
+   * counts a link with a neighbouring server torn down by the failure detector (see
+   * {@link Heartbeats}).
+   */
+  void linkTeardown() {
+    linkTeardowns.increment();
+  }
+
+  /**
+   * counts a message of the election discarded because it belongs to an old round.
+   */
+  public void staleElectionMsg() {
+    staleElectionMsgs.increment();
+  }
+
+  /**
+   * counts messages of the election sent by the server.
+   *
+   * @param nb
+   *          the number of messages.
+   */
+  public void electionMsgsSent(final int nb) {
+    electionMsgs.add(nb);
+  }
+
+  /**
+   * counts an initiator of the election suppressed because it was dominated by a better
+   * initiator.
+   */
+  public void suppressedInitiator() {
+    suppressedInitiators.increment();
+  }
+
+  /**
+   * counts a chat message fanned out by the server as the home server of its room.
+   */
+  void homeMsg() {
+    homeMsgs.increment();
+  }
+
+  /**
+   * counts a chat message relayed towards the home server of its room.
+   */
+  void relayedToHome() {
+    relayedToHome.increment();
+  }
+
+  /**
+   * counts a digest of the anti-entropy of the gossip sent by the server.
+   */
+  void digestSent() {
+    digestsSent.increment();
+  }
+
+  /**
+   * counts a client message missed by the gossip and received by the anti-entropy.
+   */
+  void rumourRepaired() {
+    rumoursRepaired.increment();
+  }
+
+  /**
+   * publishes the number of entries of the table of the last sequence numbers of the clients.
+   *
+   * @param entries
+   *          the number of entries.
+   */
+  void setDedupEntries(final int entries) {
+    dedupEntries = entries;
+  }
+
+  /**
+   * gets the histogram of the time from the return of {@code select} to the decoding of a frame,
+   * in nanoseconds.
+   *
+   * @return the histogram.
+   */
+  public RollingHistogram getSelectToDecode() {
+    return selectToDecode;
+  }
+
+  /**
+   * gets the histogram of the time spent in the actions of the algorithms, in nanoseconds.
+   *
+   * @return the histogram.
+   */
+  public RollingHistogram getExecuteTime() {
+    return executeTime;
+  }
+
+  /**
+   * gets the histogram of the time spent forwarding a client message to all its targets, in
+   * nanoseconds.
+   *
+   * @return the histogram.
+   */
+  public RollingHistogram getForwardTime() {
+    return forwardTime;
+  }
+
+  /**
+   * gets the histogram of the time from the joining of a round of the election to the knowledge of
+   * its leader, in nanoseconds of the clock of the engine (see {@link Server#now()}).
+   *
+   * @return the histogram.
+   */
+  public RollingHistogram getElectionTime() {
+    return electionTime;
+  }
+
+  /**
+   * gets the histogram of the time from the request of a critical section to its entry, in
+   * nanoseconds of the clock of the engine (see {@link Server#now()}).
+   *
+   * @return the histogram.
+   */
+  public RollingHistogram getMutexWait() {
+    return mutexWait;
+  }
+
+  /**
+   * dumps the latency histograms of the server, for the last interval and for the whole run.
+   *
+   * @return the text of the dump, one line per histogram.
+   */
+  public String dumpHistograms() {
+    return "histograms of server " + state.getIdentity() + " (ns, intervals of "
+        + TimeUnit.NANOSECONDS.toMillis(executeTime.getInterval()) + " ms)\n"
+        + "  select-to-decode " + selectToDecode + "\n"
+        + "  execute          " + executeTime + "\n"
+        + "  forward          " + forwardTime + "\n"
+        + "  election         " + electionTime + "\n"
+        + "  mutex-wait       " + mutexWait;
+  }
+
+  @Override
+  public int getIdentity() {
+    return state.getIdentity();
+  }
+
+  @Override
+  public int getNbServers() {
+    return state.getServerWorkersView().size();
+  }
+
+  @Override
+  public int getNbClients() {
+    return state.getClientWorkersView().size();
+  }
+
+  @Override
+  public long getClientMsgsFromClients() {
+    return clientMsgsFromClients.sum();
+  }
+
+  @Override
+  public long getClientMsgsFromServers() {
+    return clientMsgsFromServers.sum();
+  }
+
+  @Override
+  public long getDuplicateClientMsgs() {
+    return duplicateClientMsgs.sum();
+  }
+
+  @Override
+  public long getForwards() {
+    return forwards.sum();
+  }
+
+  @Override
+  public long getForwardedFrames() {
+    return forwardedFrames.sum();
+  }
+
+  @Override
+  public long getMaxForwardFanOut() {
+    return maxForwardFanOut.get();
+  }
+
+  @Override
+  public long getLinkTeardowns() {
+    return linkTeardowns.sum();
+  }
+
+  @Override
+  public long getStaleElectionMsgs() {
+    return staleElectionMsgs.sum();
+  }
+
+  @Override
+  public long getElectionMsgs() {
+    return electionMsgs.sum();
+  }
+
+  @Override
+  public long getSuppressedInitiators() {
+    return suppressedInitiators.sum();
+  }
+
+  @Override
+  public long getHomeMsgs() {
+    return homeMsgs.sum();
+  }
+
+  @Override
+  public long getRelayedToHome() {
+    return relayedToHome.sum();
+  }
+
+  @Override
+  public long getDigestsSent() {
+    return digestsSent.sum();
+  }
+
+  @Override
+  public long getRumoursRepaired() {
+    return rumoursRepaired.sum();
+  }
+
+  @Override
+  public int getElectionEpoch() {
+    return state.getElectionSnapshot().getEpoch();
+  }
+
+  @Override
+  public int getDedupEntries() {
+    return dedupEntries;
+  }
+
+  /**
+   * registers the MBean of the server.
+   */
+  public synchronized void register() {
+    if (mbeanServer == null || name != null) {
+      return;
+    }
+    try {
+      name = new ObjectName(DOMAIN + ":type=Server,identity=" + state.getIdentity());
+      registerMBean(this, name);
+    } catch (JMException e) {
+      name = null;
+      COMM.warn("cannot register the MBean of the server: " + e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * registers the MBean of a connection.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   * @param peer
+   *          the kind of the remote end point: {@code server} or {@code client}.
+   */
+  public synchronized void registerConnection(final MsgWorker worker, final String peer) {
+    if (mbeanServer == null || connections.containsKey(worker)) {
+      return;
+    }
+    try {
+      ObjectName connection = new ObjectName(DOMAIN + ":type=Connection,server="
+          + state.getIdentity() + ",peer=" + peer + ",id=" + CONNECTION_IDS.incrementAndGet());
+      registerMBean(worker.getMetrics(), connection);
+      connections.put(worker, connection);
+    } catch (JMException e) {
+      COMM.warn("cannot register the MBean of a connection: " + e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * unregisters the MBean of a connection.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   */
+  public synchronized void unregisterConnection(final MsgWorker worker) {
+    ObjectName connection = connections.remove(worker);
+    if (connection != null) {
+      unregisterMBean(connection);
+    }
+  }
+
+  /**
+   * unregisters the MBeans of the server and of its connections.
+   */
+  public synchronized void unregister() {
+    for (ObjectName connection : connections.values()) {
+      unregisterMBean(connection);
+    }
+    connections.clear();
+    if (name != null) {
+      unregisterMBean(name);
+      name = null;
+    }
+  }
+
+  /**
+   * registers an MBean, replacing the MBean of the same name if any.
+   *
+   * @param mbean
+   *          the MBean.
+   * @param objectName
+   *          the name of the MBean.
+   * @throws JMException
+   *           the exception thrown when the MBean cannot be registered.
+   */
+  private void registerMBean(final Object mbean, final ObjectName objectName)
+      throws JMException {
+    try {
+      mbeanServer.registerMBean(mbean, objectName);
+    } catch (InstanceAlreadyExistsException e) {
+      unregisterMBean(objectName);
+      mbeanServer.registerMBean(mbean, objectName);
+    }
+  }
+
+  /**
+   * unregisters an MBean, ignoring the MBeans already unregistered.
+   *
+   * @param objectName
+   *          the name of the MBean.
+   */
+  private void unregisterMBean(final ObjectName objectName) {
+    try {
+      mbeanServer.unregisterMBean(objectName);
+    } catch (JMException e) {
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("MBean " + objectName + " already unregistered");
+      }
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+/**
+ * This interface defines the server-wide metrics that are published through JMX (see
+ * {@link ServerMetrics}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public interface ServerMetricsMXBean {
+  /**
+   * gets the identity of the server.
+   *
+   * @return the identity.
+   */
+  int getIdentity();
+
+  /**
+   * gets the number of connections with neighbouring servers.
+   *
+   * @return the number of connections.
+   */
+  int getNbServers();
+
+  /**
+   * gets the number of connections with local clients.
+   *
+   * @return the number of connections.
+   */
+  int getNbClients();
+
+  /**
+   * gets the number of client messages received from the local clients.
+   *
+   * @return the number of messages.
+   */
+  long getClientMsgsFromClients();
+
+  /**
+   * gets the number of client messages received from the neighbouring servers.
+   *
+   * @return the number of messages.
+   */
+  long getClientMsgsFromServers();
+
+  /**
+   * gets the number of client messages received from the neighbouring servers that had already
+   * been forwarded, and that have been dropped.
+   *
+   * @return the number of messages.
+   */
+  long getDuplicateClientMsgs();
+
+  /**
+   * gets the number of client messages forwarded.
+   *
+   * @return the number of messages.
+   */
+  long getForwards();
+
+  /**
+   * gets the number of frames sent when forwarding the client messages, that is the sum of the
+   * fan-outs of the forwards.
+   *
+   * @return the number of frames.
+   */
+  long getForwardedFrames();
+
+  /**
+   * gets the largest fan-out of a forward.
+   *
+   * @return the number of end points.
+   */
+  long getMaxForwardFanOut();
+
+  /**
+   * gets the number of links with neighbouring servers torn down by the failure detector.
+   *
+   * @return the number of links.
+   */
+  long getLinkTeardowns();
+
+  /**
+   * gets the number of messages of the election discarded because they belong to an old round.
+   *
+   * @return the number of messages.
+   */
+  long getStaleElectionMsgs();
+
+  /**
+   * gets the number of messages of the election sent by the server.
+   *
+   * @return the number of messages.
+   */
+  long getElectionMsgs();
+
+  /**
+   * gets the number of initiators of the election suppressed because they were dominated by a
+   * better initiator.
+   *
+   * @return the number of initiators.
+   */
+  long getSuppressedInitiators();
+
+  /**
+   * gets the number of chat messages of the rooms fanned out by the server as the home server of
+   * their room.
+   *
+   * @return the number of messages.
+   */
+  long getHomeMsgs();
+
+  /**
+   * gets the number of chat messages of the rooms relayed by the server towards the home server of
+   * their room.
+   *
+   * @return the number of messages.
+   */
+  long getRelayedToHome();
+
+  /**
+   * gets the number of digests of the anti-entropy of the gossip sent by the server.
+   *
+   * @return the number of digests.
+   */
+  long getDigestsSent();
+
+  /**
+   * gets the number of client messages missed by the gossip and received by the server through
+   * the anti-entropy.
+   *
+   * @return the number of messages.
+   */
+  long getRumoursRepaired();
+
+  /**
+   * gets the epoch of the current round of the election.
+   *
+   * @return the epoch.
+   */
+  int getElectionEpoch();
+
+  /**
+   * gets the number of entries of the table of the last sequence numbers of the clients, which is
+   * used to drop the client messages already forwarded.
+   *
+   * @return the number of entries.
+   */
+  int getDedupEntries();
+}
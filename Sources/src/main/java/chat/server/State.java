@@ -21,12 +21,27 @@ Contributor(s):
  */
 package chat.server;
 
-import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import chat.common.AbstractState;
-import chat.common.FullDuplexMsgWorker;
+import chat.common.MsgWorker;
+import chat.common.VectorClock;
+import chat.server.algorithms.CriticalSection;
+import chat.server.algorithms.Dissemination;
+import chat.server.algorithms.gossip.BloomFilter;
+import chat.server.algorithms.gossip.RumourBuffer;
+import chat.server.algorithms.rooms.HashRing;
+import chat.server.algorithms.rooms.SeqWindow;
 
 /**
  * This class defines the state of the server.
@@ -35,38 +50,402 @@ import chat.common.FullDuplexMsgWorker;
  */
 public class State extends AbstractState {
   /**
-   * selection keys of the server message workers.
+   * the message workers of the connections to the neighbouring servers. The sets keep the order of
+   * the registrations, so that the messages are forwarded in the same order from one run to the
+   * other (see {@link chat.common.LoopbackNetwork}).
    */
-  public Map<SelectionKey, FullDuplexMsgWorker> allServerWorkers;
+  public Set<MsgWorker> allServerWorkers;
   /**
-   * selection keys of the client message workers.
+   * the message workers of the connections to the local clients.
    */
-  public Map<SelectionKey, FullDuplexMsgWorker> allClientWorkers;
+  public Set<MsgWorker> allClientWorkers;
   /**
-   * selection key of the connection from which the last message was received.
+   * the immutable copies of {@link #allServerWorkers} and {@link #allClientWorkers}, which are read
+   * without taking the lock of the state, e.g. by the console commands of the server (see
+   * {@link AdminCommands}). They are published by {@link #publishWorkers()}.
    */
-  public SelectionKey currKey;
+  private volatile List<MsgWorker> serverWorkersView = Collections.emptyList();
+  private volatile List<MsgWorker> clientWorkersView = Collections.emptyList();
+  /**
+   * message worker of the connection from which the last message was received.
+   */
+  public MsgWorker currWorker;
   /**
    * identity of this server.
    */
   private int identity;
   private Server server;
 
-  private SelectionKey electionParentKey;
+  private MsgWorker electionParentWorker;
+
+  /*
+   * the variables of the election are modified when holding the lock of the state. They are
+   * volatile so that the scenarios and the benchmarks can poll one of them, but the console
+   * commands of the server read the immutable copy of all of them in {@link #electionSnapshot},
+   * whose variables are consistent with each other.
+   */
+  private volatile int caw = -1;
+  private volatile int parent = -1;
+  private volatile int win = -1;
+  private volatile int rec = 0;
+  private volatile int lrec = 0;
+  private volatile String status = "dormant";
+  /**
+   * the epoch of the current round of the election, which is the greatest epoch seen.
+   */
+  private volatile int electionEpoch = 0;
+  /**
+   * the instant (see {@link Server#now()}) at which this server has joined the current round of
+   * the election, or {@code -1}.
+   */
+  private long electionStart = -1;
+  /**
+   * the phase of the candidacy of this server in the election of Hirschberg and Sinclair, i.e. the
+   * probes of the current phase travel at distance 2^phase.
+   */
+  private volatile int electionPhase = 0;
+  /**
+   * the number of messages of the election sent by this server in the current round.
+   */
+  private volatile int electionMsgsSent = 0;
+  /**
+   * states whether a variable of the election has been modified since the last publication of
+   * {@link #electionSnapshot}. It is read and written when holding the lock of the state.
+   */
+  private boolean electionModified = false;
+  /**
+   * the immutable copy of the variables of the election, which is read without taking the lock of
+   * the state. It is published by {@link #publishElection()}.
+   */
+  private volatile ElectionSnapshot electionSnapshot =
+      new ElectionSnapshot(0, "dormant", -1, -1, -1, 0, 0, 0, 0);
+  /**
+   * the servers of the subtree of this server in the wave of the echo election, with the link
+   * with the child through which every server is reached.
+   */
+  private final Map<Integer, MsgWorker> waveRoutes = new HashMap<>();
+
+  public Map<Integer, MsgWorker> getWaveRoutes() {
+    return waveRoutes;
+  }
+
+  public int getElectionMsgsSent() {
+    return electionMsgsSent;
+  }
+
+  public void setElectionMsgsSent(final int electionMsgsSent) {
+    this.electionMsgsSent = electionMsgsSent;
+    electionModified = true;
+  }
+
+  public int getElectionPhase() {
+    return electionPhase;
+  }
+
+  public void setElectionPhase(final int electionPhase) {
+    this.electionPhase = electionPhase;
+    electionModified = true;
+  }
+
+  /*
+   * the variables of the mutual exclusion are modified when holding the lock of the state. The
+   * critical sections requested by this server are shared by the algorithms, the other variables
+   * are those of Raymond's algorithm and of the algorithm of Ricart and Agrawala.
+   */
+  /**
+   * the critical sections requested by this server, in the order of the requests.
+   */
+  private final Deque<CriticalSection> pendingSections = new ArrayDeque<>();
+  /**
+   * whether this server is executing a critical section.
+   */
+  private volatile boolean inCriticalSection = false;
+  /**
+   * the generation of the token of Raymond's algorithm, or {@code -1} when no token is known.
+   */
+  private volatile int tokenGeneration = -1;
+  /**
+   * the identity of the server that has created the token of the current generation.
+   */
+  private int tokenCreator = -1;
+  /**
+   * the neighbour in the direction of the token, or {@code null} when this server holds the token.
+   */
+  private MsgWorker tokenHolder;
+  /**
+   * whether the token has been requested from {@link #tokenHolder}.
+   */
+  private boolean tokenAsked = false;
+  /**
+   * the requests of the token received by this server, in order: the message workers of the
+   * neighbours that have asked for the token, and {@code null} for this server.
+   */
+  private final LinkedList<MsgWorker> tokenRequests = new LinkedList<>();
+  /**
+   * the Lamport clock of the algorithm of Ricart and Agrawala.
+   */
+  private int lamportClock = 0;
+  /**
+   * the timestamp of the current request of the algorithm of Ricart and Agrawala, or {@code -1}.
+   */
+  private volatile int requestTimestamp = -1;
+  /**
+   * the number of replies received for the current request.
+   */
+  private int nbReplies = 0;
+  /**
+   * the message workers of the neighbours whose replies are deferred until the exit of the
+   * critical section.
+   */
+  private final List<MsgWorker> deferredReplies = new ArrayList<>();
+
+  public Deque<CriticalSection> getPendingSections() {
+    return pendingSections;
+  }
+
+  public boolean isInCriticalSection() {
+    return inCriticalSection;
+  }
+
+  public void setInCriticalSection(final boolean inCriticalSection) {
+    this.inCriticalSection = inCriticalSection;
+  }
+
+  public int getTokenGeneration() {
+    return tokenGeneration;
+  }
+
+  public void setTokenGeneration(final int tokenGeneration) {
+    this.tokenGeneration = tokenGeneration;
+  }
+
+  public int getTokenCreator() {
+    return tokenCreator;
+  }
+
+  public void setTokenCreator(final int tokenCreator) {
+    this.tokenCreator = tokenCreator;
+  }
+
+  public MsgWorker getTokenHolder() {
+    return tokenHolder;
+  }
+
+  public void setTokenHolder(final MsgWorker tokenHolder) {
+    this.tokenHolder = tokenHolder;
+  }
+
+  public boolean isTokenAsked() {
+    return tokenAsked;
+  }
+
+  public void setTokenAsked(final boolean tokenAsked) {
+    this.tokenAsked = tokenAsked;
+  }
+
+  public LinkedList<MsgWorker> getTokenRequests() {
+    return tokenRequests;
+  }
+
+  public int getLamportClock() {
+    return lamportClock;
+  }
+
+  public void setLamportClock(final int lamportClock) {
+    this.lamportClock = lamportClock;
+  }
+
+  public int getRequestTimestamp() {
+    return requestTimestamp;
+  }
+
+  public void setRequestTimestamp(final int requestTimestamp) {
+    this.requestTimestamp = requestTimestamp;
+  }
+
+  public int getNbReplies() {
+    return nbReplies;
+  }
+
+  public void setNbReplies(final int nbReplies) {
+    this.nbReplies = nbReplies;
+  }
+
+  public List<MsgWorker> getDeferredReplies() {
+    return deferredReplies;
+  }
+
+  /*
+   * the variables of the rooms are modified when holding the lock of the state (see
+   * chat.server.algorithms.rooms.Actions).
+   */
+  /**
+   * the rooms joined by every local client.
+   */
+  private final Map<MsgWorker, Set<String>> clientRooms = new HashMap<>();
+  /**
+   * the number of local clients in every room.
+   */
+  private final Map<String, Integer> localRooms = new HashMap<>();
+  /**
+   * the subscription table of every link with a neighbouring server: for every room, the servers
+   * with clients in the room that are reached through the link.
+   */
+  private final Map<MsgWorker, Map<String, Set<Integer>>> linkRooms = new HashMap<>();
+  /**
+   * the version of the last interest known for every room and every server.
+   */
+  private final Map<String, Map<Integer, Integer>> interestVersions = new HashMap<>();
+  /**
+   * the version of the last interest announced by this server.
+   */
+  private int interestVersion = 0;
+  /**
+   * the identities given to the local clients.
+   */
+  private final Map<MsgWorker, Integer> clientIdentities = new HashMap<>();
+  /**
+   * the sliding window of the sequence numbers of every client per room that is not flooded, in
+   * order to drop the duplicates (see {@link #clientSeqNumbers} for the flooded messages).
+   */
+  private final Map<String, Map<Integer, SeqWindow>> roomSeqNumbers = new HashMap<>();
+  /**
+   * the vector clock of the chat messages forwarded by the server in every room followed, which is
+   * sent to the clients that join the room.
+   */
+  private final Map<String, VectorClock> roomClocks = new HashMap<>();
+  /**
+   * the consistent-hash ring of the servers elected together, which gives the home servers of the
+   * rooms, or {@code null} before the first election.
+   */
+  private volatile HashRing ring;
+  /**
+   * the link through which every server of the ring is reached, along the tree of the election.
+   */
+  private final Map<Integer, MsgWorker> memberRoutes = new HashMap<>();
+
+  public Map<MsgWorker, Set<String>> getClientRooms() {
+    return clientRooms;
+  }
+
+  public Map<String, Integer> getLocalRooms() {
+    return localRooms;
+  }
+
+  public Map<MsgWorker, Map<String, Set<Integer>>> getLinkRooms() {
+    return linkRooms;
+  }
+
+  public Map<String, Map<Integer, Integer>> getInterestVersions() {
+    return interestVersions;
+  }
+
+  public int getInterestVersion() {
+    return interestVersion;
+  }
+
+  public void setInterestVersion(final int interestVersion) {
+    this.interestVersion = interestVersion;
+  }
+
+  public Map<MsgWorker, Integer> getClientIdentities() {
+    return clientIdentities;
+  }
+
+  public Map<String, Map<Integer, SeqWindow>> getRoomSeqNumbers() {
+    return roomSeqNumbers;
+  }
+
+  public Map<String, VectorClock> getRoomClocks() {
+    return roomClocks;
+  }
+
+  public HashRing getRing() {
+    return ring;
+  }
+
+  public void setRing(final HashRing ring) {
+    this.ring = ring;
+  }
+
+  public Map<Integer, MsgWorker> getMemberRoutes() {
+    return memberRoutes;
+  }
+
+  /*
+   * the variables of the gossip are modified when holding the lock of the state (see
+   * chat.server.algorithms.gossip.Actions).
+   */
+  /**
+   * the identifiers of the client messages of the flooded rooms seen by the server, in order to
+   * drop the duplicates in the mode {@link Dissemination#GOSSIP}.
+   */
+  private BloomFilter rumours = new BloomFilter(Dissemination.DEFAULT_CAPACITY,
+      Dissemination.FALSE_POSITIVES);
+  /**
+   * the client messages of the flooded rooms recently seen by the server, which are announced in
+   * its digests.
+   */
+  private final RumourBuffer recentRumours = new RumourBuffer(RumourBuffer.DEFAULT_CAPACITY,
+      RumourBuffer.DEFAULT_ROUNDS);
+  /**
+   * the number of neighbours to which a client message is forwarded by the gossip.
+   */
+  private int gossipFanOut = Dissemination.DEFAULT_FANOUT;
+  /**
+   * the generator of the choices of the gossip, whose seed is the identity of the server so that
+   * the runs in an in-process network are deterministic.
+   */
+  private final Random gossipRandom;
+
+  public BloomFilter getRumours() {
+    return rumours;
+  }
+
+  public void setRumours(final BloomFilter rumours) {
+    this.rumours = rumours;
+  }
+
+  public RumourBuffer getRecentRumours() {
+    return recentRumours;
+  }
+
+  public int getGossipFanOut() {
+    return gossipFanOut;
+  }
+
+  public void setGossipFanOut(final int gossipFanOut) {
+    this.gossipFanOut = gossipFanOut;
+  }
+
+  public Random getGossipRandom() {
+    return gossipRandom;
+  }
+
+  public int getElectionEpoch() {
+    return electionEpoch;
+  }
+
+  public void setElectionEpoch(final int electionEpoch) {
+    this.electionEpoch = electionEpoch;
+    electionModified = true;
+  }
+
+  public long getElectionStart() {
+    return electionStart;
+  }
+
+  public void setElectionStart(final long electionStart) {
+    this.electionStart = electionStart;
+  }
 
-  private int caw = -1;
-  private int parent = -1;
-  private int win = -1;
-  private int rec = 0;
-  private int lrec = 0;
-  private String status = "dormant";
-  
   public int getCaw() {
     return caw;
   }
 
   public void setCaw(int caw) {
     this.caw = caw;
+    electionModified = true;
   }
 
   public int getParent() {
@@ -75,6 +454,7 @@ public class State extends AbstractState {
 
   public void setParent(int parent) {
     this.parent = parent;
+    electionModified = true;
   }
 
   public int getWin() {
@@ -83,6 +463,7 @@ public class State extends AbstractState {
 
   public void setWin(int win) {
     this.win = win;
+    electionModified = true;
   }
 
   public int getRec() {
@@ -91,6 +472,7 @@ public class State extends AbstractState {
 
   public void setRec(int rec) {
     this.rec = rec;
+    electionModified = true;
   }
 
   public int getLrec() {
@@ -99,6 +481,7 @@ public class State extends AbstractState {
 
   public void setLrec(int lrec) {
     this.lrec = lrec;
+    electionModified = true;
   }
 
   public String getStatus() {
@@ -107,6 +490,7 @@ public class State extends AbstractState {
 
   public void setStatus(String status) {
     this.status = status;
+    electionModified = true;
   }
 
   /**
@@ -130,9 +514,10 @@ public class State extends AbstractState {
    */
   public State(final int identity,final  Server serv) {
     this.identity = identity;
-    allServerWorkers = new HashMap<>();
-    allClientWorkers = new HashMap<>();
+    allServerWorkers = new LinkedHashSet<>();
+    allClientWorkers = new LinkedHashSet<>();
     clientSeqNumbers = new HashMap<>();
+    gossipRandom = new Random(identity);
     this.setServer(serv);
     assert invariant();
   }
@@ -156,13 +541,67 @@ public class State extends AbstractState {
     return identity;
   }
 
-  public SelectionKey getElectionParentKey() {
+  /**
+   * publishes the copies of the sets of message workers. This method is called when holding the
+   * lock of the state, after every modification of the sets.
+   */
+  public void publishWorkers() {
+    serverWorkersView = Collections.unmodifiableList(new ArrayList<>(allServerWorkers));
+    clientWorkersView = Collections.unmodifiableList(new ArrayList<>(allClientWorkers));
+  }
+
+  /**
+   * publishes the copy of the variables of the election, if one of them has been modified since
+   * the last publication. This method is called when holding the lock of the state, at the end of
+   * the treatments of the election, i.e. after the execution of every action (see
+   * {@link chat.server.algorithms.ListOfAlgorithms#execute(State, int, Object)}), and at the end
+   * of the starts, of the new rounds and of the scheduled waves of the election.
+   */
+  public void publishElection() {
+    if (!electionModified) {
+      return;
+    }
+    electionSnapshot = new ElectionSnapshot(electionEpoch, status, caw, parent, win, rec, lrec,
+        electionPhase, electionMsgsSent);
+    electionModified = false;
+  }
+
+  /**
+   * gets the variables of the election, as last published, without taking the lock of the state.
+   *
+   * @return the immutable copy of the variables.
+   */
+  public ElectionSnapshot getElectionSnapshot() {
+    return electionSnapshot;
+  }
+
+  /**
+   * gets the message workers of the neighbouring servers, as last published, without taking the
+   * lock of the state.
+   *
+   * @return the immutable list of the message workers.
+   */
+  public List<MsgWorker> getServerWorkersView() {
+    return serverWorkersView;
+  }
+
+  /**
+   * gets the message workers of the local clients, as last published, without taking the lock of
+   * the state.
+   *
+   * @return the immutable list of the message workers.
+   */
+  public List<MsgWorker> getClientWorkersView() {
+    return clientWorkersView;
+  }
+
+  public MsgWorker getElectionParentWorker() {
 
-    return electionParentKey;
+    return electionParentWorker;
   }
 
-  public void setElectionParentKey(SelectionKey electionParentKey) {
-    this.electionParentKey = electionParentKey;
+  public void setElectionParentWorker(MsgWorker electionParentWorker) {
+    this.electionParentWorker = electionParentWorker;
   }
 
   public Server getServer() {
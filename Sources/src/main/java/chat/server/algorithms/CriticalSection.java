@@ -0,0 +1,88 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms;
+
+import static chat.common.Log.GEN;
+
+import chat.server.State;
+
+/**
+ * This class defines a critical section requested by a server (see
+ * {@link MutualExclusionAlgorithm}). The section is executed by the thread that obtains the
+ * permission to enter, without holding the lock of the state, and the server exits the critical
+ * section when the execution returns.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class CriticalSection {
+  /**
+   * the code of the critical section.
+   */
+  private final Runnable section;
+  /**
+   * the instant of the request (see {@link chat.server.Server#now()}).
+   */
+  private final long requestTime;
+
+  /**
+   * constructs a critical section.
+   *
+   * @param section
+   *          the code of the critical section.
+   * @param requestTime
+   *          the instant of the request.
+   */
+  public CriticalSection(final Runnable section, final long requestTime) {
+    if (section == null) {
+      throw new IllegalArgumentException("no critical section");
+    }
+    this.section = section;
+    this.requestTime = requestTime;
+  }
+
+  /**
+   * gets the instant of the request.
+   *
+   * @return the instant, in the clock of the engine of the server.
+   */
+  public long getRequestTime() {
+    return requestTime;
+  }
+
+  /**
+   * executes the critical section and records the time from the request to the entry (see
+   * {@link chat.server.ServerMetrics#getMutexWait()}). An exception of the section is logged, so
+   * that the server exits the critical section anyway.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public void execute(final State state) {
+    state.getServer().getMetrics().getMutexWait().record(state.getServer().now() - requestTime);
+    try {
+      section.run();
+    } catch (RuntimeException e) {
+      GEN.warn("exception in a critical section: {}", e.getLocalizedMessage());
+    }
+  }
+}
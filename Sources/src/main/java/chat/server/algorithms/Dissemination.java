@@ -0,0 +1,143 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms;
+
+/**
+ * This Enumeration type declares the modes of dissemination of the client messages of the flooded
+ * rooms between the servers (see {@link chat.server.algorithms.rooms.Actions}):
+ * <ul>
+ * <li>with the flooding, a server forwards a new message to all its neighbours, except the one from
+ * which it has been received; the duplicates are dropped by the last sequence numbers of the
+ * clients, which assumes that the messages of a client reach a server in the order of their
+ * sequence numbers;</li>
+ * <li>with the gossip, a server forwards a new message to {@value #DEFAULT_FANOUT} neighbours
+ * chosen at random (see {@link #FANOUT_PROPERTY}), and periodically sends the digest of the
+ * messages it has recently seen to a neighbour, which asks for the messages it misses and sends the
+ * messages missing from the digest (see {@link chat.server.algorithms.gossip.Actions}). The
+ * messages of a client may then arrive out of order, and the duplicates are dropped by a Bloom
+ * filter of bounded memory.</li>
+ * </ul>
+ * The gossip sends fewer messages than the flooding on the dense topologies, at the price of a
+ * latency that is longer and a delivery that is only probabilistic between two rounds of
+ * anti-entropy. All the servers of a cluster must use the same mode, which is selected at the start
+ * of the servers by the system property {@value #DISSEMINATION_PROPERTY} (default
+ * {@code flooding}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public enum Dissemination {
+  /**
+   * the flooding to all the neighbours.
+   */
+  FLOODING("flooding"),
+  /**
+   * the push-pull gossip to some neighbours chosen at random.
+   */
+  GOSSIP("gossip");
+
+  /**
+   * the system property selecting the mode of dissemination of the servers.
+   */
+  public static final String DISSEMINATION_PROPERTY = "chat.server.dissemination";
+  /**
+   * the system property giving the number of neighbours to which the gossip forwards a message.
+   */
+  public static final String FANOUT_PROPERTY = "chat.server.gossip.fanout";
+  /**
+   * the default number of neighbours to which the gossip forwards a message.
+   */
+  public static final int DEFAULT_FANOUT = 4;
+  /**
+   * the system property giving the period of the anti-entropy of the gossip, in milliseconds.
+   */
+  public static final String PERIOD_PROPERTY = "chat.server.gossip.period";
+  /**
+   * the default period of the anti-entropy of the gossip, in milliseconds.
+   */
+  public static final long DEFAULT_PERIOD = 200;
+  /**
+   * the system property giving the number of messages of a generation of the Bloom filter of the
+   * gossip (see {@link chat.server.algorithms.gossip.BloomFilter}).
+   */
+  public static final String CAPACITY_PROPERTY = "chat.server.gossip.capacity";
+  /**
+   * the default number of messages of a generation of the Bloom filter of the gossip.
+   */
+  public static final int DEFAULT_CAPACITY = 8192;
+  /**
+   * the rate of false positives of a generation of the Bloom filter of the gossip, i.e. the
+   * probability that a new message is dropped as a duplicate by a server.
+   */
+  public static final double FALSE_POSITIVES = 1e-6;
+
+  /**
+   * the name of the mode, as given in the system property.
+   */
+  private final String modeName;
+
+  /**
+   * is the constructor of a mode of dissemination.
+   *
+   * @param modeName
+   *          the name of the mode.
+   */
+  Dissemination(final String modeName) {
+    this.modeName = modeName;
+  }
+
+  /**
+   * gets the name of the mode.
+   *
+   * @return the name.
+   */
+  public String modeName() {
+    return modeName;
+  }
+
+  /**
+   * searches for the mode of the given name.
+   *
+   * @param modeName
+   *          the name of the mode.
+   * @return the mode.
+   * @throws IllegalArgumentException
+   *           when there is no mode of this name.
+   */
+  public static Dissemination of(final String modeName) {
+    for (Dissemination mode : values()) {
+      if (mode.modeName.equals(modeName)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("unknown mode of dissemination: " + modeName);
+  }
+
+  /**
+   * gets the mode selected by the system property {@value #DISSEMINATION_PROPERTY}.
+   *
+   * @return the mode.
+   */
+  public static Dissemination fromProperty() {
+    return of(System.getProperty(DISSEMINATION_PROPERTY, FLOODING.modeName));
+  }
+}
@@ -0,0 +1,172 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms;
+
+import static chat.common.Log.ELECTION;
+import static chat.common.Log.LOG_ON;
+
+import chat.server.State;
+import chat.server.algorithms.election.Actions;
+
+/**
+ * This Enumeration type declares the election algorithms that can be started by a server. They
+ * elect the server of smallest identity and share the management of the rounds of the election
+ * (epochs, status and time of the election, see {@link Actions}): the echo algorithm with
+ * extinction works on any topology; the algorithms of Chang and Roberts and of Hirschberg and
+ * Sinclair need a ring, i.e. exactly two neighbours per server; and the bully algorithm needs a
+ * fully connected cluster. The algorithm of a server is selected by the system property
+ * {@value #ELECTION_PROPERTY} (default {@code echo}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public enum ElectionAlgorithm {
+  /**
+   * the echo algorithm with extinction.
+   */
+  ECHO("echo") {
+    @Override
+    public void start(final State state) {
+      Actions.startElection(state);
+    }
+
+    @Override
+    public void linkLost(final State state) {
+      Actions.linkLost(state);
+    }
+  },
+  /**
+   * the algorithm of Chang and Roberts on a unidirectional ring.
+   */
+  CHANG_ROBERTS("chang-roberts") {
+    @Override
+    public void start(final State state) {
+      chat.server.algorithms.changroberts.Actions.startElection(state);
+    }
+  },
+  /**
+   * the algorithm of Hirschberg and Sinclair on a bidirectional ring.
+   */
+  HIRSCHBERG_SINCLAIR("hirschberg-sinclair") {
+    @Override
+    public void start(final State state) {
+      chat.server.algorithms.hirschbergsinclair.Actions.startElection(state);
+    }
+  },
+  /**
+   * the bully algorithm on a fully connected cluster.
+   */
+  BULLY("bully") {
+    @Override
+    public void start(final State state) {
+      chat.server.algorithms.bully.Actions.startElection(state);
+    }
+  };
+
+  /**
+   * the system property selecting the election algorithm of the servers.
+   */
+  public static final String ELECTION_PROPERTY = "chat.server.election";
+
+  /**
+   * the name of the algorithm, as given in the system property or on the console.
+   */
+  private final String algorithmName;
+
+  /**
+   * is the constructor of an election algorithm.
+   *
+   * @param algorithmName
+   *          the name of the algorithm.
+   */
+  ElectionAlgorithm(final String algorithmName) {
+    this.algorithmName = algorithmName;
+  }
+
+  /**
+   * gets the name of the algorithm.
+   *
+   * @return the name.
+   */
+  public String algorithmName() {
+    return algorithmName;
+  }
+
+  /**
+   * starts the election from this server. The round is a new epoch when the current round is
+   * over; otherwise, this server competes in the current round.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public abstract void start(State state);
+
+  /**
+   * starts a new round of the election after the loss of a link with a neighbour. Nothing is done
+   * when no election has ever been started. By default, the new round is started as on the
+   * command {@code Initiator}: the ring algorithms refuse to start on a broken ring.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public void linkLost(final State state) {
+    synchronized (state) {
+      if (state.getCaw() == -1 && Actions.DORMANT.equals(state.getStatus())) {
+        return;
+      }
+      if (LOG_ON && ELECTION.isInfoEnabled()) {
+        ELECTION.info("link lost, new round of epoch {}", state.getElectionEpoch() + 1);
+      }
+      Actions.newEpoch(state, state.getElectionEpoch() + 1);
+      state.publishElection();
+    }
+    start(state);
+    state.notifyObservers();
+  }
+
+  /**
+   * searches for the algorithm of the given name.
+   *
+   * @param algorithmName
+   *          the name of the algorithm.
+   * @return the algorithm.
+   * @throws IllegalArgumentException
+   *           when there is no algorithm of this name.
+   */
+  public static ElectionAlgorithm of(final String algorithmName) {
+    for (ElectionAlgorithm algorithm : values()) {
+      if (algorithm.algorithmName.equals(algorithmName)) {
+        return algorithm;
+      }
+    }
+    throw new IllegalArgumentException("unknown election algorithm: " + algorithmName);
+  }
+
+  /**
+   * gets the algorithm selected by the system property {@value #ELECTION_PROPERTY}.
+   *
+   * @return the algorithm.
+   */
+  public static ElectionAlgorithm fromProperty() {
+    return of(System.getProperty(ELECTION_PROPERTY, ECHO.algorithmName));
+  }
+}
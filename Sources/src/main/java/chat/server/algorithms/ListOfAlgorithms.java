@@ -27,12 +27,16 @@ import java.util.Iterator;
 import java.util.Map;
 
 import chat.common.Action;
+import chat.common.DispatchEvent;
+import chat.common.FlightEvents;
 import chat.server.State;
 
 /**
- * This Enumeration type declares the algorithms of the server. For now, there
- * is only one algorithm: the algorithm for the election.
- * enumeration, and remove this comment.
+ * This Enumeration type declares the algorithms of the server: the algorithms
+ * for the election (see {@link ElectionAlgorithm}), the algorithms of mutual
+ * exclusion (see {@link MutualExclusionAlgorithm}), the heartbeats of the
+ * links between servers, the routes of the rooms and the anti-entropy of the
+ * gossip.
  *
  * @author Denis Conan, Hamza Hassine, Majdi Haouech
  */
@@ -40,7 +44,41 @@ public enum ListOfAlgorithms {
   /**
    * the election algorithm.
    */
-  ALGORITHM_ELECTION(chat.server.algorithms.election.Algorithm.ACTIONS);
+  ALGORITHM_ELECTION(chat.server.algorithms.election.Algorithm.ACTIONS),
+  /**
+   * Raymond's algorithm of mutual exclusion.
+   */
+  ALGORITHM_MUTUALEXCLUSION(chat.server.algorithms.raymond.Algorithm.ACTIONS),
+  /**
+   * the heartbeats of the links between servers.
+   */
+  ALGORITHM_HEARTBEAT(chat.server.algorithms.heartbeat.Algorithm.ACTIONS),
+  /**
+   * the election algorithm of Chang and Roberts on a ring.
+   */
+  ALGORITHM_CHANGROBERTS(chat.server.algorithms.changroberts.Algorithm.ACTIONS),
+  /**
+   * the election algorithm of Hirschberg and Sinclair on a ring.
+   */
+  ALGORITHM_HIRSCHBERGSINCLAIR(
+      chat.server.algorithms.hirschbergsinclair.Algorithm.ACTIONS),
+  /**
+   * the bully election algorithm on a fully connected cluster.
+   */
+  ALGORITHM_BULLY(chat.server.algorithms.bully.Algorithm.ACTIONS),
+  /**
+   * the algorithm of mutual exclusion of Ricart and Agrawala.
+   */
+  ALGORITHM_RICARTAGRAWALA(
+      chat.server.algorithms.ricartagrawala.Algorithm.ACTIONS),
+  /**
+   * the routes of the rooms.
+   */
+  ALGORITHM_ROOMS(chat.server.algorithms.rooms.Algorithm.ACTIONS),
+  /**
+   * the anti-entropy of the gossip.
+   */
+  ALGORITHM_GOSSIP(chat.server.algorithms.gossip.Algorithm.ACTIONS);
 
   /**
    * collection of the actions of this algorithm enumerator of the server. The
@@ -57,10 +95,49 @@ public enum ListOfAlgorithms {
   public static final int OFFSET_ELECTION_ALGORITHM = 0;
 
   /**
-   * index of the first message type of the election algorithm.
+   * index of the first message type of Raymond's algorithm of mutual
+   * exclusion.
    */
   public static final int OFFSET_MUTUALEXCLUSION_ALGORITHM = 10;
 
+  /**
+   * index of the first message type of the heartbeat algorithm.
+   */
+  public static final int OFFSET_HEARTBEAT_ALGORITHM = 20;
+
+  /**
+   * index of the first message type of the election algorithm of Chang and
+   * Roberts.
+   */
+  public static final int OFFSET_CHANGROBERTS_ALGORITHM = 30;
+
+  /**
+   * index of the first message type of the election algorithm of Hirschberg
+   * and Sinclair.
+   */
+  public static final int OFFSET_HIRSCHBERGSINCLAIR_ALGORITHM = 40;
+
+  /**
+   * index of the first message type of the bully election algorithm.
+   */
+  public static final int OFFSET_BULLY_ALGORITHM = 50;
+
+  /**
+   * index of the first message type of the algorithm of mutual exclusion of
+   * Ricart and Agrawala.
+   */
+  public static final int OFFSET_RICARTAGRAWALA_ALGORITHM = 60;
+
+  /**
+   * index of the first message type of the routes of the rooms.
+   */
+  public static final int OFFSET_ROOMS_ALGORITHM = 70;
+
+  /**
+   * index of the first message type of the anti-entropy of the gossip.
+   */
+  public static final int OFFSET_GOSSIP_ALGORITHM = 80;
+
   /**
    * is the constructor of this algorithm object.
    *
@@ -84,6 +161,10 @@ public enum ListOfAlgorithms {
    */
   public static void execute(final State state, final int actionIndex,
       final Object content) {
+    DispatchEvent event = FlightEvents.ENABLED ? new DispatchEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
     boolean executed = false;
     for (ListOfAlgorithms algorithm : Arrays
         .asList(ListOfAlgorithms.values())) {
@@ -104,9 +185,17 @@ public enum ListOfAlgorithms {
         }
       }
     }
+    if (event != null && event.shouldCommit()) {
+      event.actionId = actionIndex;
+      event.contentClass = content == null ? null : content.getClass();
+      event.server = true;
+      event.commit();
+    }
     synchronized (state) {
-      state.currKey = null;
+      state.currWorker = null;
+      state.publishElection();
     }
+    state.notifyObservers();
     if (!executed) {
       throw new IllegalArgumentException("Unknown action: " + actionIndex);
     }
@@ -0,0 +1,125 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms;
+
+import chat.server.State;
+
+/**
+ * This Enumeration type declares the algorithms of mutual exclusion between the servers, which
+ * serialise the operations that must be executed by one server of the cluster at a time. A server
+ * requests a critical section with {@link #request(State, Runnable)}, and the section is executed
+ * once the server has obtained the permission to enter: Raymond's algorithm circulates a token on
+ * a spanning tree of the servers, with O(log n) messages per entry on a balanced tree; the
+ * algorithm of Ricart and Agrawala, which needs a fully connected cluster, asks the permission of
+ * all the other servers, with 2(n - 1) messages per entry. The algorithm of a server is selected
+ * by the system property {@value #MUTEX_PROPERTY} (default {@code raymond}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public enum MutualExclusionAlgorithm {
+  /**
+   * Raymond's algorithm, with a token on a spanning tree.
+   */
+  RAYMOND("raymond") {
+    @Override
+    public void request(final State state, final Runnable section) {
+      chat.server.algorithms.raymond.Actions.requestCriticalSection(state, section);
+    }
+  },
+  /**
+   * the algorithm of Ricart and Agrawala, with permissions broadcast to all the servers.
+   */
+  RICART_AGRAWALA("ricart-agrawala") {
+    @Override
+    public void request(final State state, final Runnable section) {
+      chat.server.algorithms.ricartagrawala.Actions.requestCriticalSection(state, section);
+    }
+  };
+
+  /**
+   * the system property selecting the algorithm of mutual exclusion of the servers.
+   */
+  public static final String MUTEX_PROPERTY = "chat.server.mutex";
+
+  /**
+   * the name of the algorithm, as given in the system property.
+   */
+  private final String algorithmName;
+
+  /**
+   * is the constructor of an algorithm of mutual exclusion.
+   *
+   * @param algorithmName
+   *          the name of the algorithm.
+   */
+  MutualExclusionAlgorithm(final String algorithmName) {
+    this.algorithmName = algorithmName;
+  }
+
+  /**
+   * gets the name of the algorithm.
+   *
+   * @return the name.
+   */
+  public String algorithmName() {
+    return algorithmName;
+  }
+
+  /**
+   * requests a critical section. The section is executed when the server has obtained the
+   * permission to enter, possibly by the calling thread before the method returns.
+   *
+   * @param state
+   *          the state of the server.
+   * @param section
+   *          the code of the critical section.
+   */
+  public abstract void request(State state, Runnable section);
+
+  /**
+   * searches for the algorithm of the given name.
+   *
+   * @param algorithmName
+   *          the name of the algorithm.
+   * @return the algorithm.
+   * @throws IllegalArgumentException
+   *           when there is no algorithm of this name.
+   */
+  public static MutualExclusionAlgorithm of(final String algorithmName) {
+    for (MutualExclusionAlgorithm algorithm : values()) {
+      if (algorithm.algorithmName.equals(algorithmName)) {
+        return algorithm;
+      }
+    }
+    throw new IllegalArgumentException("unknown mutual exclusion algorithm: " + algorithmName);
+  }
+
+  /**
+   * gets the algorithm selected by the system property {@value #MUTEX_PROPERTY}.
+   *
+   * @return the algorithm.
+   */
+  public static MutualExclusionAlgorithm fromProperty() {
+    return of(System.getProperty(MUTEX_PROPERTY, RAYMOND.algorithmName));
+  }
+}
@@ -0,0 +1,87 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms;
+
+import java.util.Iterator;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+
+/**
+ * This class defines the navigation of the ring election algorithms. The message workers do not
+ * carry the identities of the neighbours: a server of a ring has exactly two neighbours, and the
+ * message received from one of them is forwarded to the other one. The methods are called when
+ * holding the lock of the state.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Ring {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Ring() {
+  }
+
+  /**
+   * states whether the server has the two neighbours of a ring.
+   *
+   * @param state
+   *          the state of the server.
+   * @return {@code true} if the server has exactly two neighbours.
+   */
+  public static boolean isRing(final State state) {
+    return state.allServerWorkers.size() == 2;
+  }
+
+  /**
+   * gets the first neighbour of the server, which is the direction of the messages initiated by
+   * this server in the unidirectional algorithms.
+   *
+   * @param state
+   *          the state of the server.
+   * @return the message worker of the neighbour.
+   */
+  public static MsgWorker first(final State state) {
+    return state.allServerWorkers.iterator().next();
+  }
+
+  /**
+   * gets the neighbour other than the given one.
+   *
+   * @param state
+   *          the state of the server.
+   * @param worker
+   *          the message worker of one neighbour.
+   * @return the message worker of the other neighbour.
+   */
+  public static MsgWorker other(final State state, final MsgWorker worker) {
+    for (Iterator<MsgWorker> it = state.allServerWorkers.iterator(); it.hasNext();) {
+      MsgWorker w = it.next();
+      if (w != worker) {
+        return w;
+      }
+    }
+    return worker;
+  }
+}
@@ -0,0 +1,212 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.bully;
+
+import static chat.common.Log.ELECTION;
+import static chat.common.Log.LOG_ON;
+import static chat.server.algorithms.election.Actions.INITIATOR;
+import static chat.server.algorithms.election.Actions.checkEpoch;
+import static chat.server.algorithms.election.Actions.countSent;
+import static chat.server.algorithms.election.Actions.decide;
+import static chat.server.algorithms.election.Actions.isDecided;
+import static chat.server.algorithms.election.Actions.join;
+import static chat.server.algorithms.election.Actions.newEpoch;
+
+import java.io.IOException;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+
+/**
+ * This class defines the methods implementing the reaction of the state machine part concerning the
+ * reception of the messages of the bully election, where the best server is the server of smallest
+ * identity. Since the message workers do not carry the identities of the neighbours, a candidate
+ * sends its election message to all the servers, and every server answers with its identity; a
+ * server that receives the election message of a worse candidate becomes a candidate in its turn,
+ * and a server that has already decided answers with the coordinator message of its round. The
+ * candidate that receives no answer from a better server is the leader, and broadcasts the
+ * coordinator message. The failure of a server is not detected by the timeouts of the original
+ * algorithm, but by the heartbeats, which start a new round (see
+ * {@link chat.server.algorithms.ElectionAlgorithm#linkLost(State)}). The election costs O(n^2)
+ * messages on a cluster of n servers.
+ *
+ * The variable {@code caw} of the state is the smallest identity answered to the candidacy of the
+ * server, and the variable {@code rec} is the number of answers received. The rounds are managed
+ * as the rounds of the echo algorithm (see {@link chat.server.algorithms.election.Actions}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * starts the election from this server, which becomes a candidate unless it is already one.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void startElection(final State state) {
+    synchronized (state) {
+      if (isDecided(state)) {
+        newEpoch(state, state.getElectionEpoch() + 1);
+      }
+      join(state);
+      if (!INITIATOR.equals(state.getStatus())) {
+        candidate(state);
+      }
+      state.publishElection();
+    }
+  }
+
+  /**
+   * treats an election message.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveElection(final State state, final BullyContent content) {
+    synchronized (state) {
+      if (LOG_ON && ELECTION.isDebugEnabled()) {
+        ELECTION.debug("election of {}", content.getSender());
+      }
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      join(state);
+      send(state, state.currWorker, Algorithm.ANSWER_MESSAGE, state.getIdentity());
+      if (isDecided(state)) {
+        send(state, state.currWorker, Algorithm.COORDINATOR_MESSAGE, state.getWin());
+      } else if (state.getIdentity() < content.getSender()
+          && !INITIATOR.equals(state.getStatus())) {
+        candidate(state);
+      }
+    }
+  }
+
+  /**
+   * treats an answer message to the candidacy of this server.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveAnswer(final State state, final BullyContent content) {
+    synchronized (state) {
+      if (!checkEpoch(state, content.getEpoch()) || !INITIATOR.equals(state.getStatus())) {
+        return;
+      }
+      if (content.getSender() < state.getCaw()) {
+        state.setCaw(content.getSender());
+      }
+      state.setRec(state.getRec() + 1);
+      if (state.getRec() == state.allServerWorkers.size()
+          && state.getCaw() == state.getIdentity()) {
+        coordinate(state);
+      }
+    }
+  }
+
+  /**
+   * treats a coordinator message.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveCoordinator(final State state, final BullyContent content) {
+    synchronized (state) {
+      if (!checkEpoch(state, content.getEpoch()) || isDecided(state)) {
+        return;
+      }
+      state.setWin(content.getSender());
+      decide(state);
+    }
+  }
+
+  /**
+   * makes this server a candidate. This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void candidate(final State state) {
+    state.setStatus(INITIATOR);
+    state.setCaw(state.getIdentity());
+    state.setRec(0);
+    if (state.allServerWorkers.isEmpty()) {
+      coordinate(state);
+      return;
+    }
+    for (MsgWorker worker : state.allServerWorkers) {
+      send(state, worker, Algorithm.ELECTION_MESSAGE, state.getIdentity());
+    }
+  }
+
+  /**
+   * makes this server the leader and broadcasts the coordinator message. This method is called
+   * when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void coordinate(final State state) {
+    state.setWin(state.getIdentity());
+    decide(state);
+    for (MsgWorker worker : state.allServerWorkers) {
+      send(state, worker, Algorithm.COORDINATOR_MESSAGE, state.getIdentity());
+    }
+  }
+
+  /**
+   * sends a message of the election to a neighbour. This method is called when holding the lock
+   * of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param worker
+   *          the message worker of the neighbour.
+   * @param type
+   *          the type of the message.
+   * @param sender
+   *          the identity carried by the message.
+   */
+  private static void send(final State state, final MsgWorker worker, final Algorithm type,
+      final int sender) {
+    try {
+      state.getServer().sendToAServer(worker, type.identifier(), state.getIdentity(),
+          state.seqNumber, new BullyContent(sender, state.getElectionEpoch()));
+      countSent(state, 1);
+    } catch (IOException e) {
+      ELECTION.warn("cannot send a message of the election: {}", e.getLocalizedMessage());
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.bully;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the messages of the bully election: the identity of the
+ * sender, which is the candidate of an election message, the responder of an answer message and
+ * the leader of a coordinator message, and the epoch of the round.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class BullyContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the identity of the sender.
+   */
+  private final int sender;
+  /**
+   * the epoch of the round of the election.
+   */
+  private final int epoch;
+
+  /**
+   * constructs the content of a message of the election.
+   *
+   * @param sender
+   *          the identity of the sender.
+   * @param epoch
+   *          the epoch of the round of the election.
+   */
+  public BullyContent(final int sender, final int epoch) {
+    this.sender = sender;
+    this.epoch = epoch;
+  }
+
+  /**
+   * gets the identity of the sender.
+   *
+   * @return the identity of the sender.
+   */
+  public int getSender() {
+    return sender;
+  }
+
+  /**
+   * gets the epoch of the round.
+   *
+   * @return the epoch of the round.
+   */
+  public int getEpoch() {
+    return epoch;
+  }
+
+  @Override
+  public String toString() {
+    return "BullyContent [sender=" + sender + ", epoch=" + epoch + "]";
+  }
+}
@@ -0,0 +1,177 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.changroberts;
+
+import static chat.common.Log.ELECTION;
+import static chat.common.Log.LOG_ON;
+import static chat.server.algorithms.election.Actions.INITIATOR;
+import static chat.server.algorithms.election.Actions.checkEpoch;
+import static chat.server.algorithms.election.Actions.countSent;
+import static chat.server.algorithms.election.Actions.decide;
+import static chat.server.algorithms.election.Actions.isDecided;
+import static chat.server.algorithms.election.Actions.join;
+import static chat.server.algorithms.election.Actions.newEpoch;
+
+import java.io.IOException;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+import chat.server.algorithms.Ring;
+
+/**
+ * This class defines the methods implementing the reaction of the state machine part concerning the
+ * reception of the messages of the election of Chang and Roberts. The candidacies travel around
+ * the ring in the direction in which they were sent, each server forwarding them to its other
+ * neighbour: a server forwards a candidacy smaller than any identity it has seen, substitutes its
+ * own identity for a greater candidacy if it has not yet taken part in the round, and swallows the
+ * other candidacies. The candidacy of the smallest identity comes back to its initiator, which is
+ * the leader and circulates the elected message. The election costs between 2n and n(n+3)/2
+ * messages on a ring of n servers, depending on the order of the identities along the ring.
+ *
+ * The variable {@code caw} of the state is the smallest identity seen, or {@code -1} when the
+ * server has not yet taken part in the round. The rounds are managed as the rounds of the echo
+ * algorithm (see {@link chat.server.algorithms.election.Actions}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * starts the election from this server: the candidacy of this server is sent to its first
+   * neighbour, unless the server has already seen a smaller identity in the current round.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void startElection(final State state) {
+    synchronized (state) {
+      if (!Ring.isRing(state)) {
+        ELECTION.warn("the election of Chang and Roberts needs a ring, not {} neighbours",
+            state.allServerWorkers.size());
+        return;
+      }
+      if (isDecided(state)) {
+        newEpoch(state, state.getElectionEpoch() + 1);
+      }
+      join(state);
+      if (state.getCaw() == -1 || state.getIdentity() < state.getCaw()) {
+        state.setStatus(INITIATOR);
+        state.setCaw(state.getIdentity());
+        send(state, Ring.first(state), Algorithm.CANDIDATE_MESSAGE, state.getIdentity());
+      }
+      state.publishElection();
+    }
+  }
+
+  /**
+   * treats a candidate message.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveCandidate(final State state, final ChangRobertsContent content) {
+    synchronized (state) {
+      if (LOG_ON && ELECTION.isDebugEnabled()) {
+        ELECTION.debug("candidacy of {}", content.getCandidate());
+      }
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      join(state);
+      MsgWorker next = Ring.other(state, state.currWorker);
+      int candidate = content.getCandidate();
+      if (candidate == state.getIdentity()) {
+        state.setWin(candidate);
+        decide(state);
+        send(state, next, Algorithm.ELECTED_MESSAGE, candidate);
+      } else if (state.getCaw() == -1) {
+        if (candidate < state.getIdentity()) {
+          state.setCaw(candidate);
+          send(state, next, Algorithm.CANDIDATE_MESSAGE, candidate);
+        } else {
+          state.setStatus(INITIATOR);
+          state.setCaw(state.getIdentity());
+          send(state, next, Algorithm.CANDIDATE_MESSAGE, state.getIdentity());
+        }
+      } else if (candidate < state.getCaw()) {
+        state.setCaw(candidate);
+        send(state, next, Algorithm.CANDIDATE_MESSAGE, candidate);
+      }
+    }
+  }
+
+  /**
+   * treats an elected message, which is forwarded until it comes back to the leader.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveElected(final State state, final ChangRobertsContent content) {
+    synchronized (state) {
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      if (content.getCandidate() == state.getIdentity()) {
+        return;
+      }
+      state.setWin(content.getCandidate());
+      decide(state);
+      send(state, Ring.other(state, state.currWorker), Algorithm.ELECTED_MESSAGE,
+          content.getCandidate());
+    }
+  }
+
+  /**
+   * sends a message of the election to a neighbour. This method is called when holding the lock
+   * of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param worker
+   *          the message worker of the neighbour.
+   * @param type
+   *          the type of the message.
+   * @param candidate
+   *          the identity of the candidate or of the leader.
+   */
+  private static void send(final State state, final MsgWorker worker, final Algorithm type,
+      final int candidate) {
+    try {
+      state.getServer().sendToAServer(worker, type.identifier(), state.getIdentity(),
+          state.seqNumber, new ChangRobertsContent(candidate, state.getElectionEpoch()));
+      countSent(state, 1);
+    } catch (IOException e) {
+      ELECTION.warn("cannot send a message of the election: {}", e.getLocalizedMessage());
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.changroberts;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the messages of the election of Chang and Roberts: the
+ * identity of the candidate, or of the leader for the elected message, and the epoch of the
+ * round.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class ChangRobertsContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the identity of the candidate or of the leader.
+   */
+  private final int candidate;
+  /**
+   * the epoch of the round of the election.
+   */
+  private final int epoch;
+
+  /**
+   * constructs the content of a message of the election.
+   *
+   * @param candidate
+   *          the identity of the candidate or of the leader.
+   * @param epoch
+   *          the epoch of the round of the election.
+   */
+  public ChangRobertsContent(final int candidate, final int epoch) {
+    this.candidate = candidate;
+    this.epoch = epoch;
+  }
+
+  /**
+   * gets the identity of the candidate or of the leader.
+   *
+   * @return the identity of the candidate or of the leader.
+   */
+  public int getCandidate() {
+    return candidate;
+  }
+
+  /**
+   * gets the epoch of the round.
+   *
+   * @return the epoch of the round.
+   */
+  public int getEpoch() {
+    return epoch;
+  }
+
+  @Override
+  public String toString() {
+    return "ChangRobertsContent [candidate=" + candidate + ", epoch=" + epoch + "]";
+  }
+}
@@ -24,8 +24,12 @@ package chat.server.algorithms.election;
 import static chat.common.Log.ELECTION;
 import static chat.common.Log.LOGGER_NAME_ELECTION;
 import static chat.common.Log.LOG_ON;
+import static chat.server.algorithms.rooms.Actions.membersElected;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.log4j.Level;
 
@@ -34,8 +38,31 @@ import chat.server.State;
 
 /**
  * This class defines the methods implementing the reaction of the state machine part concerning the
- * reception of election messages. Since only one message content type is declared in the algorithm,
- * there is only one static method in this class.
+ * reception of election messages. The election is the echo algorithm with extinction: the token of
+ * the smallest initiator wins, and the winner floods a leader message.
+ *
+ * The rounds of the election carry an epoch. A message of an old epoch is discarded, and a message
+ * of a newer epoch resets the variables of the election before being treated. A new round, of the
+ * next epoch, is started automatically when a link with a neighbour is lost (see
+ * {@link #linkLost(State)}), e.g. when the failure detector of the heartbeats has torn down the
+ * link with a silent leader: the servers that are not neighbours of the failed server join the new
+ * round when they receive its tokens. The time from the joining of a round to the knowledge of
+ * the leader is recorded by the server (see {@link chat.server.ServerMetrics#getElectionTime()}).
+ * The management of the rounds is shared with the other election algorithms (see
+ * {@link chat.server.algorithms.ElectionAlgorithm}).
+ *
+ * When many servers initiate at once, e.g. after the restart of a cluster, every better token
+ * floods the network again. The waves are therefore batched: an initiator waits a back-off
+ * proportional to its identity (see {@link #BACKOFF_PROPERTY}) before sending its tokens, so that
+ * the waves of the better initiators have the time to reach it, and an initiator that has joined
+ * the wave of a better initiator, before or during its back-off, is suppressed. The messages sent
+ * by a server in the current round are counted (see {@link State#getElectionMsgsSent()}).
+ *
+ * The tokens sent back to the parents carry the servers of the subtrees of their senders, and the
+ * leader message carries all the servers of the wave. Every server thus learns the servers elected
+ * together and the link of the tree through which every one of them is reached, from which the
+ * home servers of the rooms are computed (see
+ * {@link chat.server.algorithms.rooms.Actions#membersElected(State, Set)}).
  *
  * @author Denis Conan , Hamza Hassine, Majdi Haouach
  */
@@ -44,8 +71,20 @@ public final class Actions {
   /**
    * Type of status messages.
    */
-  private static final String LEADER = "leader";
-  private static final String NON_LEADER = "non-leader";
+  public static final String LEADER = "leader";
+  public static final String NON_LEADER = "non-leader";
+  public static final String INITIATOR = "Initiator";
+  public static final String DORMANT = "dormant";
+
+  /**
+   * the system property setting the back-off of the initiators, in microseconds per unit of
+   * identity, {@code 0} disabling the back-off.
+   */
+  public static final String BACKOFF_PROPERTY = "chat.server.election.backoff";
+  /**
+   * the default back-off of the initiators, in microseconds per unit of identity.
+   */
+  public static final long DEFAULT_BACKOFF = 1000;
 
   /**
    * type of message logged.
@@ -65,6 +104,246 @@ public final class Actions {
     Log.configureALogger(LOGGER_NAME_ELECTION, Level.INFO);
   }
 
+  /**
+   * starts the election from this server, e.g. on the command {@code Initiator} of the console.
+   * The round is a new epoch when the current round is over, so that the servers forget its
+   * leader; otherwise, this server competes in the current round, unless it has already joined the
+   * wave of a better initiator.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void startElection(final State state) {
+    synchronized (state) {
+      if (isDecided(state)) {
+        newEpoch(state, state.getElectionEpoch() + 1);
+      }
+      initiate(state);
+      state.publishElection();
+    }
+  }
+
+  /**
+   * starts a new round of the election after the loss of a link with a neighbour. Nothing is done
+   * when no election has ever been started.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void linkLost(final State state) {
+    synchronized (state) {
+      if (state.getCaw() == -1 && DORMANT.equals(state.getStatus())) {
+        return;
+      }
+      if (LOG_ON && ELECTION.isInfoEnabled()) {
+        ELECTION.info("link lost, new round of epoch {}", state.getElectionEpoch() + 1);
+      }
+      newEpoch(state, state.getElectionEpoch() + 1);
+      initiate(state);
+      state.publishElection();
+    }
+    state.notifyObservers();
+  }
+
+  /**
+   * states whether the current round of the election is over at this server.
+   *
+   * @param state
+   *          the state of the server.
+   * @return {@code true} if the status is leader or non-leader.
+   */
+  public static boolean isDecided(final State state) {
+    return LEADER.equals(state.getStatus()) || NON_LEADER.equals(state.getStatus());
+  }
+
+  /**
+   * resets the variables of the election for a new round. This method is called when holding the
+   * lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param epoch
+   *          the epoch of the new round.
+   */
+  public static void newEpoch(final State state, final int epoch) {
+    state.setElectionEpoch(epoch);
+    state.setCaw(-1);
+    state.setParent(-1);
+    state.setWin(-1);
+    state.setRec(0);
+    state.setLrec(0);
+    state.setStatus(DORMANT);
+    state.setElectionParentWorker(null);
+    state.setElectionStart(-1);
+    state.setElectionPhase(0);
+    state.setElectionMsgsSent(0);
+    state.getWaveRoutes().clear();
+  }
+
+  /**
+   * makes this server an initiator of the current round: the wave of its tokens starts after the
+   * back-off of the server. This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void initiate(final State state) {
+    if (isDominated(state)) {
+      return;
+    }
+    join(state);
+    state.setStatus(INITIATOR);
+    long delay = state.getServer().getElectionBackoff() * state.getIdentity();
+    if (delay <= 0 || state.allServerWorkers.isEmpty()) {
+      wave(state);
+      return;
+    }
+    int epoch = state.getElectionEpoch();
+    state.getServer().schedule(delay, () -> {
+      synchronized (state) {
+        if (epoch != state.getElectionEpoch()) {
+          return;
+        }
+        // once decided, the wave of the winner dominates or is this one
+        wave(state);
+        state.publishElection();
+      }
+      state.notifyObservers();
+    });
+  }
+
+  /**
+   * states whether this server has joined the wave of a better initiator, in which case its own
+   * wave is suppressed. This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @return {@code true} if the initiator is dominated.
+   */
+  private static boolean isDominated(final State state) {
+    if (state.getCaw() != -1 && state.getCaw() < state.getIdentity()) {
+      if (LOG_ON && ELECTION.isDebugEnabled()) {
+        ELECTION.debug("initiator dominated by {}", state.getCaw());
+      }
+      state.getServer().getMetrics().suppressedInitiator();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * sends the tokens of the wave of this server, unless it is dominated or its wave has already
+   * started. This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void wave(final State state) {
+    if (isDominated(state) || state.getCaw() == state.getIdentity()) {
+      return;
+    }
+    state.setCaw(state.getIdentity());
+    state.setRec(0);
+    state.setParent(-1);
+    state.setElectionParentWorker(null);
+    state.getWaveRoutes().clear();
+    if (state.allServerWorkers.isEmpty()) {
+      // no neighbour: this server is alone in its partition
+      state.setWin(state.getIdentity());
+      membersElected(state, Collections.singleton(state.getIdentity()));
+      decide(state);
+      return;
+    }
+    try {
+      state.getServer().sendToAllServers(Algorithm.TOKEN_MESSAGE.identifier(),
+          state.getIdentity(), state.seqNumber,
+          new ElectionTokenContent(state.getIdentity(), state.getIdentity(),
+              state.getElectionEpoch()));
+      countSent(state, state.allServerWorkers.size());
+    } catch (IOException e) {
+      ELECTION.warn("cannot send the tokens of the election: {}", e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * counts messages of the election sent by this server in the current round. This method is
+   * called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param nb
+   *          the number of messages.
+   */
+  public static void countSent(final State state, final int nb) {
+    state.setElectionMsgsSent(state.getElectionMsgsSent() + nb);
+    state.getServer().getMetrics().electionMsgsSent(nb);
+  }
+
+  /**
+   * notes the instant at which this server joins the current round, if not already done. This
+   * method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void join(final State state) {
+    if (state.getElectionStart() < 0) {
+      state.setElectionStart(state.getServer().now());
+    }
+  }
+
+  /**
+   * checks the epoch of a message of the election: a message of an old epoch is discarded, and a
+   * message of a newer epoch starts a new round. This method is called when holding the lock of
+   * the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param epoch
+   *          the epoch of the message.
+   * @return {@code true} if the message is to be treated.
+   */
+  public static boolean checkEpoch(final State state, final int epoch) {
+    if (epoch < state.getElectionEpoch()) {
+      if (LOG_ON && ELECTION.isDebugEnabled()) {
+        ELECTION.debug("stale message of epoch {} discarded in epoch {}", epoch,
+            state.getElectionEpoch());
+      }
+      state.getServer().getMetrics().staleElectionMsg();
+      return false;
+    }
+    if (epoch > state.getElectionEpoch()) {
+      newEpoch(state, epoch);
+    }
+    return true;
+  }
+
+  /**
+   * sets the status at the end of the round, according to the winner in {@link State#getWin()},
+   * and records the time of the election. This method is called when holding the lock of the
+   * state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void decide(final State state) {
+    if (state.getWin() == state.getIdentity()) {
+      state.setStatus(LEADER);
+      if (LOG_ON && ELECTION.isInfoEnabled()) {
+        ELECTION.info(JE_SUIS_GAGNAT);
+      }
+    } else {
+      state.setStatus(NON_LEADER);
+      if (LOG_ON && ELECTION.isInfoEnabled()) {
+        ELECTION.info(JE_SUIS_PERDANT);
+      }
+    }
+    if (state.getElectionStart() >= 0) {
+      state.getServer().getMetrics().getElectionTime()
+          .record(state.getServer().now() - state.getElectionStart());
+    }
+  }
+
   /**
    * treats a token message of the election algorithm.
    *
@@ -79,37 +358,51 @@ public final class Actions {
       if (LOG_ON && ELECTION.isInfoEnabled()) {
         ELECTION.info("recu de type token");
       }
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      join(state);
       if (state.getCaw() == -1 || content.getInitiator() < state.getCaw()) {
         state.setCaw(content.getInitiator());
         state.setRec(0);
         state.setParent(content.getSender());
-        state.setElectionParentKey(state.currKey);
+        state.setElectionParentWorker(state.currWorker);
+        state.getWaveRoutes().clear();
         try {
-          state.getServer().sendToAllServersExceptOne(state.getElectionParentKey(),
+          state.getServer().sendToAllServersExceptOne(state.getElectionParentWorker(),
               Algorithm.TOKEN_MESSAGE.identifier(), state.getIdentity(), state.seqNumber,
-              new ElectionTokenContent(state.getIdentity(), content.getInitiator()));
+              new ElectionTokenContent(state.getIdentity(), content.getInitiator(),
+                  state.getElectionEpoch()));
+          countSent(state, state.allServerWorkers.size() - 1);
         } catch (IOException e) {
           e.printStackTrace();
         }
 
       }
       if (state.getCaw() == content.getInitiator()) {
+        for (int member : content.getMembers()) {
+          state.getWaveRoutes().put(member, state.currWorker);
+        }
         state.setRec(state.getRec() + 1);
         if (state.getRec() == state.allServerWorkers.size()) {
           if (state.getCaw() == state.getIdentity()) {
             try {
               state.getServer().sendToAllServers(Algorithm.LEADER_MESSAGE.identifier(),
                   state.getIdentity(), state.seqNumber,
-                  new ElectionLeaderContent(state.getIdentity(), state.getIdentity()));
+                  new ElectionLeaderContent(state.getIdentity(), state.getIdentity(),
+                      state.getElectionEpoch(), subtree(state)));
+              countSent(state, state.allServerWorkers.size());
             } catch (IOException e) {
               e.printStackTrace();
             }
 
           } else {
             try {
-              state.getServer().sendToAServer(state.getElectionParentKey(),
+              state.getServer().sendToAServer(state.getElectionParentWorker(),
                   Algorithm.TOKEN_MESSAGE.identifier(), state.getIdentity(), state.seqNumber,
-                  new ElectionTokenContent(state.getIdentity(), content.getInitiator()));
+                  new ElectionTokenContent(state.getIdentity(), content.getInitiator(),
+                      state.getElectionEpoch(), subtree(state)));
+              countSent(state, 1);
             } catch (IOException e) {
 
               e.printStackTrace();
@@ -134,12 +427,17 @@ public final class Actions {
       if (LOG_ON && ELECTION.isInfoEnabled()) {
         ELECTION.info(RECU_DE_TYPE_LEADER);
       }
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
 
       if (state.getLrec() == 0 && state.getIdentity() != content.getInitiator()) {
         try {
           state.getServer().sendToAllServers(Algorithm.LEADER_MESSAGE.identifier(),
               state.getIdentity(), state.seqNumber,
-              new ElectionLeaderContent(state.getIdentity(), content.getInitiator()));
+              new ElectionLeaderContent(state.getIdentity(), content.getInitiator(),
+                  state.getElectionEpoch(), content.getMembers()));
+          countSent(state, state.allServerWorkers.size());
         } catch (IOException e) {
           e.printStackTrace();
         }
@@ -147,18 +445,23 @@ public final class Actions {
       state.setLrec(state.getLrec() + 1);
       state.setWin(content.getInitiator());
       if (state.getLrec() == state.allServerWorkers.size()) {
-        if (state.getWin() == state.getIdentity()) {
-          state.setStatus(LEADER);
-          if (LOG_ON && ELECTION.isInfoEnabled()) {
-            ELECTION.info(JE_SUIS_GAGNAT);
-          }
-        } else {
-          state.setStatus(NON_LEADER);
-          if (LOG_ON && ELECTION.isInfoEnabled()) {
-            ELECTION.info(JE_SUIS_PERDANT);
-          }
-        }
+        membersElected(state, content.getMembers());
+        decide(state);
       }
     }
   }
+
+  /**
+   * gets the servers of the subtree of this server in the current wave, this server included.
+   * This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @return the identities of the servers.
+   */
+  private static Set<Integer> subtree(final State state) {
+    Set<Integer> members = new TreeSet<>(state.getWaveRoutes().keySet());
+    members.add(state.getIdentity());
+    return members;
+  }
 }
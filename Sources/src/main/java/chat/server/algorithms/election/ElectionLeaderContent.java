@@ -21,6 +21,10 @@ Contributor(s):
  */
 package chat.server.algorithms.election;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
 import chat.common.AbstractContent;
 
 /**
@@ -32,12 +36,20 @@ public class ElectionLeaderContent extends AbstractContent {
   /**
    * version number for serialization.
    */
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
   /**
    * sender sends the leader message.
    * initiator is the leader.
    */
   private int sender, initiator;
+  /**
+   * the epoch of the round of the election, so that the messages of an old round are discarded.
+   */
+  private final int epoch;
+  /**
+   * the servers that have taken part in the wave of the leader.
+   */
+  private final TreeSet<Integer> members;
 
   /**
    * constructs the content of a leader election message.
@@ -45,10 +57,38 @@ public class ElectionLeaderContent extends AbstractContent {
    *    sender
    * @param
    *    initiator
+   * @param
+   *    epoch the epoch of the round of the election
    */
-  public ElectionLeaderContent(int sender, int init) {
+  public ElectionLeaderContent(int sender, int init, int epoch) {
+    this(sender, init, epoch, Collections.emptySet());
+  }
+
+  /**
+   * constructs the content of a leader election message with the servers of the wave.
+   * @param
+   *    sender
+   * @param
+   *    init the leader
+   * @param
+   *    epoch the epoch of the round of the election
+   * @param
+   *    members the servers that have taken part in the wave of the leader
+   */
+  public ElectionLeaderContent(final int sender, final int init, final int epoch,
+      final Set<Integer> members) {
     this.sender = sender;
     this.initiator = init;
+    this.epoch = epoch;
+    this.members = new TreeSet<>(members);
+  }
+
+  /**
+   * members getter.
+   * @return the servers that have taken part in the wave of the leader
+   */
+  public Set<Integer> getMembers() {
+    return Collections.unmodifiableSet(members);
   }
   /**
    * sender getter.
@@ -66,6 +106,14 @@ public class ElectionLeaderContent extends AbstractContent {
     this.sender = sender;
   }
 
+  /**
+   * epoch getter.
+   * @return the epoch of the round of the election
+   */
+  public int getEpoch() {
+    return epoch;
+  }
+
   /**
    * initiator getter.
    * @return initiator
@@ -21,6 +21,10 @@ Contributor(s):
  */
 package chat.server.algorithms.election;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
 import chat.common.AbstractContent;
 
 /**
@@ -32,21 +36,45 @@ public class ElectionTokenContent extends AbstractContent {
   /**
    * version number for serialization.
    */
-  private static final long serialVersionUID = 1L;
+  private static final long serialVersionUID = 2L;
   /**
    * sender sends the token message.
    * initiator initiate the election process.
    */
   private int sender, initiator;
+  /**
+   * the epoch of the round of the election, so that the messages of an old round are discarded.
+   */
+  private final int epoch;
+  /**
+   * the servers of the subtree of the sender in the wave, carried by the token sent back to the
+   * parent, and empty in the tokens of the exploration.
+   */
+  private final TreeSet<Integer> members;
 
   /**
    * constructs the content of a token election message.
    * @param sender Integer
    * @param initiator  Integer
+   * @param epoch the epoch of the round of the election
    */
-  public ElectionTokenContent(final int sender, final int initiator) {
+  public ElectionTokenContent(final int sender, final int initiator, final int epoch) {
+    this(sender, initiator, epoch, Collections.emptySet());
+  }
+
+  /**
+   * constructs the content of a token election message sent back to the parent.
+   * @param sender Integer
+   * @param initiator  Integer
+   * @param epoch the epoch of the round of the election
+   * @param members the servers of the subtree of the sender
+   */
+  public ElectionTokenContent(final int sender, final int initiator, final int epoch,
+      final Set<Integer> members) {
     this.initiator = initiator;
     this.sender = sender;
+    this.epoch = epoch;
+    this.members = new TreeSet<>(members);
   }
 
   /**
@@ -65,6 +93,22 @@ public class ElectionTokenContent extends AbstractContent {
     this.sender = sender;
   }
 
+  /**
+   * epoch getter.
+   * @return the epoch of the round of the election
+   */
+  public int getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * members getter.
+   * @return the servers of the subtree of the sender
+   */
+  public Set<Integer> getMembers() {
+    return Collections.unmodifiableSet(members);
+  }
+
   /**
    * initiator getter.
    * @return initiator
@@ -0,0 +1,269 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.gossip;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+import static chat.server.algorithms.rooms.Actions.isFlooded;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+import chat.server.algorithms.Dissemination;
+
+/**
+ * This class defines the methods implementing the gossip of the client messages of the flooded
+ * rooms (see {@link Dissemination#GOSSIP}). The messages, called rumours, are disseminated in two
+ * ways:
+ * <ul>
+ * <li>the push: a server that receives a new rumour forwards it to some of its neighbours chosen
+ * at random, instead of all of them. A rumour reaches all the servers with a high probability when
+ * the fan-out is greater than the logarithm of the number of servers;</li>
+ * <li>the anti-entropy: at every round, a server sends the digest of its recent rumours to one of
+ * its neighbours chosen at random (see {@link RumourBuffer}). The neighbour asks for the rumours of
+ * the digest that it has not seen (the pull), and sends back the recent rumours that are missing
+ * from the digest (the push-pull): the gaps left by the push are thus repaired within some
+ * rounds.</li>
+ * </ul>
+ * A rumour is identified by the identity of the client that has sent it and by the sequence number
+ * given by the server of the client. Since the rumours of a client take different paths, they may
+ * arrive out of order, and the last sequence number of the client, which is used by the flooding,
+ * cannot drop the duplicates: the rumours seen are recorded in a Bloom filter of bounded memory
+ * (see {@link BloomFilter}). The methods are called when holding the lock of the state.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * states whether the client messages of a room are gossiped by the server.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room, or {@code null} for the messages of the algorithms of the servers.
+   * @return {@code true} if the messages are gossiped.
+   */
+  public static boolean isGossiped(final State state, final String room) {
+    return room != null && isFlooded(room)
+        && state.getServer().getDissemination() == Dissemination.GOSSIP;
+  }
+
+  /**
+   * computes the identifier of a rumour.
+   *
+   * @param identity
+   *          the identity of the client that has sent the message.
+   * @param seqNumber
+   *          the sequence number given to the message by the server of the client.
+   * @return the identifier.
+   */
+  public static long rumourId(final int identity, final int seqNumber) {
+    return ((long) identity << Integer.SIZE) | (seqNumber & 0xffffffffL);
+  }
+
+  /**
+   * states whether a rumour has not already been seen, and records it in the Bloom filter and in
+   * the recent rumours.
+   *
+   * @param state
+   *          the state of the server.
+   * @param type
+   *          the type of the client message.
+   * @param identity
+   *          the identity of the client that has sent the message.
+   * @param seqNumber
+   *          the sequence number given to the message by the server of the client.
+   * @param originTime
+   *          the origin time of the message, or {@link MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param msg
+   *          the client message.
+   * @return {@code true} if the rumour is new.
+   */
+  public static boolean isNewRumour(final State state, final int type, final int identity,
+      final int seqNumber, final long originTime, final int hops, final Serializable msg) {
+    long id = rumourId(identity, seqNumber);
+    if (state.getRumours().mightContain(id)) {
+      return false;
+    }
+    state.getRumours().add(id);
+    state.getRecentRumours().add(id,
+        new RumourContent(type, identity, seqNumber, originTime, hops, msg));
+    return true;
+  }
+
+  /**
+   * chooses at random the neighbours to which a rumour is forwarded.
+   *
+   * @param state
+   *          the state of the server.
+   * @param except
+   *          the message worker of the neighbour from which the rumour has been received, or
+   *          {@code null}.
+   * @return the message workers of at most the fan-out neighbours.
+   */
+  public static List<MsgWorker> peers(final State state, final MsgWorker except) {
+    List<MsgWorker> candidates = new ArrayList<>(state.allServerWorkers);
+    candidates.remove(except);
+    if (candidates.size() <= state.getGossipFanOut()) {
+      return candidates;
+    }
+    Collections.shuffle(candidates, state.getGossipRandom());
+    return candidates.subList(0, state.getGossipFanOut());
+  }
+
+  /**
+   * starts a round of the anti-entropy: the rumours of the oldest round are forgotten, and the
+   * digest of the recent rumours is sent to a neighbour chosen at random.
+   *
+   * @param state
+   *          the state of the server.
+   * @return {@code true} if a digest has been sent.
+   */
+  public static boolean exchangeDigests(final State state) {
+    state.getRecentRumours().nextRound();
+    if (state.getRecentRumours().size() == 0 || state.allServerWorkers.isEmpty()) {
+      return false;
+    }
+    List<MsgWorker> neighbours = new ArrayList<>(state.allServerWorkers);
+    MsgWorker peer = neighbours.get(state.getGossipRandom().nextInt(neighbours.size()));
+    send(state, peer, Algorithm.DIGEST_MESSAGE,
+        new DigestContent(state.getRecentRumours().ids()));
+    return true;
+  }
+
+  /**
+   * treats the digest of a neighbour: the rumours of the digest that have not been seen are asked
+   * for, and the recent rumours missing from the digest are sent to the neighbour.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveDigestContent(final State state, final DigestContent content) {
+    synchronized (state) {
+      Set<Long> known = new HashSet<>();
+      List<Long> missing = new ArrayList<>();
+      for (long id : content.getRumours()) {
+        known.add(id);
+        if (!state.getRumours().mightContain(id)) {
+          missing.add(id);
+        }
+      }
+      if (!missing.isEmpty()) {
+        long[] ids = new long[missing.size()];
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = missing.get(i);
+        }
+        send(state, state.currWorker, Algorithm.PULL_MESSAGE, new DigestContent(ids));
+      }
+      for (Map.Entry<Long, RumourContent> rumour : state.getRecentRumours().rumours()
+          .entrySet()) {
+        if (!known.contains(rumour.getKey())) {
+          send(state, state.currWorker, Algorithm.RUMOUR_MESSAGE, rumour.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * treats the request of the rumours missing from a neighbour, which are sent if they are still
+   * in the recent rumours.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receivePullContent(final State state, final DigestContent content) {
+    synchronized (state) {
+      for (long id : content.getRumours()) {
+        RumourContent rumour = state.getRecentRumours().get(id);
+        if (rumour != null) {
+          send(state, state.currWorker, Algorithm.RUMOUR_MESSAGE, rumour);
+        }
+      }
+    }
+  }
+
+  /**
+   * treats a rumour sent again by a neighbour, which is delivered and forwarded as the client
+   * messages received from the neighbours when it has not already been seen.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveRumourContent(final State state, final RumourContent content) {
+    synchronized (state) {
+      try {
+        state.getServer().receiveRumour(state.currWorker, content);
+      } catch (IOException e) {
+        COMM.warn("cannot forward a rumour: {}", e.getLocalizedMessage());
+      }
+    }
+  }
+
+  /**
+   * sends a message of the anti-entropy to a neighbour.
+   *
+   * @param state
+   *          the state of the server.
+   * @param link
+   *          the message worker of the neighbour.
+   * @param action
+   *          the action of the message.
+   * @param content
+   *          the content of the message.
+   */
+  private static void send(final State state, final MsgWorker link, final Algorithm action,
+      final Serializable content) {
+    if (LOG_ON && COMM.isDebugEnabled()) {
+      COMM.debug("gossip: {} to a neighbour", content);
+    }
+    try {
+      state.getServer().sendToAServer(link, action.identifier(), state.getIdentity(),
+          state.seqNumber, content);
+    } catch (IOException e) {
+      COMM.warn("cannot send a message of the gossip: {}", e.getLocalizedMessage());
+    }
+  }
+}
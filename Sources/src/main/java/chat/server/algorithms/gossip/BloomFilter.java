@@ -0,0 +1,200 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.gossip;
+
+import java.util.BitSet;
+
+/**
+ * This class defines the probabilistic set of the identifiers of the rumours seen by a server,
+ * with a bounded memory. The set is made of two generations of Bloom filters: the identifiers are
+ * added to the current generation, which replaces the previous one when it holds its capacity.
+ * The set thus remembers at least the last {@code capacity} identifiers, and forgets the older
+ * ones, in a memory that does not depend on the number of rumours. An identifier that has been
+ * added is always found; an identifier that has not been added is found with a probability of at
+ * most twice the rate of false positives of a generation, in which case the rumour is taken for a
+ * duplicate and is dropped by the server.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class BloomFilter {
+  /**
+   * the odd constant added to the identifiers before their mix, so that the identifier {@code 0}
+   * does not set the first bits.
+   */
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  /**
+   * the number of identifiers of a generation.
+   */
+  private final int capacity;
+  /**
+   * the number of bits of a generation.
+   */
+  private final int nbBits;
+  /**
+   * the number of bits set per identifier.
+   */
+  private final int nbHashes;
+  /**
+   * the current generation.
+   */
+  private BitSet current;
+  /**
+   * the previous generation.
+   */
+  private BitSet previous;
+  /**
+   * the number of identifiers added to the current generation.
+   */
+  private int nbAdded;
+
+  /**
+   * constructs an empty set. The numbers of bits and of hash functions of a generation are the
+   * optimal ones for the capacity and the rate of false positives.
+   *
+   * @param capacity
+   *          the number of identifiers of a generation.
+   * @param falsePositives
+   *          the rate of false positives of a generation, strictly between {@code 0} and
+   *          {@code 1}.
+   */
+  public BloomFilter(final int capacity, final double falsePositives) {
+    if (capacity <= 0 || falsePositives <= 0 || falsePositives >= 1) {
+      throw new IllegalArgumentException("invalid capacity (" + capacity
+          + ") or rate of false positives (" + falsePositives + ")");
+    }
+    double ln2 = Math.log(2);
+    this.capacity = capacity;
+    this.nbBits = (int) Math.ceil(-capacity * Math.log(falsePositives) / (ln2 * ln2));
+    this.nbHashes = Math.max(1, (int) Math.round((double) nbBits / capacity * ln2));
+    this.current = new BitSet(nbBits);
+    this.previous = new BitSet(nbBits);
+  }
+
+  /**
+   * adds an identifier to the set. The current generation becomes the previous one when it holds
+   * its capacity.
+   *
+   * @param id
+   *          the identifier.
+   */
+  public void add(final long id) {
+    if (nbAdded == capacity) {
+      BitSet oldest = previous;
+      oldest.clear();
+      previous = current;
+      current = oldest;
+      nbAdded = 0;
+    }
+    long h1 = mix(id + GOLDEN_GAMMA);
+    long h2 = mix(h1) | 1;
+    for (int i = 0; i < nbHashes; i++) {
+      current.set(index(h1 + i * h2));
+    }
+    nbAdded++;
+  }
+
+  /**
+   * states whether an identifier may have been added to the set.
+   *
+   * @param id
+   *          the identifier.
+   * @return {@code false} if the identifier has not been added since the last {@code capacity}
+   *         identifiers, {@code true} if it may have been.
+   */
+  public boolean mightContain(final long id) {
+    return contains(current, id) || contains(previous, id);
+  }
+
+  /**
+   * gets the number of bits of the two generations.
+   *
+   * @return the number of bits.
+   */
+  public int getNbBits() {
+    return 2 * nbBits;
+  }
+
+  /**
+   * gets the number of bits set per identifier.
+   *
+   * @return the number of hash functions.
+   */
+  public int getNbHashes() {
+    return nbHashes;
+  }
+
+  /**
+   * states whether all the bits of an identifier are set in a generation.
+   *
+   * @param generation
+   *          the generation.
+   * @param id
+   *          the identifier.
+   * @return {@code true} if the bits are set.
+   */
+  private boolean contains(final BitSet generation, final long id) {
+    long h1 = mix(id + GOLDEN_GAMMA);
+    long h2 = mix(h1) | 1;
+    for (int i = 0; i < nbHashes; i++) {
+      if (!generation.get(index(h1 + i * h2))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * computes the index of a bit from a hash.
+   *
+   * @param hash
+   *          the hash.
+   * @return the index, between {@code 0} and the number of bits of a generation.
+   */
+  private int index(final long hash) {
+    return (int) Long.remainderUnsigned(hash, nbBits);
+  }
+
+  /**
+   * mixes the bits of a number with the final mix of MurmurHash3, so that the close identifiers
+   * set distant bits (see {@link chat.server.algorithms.rooms.HashRing}).
+   *
+   * @param value
+   *          the number.
+   * @return the mixed number.
+   */
+  private static long mix(final long value) {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb93fe1a85ec3L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return "BloomFilter [bits=" + getNbBits() + ", hashes=" + nbHashes + ", capacity=" + capacity
+        + "]";
+  }
+}
@@ -0,0 +1,70 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.gossip;
+
+import java.util.Arrays;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the messages of the anti-entropy of the gossip: the digest of
+ * the rumours recently seen by a server, and the request of the rumours missing from the digest of
+ * a neighbour. A rumour is identified by the identity of the client that has sent it and by the
+ * sequence number given by the server of the client (see {@link Actions#rumourId(int, int)}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class DigestContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the identifiers of the rumours.
+   */
+  private final long[] rumours;
+
+  /**
+   * constructs the content of a digest or of a request of rumours.
+   *
+   * @param rumours
+   *          the identifiers of the rumours.
+   */
+  public DigestContent(final long[] rumours) {
+    this.rumours = rumours.clone();
+  }
+
+  /**
+   * gets the identifiers of the rumours.
+   *
+   * @return the identifiers of the rumours.
+   */
+  public long[] getRumours() {
+    return rumours.clone();
+  }
+
+  @Override
+  public String toString() {
+    return "DigestContent [rumours=" + Arrays.toString(rumours) + "]";
+  }
+}
@@ -0,0 +1,190 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.gossip;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class defines the rumours recently seen by a server, which are announced in its digests
+ * and sent again to the neighbours that miss them. The buffer keeps the rumours of the last
+ * {@code rounds} rounds of the anti-entropy, and at most {@code capacity} rumours, the oldest
+ * being dropped first: a gap is thus repaired if it is found within a few rounds.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class RumourBuffer {
+  /**
+   * the default maximum number of rumours.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+  /**
+   * the default number of rounds during which a rumour is kept.
+   */
+  public static final int DEFAULT_ROUNDS = 5;
+  /**
+   * the maximum number of rumours.
+   */
+  private final int capacity;
+  /**
+   * the number of rounds during which a rumour is kept.
+   */
+  private final int rounds;
+  /**
+   * the current round.
+   */
+  private int round;
+  /**
+   * the rumours, in the order of their reception, with the round of their reception.
+   */
+  private final LinkedHashMap<Long, Entry> rumours = new LinkedHashMap<>();
+
+  /**
+   * This class defines a rumour of the buffer.
+   */
+  private static final class Entry {
+    /**
+     * the rumour.
+     */
+    private final RumourContent rumour;
+    /**
+     * the round of the reception of the rumour.
+     */
+    private final int round;
+
+    /**
+     * constructs an entry.
+     *
+     * @param rumour
+     *          the rumour.
+     * @param round
+     *          the round of the reception of the rumour.
+     */
+    private Entry(final RumourContent rumour, final int round) {
+      this.rumour = rumour;
+      this.round = round;
+    }
+  }
+
+  /**
+   * constructs an empty buffer.
+   *
+   * @param capacity
+   *          the maximum number of rumours.
+   * @param rounds
+   *          the number of rounds during which a rumour is kept.
+   */
+  public RumourBuffer(final int capacity, final int rounds) {
+    if (capacity <= 0 || rounds <= 0) {
+      throw new IllegalArgumentException("invalid capacity (" + capacity + ") or rounds ("
+          + rounds + ")");
+    }
+    this.capacity = capacity;
+    this.rounds = rounds;
+  }
+
+  /**
+   * adds a rumour received in the current round. The oldest rumour is dropped when the buffer is
+   * full.
+   *
+   * @param id
+   *          the identifier of the rumour.
+   * @param rumour
+   *          the rumour.
+   */
+  public void add(final long id, final RumourContent rumour) {
+    rumours.put(id, new Entry(rumour, round));
+    if (rumours.size() > capacity) {
+      Iterator<Entry> oldest = rumours.values().iterator();
+      oldest.next();
+      oldest.remove();
+    }
+  }
+
+  /**
+   * gets a rumour of the buffer.
+   *
+   * @param id
+   *          the identifier of the rumour.
+   * @return the rumour, or {@code null} when it is not in the buffer.
+   */
+  public RumourContent get(final long id) {
+    Entry entry = rumours.get(id);
+    return entry != null ? entry.rumour : null;
+  }
+
+  /**
+   * gets the identifiers of the rumours of the buffer, from the oldest to the newest.
+   *
+   * @return the identifiers.
+   */
+  public long[] ids() {
+    long[] ids = new long[rumours.size()];
+    int i = 0;
+    for (long id : rumours.keySet()) {
+      ids[i++] = id;
+    }
+    return ids;
+  }
+
+  /**
+   * gets the rumours of the buffer, from the oldest to the newest, with their identifiers.
+   *
+   * @return the rumours.
+   */
+  public Map<Long, RumourContent> rumours() {
+    Map<Long, RumourContent> view = new LinkedHashMap<>();
+    for (Map.Entry<Long, Entry> entry : rumours.entrySet()) {
+      view.put(entry.getKey(), entry.getValue().rumour);
+    }
+    return view;
+  }
+
+  /**
+   * starts a new round, and drops the rumours received {@code rounds} rounds ago.
+   */
+  public void nextRound() {
+    round++;
+    for (Iterator<Entry> entries = rumours.values().iterator(); entries.hasNext();) {
+      if (entries.next().round > round - rounds) {
+        return;
+      }
+      entries.remove();
+    }
+  }
+
+  /**
+   * gets the number of rumours of the buffer.
+   *
+   * @return the number of rumours.
+   */
+  public int size() {
+    return rumours.size();
+  }
+
+  @Override
+  public String toString() {
+    return "RumourBuffer [round=" + round + ", rumours=" + rumours.keySet() + "]";
+  }
+}
@@ -0,0 +1,150 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.gossip;
+
+import java.io.Serializable;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the message that repairs a gap of a neighbour: a client
+ * message of a flooded room, with its header, sent again in answer to a digest.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class RumourContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the type of the client message.
+   */
+  private final int type;
+  /**
+   * the identity of the client that has sent the message.
+   */
+  private final int identity;
+  /**
+   * the sequence number given to the message by the server of the client.
+   */
+  private final int seqNumber;
+  /**
+   * the origin time of the message, or {@link chat.common.MsgWorker#UNTRACED}.
+   */
+  private final long originTime;
+  /**
+   * the number of servers crossed by the message.
+   */
+  private final int hops;
+  /**
+   * the client message.
+   */
+  private final Serializable message;
+
+  /**
+   * constructs the content of a rumour.
+   *
+   * @param type
+   *          the type of the client message.
+   * @param identity
+   *          the identity of the client that has sent the message.
+   * @param seqNumber
+   *          the sequence number given to the message by the server of the client.
+   * @param originTime
+   *          the origin time of the message, or {@link chat.common.MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param message
+   *          the client message.
+   */
+  public RumourContent(final int type, final int identity, final int seqNumber,
+      final long originTime, final int hops, final Serializable message) {
+    this.type = type;
+    this.identity = identity;
+    this.seqNumber = seqNumber;
+    this.originTime = originTime;
+    this.hops = hops;
+    this.message = message;
+  }
+
+  /**
+   * gets the type of the client message.
+   *
+   * @return the type of the client message.
+   */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * gets the identity of the client that has sent the message.
+   *
+   * @return the identity of the client that has sent the message.
+   */
+  public int getIdentity() {
+    return identity;
+  }
+
+  /**
+   * gets the sequence number of the message.
+   *
+   * @return the sequence number of the message.
+   */
+  public int getSeqNumber() {
+    return seqNumber;
+  }
+
+  /**
+   * gets the origin time of the message.
+   *
+   * @return the origin time of the message.
+   */
+  public long getOriginTime() {
+    return originTime;
+  }
+
+  /**
+   * gets the number of servers crossed by the message.
+   *
+   * @return the number of servers crossed by the message.
+   */
+  public int getHops() {
+    return hops;
+  }
+
+  /**
+   * gets the client message.
+   *
+   * @return the client message.
+   */
+  public Serializable getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return "RumourContent [type=" + type + ", identity=" + identity + ", seqNumber=" + seqNumber
+        + ", originTime=" + originTime + ", hops=" + hops + ", message=" + message + "]";
+  }
+}
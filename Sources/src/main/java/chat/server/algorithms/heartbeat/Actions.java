@@ -0,0 +1,83 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.heartbeat;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+
+import chat.server.State;
+
+/**
+ * This class defines the methods implementing the reaction of the state machine part concerning the
+ * reception of heartbeat messages. The actions are executed when holding the lock of the state,
+ * with the message worker of the link in {@link State#currWorker}.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * treats a ping message: the pong echoes the sending time of the ping on the same link.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receivePing(final State state, final HeartbeatContent content) {
+    synchronized (state) {
+      try {
+        state.currWorker.sendMsg(Algorithm.PONG_MESSAGE.identifier(), state.getIdentity(),
+            state.seqNumber, new HeartbeatContent(content.getSendTime()));
+      } catch (IOException e) {
+        COMM.warn("cannot answer a ping: {}", e.getLocalizedMessage());
+      }
+    }
+  }
+
+  /**
+   * treats a pong message: the arrival is a heartbeat of the link for the failure detector, and
+   * the round-trip time is measured from the echoed sending time of the ping.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receivePong(final State state, final HeartbeatContent content) {
+    synchronized (state) {
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("pong of the ping sent at {}", content.getSendTime());
+      }
+      state.getServer().getHeartbeats().pong(state.currWorker, content.getSendTime());
+    }
+  }
+}
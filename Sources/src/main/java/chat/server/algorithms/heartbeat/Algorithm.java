@@ -0,0 +1,134 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.heartbeat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import chat.common.AbstractContent;
+import chat.common.Action;
+import chat.server.State;
+
+/**
+ * This Enumeration type declares the algorithm of the heartbeats of the links between servers: a
+ * server periodically sends a ping to each neighbour, which answers with a pong (see
+ * {@link chat.server.Heartbeats}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public enum Algorithm implements Action<State> {
+  /**
+   * the enumerator for the action of the ping message.
+   */
+  PING_MESSAGE(HeartbeatContent.class) {
+    /**
+     * executes the action by calling a static method.
+     *
+     * @param state
+     *          the state of the server.
+     * @param content
+     *          the message to treat.
+     */
+    public void execute(final State state, final AbstractContent content) {
+      Actions.receivePing(state, (HeartbeatContent) content);
+    }
+  },
+  /**
+   * the enumerator for the action of the pong message.
+   */
+  PONG_MESSAGE(HeartbeatContent.class) {
+    /**
+     * executes the action by calling a static method.
+     *
+     * @param state
+     *          the state of the server.
+     * @param content
+     *          the message to treat.
+     */
+    public void execute(final State state, final AbstractContent content) {
+      Actions.receivePong(state, (HeartbeatContent) content);
+    }
+  };
+
+  /**
+   * collection of the actions of this algorithm enumerator of the server. The collection is
+   * unmodifiable and, since it is immutable, the attribute can be {@code public}.
+   */
+  public static final Map<Integer, Algorithm> ACTIONS;
+  /**
+   * index of the action of this message type.
+   */
+  private final int actionIndex;
+  /**
+   * the type of the content.
+   */
+  private final Class<? extends AbstractContent> contentClass;
+
+  /**
+   * static block to build collections of actions.
+   */
+  static {
+    Map<Integer, Algorithm> privateMapOfActions = new HashMap<>();
+    for (Algorithm aa : Algorithm.values()) {
+      privateMapOfActions.put(aa.actionIndex, aa);
+    }
+    ACTIONS = Collections.unmodifiableMap(privateMapOfActions);
+  }
+
+  /**
+   * is the constructor of message type object.
+   *
+   * @param contentClass
+   *          the type of the content.
+   */
+  Algorithm(final Class<? extends AbstractContent> contentClass) {
+    this.actionIndex = chat.common.Action.OFFSET_SERVER_ALGORITHMS
+        + chat.server.algorithms.ListOfAlgorithms.OFFSET_HEARTBEAT_ALGORITHM
+        + ordinal();
+    this.contentClass = contentClass;
+  }
+
+  /**
+   * obtains the index of this message type.
+   *
+   * @return the identifier of the action as an {@code int}.
+   */
+  public int identifier() {
+    return actionIndex;
+  }
+
+  /**
+   * gets the type of the content.
+   *
+   * @return the type of the content.
+   */
+  public Class<? extends AbstractContent> contentClass() {
+    return contentClass;
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(actionIndex);
+  }
+}
@@ -0,0 +1,67 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.heartbeat;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the ping and pong messages of the heartbeat algorithm. The
+ * pong message echoes the sending time of the ping, so that the server that sent the ping measures
+ * the round-trip time with its own clock.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class HeartbeatContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the sending time of the ping, in the clock of the server that sent it.
+   */
+  private final long sendTime;
+
+  /**
+   * constructs the content of a heartbeat message.
+   *
+   * @param sendTime
+   *          the sending time of the ping.
+   */
+  public HeartbeatContent(final long sendTime) {
+    this.sendTime = sendTime;
+  }
+
+  /**
+   * gets the sending time of the ping.
+   *
+   * @return the sending time, in the clock of the server that sent the ping.
+   */
+  public long getSendTime() {
+    return sendTime;
+  }
+
+  @Override
+  public String toString() {
+    return "HeartbeatContent [sendTime=" + sendTime + "]";
+  }
+}
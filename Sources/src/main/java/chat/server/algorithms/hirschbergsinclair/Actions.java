@@ -0,0 +1,244 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.hirschbergsinclair;
+
+import static chat.common.Log.ELECTION;
+import static chat.common.Log.LOG_ON;
+import static chat.server.algorithms.election.Actions.INITIATOR;
+import static chat.server.algorithms.election.Actions.checkEpoch;
+import static chat.server.algorithms.election.Actions.countSent;
+import static chat.server.algorithms.election.Actions.decide;
+import static chat.server.algorithms.election.Actions.isDecided;
+import static chat.server.algorithms.election.Actions.join;
+import static chat.server.algorithms.election.Actions.newEpoch;
+
+import java.io.IOException;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+import chat.server.algorithms.Ring;
+
+/**
+ * This class defines the methods implementing the reaction of the state machine part concerning the
+ * reception of the messages of the election of Hirschberg and Sinclair. In the phase k of its
+ * candidacy, a candidate sends a probe in both directions of the ring; a probe is relayed by the
+ * servers of greater identity up to the distance 2^k, where it is answered by a reply that travels
+ * back to the candidate, and it is swallowed by a server of smaller identity, which becomes a
+ * candidate if it has not yet taken part in the round. A candidate that receives the two replies
+ * of its phase starts the next phase, and the candidate whose probe comes back around the ring is
+ * the leader, which circulates the elected message. The election costs O(n log n) messages on a
+ * ring of n servers, whatever the order of the identities along the ring.
+ *
+ * The variable {@code caw} of the state is the smallest identity seen, or {@code -1} when the
+ * server has not yet taken part in the round, the variable {@code electionPhase} is the phase of
+ * the candidacy of the server, and the variable {@code rec} is the number of replies received in
+ * this phase. The rounds are managed as the rounds of the echo algorithm (see
+ * {@link chat.server.algorithms.election.Actions}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * starts the election from this server: the server becomes a candidate, unless it is already a
+   * candidate or has already seen a smaller identity in the current round.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void startElection(final State state) {
+    synchronized (state) {
+      if (!Ring.isRing(state)) {
+        ELECTION.warn("the election of Hirschberg and Sinclair needs a ring, not {} neighbours",
+            state.allServerWorkers.size());
+        return;
+      }
+      if (isDecided(state)) {
+        newEpoch(state, state.getElectionEpoch() + 1);
+      }
+      join(state);
+      if (state.getCaw() == -1) {
+        candidate(state);
+      }
+      state.publishElection();
+    }
+  }
+
+  /**
+   * treats a probe message.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveProbe(final State state, final HirschbergSinclairContent content) {
+    synchronized (state) {
+      if (LOG_ON && ELECTION.isDebugEnabled()) {
+        ELECTION.debug("probe of {} in phase {}", content.getCandidate(), content.getPhase());
+      }
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      join(state);
+      int candidate = content.getCandidate();
+      if (candidate == state.getIdentity()) {
+        if (!isDecided(state)) {
+          state.setWin(candidate);
+          decide(state);
+          send(state, Ring.first(state), Algorithm.ELECTED_MESSAGE, candidate, 0, 0);
+        }
+      } else if (candidate < state.getIdentity()) {
+        if (state.getCaw() == -1 || candidate < state.getCaw()) {
+          state.setCaw(candidate);
+        }
+        if (content.getHops() < (1 << content.getPhase())) {
+          send(state, Ring.other(state, state.currWorker), Algorithm.PROBE_MESSAGE, candidate,
+              content.getPhase(), content.getHops() + 1);
+        } else {
+          send(state, state.currWorker, Algorithm.REPLY_MESSAGE, candidate, content.getPhase(),
+              0);
+        }
+      } else if (state.getCaw() == -1) {
+        candidate(state);
+      }
+    }
+  }
+
+  /**
+   * treats a reply message, which is relayed back to its candidate.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveReply(final State state, final HirschbergSinclairContent content) {
+    synchronized (state) {
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      if (content.getCandidate() != state.getIdentity()) {
+        send(state, Ring.other(state, state.currWorker), Algorithm.REPLY_MESSAGE,
+            content.getCandidate(), content.getPhase(), 0);
+        return;
+      }
+      if (!INITIATOR.equals(state.getStatus()) || content.getPhase() != state.getElectionPhase()) {
+        return;
+      }
+      state.setRec(state.getRec() + 1);
+      if (state.getRec() == 2) {
+        state.setRec(0);
+        state.setElectionPhase(state.getElectionPhase() + 1);
+        probe(state);
+      }
+    }
+  }
+
+  /**
+   * treats an elected message, which is forwarded until it comes back to the leader.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveElected(final State state, final HirschbergSinclairContent content) {
+    synchronized (state) {
+      if (!checkEpoch(state, content.getEpoch())) {
+        return;
+      }
+      if (content.getCandidate() == state.getIdentity()) {
+        return;
+      }
+      state.setWin(content.getCandidate());
+      decide(state);
+      send(state, Ring.other(state, state.currWorker), Algorithm.ELECTED_MESSAGE,
+          content.getCandidate(), 0, 0);
+    }
+  }
+
+  /**
+   * makes this server a candidate, starting at the phase 0. This method is called when holding
+   * the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void candidate(final State state) {
+    state.setStatus(INITIATOR);
+    state.setCaw(state.getIdentity());
+    state.setElectionPhase(0);
+    state.setRec(0);
+    probe(state);
+  }
+
+  /**
+   * sends the probes of the current phase in both directions. This method is called when holding
+   * the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void probe(final State state) {
+    for (MsgWorker worker : state.allServerWorkers) {
+      send(state, worker, Algorithm.PROBE_MESSAGE, state.getIdentity(), state.getElectionPhase(),
+          1);
+    }
+  }
+
+  /**
+   * sends a message of the election to a neighbour. This method is called when holding the lock
+   * of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param worker
+   *          the message worker of the neighbour.
+   * @param type
+   *          the type of the message.
+   * @param candidate
+   *          the identity of the candidate or of the leader.
+   * @param phase
+   *          the phase of the candidacy.
+   * @param hops
+   *          the number of hops travelled by the probe.
+   */
+  private static void send(final State state, final MsgWorker worker, final Algorithm type,
+      final int candidate, final int phase, final int hops) {
+    try {
+      state.getServer().sendToAServer(worker, type.identifier(), state.getIdentity(),
+          state.seqNumber,
+          new HirschbergSinclairContent(candidate, phase, hops, state.getElectionEpoch()));
+      countSent(state, 1);
+    } catch (IOException e) {
+      ELECTION.warn("cannot send a message of the election: {}", e.getLocalizedMessage());
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.raymond;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+import chat.server.algorithms.CriticalSection;
+
+/**
+ * This class defines the methods implementing the reaction of the state machine part concerning the
+ * reception of the messages of Raymond's algorithm of mutual exclusion. The token is created by a
+ * server (see {@link #createToken(State)}), whose message of creation floods the servers: every
+ * server points to the neighbour from which it has first received the message, which builds a
+ * spanning tree oriented towards the token. A server that needs the token queues the request,
+ * this server being noted {@code null} in the queue, and asks its holder once; a server that
+ * holds the token and does not use it gives it to the first request of its queue, asking it back
+ * when the queue is not empty. A request and the token therefore cross at most the diameter of the
+ * tree, i.e. O(log n) links on a balanced tree.
+ *
+ * A new token, of the next generation, can be created by any server, e.g. after the loss of the
+ * token with a link: the messages of the old generation are then discarded, and the requests of
+ * the critical sections of the servers are queued again. Only one server should create a token at
+ * a time; two tokens created concurrently with the same generation are ordered by the identities
+ * of their creators, the smallest identity winning.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * creates a token of the next generation at this server and floods its creation.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  public static void createToken(final State state) {
+    synchronized (state) {
+      reset(state, state.getTokenGeneration() + 1, state.getIdentity(), null);
+      if (LOG_ON && COMM.isInfoEnabled()) {
+        COMM.info("creation of the token of generation {}", state.getTokenGeneration());
+      }
+      for (MsgWorker worker : state.allServerWorkers) {
+        send(state, worker, Algorithm.INIT_MESSAGE);
+      }
+    }
+    enter(state);
+  }
+
+  /**
+   * requests a critical section, which is executed when this server holds the token.
+   *
+   * @param state
+   *          the state of the server.
+   * @param section
+   *          the code of the critical section.
+   */
+  public static void requestCriticalSection(final State state, final Runnable section) {
+    synchronized (state) {
+      state.getPendingSections().add(new CriticalSection(section, state.getServer().now()));
+      state.getTokenRequests().add(null);
+    }
+    enter(state);
+  }
+
+  /**
+   * treats a message of the creation of a token: the first message of a new token sets the
+   * direction of the token and is forwarded to the other neighbours.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveInit(final State state, final TokenContent content) {
+    synchronized (state) {
+      if (content.getGeneration() < state.getTokenGeneration()
+          || content.getGeneration() == state.getTokenGeneration()
+              && content.getCreator() >= state.getTokenCreator()) {
+        return;
+      }
+      MsgWorker from = state.currWorker;
+      reset(state, content.getGeneration(), content.getCreator(), from);
+      for (MsgWorker worker : state.allServerWorkers) {
+        if (worker != from) {
+          send(state, worker, Algorithm.INIT_MESSAGE);
+        }
+      }
+    }
+    enter(state);
+  }
+
+  /**
+   * treats a request message: the neighbour is queued.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveRequest(final State state, final TokenContent content) {
+    synchronized (state) {
+      if (!isCurrent(state, content)) {
+        return;
+      }
+      state.getTokenRequests().add(state.currWorker);
+    }
+    enter(state);
+  }
+
+  /**
+   * treats a token message: this server holds the token.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveToken(final State state, final TokenContent content) {
+    synchronized (state) {
+      if (!isCurrent(state, content)) {
+        return;
+      }
+      state.setTokenHolder(null);
+    }
+    enter(state);
+  }
+
+  /**
+   * gives the token and executes the critical sections of this server until the token is away or
+   * no more requested. The critical sections are executed without holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void enter(final State state) {
+    while (true) {
+      CriticalSection section;
+      synchronized (state) {
+        section = assignPrivilege(state);
+        makeRequest(state);
+        if (section == null) {
+          return;
+        }
+      }
+      try {
+        section.execute(state);
+      } finally {
+        synchronized (state) {
+          state.setInCriticalSection(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * gives the token to the first request of the queue when this server holds the token and does
+   * not use it. This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @return the critical section to execute when the first request is a request of this server,
+   *         otherwise {@code null}.
+   */
+  private static CriticalSection assignPrivilege(final State state) {
+    if (state.getTokenGeneration() < 0 || state.getTokenHolder() != null
+        || state.isInCriticalSection() || state.getTokenRequests().isEmpty()) {
+      return null;
+    }
+    MsgWorker first = state.getTokenRequests().removeFirst();
+    state.setTokenAsked(false);
+    if (first == null) {
+      state.setInCriticalSection(true);
+      return state.getPendingSections().poll();
+    }
+    state.setTokenHolder(first);
+    send(state, first, Algorithm.TOKEN_MESSAGE);
+    return null;
+  }
+
+  /**
+   * asks the token to the holder when there are requests and the token has not yet been asked.
+   * This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void makeRequest(final State state) {
+    if (state.getTokenGeneration() >= 0 && state.getTokenHolder() != null
+        && !state.getTokenRequests().isEmpty() && !state.isTokenAsked()) {
+      send(state, state.getTokenHolder(), Algorithm.REQUEST_MESSAGE);
+      state.setTokenAsked(true);
+    }
+  }
+
+  /**
+   * sets the variables of a new token. The requests of the neighbours, which belong to the old
+   * token, are forgotten, and the requests of this server are queued again. This method is called
+   * when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param generation
+   *          the generation of the token.
+   * @param creator
+   *          the identity of the server that has created the token.
+   * @param holder
+   *          the neighbour in the direction of the token, or {@code null} for this server.
+   */
+  private static void reset(final State state, final int generation, final int creator,
+      final MsgWorker holder) {
+    state.setTokenGeneration(generation);
+    state.setTokenCreator(creator);
+    state.setTokenHolder(holder);
+    state.setTokenAsked(false);
+    state.getTokenRequests().clear();
+    for (int i = 0; i < state.getPendingSections().size(); i++) {
+      state.getTokenRequests().add(null);
+    }
+  }
+
+  /**
+   * checks that a message belongs to the current token. This method is called when holding the
+   * lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message.
+   * @return {@code true} if the message is to be treated.
+   */
+  private static boolean isCurrent(final State state, final TokenContent content) {
+    if (content.getGeneration() != state.getTokenGeneration()
+        || content.getCreator() != state.getTokenCreator()) {
+      if (LOG_ON && COMM.isDebugEnabled()) {
+        COMM.debug("message of the old token {} discarded", content);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * sends a message of the current token to a neighbour. This method is called when holding the
+   * lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param worker
+   *          the message worker of the neighbour.
+   * @param type
+   *          the type of the message.
+   */
+  private static void send(final State state, final MsgWorker worker, final Algorithm type) {
+    try {
+      state.getServer().sendToAServer(worker, type.identifier(), state.getIdentity(),
+          state.seqNumber,
+          new TokenContent(state.getTokenGeneration(), state.getTokenCreator()));
+    } catch (IOException e) {
+      COMM.warn("cannot send a message of the mutual exclusion: {}", e.getLocalizedMessage());
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.raymond;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the messages of Raymond's algorithm of mutual exclusion: the
+ * generation of the token and the identity of the server that has created it, so that the
+ * messages of an old token are discarded.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class TokenContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the generation of the token.
+   */
+  private final int generation;
+  /**
+   * the identity of the server that has created the token.
+   */
+  private final int creator;
+
+  /**
+   * constructs the content of a message of the mutual exclusion.
+   *
+   * @param generation
+   *          the generation of the token.
+   * @param creator
+   *          the identity of the server that has created the token.
+   */
+  public TokenContent(final int generation, final int creator) {
+    this.generation = generation;
+    this.creator = creator;
+  }
+
+  /**
+   * gets the generation of the token.
+   *
+   * @return the generation of the token.
+   */
+  public int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * gets the identity of the server that has created the token.
+   *
+   * @return the identity of the server that has created the token.
+   */
+  public int getCreator() {
+    return creator;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenContent [generation=" + generation + ", creator=" + creator + "]";
+  }
+}
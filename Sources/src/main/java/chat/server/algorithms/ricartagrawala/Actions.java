@@ -0,0 +1,188 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.ricartagrawala;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+
+import chat.common.MsgWorker;
+import chat.server.State;
+import chat.server.algorithms.CriticalSection;
+
+/**
+ * This class defines the methods implementing the reaction of the state machine part concerning the
+ * reception of the messages of the algorithm of mutual exclusion of Ricart and Agrawala. A server
+ * that needs to enter a critical section sends a request, stamped with its Lamport clock, to all
+ * its neighbours, and enters when all of them have replied. A server replies at once, unless it is
+ * in a critical section or its own request is older, the ties being broken by the identities: the
+ * reply is then deferred until the exit of the critical section. The algorithm needs a fully
+ * connected cluster, and costs 2(n - 1) messages per entry on a cluster of n servers; it is the
+ * baseline of Raymond's algorithm (see {@link chat.server.algorithms.MutualExclusionAlgorithm}).
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * requests a critical section, which is executed when all the neighbours have replied.
+   *
+   * @param state
+   *          the state of the server.
+   * @param section
+   *          the code of the critical section.
+   */
+  public static void requestCriticalSection(final State state, final Runnable section) {
+    synchronized (state) {
+      state.getPendingSections().add(new CriticalSection(section, state.getServer().now()));
+      if (state.getRequestTimestamp() == -1 && !state.isInCriticalSection()) {
+        broadcastRequest(state);
+      }
+    }
+    enter(state);
+  }
+
+  /**
+   * treats a request message.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveRequest(final State state, final RicartAgrawalaContent content) {
+    synchronized (state) {
+      state.setLamportClock(Math.max(state.getLamportClock(), content.getTimestamp()) + 1);
+      int timestamp = state.getRequestTimestamp();
+      if (state.isInCriticalSection()
+          || timestamp != -1 && (timestamp < content.getTimestamp()
+              || timestamp == content.getTimestamp()
+                  && state.getIdentity() < content.getSender())) {
+        if (LOG_ON && COMM.isDebugEnabled()) {
+          COMM.debug("reply to {} deferred", content.getSender());
+        }
+        state.getDeferredReplies().add(state.currWorker);
+      } else {
+        send(state, state.currWorker, Algorithm.REPLY_MESSAGE, state.getLamportClock());
+      }
+    }
+  }
+
+  /**
+   * treats a reply message. A server has at most one request at a time, whose replies are all
+   * received before the next request: a reply is therefore a reply to the current request.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveReply(final State state, final RicartAgrawalaContent content) {
+    synchronized (state) {
+      state.setNbReplies(state.getNbReplies() + 1);
+    }
+    enter(state);
+  }
+
+  /**
+   * executes the critical sections of this server while all the neighbours have replied. The
+   * critical sections are executed without holding the lock of the state; at the exit, the
+   * deferred replies are sent, and the next critical section is requested.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void enter(final State state) {
+    while (true) {
+      CriticalSection section;
+      synchronized (state) {
+        if (state.getRequestTimestamp() == -1 || state.isInCriticalSection()
+            || state.getNbReplies() < state.allServerWorkers.size()) {
+          return;
+        }
+        state.setInCriticalSection(true);
+        section = state.getPendingSections().poll();
+      }
+      try {
+        section.execute(state);
+      } finally {
+        synchronized (state) {
+          state.setInCriticalSection(false);
+          state.setRequestTimestamp(-1);
+          for (MsgWorker worker : state.getDeferredReplies()) {
+            send(state, worker, Algorithm.REPLY_MESSAGE, state.getLamportClock());
+          }
+          state.getDeferredReplies().clear();
+          if (!state.getPendingSections().isEmpty()) {
+            broadcastRequest(state);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * sends a request of the next critical section to all the neighbours. This method is called when
+   * holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   */
+  private static void broadcastRequest(final State state) {
+    state.setLamportClock(state.getLamportClock() + 1);
+    state.setRequestTimestamp(state.getLamportClock());
+    state.setNbReplies(0);
+    for (MsgWorker worker : state.allServerWorkers) {
+      send(state, worker, Algorithm.REQUEST_MESSAGE, state.getRequestTimestamp());
+    }
+  }
+
+  /**
+   * sends a message to a neighbour. This method is called when holding the lock of the state.
+   *
+   * @param state
+   *          the state of the server.
+   * @param worker
+   *          the message worker of the neighbour.
+   * @param type
+   *          the type of the message.
+   * @param timestamp
+   *          the timestamp of the request, or the clock of this server for a reply.
+   */
+  private static void send(final State state, final MsgWorker worker, final Algorithm type,
+      final int timestamp) {
+    try {
+      state.getServer().sendToAServer(worker, type.identifier(), state.getIdentity(),
+          state.seqNumber, new RicartAgrawalaContent(timestamp, state.getIdentity()));
+    } catch (IOException e) {
+      COMM.warn("cannot send a message of the mutual exclusion: {}", e.getLocalizedMessage());
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.ricartagrawala;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the messages of the algorithm of mutual exclusion of Ricart
+ * and Agrawala: the Lamport timestamp of the request and the identity of the sender, which breaks
+ * the ties between the requests of the same timestamp.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class RicartAgrawalaContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the Lamport timestamp of the request.
+   */
+  private final int timestamp;
+  /**
+   * the identity of the sender.
+   */
+  private final int sender;
+
+  /**
+   * constructs the content of a message of the mutual exclusion.
+   *
+   * @param timestamp
+   *          the Lamport timestamp of the request.
+   * @param sender
+   *          the identity of the sender.
+   */
+  public RicartAgrawalaContent(final int timestamp, final int sender) {
+    this.timestamp = timestamp;
+    this.sender = sender;
+  }
+
+  /**
+   * gets the Lamport timestamp of the request.
+   *
+   * @return the Lamport timestamp of the request.
+   */
+  public int getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * gets the identity of the sender.
+   *
+   * @return the identity of the sender.
+   */
+  public int getSender() {
+    return sender;
+  }
+
+  @Override
+  public String toString() {
+    return "RicartAgrawalaContent [timestamp=" + timestamp + ", sender=" + sender + "]";
+  }
+}
@@ -0,0 +1,574 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.rooms;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.client.algorithms.chat.RoomContent;
+import chat.common.MsgWorker;
+import chat.common.VectorClock;
+import chat.server.State;
+
+/**
+ * This class defines the methods implementing the routes of the rooms. The chat messages of the
+ * room {@value ChatMessageContent#DEFAULT_ROOM} are flooded to all the servers, as the messages
+ * without room. The messages of the other rooms are only forwarded to the local clients of the room
+ * and on the links through which servers with clients in the room are reached:
+ * <ul>
+ * <li>when the first local client joins a room, or when the last one leaves it, the server floods
+ * an interest message, numbered with a version that increases at every announcement;</li>
+ * <li>a server that receives a new version of the interest of a server in a room records the
+ * server in the subscription table of the link from which the message has been received, that is
+ * the reverse path of the flood, and floods the message to its other neighbours;</li>
+ * <li>a message of a room is forwarded on the links whose subscription table contains the room.
+ * Since every server forwards the message towards every subscriber along the reverse path of the
+ * interest of the subscriber, a message reaches all the subscribers, and the duplicates are
+ * dropped by the sliding windows of the sequence numbers of the clients per room (see
+ * {@link SeqWindow}).</li>
+ * </ul>
+ * A new neighbour is sent the interests known by the server. When a link is lost, the routes
+ * through the link are dropped and the server announces its rooms again; the routes of the other
+ * servers crossing the link are rebuilt when these servers announce their rooms again.
+ *
+ * The server keeps the vector clock of the chat messages forwarded in every room it follows, which
+ * is sent to the local clients that join the room, so that they deliver the messages that follow.
+ *
+ * Every room that is not flooded has a home server, given by a consistent-hash ring over the
+ * servers elected together (see {@link HashRing} and {@link #membersElected(State, Set)}). The
+ * server of the sender relays the message towards the home server along the tree of the election,
+ * and the home server fans it out to the subscribers: the messages of a room are thus serialised by
+ * its home server, and the load of the rooms is spread over the servers. When the servers of the
+ * ring change, only the rooms of the arcs of the servers that have joined or left the ring change
+ * of home; the messages in transit towards an old home are relayed to the new one, and a server
+ * that cannot reach the home of a room fans the message out itself. Before the first election,
+ * there is no ring and the server of the sender fans the messages out. The methods are called when
+ * holding the lock of the state.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Actions {
+
+  /**
+   * avoids the creation of instances.
+   */
+  private Actions() {
+  }
+
+  /**
+   * gets the room of a client message.
+   *
+   * @param msg
+   *          the message.
+   * @return the room of the message, or {@link ChatMessageContent#DEFAULT_ROOM} for the messages
+   *         without room.
+   */
+  public static String roomOf(final Serializable msg) {
+    if (msg instanceof ChatMessageContent) {
+      return ((ChatMessageContent) msg).getRoom();
+    }
+    return ChatMessageContent.DEFAULT_ROOM;
+  }
+
+  /**
+   * states whether the messages of a room are flooded to all the servers.
+   *
+   * @param room
+   *          the room, or {@code null} for the messages of the algorithms of the servers.
+   * @return {@code true} if the messages are flooded.
+   */
+  public static boolean isFlooded(final String room) {
+    return room == null || ChatMessageContent.DEFAULT_ROOM.equals(room);
+  }
+
+  /**
+   * states whether a local client is in a room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param client
+   *          the message worker of the client.
+   * @param room
+   *          the room.
+   * @return {@code true} if the client is in the room.
+   */
+  public static boolean isMember(final State state, final MsgWorker client, final String room) {
+    Set<String> rooms = state.getClientRooms().get(client);
+    return rooms != null && rooms.contains(room);
+  }
+
+  /**
+   * states whether servers with clients in a room are reached through a link.
+   *
+   * @param state
+   *          the state of the server.
+   * @param link
+   *          the message worker of the link.
+   * @param room
+   *          the room.
+   * @return {@code true} if the messages of the room are forwarded on the link.
+   */
+  public static boolean isRouted(final State state, final MsgWorker link, final String room) {
+    Map<String, Set<Integer>> table = state.getLinkRooms().get(link);
+    return table != null && table.containsKey(room);
+  }
+
+  /**
+   * states whether a local client is the sender of a message, which is not sent back to it when
+   * the message comes back from the home server of its room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param client
+   *          the message worker of the client.
+   * @param identity
+   *          the identity of the sender of the message.
+   * @return {@code true} if the client is the sender.
+   */
+  public static boolean isSender(final State state, final MsgWorker client, final int identity) {
+    Integer clientIdentity = state.getClientIdentities().get(client);
+    return clientIdentity != null && clientIdentity == identity;
+  }
+
+  /**
+   * states whether a client message has not already been received, and records its sequence
+   * number. The flooded messages follow the tree of the servers and arrive in the order of their
+   * sequence numbers, whose greatest one is kept per client. The sequence numbers of the other
+   * rooms are kept per room and per client in a sliding window (see {@link SeqWindow}), so that
+   * the messages of a client in different rooms may take different routes, and that a message
+   * overtaken by a later one of the same client in the room is not dropped.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room of the message.
+   * @param identity
+   *          the identity of the client.
+   * @param seqNumber
+   *          the sequence number of the message.
+   * @return {@code true} if the message is new.
+   */
+  public static boolean isNew(final State state, final String room, final int identity,
+      final int seqNumber) {
+    if (!isFlooded(room)) {
+      return state.getRoomSeqNumbers().computeIfAbsent(room, r -> new HashMap<>())
+          .computeIfAbsent(identity, i -> new SeqWindow(SeqWindow.DEFAULT_SIZE)).add(seqNumber);
+    }
+    Integer last = state.clientSeqNumbers.get(identity);
+    if (last != null && seqNumber <= last) {
+      return false;
+    }
+    state.clientSeqNumbers.put(identity, seqNumber);
+    return true;
+  }
+
+  /**
+   * counts the entries of the tables of the last sequence numbers of the clients.
+   *
+   * @param state
+   *          the state of the server.
+   * @return the number of entries.
+   */
+  public static int dedupEntries(final State state) {
+    int nb = state.clientSeqNumbers.size();
+    for (Map<Integer, SeqWindow> seqNumbers : state.getRoomSeqNumbers().values()) {
+      nb += seqNumbers.size();
+    }
+    return nb;
+  }
+
+  /**
+   * gets the next hop of a message of a room towards the home server of the room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room, which is not flooded.
+   * @param hops
+   *          the number of servers crossed by the message, which bounds the relays when the
+   *          servers do not agree on the ring yet.
+   * @return the link towards the home server, or {@code null} when the message is fanned out by
+   *         this server.
+   */
+  public static MsgWorker nextHopToHome(final State state, final String room, final int hops) {
+    HashRing ring = state.getRing();
+    if (ring == null) {
+      return null;
+    }
+    int home = ring.home(room);
+    if (home == state.getIdentity() || hops > ring.getServers().size()) {
+      return null;
+    }
+    return state.getMemberRoutes().get(home);
+  }
+
+  /**
+   * replaces the servers of the ring by the servers elected together, and computes the link of the
+   * tree of the election through which every one of them is reached. The ring is only rebuilt when
+   * its servers change.
+   *
+   * @param state
+   *          the state of the server.
+   * @param members
+   *          the identities of the servers elected together.
+   */
+  public static void membersElected(final State state, final Set<Integer> members) {
+    if (members.isEmpty()) {
+      return;
+    }
+    state.getMemberRoutes().clear();
+    for (int member : members) {
+      MsgWorker route = state.getWaveRoutes().getOrDefault(member,
+          state.getElectionParentWorker());
+      if (member != state.getIdentity() && route != null) {
+        state.getMemberRoutes().put(member, route);
+      }
+    }
+    HashRing ring = state.getRing();
+    if (ring == null || !ring.getServers().equals(members)) {
+      state.setRing(new HashRing(members));
+      if (LOG_ON && COMM.isInfoEnabled()) {
+        COMM.info("new ring of the rooms: {}", members);
+      }
+    }
+  }
+
+  /**
+   * treats a chat message relayed towards the home server of its room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveHomeContent(final State state, final HomeContent content) {
+    synchronized (state) {
+      try {
+        state.getServer().toHome(null, content.getIdentity(), content.getSeqNumber(),
+            content.getOriginTime(), content.getHops(), content.getMessage());
+      } catch (IOException e) {
+        COMM.warn("cannot relay a message to its home: {}", e.getLocalizedMessage());
+      }
+    }
+  }
+
+  /**
+   * puts a new local client in the room {@value ChatMessageContent#DEFAULT_ROOM}.
+   *
+   * @param state
+   *          the state of the server.
+   * @param client
+   *          the message worker of the client.
+   * @param identity
+   *          the identity given to the client.
+   */
+  public static void clientJoined(final State state, final MsgWorker client, final int identity) {
+    Set<String> rooms = new HashSet<>();
+    rooms.add(ChatMessageContent.DEFAULT_ROOM);
+    state.getClientRooms().put(client, rooms);
+    state.getClientIdentities().put(client, identity);
+  }
+
+  /**
+   * removes a local client that has left from all its rooms.
+   *
+   * @param state
+   *          the state of the server.
+   * @param client
+   *          the message worker of the client.
+   */
+  public static void clientLeft(final State state, final MsgWorker client) {
+    Set<String> rooms = state.getClientRooms().get(client);
+    if (rooms == null) {
+      return;
+    }
+    for (String room : new ArrayList<>(rooms)) {
+      leaveRoom(state, client, room);
+    }
+    state.getClientRooms().remove(client);
+    state.getClientIdentities().remove(client);
+  }
+
+  /**
+   * records the vector clock of a chat message forwarded by the server in the vector clock of its
+   * room, when the room is followed.
+   *
+   * @param state
+   *          the state of the server.
+   * @param msg
+   *          the message.
+   */
+  public static void recordClock(final State state, final Serializable msg) {
+    if (!(msg instanceof ChatMessageContent)) {
+      return;
+    }
+    ChatMessageContent content = (ChatMessageContent) msg;
+    VectorClock clock = isFlooded(content.getRoom())
+        ? state.getRoomClocks().computeIfAbsent(ChatMessageContent.DEFAULT_ROOM,
+            r -> new VectorClock())
+        : state.getRoomClocks().get(content.getRoom());
+    if (clock != null && content.getHorloge() != null) {
+      clock.max(content.getHorloge());
+    }
+  }
+
+  /**
+   * builds the acknowledgement of the joining of a room by a local client, with a copy of the
+   * vector clock of the room. The history of the room is partial when the client is the first
+   * local client of the room while servers with clients in the room are already reached: the
+   * messages sent before the join have not been forwarded by the server.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room.
+   * @return the content of the acknowledgement.
+   */
+  public static RoomContent joinAck(final State state, final String room) {
+    VectorClock clock = state.getRoomClocks().computeIfAbsent(isFlooded(room)
+        ? ChatMessageContent.DEFAULT_ROOM : room, r -> new VectorClock());
+    boolean partial = false;
+    if (!isFlooded(room) && state.getLocalRooms().getOrDefault(room, 0) == 1) {
+      for (Map<String, Set<Integer>> table : state.getLinkRooms().values()) {
+        partial |= table.containsKey(room);
+      }
+    }
+    return new RoomContent(room, (VectorClock) clock.clone(), partial);
+  }
+
+  /**
+   * puts a local client in a room. The interest of the server is announced when the client is the
+   * first local client of the room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param client
+   *          the message worker of the client.
+   * @param room
+   *          the room.
+   */
+  public static void joinRoom(final State state, final MsgWorker client, final String room) {
+    Set<String> rooms = state.getClientRooms().computeIfAbsent(client, c -> new HashSet<>());
+    if (!rooms.add(room) || isFlooded(room)) {
+      return;
+    }
+    if (state.getLocalRooms().merge(room, 1, Integer::sum) == 1) {
+      state.getRoomClocks().put(room, new VectorClock());
+      announce(state, room, true);
+    }
+  }
+
+  /**
+   * removes a local client from a room. The end of the interest of the server is announced when
+   * the client is the last local client of the room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param client
+   *          the message worker of the client.
+   * @param room
+   *          the room.
+   */
+  public static void leaveRoom(final State state, final MsgWorker client, final String room) {
+    Set<String> rooms = state.getClientRooms().get(client);
+    if (rooms == null || !rooms.remove(room) || isFlooded(room)) {
+      return;
+    }
+    if (state.getLocalRooms().merge(room, -1, Integer::sum) == 0) {
+      state.getLocalRooms().remove(room);
+      state.getRoomClocks().remove(room);
+      announce(state, room, false);
+    }
+  }
+
+  /**
+   * sends the interests known by the server to a new neighbour, so that the neighbour routes the
+   * messages of these rooms towards this server.
+   *
+   * @param state
+   *          the state of the server.
+   * @param link
+   *          the message worker of the link with the new neighbour.
+   */
+  public static void linkAdded(final State state, final MsgWorker link) {
+    for (Map.Entry<String, Map<Integer, Integer>> room : state.getInterestVersions().entrySet()) {
+      for (Map.Entry<Integer, Integer> origin : room.getValue().entrySet()) {
+        if (isSubscribed(state, room.getKey(), origin.getKey())) {
+          send(state, link, new InterestContent(room.getKey(), origin.getKey(), true,
+              origin.getValue()));
+        }
+      }
+    }
+  }
+
+  /**
+   * drops the routes of the rooms and of the ring through a lost link, and announces the rooms of
+   * the server again.
+   *
+   * @param state
+   *          the state of the server.
+   * @param link
+   *          the message worker of the lost link.
+   */
+  public static void linkLost(final State state, final MsgWorker link) {
+    state.getLinkRooms().remove(link);
+    state.getMemberRoutes().values().removeIf(route -> route == link);
+    for (String room : new ArrayList<>(state.getLocalRooms().keySet())) {
+      announce(state, room, true);
+    }
+  }
+
+  /**
+   * treats an interest message: a new version of the interest of a server in a room updates the
+   * routes of the room and is flooded to the other neighbours.
+   *
+   * @param state
+   *          the state of the server.
+   * @param content
+   *          the content of the message to treat.
+   */
+  public static void receiveInterestContent(final State state, final InterestContent content) {
+    synchronized (state) {
+      if (content.getOrigin() == state.getIdentity()) {
+        return;
+      }
+      Map<Integer, Integer> versions = state.getInterestVersions()
+          .computeIfAbsent(content.getRoom(), r -> new HashMap<>());
+      Integer last = versions.get(content.getOrigin());
+      if (last != null && content.getVersion() <= last) {
+        return;
+      }
+      versions.put(content.getOrigin(), content.getVersion());
+      unroute(state, content.getRoom(), content.getOrigin());
+      if (content.isSubscribed()) {
+        state.getLinkRooms().computeIfAbsent(state.currWorker, l -> new HashMap<>())
+            .computeIfAbsent(content.getRoom(), r -> new HashSet<>()).add(content.getOrigin());
+      }
+      if (LOG_ON && COMM.isDebugEnabled()) {
+        COMM.debug("routes of the rooms: {}", state.getLinkRooms());
+      }
+      try {
+        state.getServer().sendToAllServersExceptOne(state.currWorker,
+            Algorithm.INTEREST_MESSAGE.identifier(), state.getIdentity(), state.seqNumber,
+            content);
+      } catch (IOException e) {
+        COMM.warn("cannot flood the interest: {}", e.getLocalizedMessage());
+      }
+    }
+  }
+
+  /**
+   * floods a new version of the interest of this server in a room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room.
+   * @param subscribed
+   *          the interest of the server.
+   */
+  private static void announce(final State state, final String room, final boolean subscribed) {
+    state.setInterestVersion(state.getInterestVersion() + 1);
+    state.getInterestVersions().computeIfAbsent(room, r -> new HashMap<>())
+        .put(state.getIdentity(), state.getInterestVersion());
+    try {
+      state.getServer().sendToAllServers(Algorithm.INTEREST_MESSAGE.identifier(),
+          state.getIdentity(), state.seqNumber,
+          new InterestContent(room, state.getIdentity(), subscribed, state.getInterestVersion()));
+    } catch (IOException e) {
+      COMM.warn("cannot flood the interest: {}", e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * states whether a server has clients in a room, as known by this server.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room.
+   * @param origin
+   *          the identity of the server.
+   * @return {@code true} if the server has clients in the room.
+   */
+  private static boolean isSubscribed(final State state, final String room, final int origin) {
+    if (origin == state.getIdentity()) {
+      return state.getLocalRooms().containsKey(room);
+    }
+    for (Map<String, Set<Integer>> table : state.getLinkRooms().values()) {
+      Set<Integer> origins = table.get(room);
+      if (origins != null && origins.contains(origin)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * removes a server from the subscription tables of a room.
+   *
+   * @param state
+   *          the state of the server.
+   * @param room
+   *          the room.
+   * @param origin
+   *          the identity of the server.
+   */
+  private static void unroute(final State state, final String room, final int origin) {
+    for (Map<String, Set<Integer>> table : state.getLinkRooms().values()) {
+      Set<Integer> origins = table.get(room);
+      if (origins != null && origins.remove(origin) && origins.isEmpty()) {
+        table.remove(room);
+      }
+    }
+  }
+
+  /**
+   * sends an interest message to a neighbour.
+   *
+   * @param state
+   *          the state of the server.
+   * @param link
+   *          the message worker of the neighbour.
+   * @param content
+   *          the content of the message.
+   */
+  private static void send(final State state, final MsgWorker link,
+      final InterestContent content) {
+    try {
+      state.getServer().sendToAServer(link, Algorithm.INTEREST_MESSAGE.identifier(),
+          state.getIdentity(), state.seqNumber, content);
+    } catch (IOException e) {
+      COMM.warn("cannot send the interest: {}", e.getLocalizedMessage());
+    }
+  }
+}
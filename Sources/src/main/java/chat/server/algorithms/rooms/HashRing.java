@@ -0,0 +1,130 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.rooms;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * This class defines a consistent-hash ring over the identities of the servers, which gives the
+ * home server of every room. Every server is placed at {@link #VIRTUAL_NODES} points of the ring,
+ * and the home of a room is the server of the first point that follows the hash of the room. When
+ * a server joins or leaves the ring, only the rooms of the arcs that precede its points change of
+ * home, that is about {@code 1/n} of the rooms for {@code n} servers. The hash is computed from the
+ * UTF-8 bytes of the names, so that all the servers compute the same ring from the same identities.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class HashRing {
+  /**
+   * the number of points of every server on the ring.
+   */
+  public static final int VIRTUAL_NODES = 64;
+  /**
+   * the offset basis of the FNV-1a hash.
+   */
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  /**
+   * the prime of the FNV-1a hash.
+   */
+  private static final long FNV_PRIME = 0x100000001b3L;
+  /**
+   * the servers of the ring.
+   */
+  private final Set<Integer> servers;
+  /**
+   * the points of the ring, with the identity of their server.
+   */
+  private final TreeMap<Long, Integer> points = new TreeMap<>();
+
+  /**
+   * constructs the ring of a set of servers.
+   *
+   * @param servers
+   *          the identities of the servers.
+   */
+  public HashRing(final Collection<Integer> servers) {
+    if (servers == null || servers.isEmpty()) {
+      throw new IllegalArgumentException("no server in the ring");
+    }
+    this.servers = Collections.unmodifiableSet(new TreeSet<>(servers));
+    for (int server : this.servers) {
+      for (int point = 0; point < VIRTUAL_NODES; point++) {
+        points.put(hash("server-" + server + "#" + point), server);
+      }
+    }
+  }
+
+  /**
+   * gets the servers of the ring.
+   *
+   * @return the identities of the servers.
+   */
+  public Set<Integer> getServers() {
+    return servers;
+  }
+
+  /**
+   * gets the home server of a room.
+   *
+   * @param room
+   *          the room.
+   * @return the identity of the home server.
+   */
+  public int home(final String room) {
+    Map.Entry<Long, Integer> point = points.ceilingEntry(hash(room));
+    return point != null ? point.getValue() : points.firstEntry().getValue();
+  }
+
+  /**
+   * computes the 64-bit FNV-1a hash of a name, with the final mix of MurmurHash3 so that the close
+   * names are spread on the ring.
+   *
+   * @param name
+   *          the name.
+   * @return the hash.
+   */
+  static long hash(final String name) {
+    long h = FNV_OFFSET;
+    for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= FNV_PRIME;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb93fe1a85ec3L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return "HashRing " + servers;
+  }
+}
@@ -0,0 +1,133 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.rooms;
+
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the message that relays a chat message to the home server of
+ * its room, with the header of the chat message.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class HomeContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the identity of the client that has sent the message.
+   */
+  private final int identity;
+  /**
+   * the sequence number given to the message by the server of the client.
+   */
+  private final int seqNumber;
+  /**
+   * the origin time of the message, or {@link chat.common.MsgWorker#UNTRACED}.
+   */
+  private final long originTime;
+  /**
+   * the number of servers crossed by the message.
+   */
+  private final int hops;
+  /**
+   * the chat message.
+   */
+  private final ChatMessageContent message;
+
+  /**
+   * constructs the content of a message relayed to the home server of a room.
+   *
+   * @param identity
+   *          the identity of the client that has sent the message.
+   * @param seqNumber
+   *          the sequence number given to the message by the server of the client.
+   * @param originTime
+   *          the origin time of the message, or {@link chat.common.MsgWorker#UNTRACED}.
+   * @param hops
+   *          the number of servers crossed by the message.
+   * @param message
+   *          the chat message.
+   */
+  public HomeContent(final int identity, final int seqNumber, final long originTime,
+      final int hops, final ChatMessageContent message) {
+    this.identity = identity;
+    this.seqNumber = seqNumber;
+    this.originTime = originTime;
+    this.hops = hops;
+    this.message = message;
+  }
+
+  /**
+   * gets the identity of the client that has sent the message.
+   *
+   * @return the identity of the client that has sent the message.
+   */
+  public int getIdentity() {
+    return identity;
+  }
+
+  /**
+   * gets the sequence number of the message.
+   *
+   * @return the sequence number of the message.
+   */
+  public int getSeqNumber() {
+    return seqNumber;
+  }
+
+  /**
+   * gets the origin time of the message.
+   *
+   * @return the origin time of the message.
+   */
+  public long getOriginTime() {
+    return originTime;
+  }
+
+  /**
+   * gets the number of servers crossed by the message.
+   *
+   * @return the number of servers crossed by the message.
+   */
+  public int getHops() {
+    return hops;
+  }
+
+  /**
+   * gets the chat message.
+   *
+   * @return the chat message.
+   */
+  public ChatMessageContent getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return "HomeContent [identity=" + identity + ", seqNumber=" + seqNumber + ", originTime="
+        + originTime + ", hops=" + hops + ", message=" + message + "]";
+  }
+}
@@ -0,0 +1,116 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.rooms;
+
+import chat.common.AbstractContent;
+
+/**
+ * This class defines the content of the interest message of the rooms, by which a server
+ * announces that it has local clients in a room or that it has no more.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class InterestContent extends AbstractContent {
+  /**
+   * version number for serialization.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * the room.
+   */
+  private final String room;
+  /**
+   * the identity of the server that announces its interest.
+   */
+  private final int origin;
+  /**
+   * the interest of the server: whether it has local clients in the room.
+   */
+  private final boolean subscribed;
+  /**
+   * the version of the interest, which increases at every announcement of the server.
+   */
+  private final int version;
+
+  /**
+   * constructs the content of an interest message.
+   *
+   * @param room
+   *          the room.
+   * @param origin
+   *          the identity of the server that announces its interest.
+   * @param subscribed
+   *          the interest of the server: whether it has local clients in the room.
+   * @param version
+   *          the version of the interest, which increases at every announcement of the server.
+   */
+  public InterestContent(final String room, final int origin, final boolean subscribed,
+      final int version) {
+    this.room = room;
+    this.origin = origin;
+    this.subscribed = subscribed;
+    this.version = version;
+  }
+
+  /**
+   * gets the room.
+   *
+   * @return the room.
+   */
+  public String getRoom() {
+    return room;
+  }
+
+  /**
+   * gets the identity of the server that announces its interest.
+   *
+   * @return the identity of the server that announces its interest.
+   */
+  public int getOrigin() {
+    return origin;
+  }
+
+  /**
+   * states whether the server has local clients in the room.
+   *
+   * @return the interest of the server.
+   */
+  public boolean isSubscribed() {
+    return subscribed;
+  }
+
+  /**
+   * gets the version of the interest.
+   *
+   * @return the version of the interest.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return "InterestContent [room=" + room + ", origin=" + origin + ", subscribed=" + subscribed
+        + ", version=" + version + "]";
+  }
+}
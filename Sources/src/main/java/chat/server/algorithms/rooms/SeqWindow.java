@@ -0,0 +1,157 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server.algorithms.rooms;
+
+import java.util.Arrays;
+
+/**
+ * This class defines the sliding window of the sequence numbers of the messages of a client in a
+ * room that have been received by a server. The window remembers the greatest sequence number
+ * received and which ones of the {@code size} sequence numbers below it have been received, so
+ * that a message overtaken by a later one of the same client, e.g. when it is relayed towards the
+ * home server of the room while the later one is fanned out directly, is still delivered. A
+ * sequence number that has fallen out of the window is taken for a duplicate and the message is
+ * dropped by the server. The memory of a window does not depend on the number of messages.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class SeqWindow {
+  /**
+   * the default number of sequence numbers remembered below the greatest one.
+   */
+  public static final int DEFAULT_SIZE = 512;
+  /**
+   * the number of sequence numbers of the window.
+   */
+  private final int size;
+  /**
+   * the bits of the sequence numbers received, indexed modulo the size of the window.
+   */
+  private final long[] bits;
+  /**
+   * the greatest sequence number received, if any.
+   */
+  private int highest;
+  /**
+   * states whether a sequence number has been received.
+   */
+  private boolean empty = true;
+
+  /**
+   * constructs an empty window.
+   *
+   * @param size
+   *          the number of sequence numbers of the window, a positive multiple of {@code 64}.
+   */
+  public SeqWindow(final int size) {
+    if (size <= 0 || size % Long.SIZE != 0) {
+      throw new IllegalArgumentException("invalid size of the window (" + size + ")");
+    }
+    this.size = size;
+    this.bits = new long[size / Long.SIZE];
+  }
+
+  /**
+   * records a sequence number, unless it has already been received or has fallen out of the
+   * window. The window slides when the sequence number is greater than the greatest one.
+   *
+   * @param seqNumber
+   *          the sequence number.
+   * @return {@code true} if the sequence number is new.
+   */
+  public boolean add(final int seqNumber) {
+    if (empty) {
+      empty = false;
+      highest = seqNumber;
+      set(seqNumber);
+      return true;
+    }
+    long ahead = (long) seqNumber - highest;
+    if (ahead > 0) {
+      if (ahead >= size) {
+        Arrays.fill(bits, 0);
+      } else {
+        // forgets the sequence numbers that leave the window
+        for (long skipped = highest + 1L; skipped < seqNumber; skipped++) {
+          clear(skipped);
+        }
+      }
+      highest = seqNumber;
+      set(seqNumber);
+      return true;
+    }
+    if (-ahead >= size || isSet(seqNumber)) {
+      return false;
+    }
+    set(seqNumber);
+    return true;
+  }
+
+  /**
+   * gets the greatest sequence number received.
+   *
+   * @return the sequence number, or {@code -1} when the window is empty.
+   */
+  public int getHighest() {
+    return empty ? -1 : highest;
+  }
+
+  /**
+   * sets the bit of a sequence number.
+   *
+   * @param seqNumber
+   *          the sequence number.
+   */
+  private void set(final long seqNumber) {
+    int index = (int) Math.floorMod(seqNumber, (long) size);
+    bits[index / Long.SIZE] |= 1L << index;
+  }
+
+  /**
+   * clears the bit of a sequence number.
+   *
+   * @param seqNumber
+   *          the sequence number.
+   */
+  private void clear(final long seqNumber) {
+    int index = (int) Math.floorMod(seqNumber, (long) size);
+    bits[index / Long.SIZE] &= ~(1L << index);
+  }
+
+  /**
+   * states whether the bit of a sequence number is set.
+   *
+   * @param seqNumber
+   *          the sequence number.
+   * @return {@code true} if the bit is set.
+   */
+  private boolean isSet(final long seqNumber) {
+    int index = (int) Math.floorMod(seqNumber, (long) size);
+    return (bits[index / Long.SIZE] & 1L << index) != 0;
+  }
+
+  @Override
+  public String toString() {
+    return "SeqWindow [size=" + size + ", highest=" + getHighest() + "]";
+  }
+}
@@ -0,0 +1,309 @@
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat.server;
+
+import static chat.common.Log.COMM;
+import static chat.common.Log.GEN;
+import static chat.common.Log.LOG_ON;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+import chat.common.FullDuplexMsgWorker;
+import chat.common.MsgWorker;
+import chat.common.ReadMessageStatus;
+
+/**
+ * This class defines the engine of the chat server that runs one virtual thread per connection for
+ * the blocking reads, and one virtual thread per connection for the blocking writes (see
+ * {@link FullDuplexMsgWorker#useDedicatedWriter()}). The connections are accepted by two virtual
+ * threads, one per listening channel.
+ *
+ * This class needs Java 21 and is only compiled with the profile {@code java21}. It is selected with
+ * the engine name {@link Server#VIRTUAL_ENGINE}.
+ *
+ * NB: the messages are given to the server in mutual exclusion on its state (a monitor). With Java
+ * 21, a virtual thread that waits for a monitor pins its carrier thread; the critical sections of
+ * the server do not block on I/O, so that the pinning only lasts the time of the treatment.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class VirtualThreadEngine implements ServerEngine {
+  /**
+   * backward reference to the server in order to give it the messages received.
+   */
+  private final Server server;
+  /**
+   * state of the server object.
+   */
+  private final State state;
+  /**
+   * server socket channel for accepting client connections.
+   */
+  private final ServerSocketChannel listenChanClient;
+  /**
+   * server socket channel for accepting server connections.
+   */
+  private final ServerSocketChannel listenChanServer;
+  /**
+   * the writer threads of the open connections, which are interrupted when the connection is
+   * closed.
+   */
+  private final Map<FullDuplexMsgWorker, Thread> writers;
+  /**
+   * the factory of the virtual threads.
+   */
+  private final ThreadFactory factory;
+
+  /**
+   * creates the channels that are accepting connections from clients and servers.
+   *
+   * @param server
+   *          the reference to the server.
+   * @param state
+   *          the reference to the state object of the server.
+   * @param clientPort
+   *          the port number for accepting connections from clients.
+   * @param serverPort
+   *          the port number for accepting connections from servers.
+   */
+  public VirtualThreadEngine(final Server server, final State state, final int clientPort,
+      final int serverPort) {
+    if (server == null || state == null) {
+      throw new IllegalArgumentException("One of the argument is null (" + server
+          + ", " + state + ")");
+    }
+    this.server = server;
+    this.state = state;
+    try {
+      listenChanClient = ServerSocketChannel.open();
+      listenChanServer = ServerSocketChannel.open();
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot open the server sockets");
+    }
+    try {
+      listenChanClient.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      listenChanServer.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot set the SO_REUSEADDR option");
+    }
+    try {
+      listenChanClient.bind(new InetSocketAddress(clientPort));
+      listenChanServer.bind(new InetSocketAddress(serverPort));
+    } catch (IOException e) {
+      throw new IllegalStateException("cannot bind to a server socket");
+    }
+    writers = new ConcurrentHashMap<>();
+    factory = Thread.ofVirtual().name("chat-server-" + state.getIdentity() + "-", 0).factory();
+    if (LOG_ON && COMM.isInfoEnabled()) {
+      COMM.info("  listenChanClient ok on port " + clientPort);
+      COMM.info("  listenChanServer ok on port " + serverPort);
+    }
+  }
+
+  @Override
+  public MsgWorker connectToServer(final InetSocketAddress address) throws IOException {
+    SocketChannel rwChan = SocketChannel.open(address);
+    FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
+    worker.useDedicatedWriter();
+    server.registerServer(worker);
+    startConnection(worker, true);
+    return worker;
+  }
+
+  /**
+   * starts the threads accepting the connections and waits for the interruption of the thread of
+   * the server. The channels are then closed.
+   */
+  @Override
+  public void run() {
+    if (LOG_ON && GEN.isDebugEnabled()) {
+      GEN.debug("Server thread for rcving msgs from the network started (virtual threads)");
+    }
+    Thread clientAcceptor = factory.newThread(() -> acceptLoop(listenChanClient, false));
+    Thread serverAcceptor = factory.newThread(() -> acceptLoop(listenChanServer, true));
+    clientAcceptor.start();
+    serverAcceptor.start();
+    try {
+      clientAcceptor.join();
+      serverAcceptor.join();
+    } catch (InterruptedException e) {
+      if (LOG_ON && GEN.isDebugEnabled()) {
+        GEN.debug("Server thread for rcving msgs from the network interrupted");
+      }
+    } finally {
+      shutdown();
+    }
+  }
+
+  /**
+   * accepts the connections of a listening channel until it is closed.
+   *
+   * @param listenChan
+   *          the listening channel.
+   * @param fromServer
+   *          states whether the connections come from servers or from clients.
+   */
+  private void acceptLoop(final ServerSocketChannel listenChan, final boolean fromServer) {
+    while (listenChan.isOpen()) {
+      try {
+        SocketChannel rwChan = listenChan.accept();
+        FullDuplexMsgWorker worker = new FullDuplexMsgWorker(rwChan);
+        worker.useDedicatedWriter();
+        if (fromServer) {
+          server.registerServer(worker);
+        } else {
+          server.registerClient(worker);
+        }
+        startConnection(worker, fromServer);
+      } catch (IOException e) {
+        if (listenChan.isOpen()) {
+          COMM.error(e.getLocalizedMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * starts the reader and the writer threads of a connection.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   * @param fromServer
+   *          states whether the connection is with a server or with a client.
+   */
+  private void startConnection(final FullDuplexMsgWorker worker, final boolean fromServer) {
+    Thread writer = factory.newThread(() -> writeLoop(worker));
+    writers.put(worker, writer);
+    writer.start();
+    factory.newThread(() -> readLoop(worker, fromServer)).start();
+  }
+
+  /**
+   * reads the messages of a connection in blocking mode and gives them to the server until the
+   * connection is closed.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   * @param fromServer
+   *          states whether the connection is with a server or with a client.
+   */
+  private void readLoop(final FullDuplexMsgWorker worker, final boolean fromServer) {
+    try {
+      while (true) {
+        ReadMessageStatus status = worker.readMessage();
+        if (status == ReadMessageStatus.ChannelClosed) {
+          break;
+        }
+        if (status == ReadMessageStatus.ReadDataCompleted) {
+          Serializable msg = worker.getData();
+          if (fromServer) {
+            server.receiveFromServer(worker, worker.getInType(), worker.getInIdentity(),
+                worker.getInSeqNumber(), worker.getInOriginTime(), worker.getInHops(), msg);
+          } else {
+            server.receiveFromClient(worker, worker.getInType(), worker.getInIdentity(),
+                worker.getInOriginTime(), worker.getInHops(), msg);
+          }
+        }
+      }
+    } catch (IOException e) {
+      COMM.error(e.getLocalizedMessage());
+    } finally {
+      closeConnection(worker, fromServer);
+    }
+  }
+
+  /**
+   * writes the frames of a connection in blocking mode until the connection is closed.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   */
+  private void writeLoop(final FullDuplexMsgWorker worker) {
+    try {
+      while (true) {
+        worker.writeNextFrame();
+      }
+    } catch (InterruptedException e) {
+      if (LOG_ON && COMM.isTraceEnabled()) {
+        COMM.trace("writer thread interrupted");
+      }
+    } catch (IOException e) {
+      if (LOG_ON && COMM.isDebugEnabled()) {
+        COMM.debug(e.getLocalizedMessage());
+      }
+    }
+  }
+
+  /**
+   * closes a connection, unregisters it from the server and stops its writer thread.
+   *
+   * @param worker
+   *          the message worker of the connection.
+   * @param fromServer
+   *          states whether the connection is with a server or with a client.
+   */
+  private void closeConnection(final FullDuplexMsgWorker worker, final boolean fromServer) {
+    try {
+      worker.close();
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+    }
+    if (fromServer) {
+      server.unregisterServer(worker);
+    } else {
+      server.unregisterClient(worker);
+    }
+    Thread writer = writers.remove(worker);
+    if (writer != null) {
+      writer.interrupt();
+    }
+  }
+
+  /**
+   * closes the listening channels and the open connections. Closing a channel unblocks the reader
+   * thread of the connection, which then unregisters it.
+   */
+  private void shutdown() {
+    try {
+      listenChanClient.close();
+      listenChanServer.close();
+    } catch (IOException e) {
+      COMM.warn(e.getLocalizedMessage());
+    }
+    for (FullDuplexMsgWorker worker : writers.keySet()) {
+      try {
+        worker.close();
+      } catch (IOException e) {
+        COMM.warn(e.getLocalizedMessage());
+      }
+    }
+  }
+}
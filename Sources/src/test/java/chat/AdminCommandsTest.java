@@ -0,0 +1,127 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Action;
+import chat.common.LoopbackNetwork;
+import chat.server.AdminCommands;
+import chat.server.AdminSocket;
+import chat.server.Server;
+
+/**
+ * This class contains the unit tests of the console commands of the servers and of their admin
+ * socket.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class AdminCommandsTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	@Test
+	public void commandsOfAChain() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		new Server("0".split(" "), network);
+		Server second = new Server("1 localhost 0".split(" "), network);
+		network.connect(Server.BASE_PORTNB_LISTEN_CLIENT, Receivers.IGNORE)
+				.sendMsg(CHAT_TYPE, 0, 0, "hello");
+		network.connect(Server.BASE_PORTNB_LISTEN_CLIENT + 1, Receivers.IGNORE);
+		network.runUntilQuiescent();
+
+		AdminCommands commands = second.getAdminCommands();
+		Assert.assertNull(commands.execute("unknown"));
+		Assert.assertTrue(AdminCommands.isCommand(" stats "));
+		String stats = commands.execute(AdminCommands.STATS);
+		Assert.assertTrue(stats, stats.contains("fromServers=1"));
+		Assert.assertTrue(stats, stats.contains("queues servers n=1 total=0"));
+		String peers = commands.execute(AdminCommands.PEERS);
+		Assert.assertTrue(peers, peers.startsWith("peers of server 1 (1)"));
+		// no heartbeat measures the round-trip time yet
+		Assert.assertTrue(peers, peers.contains("#0 rtt=- backlog=0 framesIn=1"));
+		String clients = commands.execute(AdminCommands.CLIENTS);
+		Assert.assertTrue(clients, clients.startsWith("clients of server 1 (1)"));
+		// the identity of the client, the join of the default room and the chat message
+		Assert.assertTrue(clients, clients.contains("framesOut=3"));
+		Assert.assertEquals("election of server 1 algorithm=echo epoch=0 status=dormant caw=-1"
+				+ " parent=-1 win=-1 rec=0 lrec=0 phase=0 sent=0", commands.execute(AdminCommands.ELECTION));
+		Assert.assertEquals("dedup of server 1 entries=1 duplicates=0",
+				commands.execute(AdminCommands.DEDUP));
+		Assert.assertNull(second.getAdminSocket());
+	}
+
+	@Test
+	public void electionOfAChain() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		Server first = new Server("0".split(" "), network);
+		Server second = new Server("1 localhost 0".split(" "), network);
+		first.treatConsoleInput("Initiator");
+		network.runUntilQuiescent();
+
+		// the copies published at the end of the treatments of the election
+		Assert.assertEquals("election of server 0 algorithm=echo epoch=0 status=leader caw=0"
+				+ " parent=-1 win=0 rec=1 lrec=1 phase=0 sent=2",
+				first.getAdminCommands().execute(AdminCommands.ELECTION));
+		Assert.assertEquals("election of server 1 algorithm=echo epoch=0 status=non-leader caw=0"
+				+ " parent=0 win=0 rec=1 lrec=1 phase=0 sent=2",
+				second.getAdminCommands().execute(AdminCommands.ELECTION));
+	}
+
+	@Test
+	public void adminSocket() throws Exception {
+		Server server = new Server("40".split(" "), Server.SELECTOR_ENGINE);
+		AdminSocket adminSocket = server.getAdminSocket();
+		Assert.assertNotNull(adminSocket);
+		Assert.assertEquals(Server.BASE_PORTNB_LISTEN_CLIENT + 40 + AdminSocket.OFFSET_PORTNB_ADMIN,
+				adminSocket.getPort());
+		server.startThreadReadMessagesFromNetwork();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), adminSocket.getPort())) {
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter out = new PrintWriter(
+					new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			out.println(AdminCommands.DEDUP);
+			Assert.assertEquals("dedup of server 40 entries=0 duplicates=0", in.readLine());
+			Assert.assertEquals("", in.readLine());
+			out.println("unknown");
+			Assert.assertTrue(in.readLine().startsWith("unknown command (unknown)"));
+			Assert.assertEquals("", in.readLine());
+			out.println(AdminCommands.PEERS);
+			Assert.assertEquals("peers of server 40 (0)", in.readLine());
+		} finally {
+			server.stopThreadReadMessagesFromNetwork();
+		}
+		Assert.assertNull(server.getAdminSocket());
+	}
+}
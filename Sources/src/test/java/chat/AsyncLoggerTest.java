@@ -0,0 +1,193 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import chat.common.AsyncLogger;
+
+/**
+ * This class contains the unit tests of the class <tt>AsyncLogger</tt>: the
+ * events are appended by the background thread, in order, with the thread of
+ * the call, the arguments of the disabled levels are never formatted, and the
+ * mutable arguments are formatted at the call.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class AsyncLoggerTest {
+
+	private static final long FLUSH = 5000;
+
+	private static final class Recorder extends AppenderSkeleton {
+
+		private final List<LoggingEvent> events = new ArrayList<>();
+
+		@Override
+		protected synchronized void append(final LoggingEvent event) {
+			events.add(event);
+		}
+
+		synchronized List<LoggingEvent> getEvents() {
+			return new ArrayList<>(events);
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+	}
+
+	private static final class Counted {
+
+		private final AtomicInteger nbFormatted = new AtomicInteger();
+
+		@Override
+		public String toString() {
+			nbFormatted.incrementAndGet();
+			return "counted";
+		}
+	}
+
+	private AsyncLogger logger;
+
+	private Recorder recorder;
+
+	@Before
+	public void setUp() {
+		logger = AsyncLogger.getLogger("test.async");
+		logger.getLogger().setAdditivity(false);
+		logger.setLevel(Level.INFO);
+		recorder = new Recorder();
+		logger.getLogger().addAppender(recorder);
+	}
+
+	@After
+	public void tearDown() {
+		logger.getLogger().removeAllAppenders();
+	}
+
+	@Test
+	public void parameterizedMessages() {
+		logger.info("plain");
+		logger.info("Send message to {} server end points", 3);
+		logger.warn("{} and {}", "first", "second");
+		logger.info("{} without second argument {}", "first");
+		Assert.assertTrue(AsyncLogger.flush(FLUSH));
+		List<LoggingEvent> events = recorder.getEvents();
+		Assert.assertEquals(4, events.size());
+		Assert.assertEquals("plain", events.get(0).getRenderedMessage());
+		Assert.assertEquals("Send message to 3 server end points",
+				events.get(1).getRenderedMessage());
+		Assert.assertEquals("first and second", events.get(2).getRenderedMessage());
+		Assert.assertEquals(Level.WARN, events.get(2).getLevel());
+		Assert.assertEquals("first without second argument {}",
+				events.get(3).getRenderedMessage());
+		for (LoggingEvent event : events) {
+			Assert.assertEquals(Thread.currentThread().getName(), event.getThreadName());
+		}
+	}
+
+	@Test
+	public void disabledLevelsAreNotFormatted() {
+		Counted counted = new Counted();
+		logger.debug("not formatted {}", counted);
+		logger.trace("not formatted {} {}", counted, counted);
+		logger.info("formatted {}", counted);
+		Assert.assertTrue(AsyncLogger.flush(FLUSH));
+		Assert.assertEquals(1, recorder.getEvents().size());
+		Assert.assertEquals(1, counted.nbFormatted.get());
+	}
+
+	@Test
+	public void mutableArgumentsAreFormattedByTheCaller() {
+		List<Integer> table = new ArrayList<>();
+		table.add(1);
+		StringBuilder message = new StringBuilder("before");
+		logger.info("table {} and {}", table, 2);
+		logger.info(message);
+		table.add(3);
+		message.append(" and after");
+		Assert.assertTrue(AsyncLogger.flush(FLUSH));
+		List<LoggingEvent> events = recorder.getEvents();
+		Assert.assertEquals("table [1] and 2", events.get(0).getRenderedMessage());
+		Assert.assertEquals("before", events.get(1).getRenderedMessage());
+	}
+
+	@Test
+	public void throwableAsLastArgument() {
+		IllegalStateException failure = new IllegalStateException("failure");
+		logger.error("cannot treat {}", failure);
+		Assert.assertTrue(AsyncLogger.flush(FLUSH));
+		LoggingEvent event = recorder.getEvents().get(0);
+		Assert.assertSame(failure, event.getThrowableInformation().getThrowable());
+	}
+
+	@Test
+	public void orderOfSeveralProducers() throws Exception {
+		final int nbThreads = 4;
+		final int nbEvents = 5000;
+		List<Thread> producers = new ArrayList<>();
+		for (int t = 0; t < nbThreads; t++) {
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < nbEvents; i++) {
+					logger.info("{}", i);
+				}
+			}, "producer-" + t);
+			producers.add(producer);
+			producer.start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		Assert.assertTrue(AsyncLogger.flush(FLUSH));
+		List<LoggingEvent> events = recorder.getEvents();
+		Assert.assertEquals(nbThreads * nbEvents, events.size());
+		int[] next = new int[nbThreads];
+		for (LoggingEvent event : events) {
+			int t = Integer.parseInt(event.getThreadName().substring("producer-".length()));
+			// the events of the ring buffer keep the order of each producer
+			if (AsyncLogger.getNbOverflows() == 0) {
+				Assert.assertEquals(String.valueOf(next[t]), event.getRenderedMessage());
+			}
+			next[t]++;
+		}
+		for (int t = 0; t < nbThreads; t++) {
+			Assert.assertEquals(nbEvents, next[t]);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.server.algorithms.gossip.BloomFilter;
+
+public class BloomFilterTest {
+
+	@Test
+	public void noFalseNegatives() {
+		BloomFilter filter = new BloomFilter(10_000, 1e-6);
+		for (long id = 0; id < 10_000; id++) {
+			Assert.assertFalse(filter.mightContain(id));
+			filter.add(id);
+		}
+		for (long id = 0; id < 10_000; id++) {
+			Assert.assertTrue(filter.mightContain(id));
+		}
+	}
+
+	@Test
+	public void falsePositives() {
+		BloomFilter filter = new BloomFilter(1000, 0.01);
+		for (int seq = 0; seq < 1000; seq++) {
+			filter.add((long) 3 << Integer.SIZE | seq);
+		}
+		int found = 0;
+		for (int seq = 0; seq < 100_000; seq++) {
+			if (filter.mightContain((long) 4 << Integer.SIZE | seq)) {
+				found++;
+			}
+		}
+		Assert.assertTrue(Integer.toString(found), found < 2000);
+		Assert.assertEquals(7, filter.getNbHashes());
+	}
+
+	@Test
+	public void boundedMemory() {
+		BloomFilter filter = new BloomFilter(100, 0.01);
+		int nbBits = filter.getNbBits();
+		for (long id = 0; id < 300; id++) {
+			filter.add(id);
+		}
+		Assert.assertEquals(nbBits, filter.getNbBits());
+		// the two last generations are remembered, the first one is forgotten
+		for (long id = 100; id < 300; id++) {
+			Assert.assertTrue(filter.mightContain(id));
+		}
+		int remembered = 0;
+		for (long id = 0; id < 100; id++) {
+			if (filter.mightContain(id)) {
+				remembered++;
+			}
+		}
+		Assert.assertTrue(Integer.toString(remembered), remembered < 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidRate() {
+		new BloomFilter(100, 1);
+	}
+}
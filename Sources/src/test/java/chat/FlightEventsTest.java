@@ -0,0 +1,154 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.client.algorithms.chat.Algorithm;
+import chat.client.algorithms.chat.ChatMessageContent;
+import chat.common.Action;
+import chat.common.DispatchEvent;
+import chat.common.FlightEvents;
+import chat.common.ForwardEvent;
+import chat.common.FrameReadEvent;
+import chat.common.FrameWriteEvent;
+import chat.common.FullDuplexMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.ReadMessageStatus;
+import chat.server.Server;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * This class contains the unit tests of the flight recorder events of the
+ * framing, of the dispatch of the actions and of the forwards.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class FlightEventsTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	private static List<RecordedEvent> record(final Recording recording, final String name)
+			throws Exception {
+		Path file = Files.createTempFile("chat", ".jfr");
+		try {
+			recording.dump(file);
+			List<RecordedEvent> events = new ArrayList<>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+				if (event.getEventType().getName().equals(name)) {
+					events.add(event);
+				}
+			}
+			return events;
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void enabledWithTheFlightRecorder() {
+		Assert.assertTrue(FlightEvents.ENABLED);
+	}
+
+	@Test
+	public void frames() throws Exception {
+		try (Recording recording = new Recording();
+				ServerSocketChannel listen = ServerSocketChannel.open()) {
+			recording.enable(FrameReadEvent.class).withThreshold(Duration.ZERO);
+			recording.enable(FrameWriteEvent.class).withThreshold(Duration.ZERO);
+			recording.start();
+			listen.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			FullDuplexMsgWorker sender = new FullDuplexMsgWorker(
+					SocketChannel.open(listen.getLocalAddress()));
+			FullDuplexMsgWorker receiver = new FullDuplexMsgWorker(listen.accept());
+			sender.sendMsg(CHAT_TYPE, 1, 0, "basic");
+			sender.sendMsg(CHAT_TYPE, 1, 1, System.nanoTime(), 0, "traced");
+			for (int i = 0; i < 2; i++) {
+				while (receiver.readMessage() != ReadMessageStatus.ReadDataCompleted) {
+					Assert.assertTrue(receiver.getChannel().isOpen());
+				}
+			}
+			sender.close();
+			receiver.close();
+			recording.stop();
+
+			List<RecordedEvent> writes = record(recording, "chat.FrameWrite");
+			Assert.assertEquals(2, writes.size());
+			Assert.assertEquals(CHAT_TYPE, writes.get(0).getInt("frameType"));
+			List<RecordedEvent> reads = record(recording, "chat.FrameRead");
+			Assert.assertEquals(2, reads.size());
+			Assert.assertFalse(reads.get(0).getBoolean("traced"));
+			Assert.assertTrue(reads.get(1).getBoolean("traced"));
+			Assert.assertEquals(writes.get(1).getInt("size"), reads.get(1).getInt("size"));
+		}
+	}
+
+	@Test
+	public void dispatchAndForwards() throws Exception {
+		try (Recording recording = new Recording()) {
+			recording.enable(DispatchEvent.class).withThreshold(Duration.ZERO);
+			recording.enable(ForwardEvent.class).withThreshold(Duration.ZERO);
+			LoopbackNetwork network = new LoopbackNetwork(0);
+			new Server("0".split(" "), network);
+			new Server("1 localhost 0".split(" "), network);
+			Client sender = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT);
+			Client receiver = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT + 1);
+			network.runUntilQuiescent();
+			recording.start();
+			sender.treatConsoleInput("hello");
+			network.runUntilQuiescent();
+			recording.stop();
+			Assert.assertEquals(1, receiver.getState().nbChatMessageContentDelivered);
+
+			List<RecordedEvent> forwards = record(recording, "chat.Forward");
+			Assert.assertEquals(2, forwards.size());
+			for (RecordedEvent forward : forwards) {
+				// to the other server, then to the client of the other server
+				Assert.assertEquals(1, forward.getInt("fanOut"));
+				Assert.assertTrue(forward.getLong("bytes") > 0);
+			}
+			List<RecordedEvent> dispatches = record(recording, "chat.Dispatch");
+			Assert.assertEquals(1, dispatches.size());
+			Assert.assertEquals(Algorithm.CHAT_MESSAGE.identifier(),
+					dispatches.get(0).getInt("actionId"));
+			Assert.assertEquals(ChatMessageContent.class.getName(),
+					dispatches.get(0).getClass("contentClass").getName());
+			Assert.assertFalse(dispatches.get(0).getBoolean("server"));
+		}
+	}
+}
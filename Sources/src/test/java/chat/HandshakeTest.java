@@ -0,0 +1,111 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import chat.client.Handshake;
+import chat.common.FullDuplexMsgWorker;
+
+/**
+ * This class contains the unit tests of the class <tt>Handshake</tt>: the
+ * identity is received without blocking the caller, and a server that never
+ * sends the identity makes the handshake fail at its deadline.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class HandshakeTest {
+
+	private static final long TIMEOUT = 300;
+
+	private ServerSocketChannel listen;
+
+	private FullDuplexMsgWorker client;
+
+	@Before
+	public void setUp() throws Exception {
+		listen = ServerSocketChannel.open();
+		listen.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		client = new FullDuplexMsgWorker(SocketChannel.open());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		listen.close();
+	}
+
+	@Test
+	public void identityReceived() throws Exception {
+		Handshake handshake = new Handshake(client, listen.getLocalAddress(), 10 * TIMEOUT);
+		Assert.assertFalse(handshake.isDone());
+		FullDuplexMsgWorker server = new FullDuplexMsgWorker(listen.accept());
+		Assert.assertNotEquals(Handshake.Phase.IDENTIFIED, handshake.step());
+		server.sendMsg(0, 1, 0, Integer.valueOf(102));
+		Assert.assertEquals(102, handshake.await());
+		Assert.assertEquals(Handshake.Phase.IDENTIFIED, handshake.getPhase());
+		Assert.assertFalse(client.getChannel().isBlocking());
+		server.close();
+	}
+
+	@Test
+	public void silentServerTimesOut() throws Exception {
+		Handshake handshake = new Handshake(client, listen.getLocalAddress(), TIMEOUT);
+		SocketChannel accepted = listen.accept();
+		long start = System.nanoTime();
+		try {
+			handshake.await();
+			Assert.fail("the handshake should have timed out");
+		} catch (SocketTimeoutException e) {
+			Assert.assertEquals(Handshake.Phase.FAILED, handshake.getPhase());
+		}
+		Assert.assertTrue((System.nanoTime() - start) / 1000000 < 10 * TIMEOUT);
+		Assert.assertFalse(client.getChannel().isOpen());
+		accepted.close();
+	}
+
+	@Test
+	public void closedServerFails() throws Exception {
+		Handshake handshake = new Handshake(client, listen.getLocalAddress(), 10 * TIMEOUT);
+		listen.accept().close();
+		try {
+			handshake.await();
+			Assert.fail("the handshake should have failed");
+		} catch (SocketTimeoutException e) {
+			Assert.fail("the handshake should have failed before its deadline");
+		} catch (IOException e) {
+			Assert.assertEquals(Handshake.Phase.FAILED, handshake.getPhase());
+		}
+	}
+}
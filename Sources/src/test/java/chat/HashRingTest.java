@@ -0,0 +1,93 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.server.algorithms.rooms.HashRing;
+
+public class HashRingTest {
+
+	private static final int NB_ROOMS = 2000;
+
+	private static Map<String, Integer> homes(final HashRing ring) {
+		Map<String, Integer> homes = new HashMap<>();
+		for (int i = 0; i < NB_ROOMS; i++) {
+			homes.put("room-" + i, ring.home("room-" + i));
+		}
+		return homes;
+	}
+
+	@Test
+	public void deterministic() {
+		HashRing ring = new HashRing(Arrays.asList(3, 1, 0, 2));
+		Assert.assertEquals(homes(ring), homes(new HashRing(Arrays.asList(0, 1, 2, 3))));
+		Assert.assertEquals(0, new HashRing(Arrays.asList(0)).home("any"));
+	}
+
+	@Test
+	public void spread() {
+		Map<Integer, Integer> load = new HashMap<>();
+		for (int home : homes(new HashRing(Arrays.asList(0, 1, 2, 3))).values()) {
+			load.merge(home, 1, Integer::sum);
+		}
+		Assert.assertEquals(4, load.size());
+		for (int rooms : load.values()) {
+			Assert.assertTrue(load.toString(), rooms > NB_ROOMS / 4 * 2 / 3);
+			Assert.assertTrue(load.toString(), rooms < NB_ROOMS / 4 * 4 / 3);
+		}
+	}
+
+	@Test
+	public void incrementalMigration() {
+		Map<String, Integer> before = homes(new HashRing(Arrays.asList(0, 1, 2, 3)));
+		Map<String, Integer> joined = homes(new HashRing(Arrays.asList(0, 1, 2, 3, 4)));
+		int moved = 0;
+		for (String room : before.keySet()) {
+			if (!before.get(room).equals(joined.get(room))) {
+				// only the rooms taken by the new server change of home
+				Assert.assertEquals(4, joined.get(room).intValue());
+				moved++;
+			}
+		}
+		Assert.assertTrue(moved > NB_ROOMS / 10);
+		Assert.assertTrue(moved < NB_ROOMS * 3 / 10);
+		Map<String, Integer> left = homes(new HashRing(Arrays.asList(0, 1, 3)));
+		for (String room : before.keySet()) {
+			if (before.get(room) != 2) {
+				// the rooms of the other servers stay at home
+				Assert.assertEquals(before.get(room), left.get(room));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyRing() {
+		new HashRing(Arrays.asList());
+	}
+}
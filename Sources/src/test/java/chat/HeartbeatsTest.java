@@ -0,0 +1,98 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgWorker;
+import chat.server.PhiAccrualDetector;
+import chat.server.Server;
+
+/**
+ * This class contains the unit tests of the heartbeats of the links between servers and of their
+ * phi-accrual failure detector.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class HeartbeatsTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void phiGrowsWithSilence() {
+		PhiAccrualDetector detector = new PhiAccrualDetector(100, SECOND / 10, 0, SECOND, 0);
+		long now = 0;
+		for (int i = 0; i < 10; i++) {
+			now += SECOND;
+			detector.heartbeat(now);
+		}
+		Assert.assertEquals(now, detector.getLastHeartbeat());
+		Assert.assertTrue(detector.phi(now) < 0.1);
+		double previous = 0;
+		for (long silence = SECOND / 2; silence <= 4 * SECOND; silence += SECOND / 2) {
+			double phi = detector.phi(now + silence);
+			Assert.assertTrue(phi >= previous);
+			previous = phi;
+		}
+		Assert.assertTrue(detector.phi(now + SECOND) < 1);
+		Assert.assertTrue(detector.phi(now + 3 * SECOND) > 8);
+	}
+
+	@Test
+	public void silentPeerIsTornDown() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		List<LoopbackMsgWorker> accepted = new ArrayList<>();
+		// a neighbour that never answers the pings, as on a half-open connection
+		network.listen(Server.BASE_PORTNB_LISTEN_CLIENT + 9 + Server.OFFSET_PORTNB_LISTEN_SERVER,
+				Receivers.IGNORE, accepted::add);
+		new Server("0".split(" "), network);
+		Server server = new Server("1 localhost 0 localhost 9".split(" "), network);
+		network.runUntilQuiescent();
+		Assert.assertEquals(2, server.getMetrics().getNbServers());
+		MsgWorker live = server.getState().getServerWorkersView().get(0);
+		Assert.assertEquals(-1, live.getMetrics().getRoundTripTime());
+
+		for (int i = 0; i < 10; i++) {
+			server.heartbeat();
+			network.runFor(SECOND);
+		}
+		Assert.assertEquals(1, server.getMetrics().getNbServers());
+		Assert.assertEquals(1, server.getMetrics().getLinkTeardowns());
+		Assert.assertSame(live, server.getState().getServerWorkersView().get(0));
+		Assert.assertTrue(accepted.get(0).isClosed());
+		long rtt = live.getMetrics().getRoundTripTime();
+		// the latency of the network is 100 microseconds each way
+		Assert.assertTrue(String.valueOf(rtt), rtt >= 2 * LoopbackNetwork.DEFAULT_LATENCY
+				&& rtt < SECOND / 100);
+		Assert.assertTrue(server.getHeartbeats().phi(live) < 1);
+		Assert.assertTrue(server.getAdminCommands().peers().contains("rtt=" + rtt / 1000 + "us"));
+	}
+}
@@ -0,0 +1,127 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.LatencyHistogram;
+import chat.common.LoopbackNetwork;
+import chat.common.RollingHistogram;
+import chat.server.Server;
+import chat.server.ServerMetrics;
+
+/**
+ * This class contains the unit tests of the latency histograms that roll over in intervals, and of
+ * their recording by the servers and by the clients.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class HistogramsTest {
+
+	private static final long HOUR = 3_600_000_000_000L;
+
+	@Test
+	public void addHistograms() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			first.record(i);
+			second.record(1000 * i);
+		}
+		first.add(second);
+		Assert.assertEquals(200, first.getCount());
+		Assert.assertEquals(100_000, first.getMax());
+		long median = first.getValueAtPercentile(50);
+		Assert.assertTrue(median >= 100 && median <= 100 + 100 / LatencyHistogram.SUB_BUCKET_COUNT);
+		Assert.assertTrue(first.getValueAtPercentile(99) >= 98_000);
+	}
+
+	@Test
+	public void rollover() {
+		RollingHistogram histogram = new RollingHistogram(HOUR);
+		for (int i = 0; i < 10; i++) {
+			histogram.record(1000);
+		}
+		histogram.rollover();
+		histogram.record(1_000_000);
+		Assert.assertEquals(1, histogram.getNbIntervals());
+		Assert.assertEquals(10, histogram.getLastInterval().getCount());
+		Assert.assertEquals(1000, histogram.getLastInterval().getMax());
+		Assert.assertEquals(1, histogram.getCurrentInterval().getCount());
+		Assert.assertEquals(11, histogram.getTotal().getCount());
+		Assert.assertEquals(1_000_000, histogram.getTotal().getMax());
+		histogram.rollover();
+		Assert.assertEquals(1_000_000, histogram.getLastInterval().getMax());
+		Assert.assertEquals(0, histogram.getCurrentInterval().getCount());
+		Assert.assertEquals(11, histogram.getTotal().getCount());
+	}
+
+	@Test
+	public void rolloverWhenTheIntervalIsOver() throws Exception {
+		RollingHistogram histogram = new RollingHistogram(1_000_000);
+		histogram.record(1);
+		Thread.sleep(2);
+		histogram.record(2);
+		Assert.assertEquals(1, histogram.getNbIntervals());
+		Assert.assertEquals(1, histogram.getLastInterval().getMax());
+		Assert.assertEquals(2, histogram.getTotal().getCount());
+	}
+
+	@Test
+	public void recordingPoints() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		Server server = new Server("0".split(" "), network);
+		Client sender = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT);
+		Client receiver = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT);
+		sender.treatConsoleInput("first");
+		sender.treatConsoleInput("second");
+		network.runUntilQuiescent();
+
+		Assert.assertEquals(2, receiver.getState().nbChatMessageContentDelivered);
+		Assert.assertEquals(2, receiver.getState().bagDelay.getTotal().getCount());
+		ServerMetrics metrics = server.getMetrics();
+		Assert.assertEquals(2, metrics.getForwardTime().getTotal().getCount());
+		// the loopback engine has no selector, and the server runs no algorithm
+		Assert.assertEquals(0, metrics.getSelectToDecode().getTotal().getCount());
+		Assert.assertEquals(0, metrics.getExecuteTime().getTotal().getCount());
+		String dump = metrics.dumpHistograms();
+		Assert.assertTrue(dump, dump.startsWith("histograms of server 0"));
+		Assert.assertTrue(dump, dump.contains("forward          last interval: count=0"));
+		Assert.assertTrue(dump, dump.contains("total: count=2"));
+	}
+
+	@Test
+	public void executeTimeOfTheElection() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		Server first = new Server("0".split(" "), network);
+		Server second = new Server("1 localhost 0".split(" "), network);
+		first.treatConsoleInput("Initiator");
+		network.runUntilQuiescent();
+		Assert.assertEquals("leader", first.getState().getStatus());
+		Assert.assertTrue(first.getMetrics().getExecuteTime().getTotal().getCount() > 0);
+		Assert.assertTrue(second.getMetrics().getExecuteTime().getTotal().getCount() > 0);
+	}
+}
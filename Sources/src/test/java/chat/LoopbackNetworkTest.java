@@ -0,0 +1,162 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.Serializable;
+import java.net.ConnectException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Action;
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+import chat.server.Server;
+
+/**
+ * This class contains the unit tests of the in-process network <tt>LoopbackNetwork</tt>: order of
+ * the messages of a connection, exact replay of a scenario with the same seed, and closing.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class LoopbackNetworkTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	private static final long LATENCY = 100_000;
+
+	private static final long JITTER = 1_000_000;
+
+	private static final class Recorder implements MsgReceiver {
+
+		private final String name;
+
+		private final List<String> trace;
+
+		private int nbClosed;
+
+		private Recorder(final String name, final List<String> trace) {
+			this.name = name;
+			this.trace = trace;
+		}
+
+		@Override
+		public void received(final MsgWorker worker, final int type, final int identity,
+				final int seqNumber, final Serializable msg) {
+			trace.add(name + " " + type + " " + identity + " " + seqNumber + " " + msg);
+		}
+
+		@Override
+		public void closed(final MsgWorker worker) {
+			nbClosed++;
+		}
+	}
+
+	@Test
+	public void fifoDespiteJitter() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(1, LATENCY, JITTER);
+		List<String> trace = new ArrayList<>();
+		List<LoopbackMsgWorker> accepted = new ArrayList<>();
+		network.listen(1, new Recorder("server", trace), accepted::add);
+		LoopbackMsgWorker client = network.connect(1, new Recorder("client", trace));
+		Assert.assertEquals(1, accepted.size());
+		for (int i = 0; i < 100; i++) {
+			client.sendMsg(CHAT_TYPE, 0, i, "m" + i);
+		}
+		Assert.assertEquals(100, client.getOutQueueLength());
+		Assert.assertTrue(trace.isEmpty());
+		network.runUntilQuiescent();
+		Assert.assertEquals(0, client.getOutQueueLength());
+		Assert.assertEquals(100, trace.size());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals("server " + CHAT_TYPE + " 0 " + i + " m" + i, trace.get(i));
+		}
+		Assert.assertTrue(network.now() >= LATENCY);
+	}
+
+	@Test(expected = ConnectException.class)
+	public void connectionRefused() throws Exception {
+		new LoopbackNetwork(0).connect(1, new Recorder("client", new ArrayList<String>()));
+	}
+
+	@Test
+	public void closeAfterInFlightMessages() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		List<String> trace = new ArrayList<>();
+		Recorder server = new Recorder("server", trace);
+		Recorder client = new Recorder("client", trace);
+		network.listen(1, server, worker -> { });
+		LoopbackMsgWorker worker = network.connect(1, client);
+		worker.sendMsg(CHAT_TYPE, 0, 0, "last");
+		worker.close();
+		Assert.assertTrue(worker.isClosed());
+		Assert.assertEquals(1, client.nbClosed);
+		Assert.assertEquals(0, server.nbClosed);
+		network.runUntilQuiescent();
+		Assert.assertEquals(1, trace.size());
+		Assert.assertEquals(1, server.nbClosed);
+		try {
+			worker.sendMsg(CHAT_TYPE, 0, 1, "too late");
+			Assert.fail();
+		} catch (ClosedChannelException e) {
+			Assert.assertEquals(1, trace.size());
+		}
+	}
+
+	private static List<String> runRing(final long seed) throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(seed, LATENCY, JITTER);
+		List<String> trace = new ArrayList<>();
+		new Server("0".split(" "), network);
+		new Server("1 localhost 0".split(" "), network);
+		new Server("2 localhost 1 localhost 0".split(" "), network);
+		List<LoopbackMsgWorker> clients = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			clients.add(network.connect(Server.BASE_PORTNB_LISTEN_CLIENT + i % 3,
+					new Recorder("c" + i, trace)));
+		}
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < clients.size(); i++) {
+				clients.get(i).sendMsg(CHAT_TYPE, i, 0, "r" + round);
+			}
+			network.runFor(JITTER / 2);
+		}
+		network.runUntilQuiescent();
+		trace.add("end at " + network.now() + " after " + network.getNbExecuted() + " events");
+		return trace;
+	}
+
+	@Test
+	public void replayWithTheSameSeed() throws Exception {
+		List<String> first = runRing(42);
+		// 6 identities and joins of the default room, then 30 messages delivered to 5 clients each
+		Assert.assertEquals(6 * 2 + 30 * 5 + 1, first.size());
+		Assert.assertEquals(first, runRing(42));
+		Assert.assertNotEquals(first, runRing(43));
+	}
+}
@@ -0,0 +1,155 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Action;
+import chat.common.ConnectionMetrics;
+import chat.common.FullDuplexMsgWorker;
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.server.Server;
+import chat.server.ServerMetrics;
+
+/**
+ * This class contains the unit tests of the metrics of the servers and of the connections, and of
+ * their publication through JMX.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class MetricsTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	private static final class Undecodable implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private void readObject(final ObjectInputStream in) throws IOException {
+			throw new InvalidObjectException("undecodable");
+		}
+	}
+
+	@Test
+	public void countersOfATriangle() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		List<Server> servers = new ArrayList<>();
+		servers.add(new Server("0".split(" "), network));
+		servers.add(new Server("1 localhost 0".split(" "), network));
+		servers.add(new Server("2 localhost 1 localhost 0".split(" "), network));
+		List<LoopbackMsgWorker> clients = new ArrayList<>();
+		for (int i = 0; i < servers.size(); i++) {
+			clients.add(network.connect(Server.BASE_PORTNB_LISTEN_CLIENT + i, Receivers.IGNORE));
+		}
+		clients.get(0).sendMsg(CHAT_TYPE, 0, 0, "hello");
+		network.runUntilQuiescent();
+
+		ServerMetrics first = servers.get(0).getMetrics();
+		Assert.assertEquals(1, first.getClientMsgsFromClients());
+		Assert.assertEquals(2, first.getNbServers());
+		Assert.assertEquals(1, first.getNbClients());
+		long fromServers = 0;
+		long duplicates = 0;
+		long forwards = 0;
+		for (Server server : servers) {
+			fromServers += server.getMetrics().getClientMsgsFromServers();
+			duplicates += server.getMetrics().getDuplicateClientMsgs();
+			forwards += server.getMetrics().getForwards();
+			// two servers, or one server and one client
+			Assert.assertEquals(2, server.getMetrics().getMaxForwardFanOut());
+		}
+		// the servers 1 and 2 receive the message from the server 0 and from each other
+		Assert.assertEquals(4, fromServers);
+		Assert.assertEquals(2, duplicates);
+		Assert.assertEquals(3, forwards);
+
+		ConnectionMetrics sender = clients.get(0).getMetrics();
+		Assert.assertEquals(1, sender.getFramesOut());
+		Assert.assertEquals(2, sender.getFramesIn());
+		ConnectionMetrics receiver = clients.get(1).getMetrics();
+		Assert.assertEquals(3, receiver.getFramesIn());
+		Assert.assertEquals(0, receiver.getFramesOut());
+		Assert.assertTrue(receiver.getBytesIn() > 3 * FullDuplexMsgWorker.HEADER_BYTES);
+		// an identity frame and a join of the same sizes, and the chat message
+		Assert.assertEquals(sender.getBytesIn() + sender.getBytesOut(), receiver.getBytesIn());
+		Assert.assertEquals(0, receiver.getDecodeErrors());
+		Assert.assertEquals(0, receiver.getOutQueueLength());
+	}
+
+	@Test
+	public void publicationThroughJmx() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		Server first = new Server("0".split(" "), network);
+		Server second = new Server("1 localhost 0".split(" "), network);
+		network.connect(Server.BASE_PORTNB_LISTEN_CLIENT, Receivers.IGNORE)
+				.sendMsg(CHAT_TYPE, 0, 0, "hello");
+		network.runUntilQuiescent();
+
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(ServerMetrics.DOMAIN + ":type=Server,identity=1");
+		Assert.assertEquals(1L, mbeanServer.getAttribute(name, "ClientMsgsFromServers"));
+		Assert.assertEquals(1L, mbeanServer.getAttribute(name, "Forwards"));
+		ObjectName connections = new ObjectName(ServerMetrics.DOMAIN
+				+ ":type=Connection,server=0,*");
+		Assert.assertEquals(2, mbeanServer.queryNames(connections, null).size());
+		long framesOut = 0;
+		for (ObjectName connection : mbeanServer.queryNames(connections, null)) {
+			framesOut += (Long) mbeanServer.getAttribute(connection, "FramesOut");
+		}
+		// the identity of the client, the join of the default room and the chat message to the other
+		// server
+		Assert.assertEquals(3, framesOut);
+
+		first.stopThreadReadMessagesFromNetwork();
+		second.stopThreadReadMessagesFromNetwork();
+		Assert.assertFalse(mbeanServer.isRegistered(name));
+		Assert.assertTrue(mbeanServer.queryNames(connections, null).isEmpty());
+	}
+
+	@Test
+	public void decodeError() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		List<LoopbackMsgWorker> accepted = new ArrayList<>();
+		network.listen(1, Receivers.IGNORE, accepted::add);
+		LoopbackMsgWorker worker = network.connect(1, Receivers.IGNORE);
+		worker.sendMsg(CHAT_TYPE, 0, 0, new Undecodable());
+		network.runUntilQuiescent();
+		Assert.assertEquals(1, accepted.get(0).getMetrics().getFramesIn());
+		Assert.assertEquals(1, accepted.get(0).getMetrics().getDecodeErrors());
+		Assert.assertTrue(accepted.get(0).isClosed());
+	}
+}
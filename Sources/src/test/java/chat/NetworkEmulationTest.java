@@ -0,0 +1,201 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.Serializable;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Action;
+import chat.common.LinkProfile;
+import chat.common.LoopbackMsgWorker;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+import chat.common.NetworkEmulation;
+import chat.server.Server;
+
+/**
+ * This class contains the unit tests of the emulation of the links of the in-process network:
+ * parsing of the profiles and of the emulation files, loss, duplication, reordering and bandwidth.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class NetworkEmulationTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	private static final int NB_MSGS = 100;
+
+	private static final class Recorder implements MsgReceiver {
+
+		private final List<Integer> received = new ArrayList<>();
+
+		private final List<Long> times = new ArrayList<>();
+
+		private final LoopbackNetwork network;
+
+		private Recorder(final LoopbackNetwork network) {
+			this.network = network;
+		}
+
+		@Override
+		public void received(final MsgWorker worker, final int type, final int identity,
+				final int seqNumber, final Serializable msg) {
+			received.add(seqNumber);
+			times.add(network.now());
+		}
+
+		@Override
+		public void closed(final MsgWorker worker) {
+		}
+	}
+
+	private static Recorder send(final LinkProfile profile, final long seed) throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(seed, profile);
+		Recorder server = new Recorder(network);
+		network.listen(1, server, worker -> { });
+		LoopbackMsgWorker client = network.connect(1, new Recorder(network));
+		for (int i = 0; i < NB_MSGS; i++) {
+			client.sendMsg(CHAT_TYPE, 0, i, "m" + i);
+		}
+		network.runUntilQuiescent();
+		Assert.assertEquals(0, client.getOutQueueLength());
+		return server;
+	}
+
+	@Test
+	public void parseProfile() {
+		LinkProfile profile = LinkProfile.parse("distribution=normal latency=20ms jitter=1.5ms"
+				+ " bandwidth=10Mbps loss=1% duplicate=0.002 reorder=5%", LinkProfile.PERFECT);
+		Assert.assertEquals(LinkProfile.Distribution.NORMAL, profile.getDistribution());
+		Assert.assertEquals(20_000_000, profile.getLatency());
+		Assert.assertEquals(1_500_000, profile.getJitter());
+		Assert.assertEquals(10_000_000, profile.getBandwidth());
+		Assert.assertEquals(0.01, profile.getLoss(), 1e-9);
+		Assert.assertEquals(0.002, profile.getDuplicate(), 1e-9);
+		Assert.assertEquals(0.05, profile.getReorder(), 1e-9);
+		LinkProfile derived = LinkProfile.parse("latency=300us bandwidth=unlimited", profile);
+		Assert.assertEquals(300_000, derived.getLatency());
+		Assert.assertEquals(LinkProfile.UNLIMITED, derived.getBandwidth());
+		Assert.assertEquals(0.01, derived.getLoss(), 1e-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void probabilityOutOfRange() {
+		LinkProfile.parse("loss=120%", LinkProfile.PERFECT);
+	}
+
+	@Test
+	public void loadEmulationFile() throws Exception {
+		LoopbackNetwork network = NetworkEmulation.load(new StringReader("# test\n"
+				+ "seed 3\n"
+				+ "default latency=10ms\n"
+				+ "link 0 1 latency=50ms loss=0.5\n"
+				+ "server 2 bandwidth=1Mbps\n"
+				+ "clients 0 latency=1ms\n"));
+		int client0 = Server.BASE_PORTNB_LISTEN_CLIENT;
+		int server0 = client0 + Server.OFFSET_PORTNB_LISTEN_SERVER;
+		Assert.assertEquals(50_000_000, network.getProfile(server0 + 1, server0).getLatency());
+		Assert.assertEquals(0.5, network.getProfile(server0, server0 + 1).getLoss(), 1e-9);
+		Assert.assertEquals(1_000_000, network.getProfile(server0 + 2, server0).getBandwidth());
+		Assert.assertEquals(10_000_000, network.getProfile(server0 + 2, server0).getLatency());
+		Assert.assertEquals(1_000_000,
+				network.getProfile(LoopbackNetwork.ANONYMOUS, client0).getLatency());
+		Assert.assertEquals(10_000_000,
+				network.getProfile(server0 + 3, server0).getLatency());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownDirective() throws Exception {
+		NetworkEmulation.load(new StringReader("route 0 1 latency=1ms\n"));
+	}
+
+	@Test
+	public void loss() throws Exception {
+		Recorder all = send(LinkProfile.parse("latency=1ms loss=1", LinkProfile.PERFECT), 0);
+		Assert.assertTrue(all.received.isEmpty());
+		Recorder some = send(LinkProfile.parse("latency=1ms loss=20%", LinkProfile.PERFECT), 0);
+		Assert.assertTrue(some.received.size() > NB_MSGS / 2 && some.received.size() < NB_MSGS);
+		for (int i = 1; i < some.received.size(); i++) {
+			Assert.assertTrue(some.received.get(i - 1) < some.received.get(i));
+		}
+	}
+
+	@Test
+	public void duplication() throws Exception {
+		Recorder server = send(LinkProfile.parse("latency=1ms duplicate=1", LinkProfile.PERFECT), 0);
+		Assert.assertEquals(2 * NB_MSGS, server.received.size());
+		for (int i = 0; i < NB_MSGS; i++) {
+			final int seqNumber = i;
+			Assert.assertEquals(2, server.received.stream().filter(seq -> seq == seqNumber).count());
+		}
+	}
+
+	@Test
+	public void reordering() throws Exception {
+		Recorder server = send(LinkProfile.parse("latency=1ms reorder=10%", LinkProfile.PERFECT),
+				0);
+		Assert.assertEquals(NB_MSGS, server.received.size());
+		int nbInversions = 0;
+		for (int i = 1; i < NB_MSGS; i++) {
+			if (server.received.get(i - 1) > server.received.get(i)) {
+				nbInversions++;
+			}
+		}
+		Assert.assertTrue(nbInversions > 0);
+		List<Integer> sorted = new ArrayList<>(server.received);
+		sorted.sort(null);
+		for (int i = 0; i < NB_MSGS; i++) {
+			Assert.assertEquals(i, sorted.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void bandwidth() throws Exception {
+		Recorder server = send(LinkProfile.parse("bandwidth=1Mbps", LinkProfile.PERFECT), 0);
+		Assert.assertEquals(NB_MSGS, server.received.size());
+		long previous = 0;
+		for (long time : server.times) {
+			// a frame of more than 16 bytes lasts more than 128 us at 1 Mbit/s
+			Assert.assertTrue(time - previous > 128_000);
+			previous = time;
+		}
+	}
+
+	@Test
+	public void latencyDistributions() throws Exception {
+		for (String distribution : new String[] {"uniform", "normal", "exponential"}) {
+			Recorder server = send(LinkProfile.parse("distribution=" + distribution
+					+ " latency=10ms jitter=2ms", LinkProfile.PERFECT), 1);
+			Assert.assertEquals(NB_MSGS, server.received.size());
+			long last = server.times.get(NB_MSGS - 1);
+			Assert.assertTrue(distribution + " " + last, last >= 10_000_000 && last < 40_000_000);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import chat.common.Action;
+import chat.common.FullDuplexMsgWorker;
+import chat.common.LatencyHistogram;
+import chat.common.OutboundQueue;
+import chat.common.PriorityLane;
+import chat.common.ReadMessageStatus;
+import chat.server.algorithms.rooms.Algorithm;
+
+/**
+ * This class contains the unit tests of the priority lanes of the class
+ * <tt>FullDuplexMsgWorker</tt>: when the socket buffer is full, a control
+ * message overtakes the chat messages that are waiting in the outbound queue,
+ * including the chat messages relayed between the servers. The lane of the
+ * chat messages is bounded, and the frames dropped are counted.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class PriorityLanesTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	private static final int CONTROL_TYPE = Action.OFFSET_SERVER_ALGORITHMS;
+
+	private static final int HOME_TYPE = Algorithm.HOME_MESSAGE.identifier();
+
+	private static final int RUMOUR_TYPE =
+			chat.server.algorithms.gossip.Algorithm.RUMOUR_MESSAGE.identifier();
+
+	private ServerSocketChannel listen;
+
+	private FullDuplexMsgWorker sender;
+
+	private FullDuplexMsgWorker receiver;
+
+	@Before
+	public void setUp() throws Exception {
+		listen = ServerSocketChannel.open();
+		listen.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		SocketChannel out = SocketChannel.open(listen.getLocalAddress());
+		out.setOption(StandardSocketOptions.SO_SNDBUF, 4096);
+		SocketChannel in = listen.accept();
+		in.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+		sender = new FullDuplexMsgWorker(out);
+		sender.configureNonBlocking();
+		receiver = new FullDuplexMsgWorker(in);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		sender.close();
+		receiver.close();
+		listen.close();
+	}
+
+	@Test
+	public void testLaneOfType() throws Exception {
+		Assert.assertEquals(PriorityLane.CONTROL, PriorityLane.of(CONTROL_TYPE));
+		Assert.assertEquals(PriorityLane.CONTROL, PriorityLane.of(CHAT_TYPE - 1));
+		Assert.assertEquals(PriorityLane.DATA, PriorityLane.of(CHAT_TYPE));
+		// the chat messages relayed to the home server of their room are data
+		Assert.assertEquals(PriorityLane.DATA, PriorityLane.of(HOME_TYPE));
+		Assert.assertEquals(PriorityLane.CONTROL, PriorityLane.of(HOME_TYPE - 1));
+		// the rumours sent again by the anti-entropy are data, and not their digests
+		Assert.assertEquals(PriorityLane.DATA, PriorityLane.of(RUMOUR_TYPE));
+		Assert.assertEquals(PriorityLane.CONTROL, PriorityLane.of(
+				chat.server.algorithms.gossip.Algorithm.DIGEST_MESSAGE.identifier()));
+		Assert.assertEquals(PriorityLane.CONTROL, PriorityLane.of(
+				chat.server.algorithms.gossip.Algorithm.PULL_MESSAGE.identifier()));
+	}
+
+	@Test
+	public void testControlOvertakesQueuedChatMessages() throws Exception {
+		controlOvertakes(CHAT_TYPE);
+	}
+
+	@Test
+	public void testControlOvertakesQueuedHomeMessages() throws Exception {
+		controlOvertakes(HOME_TYPE);
+	}
+
+	@Test
+	public void testControlOvertakesQueuedRumours() throws Exception {
+		controlOvertakes(RUMOUR_TYPE);
+	}
+
+	private void controlOvertakes(final int dataType) throws Exception {
+		char[] chars = new char[1024];
+		java.util.Arrays.fill(chars, 'x');
+		String payload = new String(chars);
+		int nbChat = 0;
+		while (sender.getOutQueueLength() < 10) {
+			sender.sendMsg(dataType, 1, nbChat, payload);
+			nbChat++;
+		}
+		sender.sendMsg(CONTROL_TYPE, 1, -1, "control");
+		int nbChatBeforeControl = 0;
+		boolean controlReceived = false;
+		while (!controlReceived) {
+			sender.flush();
+			if (receiver.readMessage() == ReadMessageStatus.ReadDataCompleted) {
+				if (receiver.getInType() == CONTROL_TYPE) {
+					controlReceived = true;
+				} else {
+					nbChatBeforeControl++;
+				}
+			}
+		}
+		Assert.assertTrue(nbChatBeforeControl < nbChat - 1);
+		Assert.assertEquals(1, sender.getQueueWait(PriorityLane.CONTROL).getCount());
+	}
+
+	@Test
+	public void testDataLaneIsBounded() throws Exception {
+		OutboundQueue queue = new OutboundQueue(2);
+		ByteBuffer[] frame = new ByteBuffer[] {ByteBuffer.allocate(1), ByteBuffer.allocate(1)};
+		Assert.assertTrue(queue.add(CHAT_TYPE, frame));
+		Assert.assertTrue(queue.add(HOME_TYPE, frame));
+		Assert.assertFalse(queue.add(CHAT_TYPE, frame));
+		Assert.assertFalse(queue.add(RUMOUR_TYPE, frame));
+		// the control lane is not bounded
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(queue.add(CONTROL_TYPE, frame));
+		}
+		Assert.assertEquals(12, queue.size());
+		// room is only made by the dequeue of a data frame, after the control frames
+		for (int i = 0; i < 10; i++) {
+			Assert.assertNotNull(queue.poll());
+			Assert.assertFalse(queue.add(CHAT_TYPE, frame));
+		}
+		Assert.assertNotNull(queue.poll());
+		Assert.assertTrue(queue.add(CHAT_TYPE, frame));
+		Assert.assertFalse(queue.add(CHAT_TYPE, frame));
+	}
+
+	@Test
+	public void testDroppedFramesAreCounted() throws Exception {
+		System.setProperty(OutboundQueue.DATA_LIMIT_PROPERTY, "3");
+		FullDuplexMsgWorker bounded;
+		try {
+			bounded = new FullDuplexMsgWorker(SocketChannel.open(listen.getLocalAddress()));
+		} finally {
+			System.clearProperty(OutboundQueue.DATA_LIMIT_PROPERTY);
+		}
+		try (SocketChannel peer = listen.accept()) {
+			bounded.configureNonBlocking();
+			char[] chars = new char[1024];
+			java.util.Arrays.fill(chars, 'x');
+			String payload = new String(chars);
+			while (bounded.getMetrics().getDroppedFrames() == 0) {
+				bounded.sendMsg(CHAT_TYPE, 1, 0, payload);
+			}
+			Assert.assertEquals(0, bounded.sendMsg(CHAT_TYPE, 1, 0, payload));
+			Assert.assertEquals(2, bounded.getMetrics().getDroppedFrames());
+			Assert.assertTrue(bounded.sendMsg(CONTROL_TYPE, 1, -1, "control") > 0);
+		} finally {
+			bounded.close();
+		}
+	}
+
+	@Test
+	public void testHistogramPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		Assert.assertEquals(1000, histogram.getCount());
+		Assert.assertEquals(1000000, histogram.getMax());
+		long p50 = histogram.getValueAtPercentile(50);
+		Assert.assertTrue(p50 >= 500000 && p50 <= 500000 * 17 / 16);
+		long p99 = histogram.getValueAtPercentile(99);
+		Assert.assertTrue(p99 >= 990000 && p99 <= 1000000);
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getCount());
+	}
+}
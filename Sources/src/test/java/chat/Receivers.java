@@ -0,0 +1,54 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.Serializable;
+
+import chat.common.MsgReceiver;
+import chat.common.MsgWorker;
+
+/**
+ * This class contains the message receivers shared by the unit tests.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public final class Receivers {
+
+	/**
+	 * the receiver that ignores the messages and the closing of the connections.
+	 */
+	public static final MsgReceiver IGNORE = new MsgReceiver() {
+		@Override
+		public void received(final MsgWorker worker, final int type, final int identity,
+				final int seqNumber, final Serializable msg) {
+		}
+
+		@Override
+		public void closed(final MsgWorker worker) {
+		}
+	};
+
+	private Receivers() {
+	}
+}
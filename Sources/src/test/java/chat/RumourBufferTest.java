@@ -0,0 +1,62 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.server.algorithms.gossip.RumourBuffer;
+import chat.server.algorithms.gossip.RumourContent;
+
+public class RumourBufferTest {
+
+	private static RumourContent rumour(final int seqNumber) {
+		return new RumourContent(1000, 7, seqNumber, 0, 1, "message " + seqNumber);
+	}
+
+	@Test
+	public void rounds() {
+		RumourBuffer buffer = new RumourBuffer(100, 2);
+		buffer.add(0, rumour(0));
+		buffer.nextRound();
+		buffer.add(1, rumour(1));
+		Assert.assertArrayEquals(new long[] {0, 1}, buffer.ids());
+		buffer.nextRound();
+		// the rumours of the round 0 are forgotten at the start of the round 2
+		Assert.assertArrayEquals(new long[] {1}, buffer.ids());
+		Assert.assertNull(buffer.get(0));
+		Assert.assertEquals(1, buffer.get(1).getSeqNumber());
+		buffer.nextRound();
+		Assert.assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void capacity() {
+		RumourBuffer buffer = new RumourBuffer(3, 5);
+		for (int seq = 0; seq < 5; seq++) {
+			buffer.add(seq, rumour(seq));
+		}
+		Assert.assertArrayEquals(new long[] {2, 3, 4}, buffer.ids());
+		Assert.assertEquals("message 4", buffer.rumours().get(4L).getMessage());
+	}
+}
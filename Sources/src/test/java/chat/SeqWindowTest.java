@@ -0,0 +1,83 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.LoopbackNetwork;
+import chat.server.Server;
+import chat.server.State;
+import chat.server.algorithms.rooms.Actions;
+import chat.server.algorithms.rooms.SeqWindow;
+
+public class SeqWindowTest {
+
+	@Test
+	public void outOfOrder() {
+		SeqWindow window = new SeqWindow(64);
+		Assert.assertTrue(window.add(2));
+		Assert.assertTrue(window.add(1));
+		Assert.assertFalse(window.add(2));
+		Assert.assertFalse(window.add(1));
+		Assert.assertTrue(window.add(7));
+		Assert.assertTrue(window.add(5));
+		Assert.assertFalse(window.add(5));
+		Assert.assertEquals(7, window.getHighest());
+	}
+
+	@Test
+	public void slidingWindow() {
+		SeqWindow window = new SeqWindow(64);
+		Assert.assertEquals(-1, window.getHighest());
+		Assert.assertTrue(window.add(0));
+		Assert.assertTrue(window.add(100));
+		// out of the window: taken for a duplicate
+		Assert.assertFalse(window.add(36));
+		Assert.assertTrue(window.add(37));
+		Assert.assertFalse(window.add(37));
+		// the slots of the sequence numbers that left the window are reused
+		Assert.assertTrue(window.add(164));
+		Assert.assertTrue(window.add(140));
+		Assert.assertFalse(window.add(100));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidSize() {
+		new SeqWindow(100);
+	}
+
+	@Test
+	public void overtakenMessageOfARoom() throws Exception {
+		State state = new Server("0".split(" "), new LoopbackNetwork(0)).getState();
+		// the message 2 of the client 5 fanned out directly overtakes the message 1 relayed home
+		Assert.assertTrue(Actions.isNew(state, "blue", 5, 2));
+		Assert.assertTrue(Actions.isNew(state, "blue", 5, 1));
+		Assert.assertFalse(Actions.isNew(state, "blue", 5, 1));
+		Assert.assertFalse(Actions.isNew(state, "blue", 5, 2));
+		// the windows are per room and per client
+		Assert.assertTrue(Actions.isNew(state, "red", 5, 1));
+		Assert.assertTrue(Actions.isNew(state, "blue", 6, 1));
+		Assert.assertEquals(3, Actions.dedupEntries(state));
+	}
+}
@@ -0,0 +1,65 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.BenchmarkScenario;
+import chat.common.Log;
+import chat.common.Topology;
+import chat.server.Server;
+
+/**
+ * This class runs short benchmarks with a ring of three servers, and with idle clients, and checks
+ * the JSON lines of the results.
+ */
+public class TestBenchmarkScenario {
+
+	@Test
+	public void ring() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		File output = File.createTempFile("benchmark", ".json");
+		output.deleteOnExit();
+
+		BenchmarkScenario benchmark = new BenchmarkScenario(Arrays.asList(Server.SELECTOR_ENGINE),
+				Topology.RING, 3, 3, 3, 1, 20, 16, 1, 10, 0, 0, output.getPath());
+		benchmark.constructAndRun();
+
+		List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+		Assert.assertEquals(1, lines.size());
+		String result = lines.get(0);
+		Assert.assertEquals(benchmark.getResults().get(0), result);
+		Assert.assertTrue(result.contains("\"engine\":\"selector\""));
+		Assert.assertTrue(result.contains("\"topology\":\"ring\""));
+		Assert.assertTrue(result.contains("\"links\":3"));
+		Assert.assertFalse(result.contains("\"sent\":0,"));
+		Assert.assertTrue(result.contains("\"deliveryRatio\":1.0000"));
+		Assert.assertTrue(result.contains("\"latencyMicros\":{"));
+		Assert.assertTrue(result.contains("\"interServer\":{"));
+	}
+
+	@Test
+	public void idleClients() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		// more idle clients than the offset of the identities of the clients of a server
+		BenchmarkScenario benchmark = new BenchmarkScenario(Arrays.asList(Server.SELECTOR_ENGINE),
+				Topology.LINE, 2, 3, 2, 2 * Server.OFFSET_ID_CLIENT + 10, 2, 20, 16, 1, 10, 0, 0, null);
+		benchmark.constructAndRun();
+
+		String result = benchmark.getResults().get(0);
+		Assert.assertTrue(result.contains("\"idle\":210,"));
+		// the idle clients do not receive the messages of the active ones
+		Assert.assertFalse(result.contains("\"sent\":0,"));
+		Assert.assertTrue(result.contains("\"deliveryRatio\":1.0000"));
+		Assert.assertTrue(result.contains("\"memory\":{\"connections\":216,"));
+		Assert.assertTrue(result.contains("\"heapPerConnectionKB\":"));
+	}
+}
@@ -11,6 +11,7 @@ import org.junit.Test;
 import chat.client.Client;
 import chat.common.Interceptor;
 import chat.common.Log;
+import chat.common.LoopbackNetwork;
 import chat.common.Scenario;
 import chat.server.Server;
 
@@ -18,6 +19,10 @@ public class TestDiffusion extends Scenario {
 
 	private static final int WAIT = 500;
 
+	public TestDiffusion() {
+		super(new LoopbackNetwork(0));
+	}
+
   @Test
 	@Override
 	public void constructAndRun() throws Exception {
@@ -25,43 +30,37 @@ public class TestDiffusion extends Scenario {
 		Log.configureALogger(LOGGER_NAME_TEST, Level.INFO);
 
 		Server s0 = instanciateAServer("0");
-		sleep(WAIT);
 		Client c0 = instanciateAClient(2050);
-		sleep(WAIT);
 		Client c1 = instanciateAClient(2050);
-		sleep(WAIT);
 		Client c2 = instanciateAClient(2050);
-		sleep(2* WAIT);
 		if (LOG_ON && TEST.isInfoEnabled()) {
 			TEST.info("starting the test of the diffusion algorithm...");
 		}
 
+		// the messages from c0 to c2 are delayed by the interceptor
 		Interceptor.setInterceptionEnabled(true);
 		emulateAnInputLineFromTheConsoleForAClient(c0, "message 1 from 0");
-		sleep(WAIT);
-		Interceptor.setInterceptionEnabled(false);
+		await(nbDelivered(c1, 1), WAIT);
+		// hence, c2 receives the message from c1 before its causal predecessor
 		emulateAnInputLineFromTheConsoleForAClient(c1, "message 2 from 1");
-		sleep(WAIT);
+		long convergence = await(allOf(nbDelivered(c0, 1), nbDelivered(c2, 2),
+				msgBagDrained(c2)), WAIT);
+		Interceptor.setInterceptionEnabled(false);
 		if (LOG_ON && TEST.isInfoEnabled()) {
-			TEST.info("end of the scenario.");
+			TEST.info("end of the scenario, converged in " + convergence + " ns.");
 		}
 
 		Assert.assertEquals(c0.getState().MsgBag.size(), 0);
 		Assert.assertEquals(c1.getState().MsgBag.size(), 0);
 		Assert.assertEquals(c2.getState().MsgBag.size(), 0);
+		Assert.assertEquals(2, c2.getState().nbChatMessageContentReceived);
 
 		emulateAnInputLineFromTheConsoleForAServer(s0, "quit");
-		sleep(WAIT);
 		// finish properly
 		emulateAnInputLineFromTheConsoleForAClient(c0, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAClient(c1, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAClient(c2, "quit");
 		sleep(WAIT);
-
-		sleep(WAIT);
-
 	}
 
 }
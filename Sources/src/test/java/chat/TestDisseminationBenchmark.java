@@ -0,0 +1,55 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.DisseminationBenchmark;
+import chat.common.Log;
+import chat.common.Topology;
+import chat.server.algorithms.Dissemination;
+
+/**
+ * This class compares the flooding and the gossip on a fully connected cluster: the gossip sends
+ * fewer messages, and all the messages are delivered with both modes.
+ */
+public class TestDisseminationBenchmark {
+
+	private static final int N = 20;
+
+	private static final int NB_MESSAGES = 20;
+
+	@Test
+	public void mesh() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		DisseminationBenchmark flooding = run(Dissemination.FLOODING);
+		DisseminationBenchmark gossip = run(Dissemination.GOSSIP);
+		// the flooding sends every message on every link, in both directions but one
+		Assert.assertEquals(flooding.getResult(), NB_MESSAGES * (N * (N - 1) - (N - 1)),
+				field(flooding, "frames"), 0);
+		Assert.assertTrue(gossip.getResult(),
+				field(gossip, "frames") < field(flooding, "frames") / 4);
+		Assert.assertTrue(gossip.getResult(),
+				field(gossip, "bytes") < field(flooding, "bytes") / 4);
+		Assert.assertTrue(gossip.getResult(), field(gossip, "digests") > 0);
+		// the flooding delivers along the shortest paths
+		Assert.assertTrue(gossip.getResult(),
+				field(flooding, "meanLatencyMicros") <= field(gossip, "meanLatencyMicros"));
+	}
+
+	private static DisseminationBenchmark run(final Dissemination mode) throws Exception {
+		DisseminationBenchmark run = new DisseminationBenchmark(mode, Topology.MESH, N,
+				Dissemination.DEFAULT_FANOUT, NB_MESSAGES, 50, Dissemination.DEFAULT_PERIOD, 0);
+		run.constructAndRun();
+		Assert.assertTrue(run.getResult().contains("\"mode\":\"" + mode.modeName() + "\""));
+		return run;
+	}
+
+	private static double field(final DisseminationBenchmark benchmark, final String name) {
+		String result = benchmark.getResult();
+		int start = result.indexOf("\"" + name + "\":") + name.length() + 3;
+		return Double.parseDouble(result.substring(start, result.indexOf(',', start)));
+	}
+}
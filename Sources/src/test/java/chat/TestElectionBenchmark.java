@@ -0,0 +1,126 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.ElectionBenchmark;
+import chat.common.Log;
+import chat.common.Topology;
+import chat.server.Server;
+import chat.server.algorithms.ElectionAlgorithm;
+import chat.server.algorithms.election.Actions;
+
+/**
+ * This class runs the election algorithms on small rings and clusters, and checks the leader and
+ * the number of messages against the complexity of the algorithms.
+ */
+public class TestElectionBenchmark {
+
+	private static final int N = 8;
+
+	@Test
+	public void ring() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		long echo = messages(run(ElectionAlgorithm.ECHO, Topology.RING, N));
+		long changRoberts = messages(run(ElectionAlgorithm.CHANG_ROBERTS, Topology.RING, N));
+		long hirschbergSinclair = messages(run(ElectionAlgorithm.HIRSCHBERG_SINCLAIR,
+				Topology.RING, N));
+		// the candidacies and the elected message
+		Assert.assertTrue(changRoberts >= 2 * N);
+		Assert.assertTrue(changRoberts <= N * (N + 3) / 2);
+		// log2(8) + 1 phases, at most 4 probes and replies per server and phase, and the elected
+		// message
+		Assert.assertTrue(hirschbergSinclair <= 4 * N * 4 + N);
+		Assert.assertTrue(changRoberts < echo);
+		// a single initiator: the candidacy of the server 0 does a full turn
+		ElectionBenchmark single = run(ElectionAlgorithm.CHANG_ROBERTS, Topology.RING, N, 1);
+		Assert.assertTrue(messages(single) >= 2 * N);
+	}
+
+	@Test
+	public void mesh() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		long echo = messages(run(ElectionAlgorithm.ECHO, Topology.MESH, N));
+		ElectionBenchmark bully = run(ElectionAlgorithm.BULLY, Topology.MESH, N);
+		Assert.assertTrue(bully.getResult().contains("\"algorithm\":\"bully\""));
+		Assert.assertTrue(bully.getResult().contains("\"links\":" + N * (N - 1) / 2));
+		// at most an election message and an answer per ordered pair, and the coordinator messages
+		Assert.assertTrue(messages(bully) <= 2 * N * (N - 1) + N * (N - 1));
+		// the waves of the concurrent initiators of the echo are batched
+		Assert.assertTrue(echo <= 4 * N * (N - 1) / 2);
+	}
+
+	@Test
+	public void massRestart() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		ElectionBenchmark batched = run(ElectionAlgorithm.ECHO, Topology.RANDOM, 60);
+		long links = links(batched);
+		// a token and a leader message per direction of every link
+		Assert.assertTrue(batched.getResult(), messages(batched) <= 4 * links);
+		Assert.assertFalse(batched.getResult().contains("\"suppressed\":0,"));
+		long counted = 0;
+		for (Server server : batched.getServers()) {
+			counted += server.getState().getElectionMsgsSent();
+		}
+		Assert.assertEquals(batched.getResult(), messages(batched), counted);
+		System.setProperty(Actions.BACKOFF_PROPERTY, "0");
+		try {
+			ElectionBenchmark unbatched = run(ElectionAlgorithm.ECHO, Topology.RANDOM, 60);
+			Assert.assertTrue(unbatched.getResult(), messages(unbatched) > 2 * messages(batched));
+		} finally {
+			System.clearProperty(Actions.BACKOFF_PROPERTY);
+		}
+	}
+
+	@Test
+	public void notApplicable() throws Exception {
+		Assert.assertFalse(ElectionBenchmark.isApplicable(ElectionAlgorithm.CHANG_ROBERTS,
+				Topology.MESH, N));
+		Assert.assertFalse(ElectionBenchmark.isApplicable(ElectionAlgorithm.HIRSCHBERG_SINCLAIR,
+				Topology.RING, 2));
+		Assert.assertFalse(ElectionBenchmark.isApplicable(ElectionAlgorithm.BULLY, Topology.RING,
+				N));
+		Assert.assertTrue(ElectionBenchmark.isApplicable(ElectionAlgorithm.ECHO, Topology.STAR,
+				N));
+		// the ring algorithms refuse to start without exactly two neighbours
+		ElectionBenchmark star = run(ElectionAlgorithm.ECHO, Topology.STAR, 4);
+		Server centre = star.getServers().get(0);
+		ElectionAlgorithm.CHANG_ROBERTS.start(centre.getState());
+		Assert.assertEquals(0, star.getNetwork().runUntilQuiescent());
+	}
+
+	private static ElectionBenchmark run(final ElectionAlgorithm algorithm,
+			final Topology topology, final int nbServers) throws Exception {
+		return run(algorithm, topology, nbServers, nbServers);
+	}
+
+	private static ElectionBenchmark run(final ElectionAlgorithm algorithm,
+			final Topology topology, final int nbServers, final int nbInitiators)
+			throws Exception {
+		ElectionBenchmark benchmark = new ElectionBenchmark(algorithm, topology, nbServers,
+				nbInitiators, 0);
+		benchmark.constructAndRun();
+		Assert.assertTrue(benchmark.getResult(), benchmark.getResult().contains("\"leader\":0"));
+		for (Server server : benchmark.getServers()) {
+			Assert.assertEquals(0, server.getState().getWin());
+		}
+		return benchmark;
+	}
+
+	private static long messages(final ElectionBenchmark benchmark) {
+		return field(benchmark, "messages");
+	}
+
+	private static long links(final ElectionBenchmark benchmark) {
+		return field(benchmark, "links");
+	}
+
+	private static long field(final ElectionBenchmark benchmark, final String name) {
+		String result = benchmark.getResult();
+		int start = result.indexOf("\"" + name + "\":") + name.length() + 3;
+		return Long.parseLong(result.substring(start, result.indexOf(',', start)));
+	}
+}
@@ -10,6 +10,7 @@ import org.junit.Test;
 
 import chat.common.Interceptor;
 import chat.common.Log;
+import chat.common.LoopbackNetwork;
 import chat.common.Scenario;
 import chat.server.Server;
 
@@ -20,6 +21,10 @@ public class TestElectionTest extends Scenario {
   private static final String INITIATOR = "Initiator";
   private static final int WAIT = 500;
 
+	public TestElectionTest() {
+		super(new LoopbackNetwork(0));
+	}
+
   @Test
 	@Override
 	public void constructAndRun() throws Exception {
@@ -27,20 +32,13 @@ public class TestElectionTest extends Scenario {
 		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
 
 		Server s1 = instanciateAServer("0");
-		sleep(WAIT);
 		Server s2 = instanciateAServer("1 localhost 0");
-		sleep(WAIT);
 		Server s5 = instanciateAServer("4 localhost 0 localhost 1");
-		sleep(WAIT);
 		Server s3 = instanciateAServer("2 localhost 1");
-		sleep(WAIT);
 		Server s4 = instanciateAServer("3 localhost 2");
-		sleep(WAIT);
 		Server s6 = instanciateAServer("5 localhost 2");
-		sleep(WAIT);
 		Interceptor.setInterceptionEnabled(true);
 
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAServer(s3, INITIATOR);
 
 		emulateAnInputLineFromTheConsoleForAServer(s6, INITIATOR);
@@ -50,7 +48,10 @@ public class TestElectionTest extends Scenario {
 		emulateAnInputLineFromTheConsoleForAServer(s2, INITIATOR);
 		
 		emulateAnInputLineFromTheConsoleForAServer(s1, INITIATOR);
-		sleep(4 * WAIT);
+		long convergence = await(allOf(statusIs(s1, LEADER), statusIs(s2, NON_LEADER),
+				statusIs(s3, NON_LEADER), statusIs(s4, NON_LEADER), statusIs(s5, NON_LEADER),
+				statusIs(s6, NON_LEADER)), 4 * WAIT);
+		System.out.println("election terminated in " + convergence + " ns");
 		Assert.assertEquals(LEADER , s1.getState().getStatus() );
 		Assert.assertEquals(NON_LEADER , s2.getState().getStatus() );
 		Assert.assertEquals(NON_LEADER , s3.getState().getStatus() );
@@ -59,17 +60,12 @@ public class TestElectionTest extends Scenario {
 		Assert.assertEquals(NON_LEADER , s6.getState().getStatus() );
 
 		emulateAnInputLineFromTheConsoleForAServer(s1, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAServer(s2, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAServer(s3, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAServer(s4, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAServer(s5, "quit");
-		sleep(WAIT);
 		emulateAnInputLineFromTheConsoleForAServer(s6, "quit");
-		sleep(2 *WAIT);
+		sleep(WAIT);
 
 	}
 
@@ -0,0 +1,105 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.Log;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgWorker;
+import chat.common.Scenario;
+import chat.server.Server;
+import chat.server.algorithms.Dissemination;
+
+public class TestGossip extends Scenario {
+
+	private static final int N = 6;
+
+	private static final int NB_MESSAGES = 12;
+
+	public TestGossip() {
+		super(new LoopbackNetwork(0));
+	}
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		Server[] servers = new Server[N];
+		Client[] clients = new Client[N];
+		// a fully connected cluster, in which the push with a fan-out of 1 is a random walk that
+		// stops at the first server having already seen the message
+		System.setProperty(Dissemination.DISSEMINATION_PROPERTY, "gossip");
+		System.setProperty(Dissemination.FANOUT_PROPERTY, "1");
+		try {
+			for (int i = 0; i < N; i++) {
+				StringBuilder args = new StringBuilder(Integer.toString(i));
+				for (int j = 0; j < i; j++) {
+					args.append(" localhost ").append(j);
+				}
+				servers[i] = instanciateAServer(args.toString());
+			}
+		} finally {
+			System.clearProperty(Dissemination.DISSEMINATION_PROPERTY);
+			System.clearProperty(Dissemination.FANOUT_PROPERTY);
+		}
+		Assert.assertEquals(Dissemination.GOSSIP, servers[0].getDissemination());
+		getNetwork().runUntilQuiescent();
+		for (int i = 0; i < N; i++) {
+			clients[i] = instanciateAClient(2050 + i);
+		}
+		getNetwork().runUntilQuiescent();
+
+		long before = framesOut(servers);
+		for (int m = 0; m < NB_MESSAGES; m++) {
+			emulateAnInputLineFromTheConsoleForAClient(clients[m % N], "rumour " + m);
+		}
+		getNetwork().runUntilQuiescent();
+		// every server sends a new message to one neighbour only
+		Assert.assertTrue(framesOut(servers) - before <= NB_MESSAGES * (N - 1));
+		int expected = NB_MESSAGES - NB_MESSAGES / N;
+		int missing = 0;
+		for (Client client : clients) {
+			missing += expected - client.getState().nbChatMessageContentReceived;
+		}
+		Assert.assertTrue(missing > 0);
+
+		// the anti-entropy repairs the gaps
+		for (int round = 0; round < 10 && missing > 0; round++) {
+			for (Server server : servers) {
+				server.gossip();
+			}
+			getNetwork().runUntilQuiescent();
+			missing = 0;
+			for (Client client : clients) {
+				missing += expected - client.getState().nbChatMessageContentDelivered;
+			}
+		}
+		long digests = 0;
+		long repaired = 0;
+		for (Server server : servers) {
+			digests += server.getMetrics().getDigestsSent();
+			repaired += server.getMetrics().getRumoursRepaired();
+		}
+		Assert.assertTrue(digests > 0);
+		Assert.assertTrue(repaired > 0);
+		// every message is delivered once, in causal order
+		for (Client client : clients) {
+			Assert.assertEquals(expected, client.getState().nbChatMessageContentDelivered);
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+	}
+
+	private static long framesOut(final Server[] servers) {
+		long frames = 0;
+		for (Server server : servers) {
+			for (MsgWorker worker : server.getState().getServerWorkersView()) {
+				frames += worker.getMetrics().getFramesOut();
+			}
+		}
+		return frames;
+	}
+}
@@ -0,0 +1,73 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.Log;
+import chat.common.LoopbackNetwork;
+import chat.common.Scenario;
+import chat.common.Topology;
+import chat.server.Server;
+
+/**
+ * This class runs the diffusion of chat messages with ninety servers in a random topology and four
+ * clients per server, over the in-process network, and measures the time of convergence.
+ */
+public class TestLargeScenario extends Scenario {
+
+	private static final int SERVERS = 90;
+
+	private static final int CLIENTS_PER_SERVER = 4;
+
+	private static final int SENDERS = 5;
+
+	private static final int TIMEOUT = 10000;
+
+	public TestLargeScenario() {
+		super(new LoopbackNetwork(0, LoopbackNetwork.DEFAULT_LATENCY,
+				LoopbackNetwork.DEFAULT_LATENCY));
+	}
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+
+		List<List<Integer>> connections = Topology.RANDOM.connections(SERVERS, new Random(0), 0.01);
+		for (int i = 0; i < SERVERS; i++) {
+			StringBuilder args = new StringBuilder(Integer.toString(i));
+			for (Integer j : connections.get(i)) {
+				args.append(" localhost ").append(j);
+			}
+			instanciateAServer(args.toString());
+		}
+		List<Client> clients = new ArrayList<>();
+		for (int i = 0; i < SERVERS * CLIENTS_PER_SERVER; i++) {
+			clients.add(instanciateAClient(Server.BASE_PORTNB_LISTEN_CLIENT + i % SERVERS));
+		}
+
+		for (int i = 0; i < SENDERS; i++) {
+			emulateAnInputLineFromTheConsoleForAClient(clients.get(i), "message from c" + i);
+		}
+		List<BooleanSupplier> delivered = new ArrayList<>();
+		for (int i = 0; i < clients.size(); i++) {
+			delivered.add(nbDelivered(clients.get(i), i < SENDERS ? SENDERS - 1 : SENDERS));
+		}
+		long convergence = await(allOf(delivered.toArray(new BooleanSupplier[0])), TIMEOUT);
+		System.out.println("diffusion to " + clients.size() + " clients terminated in " + convergence
+				+ " ns of virtual time");
+
+		for (Client client : clients) {
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.LoadGenerator;
+import chat.common.Log;
+import chat.common.Scenario;
+import chat.server.Server;
+
+/**
+ * This class runs the load generator with a few logical clients spread over two servers, and
+ * checks that every message sent is delivered to all the other logical clients.
+ */
+public class TestLoadGenerator extends Scenario {
+
+	private static final int WAIT = 500;
+
+	private static final int CLIENTS = 40;
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+
+		Server s0 = instanciateAServer("0");
+		sleep(WAIT);
+		Server s1 = instanciateAServer("1 localhost 0");
+		sleep(WAIT);
+
+		LoadGenerator generator = new LoadGenerator(
+				Arrays.asList(new InetSocketAddress("localhost", 2050),
+						new InetSocketAddress("localhost", 2051)),
+				CLIENTS, CLIENTS / 2, 2, 50, 32);
+		try {
+			generator.connect(10 * WAIT);
+			boolean drained = generator.runLoad(2 * WAIT, 20 * WAIT);
+			System.out.println(generator.report());
+			Assert.assertTrue(generator.getNbSent() > 0);
+			Assert.assertTrue(drained);
+			Assert.assertEquals(generator.getNbSent() * (CLIENTS - 1), generator.getNbDelivered());
+			Assert.assertEquals(generator.getNbDelivered(), generator.getLatency().getCount());
+		} finally {
+			generator.close();
+		}
+
+		emulateAnInputLineFromTheConsoleForAServer(s0, "quit");
+		emulateAnInputLineFromTheConsoleForAServer(s1, "quit");
+		sleep(WAIT);
+	}
+}
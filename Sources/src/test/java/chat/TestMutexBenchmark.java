@@ -0,0 +1,96 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Log;
+import chat.common.LoopbackNetwork;
+import chat.common.MutexBenchmark;
+import chat.common.Scenario;
+import chat.common.Topology;
+import chat.server.Server;
+import chat.server.algorithms.MutualExclusionAlgorithm;
+
+/**
+ * This class runs the algorithms of mutual exclusion on small trees and clusters, and checks the
+ * entries in the critical section and the number of messages against the complexity of the
+ * algorithms.
+ */
+public class TestMutexBenchmark {
+
+	@Test
+	public void raymondOnATree() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		MutexBenchmark benchmark = new MutexBenchmark(MutualExclusionAlgorithm.RAYMOND,
+				Topology.TREE, 15, 2, 0);
+		benchmark.constructAndRun();
+		String result = benchmark.getResult();
+		Assert.assertTrue(result, result.contains("\"entries\":30"));
+		// the creation of the token crosses every link once
+		Assert.assertTrue(result, result.contains("\"setupMessages\":14"));
+		for (int i = 0; i < 15; i++) {
+			Assert.assertEquals(2, Collections.frequency(benchmark.getEntries(), i));
+		}
+		// a request and the token cross at most the diameter of the tree, which is 6
+		Assert.assertTrue(result, messages(result) <= 30 * 2 * 6);
+	}
+
+	@Test
+	public void ricartAgrawalaOnAMesh() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		MutexBenchmark baseline = new MutexBenchmark(MutualExclusionAlgorithm.RICART_AGRAWALA,
+				Topology.MESH, 7, 1, 0);
+		baseline.constructAndRun();
+		// a request and a reply per other server and per entry
+		Assert.assertEquals(7 * 2 * 6, messages(baseline.getResult()));
+		Assert.assertEquals(7, baseline.getEntries().size());
+		MutexBenchmark raymond = new MutexBenchmark(MutualExclusionAlgorithm.RAYMOND,
+				Topology.MESH, 7, 1, 0);
+		raymond.constructAndRun();
+		Assert.assertTrue(messages(raymond.getResult()) < messages(baseline.getResult()));
+		Assert.assertFalse(MutexBenchmark.isApplicable(MutualExclusionAlgorithm.RICART_AGRAWALA,
+				Topology.TREE));
+	}
+
+	@Test
+	public void newToken() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		Scenario scenario = new Scenario(new LoopbackNetwork(0)) {
+			@Override
+			public void constructAndRun() {
+			}
+		};
+		Server s0 = scenario.instanciateAServer("0");
+		Server s1 = scenario.instanciateAServer("1 localhost 0");
+		Server s2 = scenario.instanciateAServer("2 localhost 1");
+		scenario.getNetwork().runUntilQuiescent();
+		List<Integer> entries = new ArrayList<>();
+		// no token yet: the request waits
+		s2.requestCriticalSection(() -> entries.add(2));
+		scenario.getNetwork().runUntilQuiescent();
+		Assert.assertTrue(entries.isEmpty());
+		scenario.emulateAnInputLineFromTheConsoleForAServer(s0, "Token");
+		scenario.getNetwork().runUntilQuiescent();
+		Assert.assertEquals(Collections.singletonList(2), entries);
+		Assert.assertNull(s2.getState().getTokenHolder());
+		// a new generation created at the server 0 replaces the token held by the server 2
+		scenario.emulateAnInputLineFromTheConsoleForAServer(s0, "Token");
+		s1.requestCriticalSection(() -> entries.add(1));
+		scenario.getNetwork().runUntilQuiescent();
+		Assert.assertEquals(1, s2.getState().getTokenGeneration());
+		Assert.assertEquals(2, entries.size());
+		Assert.assertEquals(1, s1.getMetrics().getMutexWait().getCurrentInterval().getCount());
+	}
+
+	private static long messages(final String result) {
+		int start = result.indexOf("\"messages\":") + "\"messages\":".length();
+		return Long.parseLong(result.substring(start, result.indexOf(',', start)));
+	}
+}
@@ -0,0 +1,96 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Interceptor;
+import chat.common.Log;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgWorker;
+import chat.common.Scenario;
+import chat.server.Server;
+
+/**
+ * This class contains the scenario of the automatic re-election: the leader crashes, and the
+ * servers that lose their link with it start a new round of the election, of the next epoch.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class TestReelection extends Scenario {
+
+	private static final String LEADER = "leader";
+	private static final String NON_LEADER = "non-leader";
+	private static final String INITIATOR = "Initiator";
+	private static final int WAIT = 500;
+
+	public TestReelection() {
+		super(new LoopbackNetwork(0));
+	}
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		Interceptor.setInterceptionEnabled(false);
+
+		Server s0 = instanciateAServer("0");
+		Server s1 = instanciateAServer("1 localhost 0");
+		Server s2 = instanciateAServer("2 localhost 1 localhost 0");
+		Server s3 = instanciateAServer("3 localhost 2");
+		emulateAnInputLineFromTheConsoleForAServer(s2, INITIATOR);
+		emulateAnInputLineFromTheConsoleForAServer(s0, INITIATOR);
+		await(allOf(statusIs(s0, LEADER), statusIs(s1, NON_LEADER), statusIs(s2, NON_LEADER),
+				statusIs(s3, NON_LEADER)), 4 * WAIT);
+		Assert.assertEquals(0, s3.getState().getElectionEpoch());
+
+		// the leader crashes: its neighbours lose their links with it
+		for (MsgWorker worker : s0.getState().getServerWorkersView()) {
+			worker.close();
+		}
+		long convergence = await(agreeOnALeader(s1, s2, s3), 4 * WAIT);
+		System.out.println("re-election terminated in " + convergence + " ns");
+		int leader = s1.getState().getWin();
+		Assert.assertNotEquals(0, leader);
+		for (Server server : new Server[] {s1, s2, s3}) {
+			Assert.assertTrue(server.getState().getElectionEpoch() >= 1);
+			Assert.assertTrue(server.getMetrics().getElectionTime().getCurrentInterval()
+					.getCount() >= 1);
+		}
+		// alone in its partition, the crashed server elects itself
+		Assert.assertEquals(LEADER, s0.getState().getStatus());
+		Assert.assertTrue(s0.getState().getElectionEpoch() >= 1);
+		getNetwork().runUntilQuiescent();
+		Assert.assertTrue(agreeOnALeader(s1, s2, s3).getAsBoolean());
+		Assert.assertEquals(leader, s3.getState().getWin());
+	}
+
+	/**
+	 * builds the condition that holds when the servers have terminated the same round of the
+	 * election with the same leader, which is one of them.
+	 */
+	private static BooleanSupplier agreeOnALeader(final Server... servers) {
+		return () -> {
+			int epoch = servers[0].getState().getElectionEpoch();
+			int win = servers[0].getState().getWin();
+			int nbLeaders = 0;
+			for (Server server : servers) {
+				String status = server.getState().getStatus();
+				if (server.getState().getElectionEpoch() != epoch
+						|| server.getState().getWin() != win
+						|| !(LEADER.equals(status) || NON_LEADER.equals(status))) {
+					return false;
+				}
+				if (LEADER.equals(status)) {
+					nbLeaders++;
+				}
+			}
+			return nbLeaders == 1;
+		};
+	}
+}
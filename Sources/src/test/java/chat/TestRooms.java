@@ -0,0 +1,237 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.Log;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgWorker;
+import chat.common.Scenario;
+import chat.server.Server;
+import chat.server.algorithms.rooms.HashRing;
+
+public class TestRooms extends Scenario {
+
+	private static final int WAIT = 500;
+
+	private Server[] ring;
+
+	public TestRooms() {
+		super(new LoopbackNetwork(0));
+	}
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		// a ring of four servers, so that the messages may take two paths
+		ring = new Server[] {instanciateAServer("0"), instanciateAServer("1 localhost 0"),
+				instanciateAServer("2 localhost 1"), instanciateAServer("3 localhost 2 localhost 0")};
+		sleep(WAIT);
+		Client a = instanciateAClient(2050);
+		Client b = instanciateAClient(2051);
+		Client c = instanciateAClient(2052);
+		Client d = instanciateAClient(2052);
+		sleep(WAIT);
+
+		emulateAnInputLineFromTheConsoleForAClient(a, "/join blue");
+		emulateAnInputLineFromTheConsoleForAClient(c, "/join blue");
+		emulateAnInputLineFromTheConsoleForAClient(b, "/join green");
+		await(allOf(inRoom(a, "blue"), inRoom(c, "blue"), inRoom(b, "green")), WAIT);
+		sleep(WAIT);
+
+		// the default room is flooded
+		long before = framesOut();
+		emulateAnInputLineFromTheConsoleForAClient(d, "hello everybody");
+		await(allOf(nbDelivered(a, 1), nbDelivered(b, 1), nbDelivered(c, 1)), WAIT);
+		sleep(WAIT);
+		long flooded = framesOut() - before;
+		Assert.assertTrue(flooded >= 4);
+
+		// the messages of blue only reach the servers 0 and 2
+		before = framesOut();
+		emulateAnInputLineFromTheConsoleForAClient(a, "hello blue");
+		await(nbDelivered(c, 2), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(c, "reply in blue");
+		await(nbDelivered(a, 2), WAIT);
+		sleep(WAIT);
+		Assert.assertTrue(framesOut() - before < 2 * flooded);
+		Assert.assertEquals(1, b.getState().nbChatMessageContentDelivered);
+		Assert.assertEquals(0, d.getState().nbChatMessageContentDelivered);
+		Assert.assertEquals(1, c.getState().clock("blue").getEntry(a.getState().identity)
+				.intValue());
+
+		// nobody else is in green: the message does not leave the server 1
+		before = framesOut();
+		emulateAnInputLineFromTheConsoleForAClient(b, "alone in green");
+		sleep(WAIT);
+		Assert.assertEquals(before, framesOut());
+
+		// once c has left blue, the server 2 is no more a subscriber
+		emulateAnInputLineFromTheConsoleForAClient(c, "/leave blue");
+		await(() -> !c.getState().rooms.contains("blue"), WAIT);
+		sleep(WAIT);
+		before = framesOut();
+		emulateAnInputLineFromTheConsoleForAClient(a, "blue again");
+		sleep(WAIT);
+		Assert.assertEquals(before, framesOut());
+		Assert.assertEquals(2, c.getState().nbChatMessageContentDelivered);
+		for (Client client : new Client[] {a, b, c, d}) {
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+	}
+
+	@Test
+	public void homes() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		ring = new Server[] {instanciateAServer("0"), instanciateAServer("1 localhost 0"),
+				instanciateAServer("2 localhost 1"), instanciateAServer("3 localhost 2 localhost 0")};
+		sleep(WAIT);
+		// the election gives the set of the servers, hence the ring of the homes
+		emulateAnInputLineFromTheConsoleForAServer(ring[0], "Initiator");
+		await(allOf(ringOf(ring[0], 4), ringOf(ring[1], 4), ringOf(ring[2], 4),
+				ringOf(ring[3], 4)), 4 * WAIT);
+		// a room whose home is neither the server of the sender nor the one of the receiver
+		HashRing expected = new HashRing(Arrays.asList(0, 1, 2, 3));
+		String room = "blue";
+		for (int i = 0; expected.home(room) % 2 == 0; i++) {
+			room = "blue-" + i;
+		}
+		Server home = ring[expected.home(room)];
+		Assert.assertEquals(expected.home(room), ring[0].getState().getRing().home(room));
+
+		Client a = instanciateAClient(2050);
+		Client c = instanciateAClient(2052);
+		Client d = instanciateAClient(2052);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "/join " + room);
+		emulateAnInputLineFromTheConsoleForAClient(c, "/join " + room);
+		await(allOf(inRoom(a, room), inRoom(c, room)), WAIT);
+		sleep(WAIT);
+
+		// the messages go up to the home, which orders and fans them out
+		emulateAnInputLineFromTheConsoleForAClient(a, "hello home");
+		await(nbDelivered(c, 1), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(c, "reply from 2");
+		await(nbDelivered(a, 1), WAIT);
+		sleep(WAIT);
+		Assert.assertEquals(2, home.getMetrics().getHomeMsgs());
+		Assert.assertTrue(ring[0].getMetrics().getRelayedToHome() > 0);
+		Assert.assertTrue(ring[2].getMetrics().getRelayedToHome() > 0);
+		// the senders do not receive their own messages, nor do the other rooms
+		Assert.assertEquals(1, a.getState().nbChatMessageContentDelivered);
+		Assert.assertEquals(1, c.getState().nbChatMessageContentDelivered);
+		Assert.assertEquals(0, d.getState().nbChatMessageContentDelivered);
+		for (Client client : new Client[] {a, c, d}) {
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+	}
+
+	@Test
+	public void rejoin() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		ring = new Server[] {instanciateAServer("0"), instanciateAServer("1 localhost 0"),
+				instanciateAServer("2 localhost 1"), instanciateAServer("3 localhost 2 localhost 0")};
+		sleep(WAIT);
+		Client a = instanciateAClient(2050);
+		Client c = instanciateAClient(2052);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "/join blue");
+		emulateAnInputLineFromTheConsoleForAClient(c, "/join blue");
+		await(allOf(inRoom(a, "blue"), inRoom(c, "blue")), WAIT);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "before leaving");
+		await(nbDelivered(c, 1), WAIT);
+
+		// a leaves while c goes on, and joins again: the messages of a follow its first one
+		emulateAnInputLineFromTheConsoleForAClient(a, "/leave blue");
+		await(() -> !a.getState().rooms.contains("blue"), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(c, "while a is away");
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "/join blue");
+		await(inRoom(a, "blue"), WAIT);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "back in blue");
+		emulateAnInputLineFromTheConsoleForAClient(a, "still in blue");
+		await(nbDelivered(c, 3), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(c, "welcome back");
+		await(nbDelivered(a, 1), WAIT);
+		sleep(WAIT);
+		Assert.assertEquals(3, c.getState().nbChatMessageContentDelivered);
+		Assert.assertEquals(1, a.getState().nbChatMessageContentDelivered);
+		for (Client client : new Client[] {a, c}) {
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+	}
+
+	@Test
+	public void lateJoiner() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+		ring = new Server[] {instanciateAServer("0"), instanciateAServer("1 localhost 0"),
+				instanciateAServer("2 localhost 1"), instanciateAServer("3 localhost 2 localhost 0")};
+		sleep(WAIT);
+		Client a = instanciateAClient(2050);
+		Client b = instanciateAClient(2051);
+		Client c = instanciateAClient(2052);
+		Client d = instanciateAClient(2050);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "/join blue");
+		emulateAnInputLineFromTheConsoleForAClient(b, "/join blue");
+		await(allOf(inRoom(a, "blue"), inRoom(b, "blue")), WAIT);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "first");
+		await(nbDelivered(b, 1), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(b, "second");
+		await(nbDelivered(a, 1), WAIT);
+		sleep(WAIT);
+
+		// d joins on the server of a, which has followed the room, and c on a server that has not
+		emulateAnInputLineFromTheConsoleForAClient(d, "/join blue");
+		emulateAnInputLineFromTheConsoleForAClient(c, "/join blue");
+		await(allOf(inRoom(c, "blue"), inRoom(d, "blue")), WAIT);
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(a, "third");
+		await(allOf(nbDelivered(b, 2), nbDelivered(c, 1), nbDelivered(d, 1)), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(b, "fourth");
+		await(allOf(nbDelivered(a, 2), nbDelivered(c, 2), nbDelivered(d, 2)), WAIT);
+		emulateAnInputLineFromTheConsoleForAClient(c, "fifth");
+		await(allOf(nbDelivered(a, 3), nbDelivered(b, 3), nbDelivered(d, 3)), WAIT);
+		sleep(WAIT);
+		Assert.assertEquals(2, c.getState().nbChatMessageContentDelivered);
+		for (Client client : new Client[] {a, b, c, d}) {
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+	}
+
+	private static BooleanSupplier ringOf(final Server server, final int size) {
+		return () -> {
+			HashRing homes = server.getState().getRing();
+			return homes != null && homes.getServers().size() == size;
+		};
+	}
+
+	private static BooleanSupplier inRoom(final Client client, final String room) {
+		return () -> {
+			synchronized (client.getState()) {
+				return client.getState().rooms.contains(room);
+			}
+		};
+	}
+
+	private long framesOut() {
+		long frames = 0;
+		for (Server server : ring) {
+			for (MsgWorker worker : server.getState().getServerWorkersView()) {
+				frames += worker.getMetrics().getFramesOut();
+			}
+		}
+		return frames;
+	}
+}
@@ -15,11 +15,16 @@ import org.junit.Test;
 
 import chat.client.Client;
 import chat.common.Log;
+import chat.common.LoopbackNetwork;
 import chat.common.Scenario;
 import chat.server.Server;
 
 public class TestScenarioOssatureDeDepart extends Scenario {
 
+	public TestScenarioOssatureDeDepart() {
+		super(new LoopbackNetwork(0));
+	}
+
 	@Test
 	@Override
 	public void constructAndRun() throws Exception {
@@ -33,27 +38,18 @@ public class TestScenarioOssatureDeDepart extends Scenario {
 		}
 		
 		Server s0 = instanciateAServer("0");
-		sleep(500);
 		Server s1 = instanciateAServer("1 localhost 0");
-		sleep(500);
 		Server s2 = instanciateAServer("2 localhost 0 localhost 1");
-		sleep(500);
 		Server s3 = instanciateAServer("3 localhost 2");
-		sleep(500);
 		if (LOG_ON && TEST.isInfoEnabled()) {
 			TEST.info("starting the clients...");
 		}
 		// start the clients
 		Client c0 = instanciateAClient(2050);
-		sleep(500);
 		Client c1 = instanciateAClient(2050);
-		sleep(500);
 		Client c2 = instanciateAClient(2052);
-		sleep(500);
 		Client c3 = instanciateAClient(2053);
-		sleep(500);
 		Client c4 = instanciateAClient(2053);
-		sleep(1000);
 		if (LOG_ON && TEST.isInfoEnabled()) {
 			TEST.info("starting the test of the algorithms...");
 		}
@@ -65,10 +61,10 @@ public class TestScenarioOssatureDeDepart extends Scenario {
 		if (LOG_ON && TEST.isInfoEnabled()) {
 			TEST.info("end of the scenario.");
 		}
-		// wait and then flush stdout (necessary for IDEs such as Eclipse)
+		// wait for the deliveries and then flush stdout (necessary for IDEs such as Eclipse)
 		// without flush, no output in Eclipse for instance
-		// without sleep, not all outputs
-		sleep(3000);
+		await(allOf(nbDelivered(c0, 4), nbDelivered(c1, 4), nbDelivered(c2, 4),
+				nbDelivered(c3, 4), nbDelivered(c4, 4)), 3000);
 		System.out.flush();
 		// the scenario has ended, then get state content without synchronized
 		Assert.assertEquals(1, c0.getState().nbChatMessageContentSent);
@@ -83,21 +79,13 @@ public class TestScenarioOssatureDeDepart extends Scenario {
 		Assert.assertEquals(4, c4.getState().nbChatMessageContentReceived);
 		// finish properly
 		emulateAnInputLineFromTheConsoleForAClient(c0, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAClient(c1, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAClient(c2, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAClient(c3, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAClient(c4, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAServer(s0, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAServer(s1, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAServer(s2, "quit");
-		sleep(100);
 		emulateAnInputLineFromTheConsoleForAServer(s3, "quit");
 		sleep(100);
 	}
@@ -0,0 +1,64 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.Log;
+import chat.common.Scenario;
+import chat.server.Server;
+
+/**
+ * This class runs the diffusion of chat messages with servers using the engine that runs one
+ * virtual thread per connection. The test is skipped when the engine has not been compiled, that
+ * is when the build does not use the profile java21.
+ */
+public class TestVirtualThreadEngine extends Scenario {
+
+	private static final int WAIT = 500;
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		boolean compiled = true;
+		try {
+			Class.forName("chat.server.VirtualThreadEngine");
+		} catch (ClassNotFoundException e) {
+			compiled = false;
+		}
+		Assume.assumeTrue(compiled);
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+
+		Server s0 = instanciateAServer("0", Server.VIRTUAL_ENGINE);
+		sleep(WAIT);
+		Server s1 = instanciateAServer("1 localhost 0", Server.VIRTUAL_ENGINE);
+		sleep(WAIT);
+		Client c0 = instanciateAClient(2050);
+		sleep(WAIT);
+		Client c1 = instanciateAClient(2050);
+		sleep(WAIT);
+		Client c2 = instanciateAClient(2051);
+		sleep(2 * WAIT);
+
+		emulateAnInputLineFromTheConsoleForAClient(c0, "message 0 from c0");
+		emulateAnInputLineFromTheConsoleForAClient(c1, "message 1 from c1");
+		emulateAnInputLineFromTheConsoleForAClient(c2, "message 2 from c2");
+		sleep(4 * WAIT);
+
+		Assert.assertEquals(2, c0.getState().nbChatMessageContentReceived);
+		Assert.assertEquals(2, c1.getState().nbChatMessageContentReceived);
+		Assert.assertEquals(2, c2.getState().nbChatMessageContentReceived);
+
+		emulateAnInputLineFromTheConsoleForAClient(c0, "quit");
+		emulateAnInputLineFromTheConsoleForAClient(c1, "quit");
+		emulateAnInputLineFromTheConsoleForAClient(c2, "quit");
+		sleep(WAIT);
+		emulateAnInputLineFromTheConsoleForAServer(s0, "quit");
+		emulateAnInputLineFromTheConsoleForAServer(s1, "quit");
+		sleep(WAIT);
+	}
+}
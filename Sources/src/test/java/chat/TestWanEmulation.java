@@ -0,0 +1,111 @@
+package chat;
+
+import static chat.common.Log.LOGGER_NAME_TEST;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.Log;
+import chat.common.NetworkEmulation;
+import chat.common.Scenario;
+import chat.server.Server;
+
+/**
+ * This class runs an election and a causal exchange of chat messages over the wide area network
+ * emulated by the file <tt>wan.emulation</tt>, and measures the times of convergence and the
+ * largest backlog of the causal delivery.
+ */
+public class TestWanEmulation extends Scenario {
+
+	private static final String LEADER = "leader";
+
+	private static final String NON_LEADER = "non-leader";
+
+	private static final int SERVERS = 4;
+
+	private static final int CLIENTS_PER_SERVER = 2;
+
+	private static final int TIMEOUT = 10000;
+
+	private static final int MESSAGES_PER_CLIENT = 4;
+
+	private int maxBacklog;
+
+	public TestWanEmulation() throws Exception {
+		super(NetworkEmulation.load("wan.emulation"));
+	}
+
+	private static boolean canSend(final Client client, final int sent) {
+		synchronized (client.getState()) {
+			return sent < MESSAGES_PER_CLIENT
+					&& client.getState().nbChatMessageContentDelivered >= sent + 1;
+		}
+	}
+
+	@Test
+	@Override
+	public void constructAndRun() throws Exception {
+		Log.configureALogger(LOGGER_NAME_TEST, Level.WARN);
+
+		List<Server> servers = new ArrayList<>();
+		servers.add(instanciateAServer("0"));
+		servers.add(instanciateAServer("1 localhost 0"));
+		servers.add(instanciateAServer("2 localhost 1"));
+		servers.add(instanciateAServer("3 localhost 2 localhost 0"));
+		List<Client> clients = new ArrayList<>();
+		for (int i = 0; i < SERVERS * CLIENTS_PER_SERVER; i++) {
+			Client client = instanciateAClient(Server.BASE_PORTNB_LISTEN_CLIENT + i % SERVERS);
+			client.getState().addObserver(state -> maxBacklog = Math.max(maxBacklog,
+					((chat.client.State) state).MsgBag.size()));
+			clients.add(client);
+		}
+
+		for (Server server : servers) {
+			emulateAnInputLineFromTheConsoleForAServer(server, "Initiator");
+		}
+		long election = await(allOf(statusIs(servers.get(0), LEADER),
+				statusIs(servers.get(1), NON_LEADER), statusIs(servers.get(2), NON_LEADER),
+				statusIs(servers.get(3), NON_LEADER)), TIMEOUT);
+		System.out.println("election over the emulated WAN terminated in " + election
+				+ " ns of virtual time");
+		Assert.assertTrue(election > 2 * 15_000_000L);
+
+		// a client of the site 1 starts a conversation, and every client sends its n-th message as
+		// soon as it has delivered n messages, which depend causally on messages crossing the slow
+		// link or two other links
+		int[] sent = new int[clients.size()];
+		emulateAnInputLineFromTheConsoleForAClient(clients.get(1), "message 0 from c1");
+		sent[1] = 1;
+		while (IntStream.of(sent).sum() < MESSAGES_PER_CLIENT * clients.size()) {
+			await(() -> IntStream.range(0, clients.size()).anyMatch(i -> canSend(clients.get(i),
+					sent[i])), TIMEOUT);
+			for (int i = 0; i < clients.size(); i++) {
+				if (canSend(clients.get(i), sent[i])) {
+					emulateAnInputLineFromTheConsoleForAClient(clients.get(i), "message " + sent[i]
+							+ " from c" + i);
+					sent[i]++;
+				}
+			}
+		}
+		List<BooleanSupplier> delivered = new ArrayList<>();
+		for (Client client : clients) {
+			delivered.add(nbDelivered(client, MESSAGES_PER_CLIENT * (clients.size() - 1)));
+			delivered.add(msgBagDrained(client));
+		}
+		long diffusion = await(allOf(delivered.toArray(new BooleanSupplier[0])), TIMEOUT);
+		System.out.println("causal exchange over the emulated WAN terminated in " + diffusion
+				+ " ns of virtual time, with a backlog of at most " + maxBacklog + " messages");
+
+		for (Client client : clients) {
+			Assert.assertTrue(client.getState().MsgBag.isEmpty());
+		}
+		Assert.assertEquals(0, getNetwork().getNbLost());
+	}
+}
@@ -0,0 +1,103 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chat.common.Topology;
+
+public class TopologyTest {
+
+	private static int nbLinks(final List<List<Integer>> connections) {
+		int links = 0;
+		for (List<Integer> targets : connections) {
+			links += targets.size();
+		}
+		return links;
+	}
+
+	private static boolean connected(final List<List<Integer>> connections) {
+		int n = connections.size();
+		List<List<Integer>> neighbours = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			neighbours.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < n; i++) {
+			for (Integer j : connections.get(i)) {
+				Assert.assertTrue(j < i);
+				neighbours.get(i).add(j);
+				neighbours.get(j).add(i);
+			}
+		}
+		boolean[] visited = new boolean[n];
+		Deque<Integer> toVisit = new ArrayDeque<>();
+		toVisit.add(0);
+		visited[0] = true;
+		int nbVisited = 1;
+		while (!toVisit.isEmpty()) {
+			for (Integer j : neighbours.get(toVisit.poll())) {
+				if (!visited[j]) {
+					visited[j] = true;
+					nbVisited++;
+					toVisit.add(j);
+				}
+			}
+		}
+		return nbVisited == n;
+	}
+
+	@Test
+	public void presets() {
+		Random random = new Random(0);
+		Assert.assertEquals(5, nbLinks(Topology.LINE.connections(6, random, 0)));
+		Assert.assertEquals(6, nbLinks(Topology.RING.connections(6, random, 0)));
+		Assert.assertEquals(1, nbLinks(Topology.RING.connections(2, random, 0)));
+		Assert.assertEquals(5, nbLinks(Topology.STAR.connections(6, random, 0)));
+		Assert.assertEquals(15, nbLinks(Topology.MESH.connections(6, random, 0)));
+		Assert.assertEquals(5, nbLinks(Topology.TREE.connections(6, random, 0)));
+		Assert.assertEquals(Arrays.asList(2), Topology.TREE.connections(6, random, 0).get(5));
+		for (Topology topology : Topology.values()) {
+			Assert.assertTrue(connected(topology.connections(6, random, 0.3)));
+			Assert.assertEquals(topology, Topology.of(topology.toString().toUpperCase()));
+		}
+	}
+
+	@Test
+	public void randomIsReproducible() {
+		for (int seed = 0; seed < 20; seed++) {
+			List<List<Integer>> first = Topology.RANDOM.connections(10, new Random(seed), 0.2);
+			Assert.assertTrue(connected(first));
+			Assert.assertTrue(nbLinks(first) >= 9);
+			Assert.assertEquals(first, Topology.RANDOM.connections(10, new Random(seed), 0.2));
+		}
+		Assert.assertEquals(9, nbLinks(Topology.RANDOM.connections(10, new Random(0), 0)));
+	}
+}
@@ -0,0 +1,149 @@
+// CHECKSTYLE:OFF
+/**
+This file is part of the muDEBS middleware.
+
+Copyright (C) 2012-2017 Télécom SudParis
+
+This is free software: you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This software platform is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with the muDEBS platform. If not, see <http://www.gnu.org/licenses/>.
+
+Initial developer(s): Hamza Hassine, Majdi Haouech
+Contributor(s):
+ */
+package chat;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import chat.client.Client;
+import chat.common.Action;
+import chat.common.FullDuplexMsgWorker;
+import chat.common.LatencyHistogram;
+import chat.common.LoopbackNetwork;
+import chat.common.MsgWorker;
+import chat.common.ReadMessageStatus;
+import chat.server.Server;
+
+/**
+ * This class contains the unit tests of the extended header: the origin time
+ * and the hop count of the traced messages, and the compatibility with the
+ * frames of the basic header.
+ *
+ * @author Hamza Hassine
+ * @author Majdi Haouech
+ */
+public class TracingTest {
+
+	private static final int CHAT_TYPE = Action.OFFSET_CLIENT_ALGORITHMS;
+
+	private ServerSocketChannel listen;
+
+	private SocketChannel out;
+
+	private FullDuplexMsgWorker receiver;
+
+	@Before
+	public void setUp() throws Exception {
+		listen = ServerSocketChannel.open();
+		listen.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		out = SocketChannel.open(listen.getLocalAddress());
+		receiver = new FullDuplexMsgWorker(listen.accept());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		out.close();
+		receiver.close();
+		listen.close();
+	}
+
+	private Serializable read() throws Exception {
+		while (receiver.readMessage() != ReadMessageStatus.ReadDataCompleted) {
+			Assert.assertTrue(receiver.getChannel().isOpen());
+		}
+		return receiver.getData();
+	}
+
+	private void write(final ByteBuffer[] frame) throws Exception {
+		while (frame[1].hasRemaining()) {
+			out.write(frame);
+		}
+	}
+
+	@Test
+	public void basicAndExtendedHeaders() throws Exception {
+		ByteBuffer[] basic = FullDuplexMsgWorker.encode(CHAT_TYPE, 3, 7, "basic");
+		Assert.assertEquals(FullDuplexMsgWorker.HEADER_BYTES, basic[0].remaining());
+		ByteBuffer[] extended = FullDuplexMsgWorker.encode(CHAT_TYPE, 4, 8, 123_456_789L, 2,
+				"extended");
+		Assert.assertEquals(FullDuplexMsgWorker.HEADER_BYTES
+				+ FullDuplexMsgWorker.EXTENSION_BYTES, extended[0].remaining());
+		write(basic);
+		write(extended);
+		write(FullDuplexMsgWorker.encode(CHAT_TYPE, 5, 9, "basic again"));
+
+		Assert.assertEquals("basic", read());
+		Assert.assertEquals(CHAT_TYPE, receiver.getInType());
+		Assert.assertEquals(3, receiver.getInIdentity());
+		Assert.assertEquals(7, receiver.getInSeqNumber());
+		Assert.assertEquals(MsgWorker.UNTRACED, receiver.getInOriginTime());
+
+		Assert.assertEquals("extended", read());
+		Assert.assertEquals(CHAT_TYPE, receiver.getInType());
+		Assert.assertEquals(4, receiver.getInIdentity());
+		Assert.assertEquals(8, receiver.getInSeqNumber());
+		Assert.assertEquals(123_456_789L, receiver.getInOriginTime());
+		Assert.assertEquals(2, receiver.getInHops());
+
+		Assert.assertEquals("basic again", read());
+		Assert.assertEquals(MsgWorker.UNTRACED, receiver.getInOriginTime());
+		Assert.assertEquals(0, receiver.getInHops());
+		Assert.assertEquals(3, receiver.getMetrics().getFramesIn());
+	}
+
+	@Test
+	public void hopsAlongAChain() throws Exception {
+		LoopbackNetwork network = new LoopbackNetwork(0);
+		new Server("0".split(" "), network);
+		new Server("1 localhost 0".split(" "), network);
+		new Server("2 localhost 1".split(" "), network);
+		Client sender = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT);
+		Client local = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT);
+		Client remote = new Client(network, Server.BASE_PORTNB_LISTEN_CLIENT + 2);
+		network.runUntilQuiescent();
+		long before = System.nanoTime();
+		sender.treatConsoleInput("traced");
+		network.runUntilQuiescent();
+		long elapsed = System.nanoTime() - before;
+
+		LatencyHistogram localHops = local.getState().hopCount.getTotal();
+		Assert.assertEquals(1, localHops.getCount());
+		Assert.assertEquals(1, localHops.getMax());
+		LatencyHistogram remoteHops = remote.getState().hopCount.getTotal();
+		Assert.assertEquals(1, remoteHops.getCount());
+		Assert.assertEquals(3, remoteHops.getMax());
+		LatencyHistogram latency = remote.getState().endToEnd.getTotal();
+		Assert.assertEquals(1, latency.getCount());
+		Assert.assertTrue(latency.getMax() > 0);
+		Assert.assertTrue(latency.getMax() <= elapsed + elapsed / LatencyHistogram.SUB_BUCKET_COUNT);
+	}
+}